@@ -0,0 +1,148 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket;
+
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketApi;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketBranch;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketDirectory;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketIncrementalApi;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketPullRequest;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketRepository;
+import com.cloudbees.jenkins.plugins.bitbucket.client.repository.UserRoleInRepository;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Calls the {@link BitbucketIncrementalApi} methods of the clients that implement them, and falls back to the
+ * {@link BitbucketApi} methods for the clients from other plugins that only implement {@link BitbucketApi}.
+ *
+ * @since 2.2.4
+ */
+final class BitbucketApiSupport {
+
+    private BitbucketApiSupport() {
+        throw new IllegalAccessError("Utility class");
+    }
+
+    /**
+     * Iterates the pull requests of a repository, see {@link BitbucketIncrementalApi#iteratePullRequests()}.
+     *
+     * @param bitbucket the client.
+     * @return an iterator over the pull requests.
+     * @throws IOException          if there was a network communications error.
+     * @throws InterruptedException if interrupted while waiting on remote communications.
+     */
+    @NonNull
+    static Iterator<? extends BitbucketPullRequest> iteratePullRequests(@NonNull BitbucketApi bitbucket)
+            throws IOException, InterruptedException {
+        if (bitbucket instanceof BitbucketIncrementalApi) {
+            return ((BitbucketIncrementalApi) bitbucket).iteratePullRequests();
+        }
+        return bitbucket.getPullRequests().iterator();
+    }
+
+    /**
+     * Iterates the branches of a repository, see {@link BitbucketIncrementalApi#iterateBranches()}.
+     *
+     * @param bitbucket the client.
+     * @return an iterator over the branches.
+     * @throws IOException          if there was a network communications error.
+     * @throws InterruptedException if interrupted while waiting on remote communications.
+     */
+    @NonNull
+    static Iterator<? extends BitbucketBranch> iterateBranches(@NonNull BitbucketApi bitbucket)
+            throws IOException, InterruptedException {
+        if (bitbucket instanceof BitbucketIncrementalApi) {
+            return ((BitbucketIncrementalApi) bitbucket).iterateBranches();
+        }
+        return bitbucket.getBranches().iterator();
+    }
+
+    /**
+     * Returns a single branch of a repository, see {@link BitbucketIncrementalApi#getBranch(String)}. The other
+     * clients list every branch to find it.
+     *
+     * @param bitbucket  the client.
+     * @param branchName the name of the branch.
+     * @return the branch or {@code null} if there is no such branch.
+     * @throws IOException          if there was a network communications error.
+     * @throws InterruptedException if interrupted while waiting on remote communications.
+     */
+    @CheckForNull
+    static BitbucketBranch getBranch(@NonNull BitbucketApi bitbucket, @NonNull String branchName)
+            throws IOException, InterruptedException {
+        if (bitbucket instanceof BitbucketIncrementalApi) {
+            return ((BitbucketIncrementalApi) bitbucket).getBranch(branchName);
+        }
+        for (BitbucketBranch branch : bitbucket.getBranches()) {
+            if (branchName.equals(branch.getName())) {
+                return branch;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Iterates the repositories of an owner, see
+     * {@link BitbucketIncrementalApi#iterateRepositories(UserRoleInRepository)}.
+     *
+     * @param bitbucket the client.
+     * @param role      the role of the owner in the repositories or {@code null} if the owner is a team.
+     * @return an iterator over the repositories.
+     * @throws IOException          if there was a network communications error.
+     * @throws InterruptedException if interrupted while waiting on remote communications.
+     */
+    @NonNull
+    static Iterator<? extends BitbucketRepository> iterateRepositories(@NonNull BitbucketApi bitbucket,
+                                                                        @CheckForNull UserRoleInRepository role)
+            throws IOException, InterruptedException {
+        if (bitbucket instanceof BitbucketIncrementalApi) {
+            return ((BitbucketIncrementalApi) bitbucket).iterateRepositories(role);
+        }
+        return (role == null ? bitbucket.getRepositories() : bitbucket.getRepositories(role)).iterator();
+    }
+
+    /**
+     * Lists a directory of a repository, see {@link BitbucketIncrementalApi#getDirectoryContent(String, String)}.
+     *
+     * @param bitbucket    the client.
+     * @param branchOrHash the branch name or commit hash.
+     * @param path         the path of the directory, empty for the root directory.
+     * @return the entries of the directory or {@code null} if the client cannot list directories, in which case
+     * {@link BitbucketApi#checkPathExists(String, String)} should be used instead.
+     * @throws IOException          if there was a network communications error.
+     * @throws InterruptedException if interrupted while waiting on remote communications.
+     */
+    @CheckForNull
+    static BitbucketDirectory getDirectoryContent(@NonNull BitbucketApi bitbucket, @NonNull String branchOrHash,
+                                                  @NonNull String path)
+            throws IOException, InterruptedException {
+        if (bitbucket instanceof BitbucketIncrementalApi) {
+            return ((BitbucketIncrementalApi) bitbucket).getDirectoryContent(branchOrHash, path);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket;
+
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketDirectory;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import jenkins.scm.api.SCMFile;
+
+/**
+ * A file of a {@link BitbucketSCMFileSystem}.
+ *
+ * @since 2.2.4
+ */
+class BitbucketSCMFile extends SCMFile {
+
+    /**
+     * The file system.
+     */
+    @NonNull
+    private final BitbucketSCMFileSystem fs;
+    /**
+     * The type of the file, {@code null} until known.
+     */
+    @CheckForNull
+    private Type type;
+
+    /**
+     * Constructor for the root directory.
+     *
+     * @param fs the file system.
+     */
+    BitbucketSCMFile(@NonNull BitbucketSCMFileSystem fs) {
+        this.fs = fs;
+        this.type = Type.DIRECTORY;
+    }
+
+    /**
+     * Constructor for a child.
+     *
+     * @param parent the parent directory.
+     * @param name   the name of the file.
+     * @param type   the type of the file, {@code null} if not known.
+     */
+    private BitbucketSCMFile(@NonNull BitbucketSCMFile parent, @NonNull String name, @CheckForNull Type type) {
+        super(parent, name);
+        this.fs = parent.fs;
+        this.type = type;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @NonNull
+    @Override
+    protected SCMFile newChild(@NonNull String name, boolean assumeIsDirectory) {
+        return new BitbucketSCMFile(this, name, assumeIsDirectory ? Type.DIRECTORY : null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @NonNull
+    @Override
+    public Iterable<SCMFile> children() throws IOException, InterruptedException {
+        if (type() != Type.DIRECTORY) {
+            return Collections.emptyList();
+        }
+        BitbucketDirectory listing = fs.listing(getPath());
+        if (listing == null) {
+            throw new IOException("Cannot list the directory " + getPath());
+        }
+        List<SCMFile> children = new ArrayList<>(listing.getEntries().size());
+        for (Map.Entry<String, Type> entry : listing.getEntries().entrySet()) {
+            children.add(new BitbucketSCMFile(this, entry.getKey(), entry.getValue()));
+        }
+        return children;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long lastModified() throws IOException, InterruptedException {
+        // the REST APIs do not give the last commit of each path, the commit is the closest
+        return fs.lastModified();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @NonNull
+    @Override
+    protected Type type() throws IOException, InterruptedException {
+        if (type == null) {
+            type = fs.type(getPath());
+        }
+        return type;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @NonNull
+    @Override
+    public InputStream content() throws IOException, InterruptedException {
+        // the type is not looked up just for this, the request for the content tells if there is no such file
+        if (type == Type.DIRECTORY) {
+            throw new IOException("Cannot read the content of the directory " + getPath());
+        }
+        if (type == Type.NONEXISTENT) {
+            throw new FileNotFoundException(getPath());
+        }
+        return fs.content(getPath());
+    }
+}
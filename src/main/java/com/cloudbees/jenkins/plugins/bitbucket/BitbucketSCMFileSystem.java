@@ -0,0 +1,301 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket;
+
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketApi;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketCommit;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketDirectory;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketIncrementalApi;
+import com.cloudbees.jenkins.plugins.bitbucket.client.FileContentCache;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.Item;
+import hudson.plugins.mercurial.MercurialSCMSource;
+import hudson.scm.SCM;
+import hudson.scm.SCMDescriptor;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import jenkins.plugins.git.AbstractGitSCMSource;
+import jenkins.scm.api.SCMFile;
+import jenkins.scm.api.SCMFileSystem;
+import jenkins.scm.api.SCMHead;
+import jenkins.scm.api.SCMRevision;
+import jenkins.scm.api.SCMSource;
+import jenkins.scm.api.SCMSourceDescriptor;
+import jenkins.scm.api.mixin.ChangeRequestCheckoutStrategy;
+
+/**
+ * A {@link SCMFileSystem} that reads the files of a {@link BitbucketSCMSource} revision through the Bitbucket REST
+ * API, so that loading a {@code Jenkinsfile} does not need a checkout. The revision is always read at its commit
+ * hash, and the contents of small files are kept in the {@link FileContentCache}.
+ *
+ * @since 2.2.4
+ */
+public class BitbucketSCMFileSystem extends SCMFileSystem {
+
+    /**
+     * The client.
+     */
+    @NonNull
+    private final BitbucketIncrementalApi bitbucket;
+    /**
+     * The server URL, which identifies the repository in the {@link FileContentCache}.
+     */
+    @NonNull
+    private final String serverUrl;
+    /**
+     * The owner of the repository the client accesses.
+     */
+    @NonNull
+    private final String repoOwner;
+    /**
+     * The name of the repository the client accesses.
+     */
+    @NonNull
+    private final String repository;
+    /**
+     * The commit hash of the revision.
+     */
+    @NonNull
+    private final String hash;
+    /**
+     * The directory listings fetched so far, keyed by repository, revision and path.
+     */
+    private final ConcurrentMap<String, BitbucketDirectory> listings = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param bitbucket  the client.
+     * @param serverUrl  the server URL.
+     * @param repoOwner  the owner of the repository the client accesses.
+     * @param repository the name of the repository the client accesses.
+     * @param hash       the commit hash of the revision.
+     * @param rev        the revision.
+     */
+    BitbucketSCMFileSystem(@NonNull BitbucketIncrementalApi bitbucket, @NonNull String serverUrl, @NonNull String repoOwner,
+                           @NonNull String repository, @NonNull String hash, @CheckForNull SCMRevision rev) {
+        super(rev);
+        this.bitbucket = bitbucket;
+        this.serverUrl = serverUrl;
+        this.repoOwner = repoOwner;
+        this.repository = repository;
+        this.hash = hash;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long lastModified() throws IOException, InterruptedException {
+        BitbucketCommit commit = bitbucket.resolveCommit(hash);
+        return commit == null ? 0L : commit.getDateMillis();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @NonNull
+    @Override
+    public SCMFile getRoot() {
+        return new BitbucketSCMFile(this);
+    }
+
+    /**
+     * Returns the type of a path.
+     *
+     * @param path the path.
+     * @return the type of the path.
+     * @throws IOException          if there was a network communications error.
+     * @throws InterruptedException if interrupted while waiting on remote communications.
+     */
+    @NonNull
+    SCMFile.Type type(@NonNull String path) throws IOException, InterruptedException {
+        return BitbucketSCMProbe.type(bitbucket, hash, listings, path);
+    }
+
+    /**
+     * Returns the listing of a directory.
+     *
+     * @param path the path of the directory.
+     * @return the listing or {@code null} if the client cannot list directories.
+     * @throws IOException          if there was a network communications error.
+     * @throws InterruptedException if interrupted while waiting on remote communications.
+     */
+    @CheckForNull
+    BitbucketDirectory listing(@NonNull String path) throws IOException, InterruptedException {
+        return BitbucketSCMProbe.listing(bitbucket, hash, listings, path.isEmpty() ? path : path + "/");
+    }
+
+    /**
+     * Opens the content of a file, from the {@link FileContentCache} when it was read before.
+     *
+     * @param path the path of the file.
+     * @return the content of the file.
+     * @throws IOException          if there was a network communications error or if there is no such file.
+     * @throws InterruptedException if interrupted while waiting on remote communications.
+     */
+    @NonNull
+    InputStream content(@NonNull String path) throws IOException, InterruptedException {
+        FileContentCache cache = FileContentCache.get();
+        byte[] content = cache.lookup(serverUrl, repoOwner, repository, hash, path);
+        if (content != null) {
+            return new ByteArrayInputStream(content);
+        }
+        InputStream stream = bitbucket.getFileContent(hash, path);
+        boolean streaming = false;
+        try {
+            // read just past the largest cacheable content, a larger file is streamed rather than held in memory
+            int limit = cache.getMaxEntrySize() + 1;
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            byte[] chunk = new byte[8192];
+            int read;
+            while (buffer.size() < limit
+                    && (read = stream.read(chunk, 0, Math.min(chunk.length, limit - buffer.size()))) != -1) {
+                buffer.write(chunk, 0, read);
+            }
+            content = buffer.toByteArray();
+            if (content.length < limit) {
+                cache.put(serverUrl, repoOwner, repository, hash, path, content);
+                return new ByteArrayInputStream(content);
+            }
+            streaming = true;
+            return new SequenceInputStream(new ByteArrayInputStream(content), stream);
+        } finally {
+            if (!streaming) {
+                stream.close();
+            }
+        }
+    }
+
+    /**
+     * Builds a {@link BitbucketSCMFileSystem} for the heads and revisions of a {@link BitbucketSCMSource}.
+     */
+    @Extension
+    public static class BuilderImpl extends SCMFileSystem.Builder {
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean supports(SCM source) {
+            // the SCM built by the source does not remember the repository it was built for
+            return false;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected boolean supportsDescriptor(SCMDescriptor descriptor) {
+            return false;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean supports(SCMSource source) {
+            return source instanceof BitbucketSCMSource;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected boolean supportsDescriptor(SCMSourceDescriptor descriptor) {
+            return descriptor instanceof BitbucketSCMSource.DescriptorImpl;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public SCMFileSystem build(@NonNull Item owner, @NonNull SCM scm, @CheckForNull SCMRevision rev) {
+            return null;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public SCMFileSystem build(@NonNull SCMSource source, @NonNull SCMHead head, @CheckForNull SCMRevision rev)
+                throws IOException, InterruptedException {
+            if (!(source instanceof BitbucketSCMSource)) {
+                return null;
+            }
+            BitbucketSCMSource src = (BitbucketSCMSource) source;
+            if (rev instanceof PullRequestSCMRevision) {
+                PullRequestSCMHead pr = (PullRequestSCMHead) rev.getHead();
+                if (pr.getCheckoutStrategy() == ChangeRequestCheckoutStrategy.MERGE) {
+                    // the merge of the pull request only exists once checked out
+                    return null;
+                }
+                String hash = getHash(((PullRequestSCMRevision) rev).getPull());
+                if (hash == null) {
+                    return null;
+                }
+                BitbucketApi bitbucket = src.buildBitbucketClient(pr);
+                if (!(bitbucket instanceof BitbucketIncrementalApi)) {
+                    // the client cannot read single files
+                    return null;
+                }
+                return new BitbucketSCMFileSystem((BitbucketIncrementalApi) bitbucket, src.getServerUrl(),
+                        pr.getRepoOwner(), pr.getRepository(), hash, rev);
+            }
+            String hash = getHash(rev);
+            if (hash == null) {
+                // only an exact commit gives the content the build is for
+                return null;
+            }
+            BitbucketApi bitbucket = src.buildBitbucketClient();
+            if (!(bitbucket instanceof BitbucketIncrementalApi)) {
+                // the client cannot read single files
+                return null;
+            }
+            return new BitbucketSCMFileSystem((BitbucketIncrementalApi) bitbucket, src.getServerUrl(),
+                    src.getRepoOwner(), src.getRepository(), hash, rev);
+        }
+
+        @CheckForNull
+        private static String getHash(@CheckForNull SCMRevision revision) {
+            if (revision instanceof AbstractGitSCMSource.SCMRevisionImpl) {
+                return ((AbstractGitSCMSource.SCMRevisionImpl) revision).getHash();
+            }
+            if (revision instanceof BitbucketSCMSource.MercurialRevision) {
+                return ((BitbucketSCMSource.MercurialRevision) revision).getHash();
+            }
+            if (revision instanceof MercurialSCMSource.MercurialRevision) {
+                return ((MercurialSCMSource.MercurialRevision) revision).getHash();
+            }
+            return null;
+        }
+    }
+}
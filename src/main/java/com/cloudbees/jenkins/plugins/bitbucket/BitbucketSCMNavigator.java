@@ -26,6 +26,7 @@ package com.cloudbees.jenkins.plugins.bitbucket;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketApi;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketApiFactory;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketHref;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketIterationException;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketRepository;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketTeam;
 import com.cloudbees.jenkins.plugins.bitbucket.client.repository.UserRoleInRepository;
@@ -57,6 +58,7 @@ import hudson.plugins.mercurial.traits.MercurialBrowserSCMSourceTrait;
 import hudson.security.ACL;
 import hudson.util.FormValidation;
 import hudson.util.ListBoxModel;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.ObjectStreamException;
 import java.util.ArrayList;
@@ -467,21 +469,31 @@ public class BitbucketSCMNavigator extends SCMNavigator {
 
             BitbucketApi bitbucket = BitbucketApiFactory.newInstance(serverUrl, credentials, repoOwner, null);
             BitbucketTeam team = bitbucket.getTeam();
-            List<? extends BitbucketRepository> repositories;
+            Iterator<? extends BitbucketRepository> repositories;
             if (team != null) {
                 // Navigate repositories of the team
                 listener.getLogger().format("Looking up repositories of team %s%n", repoOwner);
-                repositories = bitbucket.getRepositories();
+                repositories = BitbucketApiSupport.iterateRepositories(bitbucket, null);
             } else {
                 // Navigate the repositories of the repoOwner as a user
                 listener.getLogger().format("Looking up repositories of user %s%n", repoOwner);
-                repositories = bitbucket.getRepositories(UserRoleInRepository.OWNER);
+                repositories = BitbucketApiSupport.iterateRepositories(bitbucket, UserRoleInRepository.OWNER);
             }
-            for (BitbucketRepository repo : repositories) {
-                if (request.process(repo.getRepositoryName(), sourceFactory, null, witness)) {
-                    listener.getLogger().format(
-                            "%d repositories were processed (query completed)%n", witness.getCount()
-                    );
+            try {
+                while (repositories.hasNext()) {
+                    BitbucketRepository repo = repositories.next();
+                    if (request.process(repo.getRepositoryName(), sourceFactory, null, witness)) {
+                        listener.getLogger().format(
+                                "%d repositories were processed (query completed)%n", witness.getCount()
+                        );
+                        return;
+                    }
+                }
+            } catch (BitbucketIterationException e) {
+                e.unwrap();
+            } finally {
+                if (repositories instanceof Closeable) {
+                    ((Closeable) repositories).close();
                 }
             }
             listener.getLogger().format("%d repositories were processed%n", witness.getCount());
@@ -0,0 +1,275 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket;
+
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketApi;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketCommit;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketDirectory;
+import com.cloudbees.jenkins.plugins.bitbucket.client.ProbeResultCache;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.TaskListener;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentMap;
+import jenkins.scm.api.SCMFile;
+import jenkins.scm.api.SCMHead;
+import jenkins.scm.api.SCMProbe;
+import jenkins.scm.api.SCMProbeStat;
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * A {@link SCMProbe} that answers path checks from the listings of the directories leading to each path, so that
+ * any number of checks in the same directory cost a single request. The listings are shared by all the probes of a
+ * scan, so heads pointing to the same revision list each directory only once. Where the API cannot list directories
+ * each path is checked on its own.
+ *
+ * @since 2.2.4
+ */
+class BitbucketSCMProbe extends SCMProbe {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The head being probed.
+     */
+    @NonNull
+    private final SCMHead head;
+    /**
+     * The revision being probed.
+     */
+    @CheckForNull
+    private final String hash;
+    /**
+     * The server URL, which identifies the probed repository in the {@link ProbeResultCache}.
+     */
+    @CheckForNull
+    private final String serverUrl;
+    /**
+     * The id of the credentials the client uses, which also identify the probe results in the
+     * {@link ProbeResultCache}.
+     */
+    @CheckForNull
+    private final String credentialsId;
+    /**
+     * The owner of the repository the client accesses.
+     */
+    @CheckForNull
+    private final String repoOwner;
+    /**
+     * The name of the repository the client accesses.
+     */
+    @CheckForNull
+    private final String repository;
+    /**
+     * The client.
+     */
+    @NonNull
+    private final transient BitbucketApi bitbucket;
+    /**
+     * The directory listings of the scan, keyed by repository, revision and path.
+     */
+    @NonNull
+    private final transient ConcurrentMap<String, BitbucketDirectory> listings;
+    /**
+     * The listener of the scan.
+     */
+    @NonNull
+    private final transient TaskListener listener;
+
+    /**
+     * Constructor.
+     *
+     * @param head          the head being probed.
+     * @param hash          the revision being probed.
+     * @param serverUrl     the server URL, which identifies the probed repository in the {@link ProbeResultCache}.
+     * @param credentialsId the id of the credentials the client uses or {@code null} for anonymous access.
+     * @param repoOwner     the owner of the repository the client accesses.
+     * @param repository    the name of the repository the client accesses.
+     * @param bitbucket     the client.
+     * @param listings      the directory listings of the scan.
+     * @param listener      the listener of the scan.
+     */
+    BitbucketSCMProbe(@NonNull SCMHead head, @CheckForNull String hash, @CheckForNull String serverUrl,
+                      @CheckForNull String credentialsId, @CheckForNull String repoOwner,
+                      @CheckForNull String repository, @NonNull BitbucketApi bitbucket,
+                      @NonNull ConcurrentMap<String, BitbucketDirectory> listings, @NonNull TaskListener listener) {
+        this.head = head;
+        this.hash = hash;
+        this.serverUrl = serverUrl;
+        this.credentialsId = credentialsId;
+        this.repoOwner = repoOwner;
+        this.repository = repository;
+        this.bitbucket = bitbucket;
+        this.listings = listings;
+        this.listener = listener;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String name() {
+        return head.getName();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long lastModified() {
+        try {
+            BitbucketCommit commit = bitbucket.resolveCommit(hash);
+            if (commit == null) {
+                listener.getLogger().format("Can not resolve commit by hash [%s] on repository %s/%s%n",
+                        hash, bitbucket.getOwner(), bitbucket.getRepositoryName());
+                return 0;
+            }
+            return commit.getDateMillis();
+        } catch (InterruptedException | IOException e) {
+            listener.getLogger().format("Can not resolve commit by hash [%s] on repository %s/%s%n",
+                    hash, bitbucket.getOwner(), bitbucket.getRepositoryName());
+            return 0;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean exists(@NonNull String path) throws IOException {
+        // a commit never changes, so a head that did not move is probed without a request
+        boolean cacheable = hash != null && serverUrl != null && repoOwner != null && repository != null;
+        ProbeResultCache cache = ProbeResultCache.get();
+        if (cacheable) {
+            Boolean exists = cache.lookup(credentialsId, serverUrl, repoOwner, repository, hash, path);
+            if (exists != null) {
+                return exists;
+            }
+        }
+        boolean exists = stat(path).exists();
+        // a path check answers false for any failure, so a missing path is only remembered once the revision itself
+        // could be listed
+        if (cacheable && (exists || listings.containsKey(listingKey(bitbucket, hash, "")))) {
+            cache.put(credentialsId, serverUrl, repoOwner, repository, hash, path, exists);
+        }
+        return exists;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @NonNull
+    @Override
+    public SCMProbeStat stat(@NonNull String path) throws IOException {
+        try {
+            return SCMProbeStat.fromType(type(bitbucket, hash, listings, path));
+        } catch (InterruptedException e) {
+            throw new IOException("Interrupted", e);
+        }
+    }
+
+    /**
+     * Returns the type of a path from the listings of the directories leading to it, fetching only the listings
+     * that are not known yet.
+     *
+     * @param bitbucket the client.
+     * @param hash      the revision.
+     * @param listings  the known directory listings, keyed by repository, revision and path.
+     * @param path      the path.
+     * @return the type of the path.
+     * @throws IOException          if there was a network communications error.
+     * @throws InterruptedException if interrupted while waiting on remote communications.
+     */
+    @NonNull
+    static SCMFile.Type type(@NonNull BitbucketApi bitbucket, @CheckForNull String hash,
+                             @NonNull ConcurrentMap<String, BitbucketDirectory> listings, @NonNull String path)
+            throws IOException, InterruptedException {
+        String[] segments = StringUtils.split(path, "/");
+        if (hash != null) {
+            if (segments.length == 0) {
+                return SCMFile.Type.DIRECTORY;
+            }
+            StringBuilder directory = new StringBuilder();
+            for (int i = 0; i < segments.length; i++) {
+                BitbucketDirectory listing = listing(bitbucket, hash, listings, directory.toString());
+                if (listing == null) {
+                    break;
+                }
+                SCMFile.Type type = listing.getType(segments[i]);
+                if (i == segments.length - 1) {
+                    return type;
+                }
+                if (type != SCMFile.Type.DIRECTORY) {
+                    return SCMFile.Type.NONEXISTENT;
+                }
+                directory.append(segments[i]).append('/');
+            }
+        }
+        // the directories cannot be listed, the path can only be checked on its own
+        return bitbucket.checkPathExists(hash, path) ? SCMFile.Type.REGULAR_FILE : SCMFile.Type.NONEXISTENT;
+    }
+
+    /**
+     * Returns the listing of a directory at a revision, fetching it only if it is not known yet.
+     *
+     * @param bitbucket the client.
+     * @param hash      the revision.
+     * @param listings  the known directory listings, keyed by repository, revision and path.
+     * @param directory the path of the directory, either empty or ending with a {@code /}.
+     * @return the listing or {@code null} if the client cannot list directories.
+     * @throws IOException          if there was a network communications error.
+     * @throws InterruptedException if interrupted while waiting on remote communications.
+     */
+    @CheckForNull
+    static BitbucketDirectory listing(@NonNull BitbucketApi bitbucket, @NonNull String hash,
+                                      @NonNull ConcurrentMap<String, BitbucketDirectory> listings,
+                                      @NonNull String directory)
+            throws IOException, InterruptedException {
+        String key = listingKey(bitbucket, hash, directory);
+        BitbucketDirectory listing = listings.get(key);
+        if (listing == null) {
+            listing = BitbucketApiSupport.getDirectoryContent(bitbucket, hash, directory);
+            if (listing != null) {
+                BitbucketDirectory existing = listings.putIfAbsent(key, listing);
+                if (existing != null) {
+                    listing = existing;
+                }
+            }
+        }
+        return listing;
+    }
+
+    private static String listingKey(@NonNull BitbucketApi bitbucket, @NonNull String hash,
+                                     @NonNull String directory) {
+        return bitbucket.getOwner() + "/" + bitbucket.getRepositoryName() + "#" + hash + ":" + directory;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+        // nothing to release, the listings belong to the scan
+    }
+}
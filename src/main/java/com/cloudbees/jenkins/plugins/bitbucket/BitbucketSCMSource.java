@@ -25,16 +25,21 @@ package com.cloudbees.jenkins.plugins.bitbucket;
 
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketApi;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketApiFactory;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketApiRegistry;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketBranch;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketCommit;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketHref;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketIterationException;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketPullRequest;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketPullRequestDestination;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketRepository;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketRepositoryProtocol;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketRepositoryType;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketRequestException;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketTeam;
 import com.cloudbees.jenkins.plugins.bitbucket.client.BitbucketCloudApiClient;
+import com.cloudbees.jenkins.plugins.bitbucket.client.CommitCache;
+import com.cloudbees.jenkins.plugins.bitbucket.client.ProbeResultCache;
 import com.cloudbees.jenkins.plugins.bitbucket.client.repository.UserRoleInRepository;
 import com.cloudbees.jenkins.plugins.bitbucket.endpoints.AbstractBitbucketEndpoint;
 import com.cloudbees.jenkins.plugins.bitbucket.endpoints.BitbucketCloudEndpoint;
@@ -67,6 +72,7 @@ import hudson.scm.SCM;
 import hudson.security.ACL;
 import hudson.util.FormValidation;
 import hudson.util.ListBoxModel;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.ObjectStreamException;
 import java.net.MalformedURLException;
@@ -78,6 +84,7 @@ import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -504,11 +511,43 @@ public class BitbucketSCMSource extends SCMSource {
     }
 
     public BitbucketApi buildBitbucketClient() {
-        return BitbucketApiFactory.newInstance(getServerUrl(), credentials(), repoOwner, repository);
+        return BitbucketApiRegistry.get(getServerUrl(), credentials(), repoOwner, repository);
     }
 
     public BitbucketApi buildBitbucketClient(PullRequestSCMHead head) {
-        return BitbucketApiFactory.newInstance(getServerUrl(), credentials(), head.getRepoOwner(), head.getRepository());
+        return BitbucketApiRegistry.get(getServerUrl(), credentials(), head.getRepoOwner(), head.getRepository());
+    }
+
+    /**
+     * Returns the client that accesses the source repository of a pull request. Bitbucket Cloud needs a client of the
+     * fork for pull requests from forks, Bitbucket Server serves them from the target repository.
+     *
+     * @param originBitbucket the client of the target repository.
+     * @param pull            the pull request.
+     * @param fork            whether the pull request is from a fork.
+     * @return the client that accesses the source repository.
+     */
+    private BitbucketApi pullRequestClient(BitbucketApi originBitbucket, BitbucketPullRequest pull, boolean fork) {
+        if (fork && originBitbucket instanceof BitbucketCloudApiClient) {
+            return BitbucketApiRegistry.get(
+                    getServerUrl(),
+                    credentials(),
+                    pull.getSource().getRepository().getOwnerName(),
+                    pull.getSource().getRepository().getRepositoryName()
+            );
+        }
+        return originBitbucket;
+    }
+
+    /**
+     * Returns how many upcoming heads are evaluated concurrently while scanning.
+     *
+     * @return how many upcoming heads are evaluated concurrently, {@code 1} disables the concurrent evaluation.
+     */
+    private int prefetchParallelism() {
+        AbstractBitbucketEndpoint endpoint = BitbucketEndpointConfiguration.get().findEndpoint(getServerUrl());
+        return endpoint == null ? AbstractBitbucketEndpoint.DEFAULT_PREFETCH_PARALLELISM
+                : endpoint.getPrefetchParallelism();
     }
 
     @Override
@@ -539,12 +578,17 @@ public class BitbucketSCMSource extends SCMSource {
             // this has the side-effect of ensuring that repository type is always populated.
             listener.getLogger().format("Repository type: %s%n", WordUtils.capitalizeFully(getRepositoryType().name()));
             // populate the request with its data sources
+            // when the observer only wants specific heads, fetch just those rather than listing the repository
+            final Set<String> requestedPullRequestNumbers = requestedPullRequestNumbers(request, observer);
+            final Set<String> requestedBranchNames = requestedBranchNames(request, observer);
             if (request.isFetchPRs()) {
                 request.setPullRequests(new LazyIterable<BitbucketPullRequest>() {
                     @Override
-                    protected Iterable<BitbucketPullRequest> create() {
+                    protected Iterator<? extends BitbucketPullRequest> create() {
                         try {
-                            return (Iterable<BitbucketPullRequest>) buildBitbucketClient().getPullRequests();
+                            return requestedPullRequestNumbers == null
+                                    ? BitbucketApiSupport.iteratePullRequests(buildBitbucketClient())
+                                    : fetchPullRequests(requestedPullRequestNumbers).iterator();
                         } catch (IOException | InterruptedException e) {
                             throw new BitbucketSCMSource.WrappedException(e);
                         }
@@ -554,9 +598,11 @@ public class BitbucketSCMSource extends SCMSource {
             if (request.isFetchBranches()) {
                 request.setBranches(new LazyIterable<BitbucketBranch>() {
                     @Override
-                    protected Iterable<BitbucketBranch> create() {
+                    protected Iterator<? extends BitbucketBranch> create() {
                         try {
-                            return (Iterable<BitbucketBranch>) buildBitbucketClient().getBranches();
+                            return requestedBranchNames == null
+                                    ? BitbucketApiSupport.iterateBranches(buildBitbucketClient())
+                                    : fetchBranches(requestedBranchNames).iterator();
                         } catch (IOException | InterruptedException e) {
                             throw new BitbucketSCMSource.WrappedException(e);
                         }
@@ -581,9 +627,120 @@ public class BitbucketSCMSource extends SCMSource {
             }
         } catch (WrappedException e) {
             e.unwrap();
+        } catch (BitbucketIterationException e) {
+            e.unwrap();
         }
     }
 
+    /**
+     * Returns the numbers of the pull requests a request scoped to a subset of heads needs to fetch. When the
+     * branch discovery filters tell the requested branches apart by whether they are filed as an origin pull request,
+     * every pull request is needed to find the ones filed from those branches.
+     *
+     * @param request  the request.
+     * @param observer the observer of the request.
+     * @return the pull request numbers or {@code null} if all the pull requests are needed.
+     */
+    @CheckForNull
+    private static Set<String> requestedPullRequestNumbers(@NonNull BitbucketSCMSourceRequest request,
+                                                           @NonNull SCMHeadObserver observer) {
+        Set<String> numbers = request.getRequestedPullRequestNumbers();
+        Set<SCMHead> includes = observer.getIncludes();
+        if (numbers == null || includes == null || !request.isFetchOriginPRBranchNames()) {
+            return numbers;
+        }
+        for (SCMHead h : includes) {
+            if (h instanceof BranchSCMHead) {
+                return null;
+            }
+        }
+        return numbers;
+    }
+
+    /**
+     * Returns the names of the branches a request scoped to a subset of heads needs: the requested branches and the
+     * origin and target branches of the requested pull requests, as the target revision of a pull request is taken
+     * from its target branch when the pull request does not carry the full hash.
+     *
+     * @param request  the request.
+     * @param observer the observer of the request.
+     * @return the branch names or {@code null} if the request was not scoped to a subset of heads.
+     */
+    @CheckForNull
+    private static Set<String> requestedBranchNames(@NonNull BitbucketSCMSourceRequest request,
+                                                    @NonNull SCMHeadObserver observer) {
+        Set<String> originBranchNames = request.getRequestedOriginBranchNames();
+        Set<SCMHead> includes = observer.getIncludes();
+        if (originBranchNames == null || includes == null) {
+            return null;
+        }
+        Set<String> branchNames = new LinkedHashSet<>(originBranchNames);
+        for (SCMHead h : includes) {
+            if (h instanceof PullRequestSCMHead) {
+                branchNames.add(((PullRequestSCMHead) h).getTarget().getName());
+            }
+        }
+        return branchNames;
+    }
+
+    /**
+     * Fetches the requested pull requests one by one. Only open pull requests are returned, like the listing does.
+     *
+     * @param numbers the numbers of the pull requests.
+     * @return the open pull requests.
+     * @throws IOException          if there was a network communications error.
+     * @throws InterruptedException if interrupted while waiting on remote communications.
+     */
+    @NonNull
+    private List<BitbucketPullRequest> fetchPullRequests(@NonNull Set<String> numbers)
+            throws IOException, InterruptedException {
+        BitbucketApi bitbucket = buildBitbucketClient();
+        List<BitbucketPullRequest> pullRequests = new ArrayList<>(numbers.size());
+        for (String number : numbers) {
+            int id;
+            try {
+                id = Integer.parseInt(number);
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            BitbucketPullRequest pull;
+            try {
+                pull = bitbucket.getPullRequestById(id);
+            } catch (IOException e) {
+                if (e instanceof FileNotFoundException || e.getCause() instanceof FileNotFoundException) {
+                    // deleted since the event was sent
+                    continue;
+                }
+                throw e;
+            }
+            if (pull != null && (pull.getState() == null || "OPEN".equals(pull.getState()))) {
+                pullRequests.add(pull);
+            }
+        }
+        return pullRequests;
+    }
+
+    /**
+     * Fetches the named branches one by one.
+     *
+     * @param names the names of the branches.
+     * @return the branches that exist.
+     * @throws IOException          if there was a network communications error.
+     * @throws InterruptedException if interrupted while waiting on remote communications.
+     */
+    @NonNull
+    private List<BitbucketBranch> fetchBranches(@NonNull Set<String> names) throws IOException, InterruptedException {
+        BitbucketApi bitbucket = buildBitbucketClient();
+        List<BitbucketBranch> branches = new ArrayList<>(names.size());
+        for (String name : names) {
+            BitbucketBranch branch = BitbucketApiSupport.getBranch(bitbucket, name);
+            if (branch != null) {
+                branches.add(branch);
+            }
+        }
+        return branches;
+    }
+
     private void retrievePullRequests(final BitbucketSCMSourceRequest request)
             throws IOException, InterruptedException {
         final String fullName = repoOwner + "/" + repository;
@@ -600,105 +757,118 @@ public class BitbucketSCMSource extends SCMSource {
         request.listener().getLogger().printf("Looking up %s for pull requests%n", fullName);
         final Set<String> livePRs = new HashSet<>();
         int count = 0;
-        Map<Boolean, Set<ChangeRequestCheckoutStrategy>> strategies = request.getPRStrategies();
-        for (final BitbucketPullRequest pull : request.getPullRequests()) {
-            request.listener().getLogger().printf(
-                    "Checking PR-%s from %s and branch %s%n",
-                    pull.getId(),
-                    pull.getSource().getRepository().getFullName(),
-                    pull.getSource().getBranch().getName()
-            );
-            boolean fork = !fullName.equalsIgnoreCase(pull.getSource().getRepository().getFullName());
-            String pullRepoOwner = pull.getSource().getRepository().getOwnerName();
-            String pullRepository = pull.getSource().getRepository().getRepositoryName();
-            final BitbucketApi pullBitbucket = fork && originBitbucket instanceof BitbucketCloudApiClient
-                    ? BitbucketApiFactory.newInstance(
-                    getServerUrl(),
-                    credentials(),
-                    pullRepoOwner,
-                    pullRepository
-            )
-                    : originBitbucket;
-            count++;
-            livePRs.add(pull.getId());
-            getPullRequestTitleCache()
-                    .put(pull.getId(), StringUtils.defaultString(pull.getTitle()));
-            getPullRequestContributorCache().put(pull.getId(),
-                    // TODO get more details on the author
-                    new ContributorMetadataAction(pull.getAuthorLogin(), null, null)
-            );
-            try {
-                // We store resolved hashes here so to avoid resolving the commits multiple times
-                for (final ChangeRequestCheckoutStrategy strategy : strategies.get(fork)) {
-                    final String branchName;
-                    if (strategies.get(fork).size() == 1) {
-                        branchName = "PR-" + pull.getId();
-                    } else {
-                        branchName = "PR-" + pull.getId() + "-" + strategy.name().toLowerCase(Locale.ENGLISH);
+        final Map<Boolean, Set<ChangeRequestCheckoutStrategy>> strategies = request.getPRStrategies();
+        // a scoped request may still list every pull request, for the branch discovery filters
+        final Set<String> requestedPullRequestNumbers = request.getRequestedPullRequestNumbers();
+        // resolve the hashes of the next pull requests while the current one is processed
+        try (HeadPrefetcher<BitbucketPullRequest> pulls = new HeadPrefetcher<>(request.getPullRequests().iterator(),
+                prefetchParallelism(), new HeadPrefetcher.Evaluator<BitbucketPullRequest>() {
+                    @Override
+                    public String evaluate(@NonNull BitbucketPullRequest pull, boolean ahead)
+                            throws IOException, InterruptedException {
+                        if (requestedPullRequestNumbers != null
+                                && !requestedPullRequestNumbers.contains(pull.getId())) {
+                            return null;
+                        }
+                        String hash = originBitbucket.resolveSourceFullHash(pull);
+                        if (ahead) {
+                            boolean fork =
+                                    !fullName.equalsIgnoreCase(pull.getSource().getRepository().getFullName());
+                            BitbucketApi pullBitbucket = pullRequestClient(originBitbucket, pull, fork);
+                            new BitbucketProbeFactory(getServerUrl(), getCredentialsId(),
+                                    pullBitbucket == originBitbucket ? repoOwner
+                                            : pull.getSource().getRepository().getOwnerName(),
+                                    pullBitbucket == originBitbucket ? repository
+                                            : pull.getSource().getRepository().getRepositoryName(),
+                                    pullBitbucket, request).warmUp(hash);
+                        }
+                        return hash;
                     }
-                    if (request.process(
-                            new PullRequestSCMHead(branchName,
-                                    pullRepoOwner,
-                                    pullRepository,
-                                    repositoryType,
-                                    pull.getSource().getBranch().getName(),
-                                    pull,
-                                    originOf(pullRepoOwner, pullRepository),
-                                    strategy
-                            ),
-                            new SCMSourceRequest.IntermediateLambda<String>() {
-                                @Nullable
-                                @Override
-                                public String create() throws IOException, InterruptedException {
-                                    try {
-                                        return originBitbucket.resolveSourceFullHash(pull);
-                                    } catch (BitbucketRequestException e) {
-                                        if (originBitbucket instanceof BitbucketCloudApiClient) {
+                })) {
+            while (pulls.hasNext()) {
+                final HeadPrefetcher.Prefetched<BitbucketPullRequest> prefetched = pulls.next();
+                final BitbucketPullRequest pull = prefetched.getItem();
+                if (requestedPullRequestNumbers != null && !requestedPullRequestNumbers.contains(pull.getId())) {
+                    continue;
+                }
+                request.listener().getLogger().printf(
+                        "Checking PR-%s from %s and branch %s%n",
+                        pull.getId(),
+                        pull.getSource().getRepository().getFullName(),
+                        pull.getSource().getBranch().getName()
+                );
+                boolean fork = !fullName.equalsIgnoreCase(pull.getSource().getRepository().getFullName());
+                String pullRepoOwner = pull.getSource().getRepository().getOwnerName();
+                String pullRepository = pull.getSource().getRepository().getRepositoryName();
+                final BitbucketApi pullBitbucket = pullRequestClient(originBitbucket, pull, fork);
+                count++;
+                livePRs.add(pull.getId());
+                getPullRequestTitleCache()
+                        .put(pull.getId(), StringUtils.defaultString(pull.getTitle()));
+                getPullRequestContributorCache().put(pull.getId(),
+                        // TODO get more details on the author
+                        new ContributorMetadataAction(pull.getAuthorLogin(), null, null)
+                );
+                try {
+                    // We store resolved hashes here so to avoid resolving the commits multiple times
+                    for (final ChangeRequestCheckoutStrategy strategy : strategies.get(fork)) {
+                        if (request.process(pullRequestHead(pull, strategy, strategies.get(fork).size()),
+                                new SCMSourceRequest.IntermediateLambda<String>() {
+                                    @Nullable
+                                    @Override
+                                    public String create() throws IOException, InterruptedException {
+                                        try {
+                                            return prefetched.getHash();
+                                        } catch (BitbucketRequestException e) {
+                                            if (originBitbucket instanceof BitbucketCloudApiClient) {
+                                                if (e.getHttpCode() == 403) {
+                                                    request.listener().getLogger().printf("Skipping %s because of %s%n",
+                                                            pull.getId(), HyperlinkNote.encodeTo(
+                                                                    "https://bitbucket.org/site/master"
+                                                                            + "/issues/5814/reify-pull-requests"
+                                                                            + "-by-making-them-a-ref",
+                                                                    "a permission issue accessing pull requests "
+                                                                            + "from forks"));
+                                                    throw new Skip();
+                                                }
+                                            }
+                                            // https://bitbucket
+                                            // .org/site/master/issues/5814/reify-pull-requests-by-making-them-a-ref
+                                            e.printStackTrace(request.listener().getLogger());
                                             if (e.getHttpCode() == 403) {
-                                                request.listener().getLogger().printf("Skipping %s because of %s%n",
-                                                        pull.getId(), HyperlinkNote.encodeTo(
-                                                                "https://bitbucket.org/site/master"
-                                                                        + "/issues/5814/reify-pull-requests"
-                                                                        + "-by-making-them-a-ref",
-                                                                "a permission issue accessing pull requests "
-                                                                        + "from forks"));
+                                                // the credentials do not have permission, so we should not observe the
+                                                // PR ever the PR is dead to us, so this is the one case where we can
+                                                // squash the exception.
                                                 throw new Skip();
                                             }
+                                            throw e;
                                         }
-                                        // https://bitbucket
-                                        // .org/site/master/issues/5814/reify-pull-requests-by-making-them-a-ref
-                                        e.printStackTrace(request.listener().getLogger());
-                                        if (e.getHttpCode() == 403) {
-                                            // the credentials do not have permission, so we should not observe the
-                                            // PR ever the PR is dead to us, so this is the one case where we can
-                                            // squash the exception.
-                                            throw new Skip();
-                                        }
-                                        throw e;
                                     }
-                                }
-                            },
-                            new BitbucketProbeFactory(pullBitbucket, request),
-                            new BitbucketRevisionFactory() {
-                                @NonNull
-                                @Override
-                                public SCMRevision create(@NonNull SCMHead head, @Nullable String hash)
-                                        throws IOException, InterruptedException {
-                                    if (head instanceof PullRequestSCMHead) {
-                                        PullRequestSCMHead h = (PullRequestSCMHead) head;
-                                        for (BitbucketBranch b : request.getBranches()) {
-                                            if (b.getName().equals(h.getTarget().getName())) {
+                                },
+                                new BitbucketProbeFactory(getServerUrl(), getCredentialsId(),
+                                        pullBitbucket == originBitbucket ? repoOwner : pullRepoOwner,
+                                        pullBitbucket == originBitbucket ? repository : pullRepository,
+                                        pullBitbucket, request),
+                                new BitbucketRevisionFactory() {
+                                    @NonNull
+                                    @Override
+                                    public SCMRevision create(@NonNull SCMHead head, @Nullable String hash)
+                                            throws IOException, InterruptedException {
+                                        if (head instanceof PullRequestSCMHead) {
+                                            PullRequestSCMHead h = (PullRequestSCMHead) head;
+                                            String targetHash = targetHash(originBitbucket, pull, h, request);
+                                            if (targetHash != null) {
                                                 if (repositoryType == BitbucketRepositoryType.MERCURIAL) {
                                                     return new PullRequestSCMRevision<>(
                                                             h,
-                                                            new MercurialRevision(h.getTarget(), b.getRawNode()),
+                                                            new MercurialRevision(h.getTarget(), targetHash),
                                                             new MercurialRevision(h, hash)
                                                     );
                                                 } else {
                                                     return new PullRequestSCMRevision<>(h,
                                                             new SCMRevisionImpl(
                                                                     h.getTarget(),
-                                                                    b.getRawNode()
+                                                                    targetHash
                                                             ),
                                                             new SCMRevisionImpl(
                                                                     h,
@@ -708,27 +878,86 @@ public class BitbucketSCMSource extends SCMSource {
                                                 }
                                             }
                                         }
+                                        return super.create(head, hash);
                                     }
-                                    return super.create(head, hash);
-                                }
-                            }, new CriteriaWitness(request))) {
-                        request.listener().getLogger()
-                                .format("%n  %d pull requests were processed (query completed)%n", count);
-                        return;
+                                }, new CriteriaWitness(request))) {
+                            request.listener().getLogger()
+                                    .format("%n  %d pull requests were processed (query completed)%n", count);
+                            return;
+                        }
                     }
+                } catch (Skip e) {
+                    request.listener().getLogger().println(
+                            "Do not have permission to view PR from " + pull.getSource().getRepository()
+                                    .getFullName()
+                                    + " and branch "
+                                    + pull.getSource().getBranch().getName());
+                    continue;
                 }
-            } catch (Skip e) {
-                request.listener().getLogger().println(
-                        "Do not have permission to view PR from " + pull.getSource().getRepository()
-                                .getFullName()
-                                + " and branch "
-                                + pull.getSource().getBranch().getName());
-                continue;
             }
         }
         request.listener().getLogger().format("%n  %d pull requests were processed%n", count);
-        getPullRequestTitleCache().keySet().retainAll(livePRs);
-        getPullRequestContributorCache().keySet().retainAll(livePRs);
+        if (requestedPullRequestNumbers == null) {
+            // only a full listing tells which pull requests are gone
+            getPullRequestTitleCache().keySet().retainAll(livePRs);
+            getPullRequestContributorCache().keySet().retainAll(livePRs);
+        }
+    }
+
+    /**
+     * Returns the head of a pull request for a checkout strategy.
+     *
+     * @param pull       the pull request.
+     * @param strategy   the checkout strategy.
+     * @param strategies the number of checkout strategies of the pull request, the name of the head only includes
+     *                   the strategy when there are several.
+     * @return the head.
+     */
+    @NonNull
+    private PullRequestSCMHead pullRequestHead(@NonNull BitbucketPullRequest pull,
+                                               @NonNull ChangeRequestCheckoutStrategy strategy, int strategies) {
+        String branchName = strategies == 1
+                ? "PR-" + pull.getId()
+                : "PR-" + pull.getId() + "-" + strategy.name().toLowerCase(Locale.ENGLISH);
+        String pullRepoOwner = pull.getSource().getRepository().getOwnerName();
+        String pullRepository = pull.getSource().getRepository().getRepositoryName();
+        return new PullRequestSCMHead(branchName,
+                pullRepoOwner,
+                pullRepository,
+                repositoryType,
+                pull.getSource().getBranch().getName(),
+                pull,
+                originOf(pullRepoOwner, pullRepository),
+                strategy
+        );
+    }
+
+    /**
+     * Returns the hash of the target branch of a pull request. The pull request carries it, in full on Bitbucket
+     * Server but abbreviated on Bitbucket Cloud, where the listing of the pull requests expands it. The branch details
+     * are only needed when it could not be expanded.
+     *
+     * @param bitbucket the client of the origin repository.
+     * @param pull      the pull request.
+     * @param head      the head of the pull request.
+     * @param request   the request.
+     * @return the hash of the target branch or {@code null} if not known.
+     */
+    @CheckForNull
+    private static String targetHash(@NonNull BitbucketApi bitbucket, @NonNull BitbucketPullRequest pull,
+                                     @NonNull PullRequestSCMHead head, @NonNull BitbucketSCMSourceRequest request) {
+        BitbucketPullRequestDestination destination = pull.getDestination();
+        BitbucketCommit commit = destination == null ? null : destination.getCommit();
+        if (commit != null && CommitCache.isFullHash(commit.getHash())) {
+            return commit.getHash();
+        }
+        if (bitbucket instanceof BitbucketCloudApiClient) {
+            String hash = ((BitbucketCloudApiClient) bitbucket).getDestinationFullHash(pull);
+            if (hash != null) {
+                return hash;
+            }
+        }
+        return request.getBranchHash(head.getTarget().getName());
     }
 
     private void retrieveBranches(final BitbucketSCMSourceRequest request)
@@ -742,21 +971,42 @@ public class BitbucketSCMSource extends SCMSource {
             cloneLinks = links.get("clone");
         }
         int count = 0;
-        for (final BitbucketBranch branch : request.getBranches()) {
-            request.listener().getLogger().println("Checking branch " + branch.getName() + " from " + fullName);
-            count++;
-            if (request.process(new BranchSCMHead(branch.getName(), repositoryType),
-                    new SCMSourceRequest.IntermediateLambda<String>() {
-                        @Nullable
-                        @Override
-                        public String create() {
-                            return branch.getRawNode();
+        final BitbucketProbeFactory probeFactory =
+                new BitbucketProbeFactory(getServerUrl(), getCredentialsId(), repoOwner, repository, bitbucket,
+                        request);
+        // evaluate the next branches while the current one is processed
+        try (HeadPrefetcher<BitbucketBranch> branches = new HeadPrefetcher<>(request.getBranches().iterator(),
+                prefetchParallelism(), new HeadPrefetcher.Evaluator<BitbucketBranch>() {
+                    @Override
+                    public String evaluate(@NonNull BitbucketBranch branch, boolean ahead)
+                            throws IOException, InterruptedException {
+                        String hash = branch.getRawNode();
+                        if (ahead) {
+                            probeFactory.warmUp(hash);
                         }
-                    }, new BitbucketProbeFactory(bitbucket, request), new BitbucketRevisionFactory(),
-                    new CriteriaWitness(request)
-            )) {
-                request.listener().getLogger().format("%n  %d branches were processed (query completed)%n", count);
-                return;
+                        return hash;
+                    }
+                })) {
+            while (branches.hasNext()) {
+                final HeadPrefetcher.Prefetched<BitbucketBranch> prefetched = branches.next();
+                BitbucketBranch branch = prefetched.getItem();
+                request.listener().getLogger().println("Checking branch " + branch.getName() + " from " + fullName);
+                count++;
+                if (request.process(new BranchSCMHead(branch.getName(), repositoryType),
+                        new SCMSourceRequest.IntermediateLambda<String>() {
+                            @Nullable
+                            @Override
+                            public String create() throws IOException, InterruptedException {
+                                return prefetched.getHash();
+                            }
+                        }, probeFactory,
+                        new BitbucketRevisionFactory(),
+                        new CriteriaWitness(request)
+                )) {
+                    request.listener().getLogger()
+                            .format("%n  %d branches were processed (query completed)%n", count);
+                    return;
+                }
             }
         }
         request.listener().getLogger().format("%n  %d branches were processed%n", count);
@@ -764,19 +1014,17 @@ public class BitbucketSCMSource extends SCMSource {
 
     @Override
     protected SCMRevision retrieve(SCMHead head, TaskListener listener) throws IOException, InterruptedException {
-        List<? extends BitbucketBranch> branches = buildBitbucketClient().getBranches();
+        BitbucketApi bitbucket = buildBitbucketClient();
         if (head instanceof PullRequestSCMHead) {
             PullRequestSCMHead h = (PullRequestSCMHead) head;
-            String targetRevision = findRawNode(h.getTarget().getName(), branches, listener);
+            String targetRevision = findRawNode(h.getTarget().getName(), bitbucket, listener);
             if (targetRevision == null) {
                 LOGGER.log(Level.WARNING, "No branch found in {0}/{1} with name [{2}]",
                         new Object[]{repoOwner, repository, h.getTarget().getName()});
                 return null;
             }
-            branches = head.getOrigin() == SCMHeadOrigin.DEFAULT
-                    ? branches
-                    : buildBitbucketClient(h).getBranches();
-            String sourceRevision = findRawNode(h.getBranchName(), branches, listener);
+            String sourceRevision = findRawNode(h.getBranchName(),
+                    head.getOrigin() == SCMHeadOrigin.DEFAULT ? bitbucket : buildBitbucketClient(h), listener);
             if (sourceRevision == null) {
                 LOGGER.log(Level.WARNING, "No branch found in {0}/{1} with name [{2}]",
                         new Object[]{
@@ -800,7 +1048,7 @@ public class BitbucketSCMSource extends SCMSource {
                 );
             }
         } else {
-            String revision = findRawNode(head.getName(), branches, listener);
+            String revision = findRawNode(head.getName(), bitbucket, listener);
             if (revision == null) {
                 LOGGER.log(Level.WARNING, "No branch found in {0}/{1} with name [{2}]",
                         new Object[]{repoOwner, repository, head.getName()});
@@ -814,23 +1062,23 @@ public class BitbucketSCMSource extends SCMSource {
         }
     }
 
-    private String findRawNode(String branchName, List<? extends BitbucketBranch> branches, TaskListener listener) {
-        for (BitbucketBranch b : branches) {
-            if (branchName.equals(b.getName())) {
-                String revision = b.getRawNode();
-                if (revision == null) {
-                    if (BitbucketCloudEndpoint.SERVER_URL.equals(getServerUrl())) {
-                        listener.getLogger().format("Cannot resolve the hash of the revision in branch %s%n",
-                                branchName);
-                    } else {
-                        listener.getLogger().format("Cannot resolve the hash of the revision in branch %s. "
-                                        + "Perhaps you are using Bitbucket Server previous to 4.x%n",
-                                branchName);
-                    }
-                    return null;
+    private String findRawNode(String branchName, BitbucketApi bitbucket, TaskListener listener)
+            throws IOException, InterruptedException {
+        BitbucketBranch b = BitbucketApiSupport.getBranch(bitbucket, branchName);
+        if (b != null) {
+            String revision = b.getRawNode();
+            if (revision == null) {
+                if (BitbucketCloudEndpoint.SERVER_URL.equals(getServerUrl())) {
+                    listener.getLogger().format("Cannot resolve the hash of the revision in branch %s%n",
+                            branchName);
+                } else {
+                    listener.getLogger().format("Cannot resolve the hash of the revision in branch %s. "
+                                    + "Perhaps you are using Bitbucket Server previous to 4.x%n",
+                            branchName);
                 }
-                return revision;
+                return null;
             }
+            return revision;
         }
         listener.getLogger().format("Cannot find the branch %s%n", branchName);
         return null;
@@ -1334,10 +1582,30 @@ public class BitbucketSCMSource extends SCMSource {
     }
 
     private static class BitbucketProbeFactory implements SCMSourceRequest.ProbeLambda<SCMHead, String> {
+        private final String serverUrl;
+        private final String credentialsId;
+        private final String repoOwner;
+        private final String repository;
         private final BitbucketApi bitbucket;
         private final BitbucketSCMSourceRequest request;
 
-        public BitbucketProbeFactory(BitbucketApi bitbucket, BitbucketSCMSourceRequest request) {
+        /**
+         * Constructor.
+         *
+         * @param serverUrl     the server URL, which identifies the probed repository in the
+         *                      {@link ProbeResultCache}.
+         * @param credentialsId the id of the credentials the client uses or {@code null} for anonymous access.
+         * @param repoOwner     the owner of the repository the client accesses.
+         * @param repository    the name of the repository the client accesses.
+         * @param bitbucket     the client.
+         * @param request       the request.
+         */
+        public BitbucketProbeFactory(String serverUrl, String credentialsId, String repoOwner, String repository,
+                                     BitbucketApi bitbucket, BitbucketSCMSourceRequest request) {
+            this.serverUrl = serverUrl;
+            this.credentialsId = credentialsId;
+            this.repoOwner = repoOwner;
+            this.repository = repository;
             this.bitbucket = bitbucket;
             this.request = request;
         }
@@ -1346,40 +1614,28 @@ public class BitbucketSCMSource extends SCMSource {
         @Override
         public SCMSourceCriteria.Probe create(@NonNull final SCMHead head, @Nullable final String hash)
                 throws IOException, InterruptedException {
-            return new SCMSourceCriteria.Probe() {
-                @Override
-                public String name() {
-                    return head.getName();
-                }
-
-                @Override
-                public long lastModified() {
-                    try {
-                        BitbucketCommit commit = bitbucket.resolveCommit(hash);
-                        if (commit == null) {
-                            request.listener().getLogger()
-                                    .format("Can not resolve commit by hash [%s] on repository %s/%s%n",
-                                            hash, bitbucket.getOwner(), bitbucket.getRepositoryName());
-                            return 0;
-                        }
-                        return commit.getDateMillis();
-                    } catch (InterruptedException | IOException e) {
-                        request.listener().getLogger()
-                                .format("Can not resolve commit by hash [%s] on repository %s/%s%n",
-                                        hash, bitbucket.getOwner(), bitbucket.getRepositoryName());
-                        return 0;
-                    }
-                }
+            return new BitbucketSCMProbe(head, hash, serverUrl, credentialsId, repoOwner, repository, bitbucket,
+                    request.getDirectoryListings(), request.listener());
+        }
 
-                @Override
-                public boolean exists(@NonNull String path) throws IOException {
-                    try {
-                        return bitbucket.checkPathExists(hash, path);
-                    } catch (InterruptedException e) {
-                        throw new IOException("Interrupted", e);
-                    }
-                }
-            };
+        /**
+         * Fetches the listing of the root directory of a revision ahead of the processing of its head, so that the
+         * probe of the head finds it in the directory listings of the scan. Only the plugin's own requests run here,
+         * the criteria and the filters of the scan are left to the thread processing the head. A failure is only
+         * logged, the probe of the head will make the request again and report its failure.
+         *
+         * @param hash the revision or {@code null} if not known.
+         * @throws InterruptedException if interrupted.
+         */
+        public void warmUp(@CheckForNull String hash) throws InterruptedException {
+            if (hash == null) {
+                return;
+            }
+            try {
+                BitbucketSCMProbe.listing(bitbucket, hash, request.getDirectoryListings(), "");
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.FINE, "Could not list " + repoOwner + "/" + repository + " at " + hash + " ahead", e);
+            }
         }
     }
 
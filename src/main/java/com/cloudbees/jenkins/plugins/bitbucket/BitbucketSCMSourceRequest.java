@@ -24,23 +24,29 @@
 package com.cloudbees.jenkins.plugins.bitbucket;
 
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketBranch;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketDirectory;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketPullRequest;
 import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
-import hudson.Util;
 import hudson.model.TaskListener;
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import jenkins.scm.api.SCMHead;
 import jenkins.scm.api.SCMHeadOrigin;
 import jenkins.scm.api.mixin.ChangeRequestCheckoutStrategy;
 import jenkins.scm.api.mixin.TagSCMHead;
+import jenkins.scm.api.trait.SCMHeadFilter;
 import jenkins.scm.api.trait.SCMSourceRequest;
 
 /**
@@ -79,6 +85,11 @@ public class BitbucketSCMSourceRequest extends SCMSourceRequest {
      */
     @NonNull
     private final Set<ChangeRequestCheckoutStrategy> forkPRStrategies;
+    /**
+     * {@code true} if the filters of the request tell branches apart by whether they are filed as an origin pull
+     * request, which needs the source branches of all the origin pull requests.
+     */
+    private final boolean fetchOriginPRBranchNames;
     /**
      * The set of pull request numbers that the request is scoped to or {@code null} if the request is not limited.
      */
@@ -109,12 +120,34 @@ public class BitbucketSCMSourceRequest extends SCMSourceRequest {
      */
     @CheckForNull
     private Iterable<BitbucketPullRequest> pullRequests;
+    /**
+     * The source branch names of the pull requests filed from the origin repository, indexed while
+     * {@link #pullRequests} is iterated.
+     */
+    @CheckForNull
+    private Set<String> originPullRequestBranchNames;
+    /**
+     * The pull requests iterated to index {@link #originPullRequestBranchNames} before the scan reached them, kept
+     * for the next iteration of {@link #getPullRequests()} so that the listing is not requested again.
+     */
+    @CheckForNull
+    private List<BitbucketPullRequest> pullRequestsReplay;
     /**
      * The branch details or {@code null} if not {@link #isFetchBranches()}.
      */
     @CheckForNull
     private Iterable<BitbucketBranch> branches;
+    /**
+     * The head hash of each branch, keyed by branch name, indexed while {@link #branches} is iterated.
+     */
+    @CheckForNull
+    private Map<String, String> branchHashes;
     // TODO private Iterable<BitbucketTag> tags;
+    /**
+     * The directory listings fetched by the probes of this request, keyed by repository, revision and path.
+     */
+    @NonNull
+    private final ConcurrentMap<String, BitbucketDirectory> directoryListings = new ConcurrentHashMap<>();
 
     /**
      * Constructor.
@@ -138,6 +171,14 @@ public class BitbucketSCMSourceRequest extends SCMSourceRequest {
         forkPRStrategies = fetchForkPRs && !context.forkPRStrategies().isEmpty()
                 ? Collections.unmodifiableSet(EnumSet.copyOf(context.forkPRStrategies()))
                 : Collections.<ChangeRequestCheckoutStrategy>emptySet();
+        boolean originPRBranchNames = false;
+        for (SCMHeadFilter filter : context.filters()) {
+            if (filter instanceof BranchDiscoveryTrait.ExcludeOriginPRBranchesSCMHeadFilter
+                    || filter instanceof BranchDiscoveryTrait.OnlyOriginPRBranchesSCMHeadFilter) {
+                originPRBranchNames = true;
+            }
+        }
+        fetchOriginPRBranchNames = originPRBranchNames;
         Set<SCMHead> includes = context.observer().getIncludes();
         if (includes != null) {
             Set<String> pullRequestNumbers = new HashSet<>(includes.size());
@@ -272,6 +313,17 @@ public class BitbucketSCMSourceRequest extends SCMSourceRequest {
         return result;
     }
 
+    /**
+     * Returns {@code true} if the source branches of all the origin pull requests are needed to filter the branches,
+     * see {@link #getOriginPullRequestBranchNames()}.
+     *
+     * @return {@code true} if the source branches of all the origin pull requests are needed.
+     * @since 2.2.4
+     */
+    public final boolean isFetchOriginPRBranchNames() {
+        return fetchOriginPRBranchNames;
+    }
+
     /**
      * Returns requested pull request numbers.
      *
@@ -328,8 +380,10 @@ public class BitbucketSCMSourceRequest extends SCMSourceRequest {
      *
      * @param pullRequests the pull request details.
      */
-    public final void setPullRequests(@CheckForNull Iterable<BitbucketPullRequest> pullRequests) {
+    public final synchronized void setPullRequests(@CheckForNull Iterable<BitbucketPullRequest> pullRequests) {
         this.pullRequests = pullRequests;
+        this.originPullRequestBranchNames = null;
+        this.pullRequestsReplay = null;
     }
 
     /**
@@ -339,8 +393,72 @@ public class BitbucketSCMSourceRequest extends SCMSourceRequest {
      * @return the pull request details (may be empty)
      */
     @NonNull
-    public final Iterable<BitbucketPullRequest> getPullRequests() {
-        return Util.fixNull(pullRequests);
+    public final synchronized Iterable<BitbucketPullRequest> getPullRequests() {
+        if (pullRequestsReplay != null) {
+            List<BitbucketPullRequest> replay = pullRequestsReplay;
+            pullRequestsReplay = null;
+            return replay;
+        }
+        final Iterable<BitbucketPullRequest> pullRequests = this.pullRequests;
+        if (pullRequests == null) {
+            return Collections.emptyList();
+        }
+        return new Iterable<BitbucketPullRequest>() {
+            @Override
+            public Iterator<BitbucketPullRequest> iterator() {
+                final String fullName = repoOwner + "/" + repository;
+                final Set<String> names = new HashSet<>();
+                return new IndexingIterator<BitbucketPullRequest>(pullRequests.iterator()) {
+                    @Override
+                    protected void index(BitbucketPullRequest pullRequest) {
+                        if (fullName.equalsIgnoreCase(pullRequest.getSource().getRepository().getFullName())) {
+                            names.add(pullRequest.getSource().getBranch().getName());
+                        }
+                    }
+
+                    @Override
+                    protected void completed() {
+                        pullRequestsIndexed(pullRequests, names);
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Returns the source branch names of the pull requests filed from the origin repository. They are indexed while
+     * the pull requests are iterated, as the listing does not keep its items. When they are needed before the scan
+     * iterates the pull requests, the pull requests iterated to index them are kept for the scan.
+     *
+     * @return the source branch names of the origin pull requests (may be empty)
+     * @since 2.2.4
+     */
+    @NonNull
+    public final synchronized Set<String> getOriginPullRequestBranchNames() {
+        if (originPullRequestBranchNames == null) {
+            List<BitbucketPullRequest> replay = new ArrayList<>();
+            for (BitbucketPullRequest pullRequest : getPullRequests()) {
+                replay.add(pullRequest);
+            }
+            pullRequestsReplay = replay.isEmpty() ? null : replay;
+            if (originPullRequestBranchNames == null) {
+                originPullRequestBranchNames = Collections.emptySet();
+            }
+        }
+        return originPullRequestBranchNames;
+    }
+
+    /**
+     * Records the source branch names of the origin pull requests once an iteration of the pull requests completed.
+     *
+     * @param source the pull request details that were iterated.
+     * @param names  the source branch names of the origin pull requests.
+     */
+    private synchronized void pullRequestsIndexed(@NonNull Iterable<BitbucketPullRequest> source,
+                                                  @NonNull Set<String> names) {
+        if (source == pullRequests && originPullRequestBranchNames == null) {
+            originPullRequestBranchNames = Collections.unmodifiableSet(names);
+        }
     }
 
     /**
@@ -348,8 +466,9 @@ public class BitbucketSCMSourceRequest extends SCMSourceRequest {
      *
      * @param branches the branch details.
      */
-    public final void setBranches(@CheckForNull Iterable<BitbucketBranch> branches) {
+    public final synchronized void setBranches(@CheckForNull Iterable<BitbucketBranch> branches) {
         this.branches = branches;
+        this.branchHashes = null;
     }
 
     /**
@@ -359,12 +478,80 @@ public class BitbucketSCMSourceRequest extends SCMSourceRequest {
      * @return the branch details (may be empty)
      */
     @NonNull
-    public final Iterable<BitbucketBranch> getBranches() {
-        return Util.fixNull(branches);
+    public final synchronized Iterable<BitbucketBranch> getBranches() {
+        final Iterable<BitbucketBranch> branches = this.branches;
+        if (branches == null) {
+            return Collections.emptyList();
+        }
+        return new Iterable<BitbucketBranch>() {
+            @Override
+            public Iterator<BitbucketBranch> iterator() {
+                final Map<String, String> hashes = new HashMap<>();
+                return new IndexingIterator<BitbucketBranch>(branches.iterator()) {
+                    @Override
+                    protected void index(BitbucketBranch branch) {
+                        hashes.put(branch.getName(), branch.getRawNode());
+                    }
+
+                    @Override
+                    protected void completed() {
+                        branchesIndexed(branches, hashes);
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Returns the head hash of a branch from the {@link #getBranches()}. The hashes are indexed while the branches are
+     * iterated, as the listing does not keep its items, so a lookup after the scan iterated the branches does not
+     * request them again.
+     *
+     * @param branchName the name of the branch.
+     * @return the head hash of the branch or {@code null} if there is no such branch or its hash is not known.
+     * @since 2.2.4
+     */
+    @CheckForNull
+    public final synchronized String getBranchHash(@NonNull String branchName) {
+        if (branchHashes == null) {
+            Iterator<BitbucketBranch> iterator = getBranches().iterator();
+            while (iterator.hasNext()) {
+                iterator.next();
+            }
+            if (branchHashes == null) {
+                branchHashes = Collections.emptyMap();
+            }
+        }
+        return branchHashes.get(branchName);
+    }
+
+    /**
+     * Records the head hash of each branch once an iteration of the branches completed.
+     *
+     * @param source the branch details that were iterated.
+     * @param hashes the head hash of each branch, keyed by branch name.
+     */
+    private synchronized void branchesIndexed(@NonNull Iterable<BitbucketBranch> source,
+                                              @NonNull Map<String, String> hashes) {
+        if (source == branches && branchHashes == null) {
+            branchHashes = hashes;
+        }
     }
 
     // TODO Iterable<BitbucketTag> getTags() and setTags(...)
 
+    /**
+     * Returns the directory listings fetched by the probes of this request, so that the heads sharing a revision
+     * list each directory only once per scan.
+     *
+     * @return the directory listings keyed by repository, revision and path.
+     * @since 2.2.4
+     */
+    @NonNull
+    public final ConcurrentMap<String, BitbucketDirectory> getDirectoryListings() {
+        return directoryListings;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -378,4 +565,72 @@ public class BitbucketSCMSourceRequest extends SCMSourceRequest {
         }
         super.close();
     }
+
+    /**
+     * An iterator that indexes the items it returns and reports when the iteration completed.
+     *
+     * @param <V> the type of object iterated.
+     */
+    private abstract static class IndexingIterator<V> implements Iterator<V> {
+        /**
+         * The iterator of the items.
+         */
+        private final Iterator<V> delegate;
+        /**
+         * Set once the iteration completed.
+         */
+        private boolean completed;
+
+        /**
+         * Constructor.
+         *
+         * @param delegate the iterator of the items.
+         */
+        IndexingIterator(Iterator<V> delegate) {
+            this.delegate = delegate;
+        }
+
+        /**
+         * Indexes an item.
+         *
+         * @param item the item.
+         */
+        protected abstract void index(V item);
+
+        /**
+         * Called once all the items have been indexed.
+         */
+        protected abstract void completed();
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean hasNext() {
+            boolean hasNext = delegate.hasNext();
+            if (!hasNext && !completed) {
+                completed = true;
+                completed();
+            }
+            return hasNext;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public V next() {
+            V item = delegate.next();
+            index(item);
+            return item;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
 }
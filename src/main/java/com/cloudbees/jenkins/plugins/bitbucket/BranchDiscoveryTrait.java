@@ -23,8 +23,6 @@
  */
 package com.cloudbees.jenkins.plugins.bitbucket;
 
-import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketPullRequest;
-import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketRepository;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.Extension;
 import hudson.util.ListBoxModel;
@@ -240,14 +238,7 @@ public class BranchDiscoveryTrait extends SCMSourceTrait {
         public boolean isExcluded(@NonNull SCMSourceRequest request, @NonNull SCMHead head) {
             if (head instanceof BranchSCMHead && request instanceof BitbucketSCMSourceRequest) {
                 BitbucketSCMSourceRequest req = (BitbucketSCMSourceRequest) request;
-                String fullName = req.getRepoOwner() + "/" + req.getRepository();
-                for (BitbucketPullRequest pullRequest : req.getPullRequests()) {
-                    BitbucketRepository source = pullRequest.getSource().getRepository();
-                    if (fullName.equalsIgnoreCase(source.getFullName())
-                            && pullRequest.getSource().getBranch().getName().equals(head.getName())) {
-                        return true;
-                    }
-                }
+                return req.getOriginPullRequestBranchNames().contains(head.getName());
             }
             return false;
         }
@@ -264,15 +255,7 @@ public class BranchDiscoveryTrait extends SCMSourceTrait {
         public boolean isExcluded(@NonNull SCMSourceRequest request, @NonNull SCMHead head) {
             if (head instanceof BranchSCMHead && request instanceof BitbucketSCMSourceRequest) {
                 BitbucketSCMSourceRequest req = (BitbucketSCMSourceRequest) request;
-                String fullName = req.getRepoOwner() + "/" + req.getRepository();
-                for (BitbucketPullRequest pullRequest : req.getPullRequests()) {
-                    BitbucketRepository source = pullRequest.getSource().getRepository();
-                    if (fullName.equalsIgnoreCase(source.getFullName())
-                            && pullRequest.getSource().getBranch().getName().equals(head.getName())) {
-                        return false;
-                    }
-                }
-                return true;
+                return !req.getOriginPullRequestBranchNames().contains(head.getName());
             }
             return false;
         }
@@ -0,0 +1,289 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket;
+
+import com.cloudbees.plugins.credentials.CredentialsMatchers;
+import com.cloudbees.plugins.credentials.CredentialsProvider;
+import com.cloudbees.plugins.credentials.CredentialsStore;
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
+import com.cloudbees.plugins.credentials.common.StandardCredentials;
+import com.cloudbees.plugins.credentials.domains.DomainRequirement;
+import com.cloudbees.plugins.credentials.domains.URIRequirementBuilder;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.Item;
+import hudson.model.ItemGroup;
+import hudson.model.Saveable;
+import hudson.model.User;
+import hudson.model.listeners.SaveableListener;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.acegisecurity.Authentication;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * A process wide cache of resolved credentials, keyed by the type, context, authentication, server URL and id of the
+ * lookup, so that building a client or sending a notification does not query every credentials store each time.
+ * The cache is cleared whenever a credentials store may have changed, that is on the save of the system
+ * credentials, of a folder or of a user. Credentials providers that do not save through Jenkins are covered by the
+ * entries expiring after {@code CredentialsLookupCache.expireAfter} milliseconds.
+ *
+ * @since 2.2.4
+ */
+@Restricted(NoExternalUse.class)
+public class CredentialsLookupCache {
+
+    /**
+     * The maximum number of cached lookups.
+     */
+    private static final int MAX_SIZE =
+            Math.max(0, Integer.getInteger(CredentialsLookupCache.class.getName() + ".maxSize", 1024));
+
+    /**
+     * The time (in milliseconds) after which a cached lookup is done again.
+     */
+    private static final long EXPIRE_AFTER = Math.max(0L,
+            Long.getLong(CredentialsLookupCache.class.getName() + ".expireAfter", TimeUnit.MINUTES.toMillis(5)));
+
+    private static final CredentialsLookupCache INSTANCE = new CredentialsLookupCache(MAX_SIZE, EXPIRE_AFTER);
+
+    private final int maxSize;
+    private final long expireAfterNanos;
+
+    /**
+     * The entries, in access order. Guarded by itself.
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Incremented on every invalidation, so that a lookup racing with an invalidation does not cache its result.
+     * Guarded by {@link #entries}.
+     */
+    private long generation;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong invalidationCount = new AtomicLong();
+
+    CredentialsLookupCache(int maxSize, long expireAfterMillis) {
+        this.maxSize = maxSize;
+        this.expireAfterNanos = TimeUnit.MILLISECONDS.toNanos(expireAfterMillis);
+    }
+
+    /**
+     * Returns the process wide cache.
+     *
+     * @return the process wide cache.
+     */
+    @NonNull
+    public static CredentialsLookupCache get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Looks up the credentials with the given id available to an item.
+     *
+     * @param type           the type of credentials.
+     * @param context        the item.
+     * @param authentication the authentication to look up the credentials as.
+     * @param serverUrl      the URL of the server the credentials are used against.
+     * @param id             the id of the credentials.
+     * @param <T>            the type of credentials.
+     * @return the credentials or {@code null} if there are no such credentials.
+     */
+    @CheckForNull
+    public <T extends StandardCredentials> T lookup(@NonNull Class<T> type, @NonNull Item context,
+                                                    @NonNull Authentication authentication,
+                                                    @CheckForNull String serverUrl, @NonNull String id) {
+        return lookup(type, context, context.getFullName(), authentication, serverUrl, id);
+    }
+
+    /**
+     * Looks up the credentials with the given id available to an item group.
+     *
+     * @param type           the type of credentials.
+     * @param context        the item group.
+     * @param authentication the authentication to look up the credentials as.
+     * @param serverUrl      the URL of the server the credentials are used against.
+     * @param id             the id of the credentials.
+     * @param <T>            the type of credentials.
+     * @return the credentials or {@code null} if there are no such credentials.
+     */
+    @CheckForNull
+    public <T extends StandardCredentials> T lookup(@NonNull Class<T> type, @NonNull ItemGroup<?> context,
+                                                    @NonNull Authentication authentication,
+                                                    @CheckForNull String serverUrl, @NonNull String id) {
+        return lookup(type, context, context.getFullName(), authentication, serverUrl, id);
+    }
+
+    @CheckForNull
+    private <T extends StandardCredentials> T lookup(@NonNull Class<T> type, @NonNull Object context,
+                                                     @NonNull String contextName,
+                                                     @NonNull Authentication authentication,
+                                                     @CheckForNull String serverUrl, @NonNull String id) {
+        // NUL cannot appear in any of the parts
+        String key = type.getName() + '\u0000' + contextName + '\u0000' + authentication.getName() + '\u0000'
+                + serverUrl + '\u0000' + id;
+        long now = System.nanoTime();
+        long expected;
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && now - entry.created < expireAfterNanos) {
+                hitCount.incrementAndGet();
+                return type.cast(entry.credentials);
+            }
+            expected = generation;
+        }
+        missCount.incrementAndGet();
+        List<DomainRequirement> requirements = URIRequirementBuilder.fromUri(serverUrl).build();
+        List<T> candidates = context instanceof Item
+                ? CredentialsProvider.lookupCredentials(type, (Item) context, authentication, requirements)
+                : CredentialsProvider.lookupCredentials(type, (ItemGroup) context, authentication, requirements);
+        T credentials = CredentialsMatchers.firstOrNull(candidates, CredentialsMatchers.withId(id));
+        synchronized (entries) {
+            if (maxSize > 0 && generation == expected) {
+                entries.put(key, new Entry(credentials, now));
+                Iterator<Entry> iterator = entries.values().iterator();
+                while (entries.size() > maxSize && iterator.hasNext()) {
+                    iterator.next();
+                    iterator.remove();
+                }
+            }
+        }
+        return credentials;
+    }
+
+    /**
+     * Removes all the entries.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            generation++;
+        }
+        invalidationCount.incrementAndGet();
+    }
+
+    /**
+     * @return the number of lookups answered from the cache.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return the number of lookups that queried the credentials stores.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return the ratio of lookups answered from the cache, or {@code 0} if there were no lookups.
+     */
+    public double getHitRate() {
+        long hits = hitCount.get();
+        long total = hits + missCount.get();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    /**
+     * @return the number of times the cache was cleared.
+     */
+    public long getInvalidationCount() {
+        return invalidationCount.get();
+    }
+
+    /**
+     * @return the number of cached lookups.
+     */
+    public int getEntryCount() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * A cached lookup.
+     */
+    private static final class Entry {
+        /**
+         * The credentials found or {@code null} if there were none.
+         */
+        @CheckForNull
+        private final StandardCredentials credentials;
+        /**
+         * When the lookup was done, as a {@link System#nanoTime()}.
+         */
+        private final long created;
+
+        Entry(@CheckForNull StandardCredentials credentials, long created) {
+            this.credentials = credentials;
+            this.created = created;
+        }
+    }
+
+    /**
+     * Clears the cache when a credentials store may have changed.
+     */
+    @Extension
+    public static class SaveableListenerImpl extends SaveableListener {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            // the system store, per user stores and the folders holding a store
+            if (o instanceof SystemCredentialsProvider || o instanceof User || ownsStore(o)) {
+                get().clear();
+            }
+        }
+
+        /**
+         * Checks if a saved object holds a credentials store, which only folders may, rather than only inheriting
+         * the stores of its parents. Multibranch projects and folders are saved after each indexing, which should
+         * not clear the cache unless they hold a store.
+         *
+         * @param o the saved object.
+         * @return {@code true} if the object holds a credentials store.
+         */
+        private static boolean ownsStore(Saveable o) {
+            if (!(o instanceof ItemGroup)) {
+                return false;
+            }
+            for (CredentialsStore store : CredentialsProvider.lookupStores((ItemGroup<?>) o)) {
+                if (store.getContext() == o) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
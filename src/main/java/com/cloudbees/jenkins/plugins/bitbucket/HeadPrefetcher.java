@@ -0,0 +1,255 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluates the items of a scan ahead of their turn, so that the network round trips of the next heads (resolving
+ * their hash, probing their files) overlap instead of running one after the other. The items are still handed out
+ * in their original order and the caller processes them on its own thread; at most {@code parallelism} items are
+ * evaluated ahead. With a parallelism of {@code 1} nothing runs ahead and each item is evaluated when asked for.
+ * A failure to resolve the hash of an item ahead is reported when its hash is asked for on the thread processing
+ * it, while warming the caches is best effort and never fails an item.
+ *
+ * @param <I> the type of item.
+ * @since 2.2.4
+ */
+class HeadPrefetcher<I> implements Iterator<HeadPrefetcher.Prefetched<I>>, Closeable {
+
+    /**
+     * The maximum number of threads evaluating items ahead, for all the scans.
+     */
+    private static final int POOL_SIZE =
+            Math.max(1, Integer.getInteger(HeadPrefetcher.class.getName() + ".poolSize", 16));
+
+    /**
+     * The threads evaluating items ahead, shared by all scans. Each scan bounds how many of its items are evaluated
+     * at once, and the clients bound the concurrent requests to each endpoint. When all the threads are busy an item
+     * is evaluated by the scan that asks for it, which slows down that scan rather than queueing work.
+     */
+    private static final ExecutorService executor;
+
+    static {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, 60L, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(),
+                new NamingThreadFactory(new DaemonThreadFactory(), HeadPrefetcher.class.getName()),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        pool.allowCoreThreadTimeOut(true);
+        executor = pool;
+    }
+
+    /**
+     * Evaluates an item, on a worker thread when running ahead.
+     *
+     * @param <I> the type of item.
+     */
+    interface Evaluator<I> {
+        /**
+         * Resolves the hash of the head of an item and, when running ahead, warms the caches that processing the
+         * item will use. A failure to resolve the hash is reported when the hash is asked for, a failure to warm the
+         * caches is expected to be handled here as processing the item will make the same requests again.
+         *
+         * @param item  the item.
+         * @param ahead {@code true} if the item is evaluated ahead of its processing.
+         * @return the hash of the head of the item or {@code null} if not needed, for example as the item is
+         * excluded.
+         * @throws IOException          if the hash could not be resolved.
+         * @throws InterruptedException if interrupted, for example because the scan completed.
+         */
+        @CheckForNull
+        String evaluate(@NonNull I item, boolean ahead) throws IOException, InterruptedException;
+    }
+
+    @NonNull
+    private final Iterator<? extends I> items;
+    private final int parallelism;
+    @NonNull
+    private final Evaluator<I> evaluator;
+    /**
+     * The items taken from {@link #items} and not yet handed out, in order.
+     */
+    private final Deque<Prefetched<I>> pending = new ArrayDeque<>();
+
+    /**
+     * Constructor.
+     *
+     * @param items       the items.
+     * @param parallelism the maximum number of items evaluated ahead.
+     * @param evaluator   the evaluator.
+     */
+    HeadPrefetcher(@NonNull Iterator<? extends I> items, int parallelism, @NonNull Evaluator<I> evaluator) {
+        this.items = items;
+        this.parallelism = Math.max(1, parallelism);
+        this.evaluator = evaluator;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasNext() {
+        return !pending.isEmpty() || items.hasNext();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Prefetched<I> next() {
+        fill();
+        Prefetched<I> next = pending.pollFirst();
+        if (next == null) {
+            throw new NoSuchElementException();
+        }
+        if (parallelism > 1) {
+            // keep the window full while the caller processes this item
+            fill();
+        }
+        return next;
+    }
+
+    private void fill() {
+        while (pending.size() < parallelism && items.hasNext()) {
+            final I item = items.next();
+            Future<String> future = null;
+            if (parallelism > 1) {
+                future = executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        return evaluator.evaluate(item, true);
+                    }
+                });
+            }
+            pending.addLast(new Prefetched<>(item, future, evaluator));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Cancels the evaluation of the items not handed out, for when the scan completes early.
+     */
+    @Override
+    public void close() {
+        for (Prefetched<I> p : pending) {
+            if (p.future != null) {
+                p.future.cancel(true);
+            }
+        }
+        pending.clear();
+    }
+
+    /**
+     * An item with its evaluation.
+     *
+     * @param <I> the type of item.
+     */
+    static final class Prefetched<I> {
+        @NonNull
+        private final I item;
+        @CheckForNull
+        private final Future<String> future;
+        @NonNull
+        private final Evaluator<I> evaluator;
+        private boolean evaluated;
+        @CheckForNull
+        private String hash;
+
+        Prefetched(@NonNull I item, @CheckForNull Future<String> future, @NonNull Evaluator<I> evaluator) {
+            this.item = item;
+            this.future = future;
+            this.evaluator = evaluator;
+        }
+
+        /**
+         * Returns the item.
+         *
+         * @return the item.
+         */
+        @NonNull
+        I getItem() {
+            return item;
+        }
+
+        /**
+         * Returns the hash of the head of the item, waiting for its evaluation if it is running ahead, or evaluating
+         * it now otherwise. A failure of the evaluation ahead is rethrown here.
+         *
+         * @return the hash of the head of the item.
+         * @throws IOException          if the hash could not be resolved.
+         * @throws InterruptedException if interrupted while waiting.
+         */
+        @CheckForNull
+        String getHash() throws IOException, InterruptedException {
+            if (future == null) {
+                if (!evaluated) {
+                    hash = evaluator.evaluate(item, false);
+                    evaluated = true;
+                }
+                return hash;
+            }
+            try {
+                return future.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof InterruptedException) {
+                    throw (InterruptedException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IOException(cause);
+            }
+        }
+    }
+}
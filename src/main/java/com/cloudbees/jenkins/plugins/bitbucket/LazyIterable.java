@@ -23,39 +23,85 @@
  */
 package com.cloudbees.jenkins.plugins.bitbucket;
 
-import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 
 /**
- * An iterable that will lazily instantiate its delegate.
+ * An iterable that will lazily instantiate its delegate iterators, one per call to {@link #iterator()}, which only
+ * pull items as iteration reaches them. Nothing is remembered between iterations, so each iteration requests the
+ * sequence again; callers that need the items more than once should keep what they need from a single iteration.
  *
  * @param <V> the type of object iterated.
  * @since 2.2.0
  */
-abstract class LazyIterable<V> implements Iterable<V> {
+abstract class LazyIterable<V> implements Iterable<V>, Closeable {
     /**
-     * The delegate.
+     * The delegates instantiated so far, closed with this iterable.
      */
-    @CheckForNull
-    private Iterable<V> delegate;
+    private final List<Iterator<? extends V>> delegates = new ArrayList<>();
 
     /**
-     * Instantiates the delegate.
+     * Set once this iterable has been closed.
+     */
+    private boolean closed;
+
+    /**
+     * Instantiates a delegate.
      *
      * @return the delegate.
      */
     @NonNull
-    protected abstract Iterable<V> create();
+    protected abstract Iterator<? extends V> create();
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public synchronized Iterator<V> iterator() {
-        if (delegate == null) {
+    public Iterator<V> iterator() {
+        final Iterator<? extends V> delegate;
+        synchronized (this) {
+            if (closed) {
+                return Collections.<V>emptyList().iterator();
+            }
             delegate = create();
+            if (delegate instanceof Closeable) {
+                delegates.add(delegate);
+            }
+        }
+        return new Iterator<V>() {
+            @Override
+            public boolean hasNext() {
+                return delegate.hasNext();
+            }
+
+            @Override
+            public V next() {
+                return delegate.next();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Closes the delegates instantiated so far, no further items will be pulled from them.
+     *
+     * @throws IOException if a delegate could not be closed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        for (Iterator<? extends V> delegate : delegates) {
+            ((Closeable) delegate).close();
         }
-        return delegate.iterator();
+        delegates.clear();
     }
 }
@@ -107,11 +107,13 @@ public interface BitbucketApi {
     void postCommitComment(@NonNull String hash, @NonNull String comment) throws IOException, InterruptedException;
 
     /**
-     * Checks if the given path exists in the repository at the specified branch.
+     * Checks if the given path exists in the repository at the specified branch. Implementations should not
+     * transfer the content of the path, which may be a large file.
      *
      * @param branchOrHash the branch name or commit hash
      * @param path the path to check for
-     * @return true if the path exists
+     * @return true if the path exists, false if it does not or if Bitbucket did not tell whether it exists, so a
+     * false answer should not be remembered
      * @throws IOException if there was a network communications error.
      * @throws InterruptedException if interrupted while waiting on remote communications.
      */
@@ -0,0 +1,145 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.api;
+
+import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import hudson.Extension;
+import hudson.ProxyConfiguration;
+import hudson.Util;
+import hudson.XmlFile;
+import hudson.model.Saveable;
+import hudson.model.listeners.SaveableListener;
+import hudson.util.Secret;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * A process wide registry of the {@link BitbucketApi} clients, so that the many callers within one scan share a
+ * client rather than each looking up the factory and creating their own. The clients are keyed by endpoint,
+ * credentials, owner and repository. The credentials part of the key is a digest of the username and password, so a
+ * client is never handed out for credentials that have since changed; the least recently used clients are evicted
+ * once the registry is full. The registry is cleared whenever the endpoint configuration or the Jenkins proxy
+ * configuration changes, as the clients are configured from both.
+ *
+ * @since 2.2.4
+ */
+@Restricted(NoExternalUse.class)
+public final class BitbucketApiRegistry {
+
+    /**
+     * The maximum number of clients kept.
+     */
+    private static final int MAX_SIZE =
+            Math.max(0, Integer.getInteger(BitbucketApiRegistry.class.getName() + ".maxSize", 256));
+
+    /**
+     * The clients, in access order.
+     */
+    private static final Map<String, BitbucketApi> clients = new LinkedHashMap<String, BitbucketApi>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, BitbucketApi> eldest) {
+            return size() > MAX_SIZE;
+        }
+    };
+
+    private BitbucketApiRegistry() {
+        throw new IllegalAccessError("Utility class");
+    }
+
+    /**
+     * Returns a shared {@link BitbucketApi} for the specified URL with the supplied credentials, owner and (optional)
+     * repository, creating it with {@link BitbucketApiFactory#newInstance(String, StandardUsernamePasswordCredentials,
+     * String, String)} if there is none yet.
+     *
+     * @param serverUrl   the server URL.
+     * @param credentials the (optional) credentials.
+     * @param owner       the owner name.
+     * @param repository  the (optional) repository name.
+     * @return the {@link BitbucketApi}.
+     * @throws IllegalArgumentException if the supplied URL is not supported.
+     */
+    @NonNull
+    public static BitbucketApi get(@Nullable String serverUrl,
+                                   @Nullable StandardUsernamePasswordCredentials credentials,
+                                   @NonNull String owner,
+                                   @CheckForNull String repository) {
+        String key = key(serverUrl, credentials, owner, repository);
+        synchronized (clients) {
+            BitbucketApi client = clients.get(key);
+            if (client != null) {
+                return client;
+            }
+        }
+        // create outside the lock, a racing caller at worst creates a client that is discarded
+        BitbucketApi client = BitbucketApiFactory.newInstance(serverUrl, credentials, owner, repository);
+        synchronized (clients) {
+            BitbucketApi existing = clients.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            clients.put(key, client);
+            return client;
+        }
+    }
+
+    /**
+     * Discards all the clients, to be called when the configuration they were created from changes.
+     */
+    public static void clear() {
+        synchronized (clients) {
+            clients.clear();
+        }
+    }
+
+    private static String key(String serverUrl, StandardUsernamePasswordCredentials credentials, String owner,
+                              String repository) {
+        String fingerprint = credentials == null
+                ? ""
+                : credentials.getId() + "/" + Util.getDigestOf(
+                        credentials.getUsername() + ":" + Secret.toString(credentials.getPassword()));
+        // NUL cannot appear in any of the parts
+        return serverUrl + '\u0000' + fingerprint + '\u0000' + owner + '\u0000' + repository;
+    }
+
+    /**
+     * Clears the registry when the proxy configuration changes.
+     */
+    @Extension
+    public static class SaveableListenerImpl extends SaveableListener {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof ProxyConfiguration) {
+                clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.api;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import jenkins.scm.api.SCMFile;
+
+/**
+ * The entries of a directory of a repository at a given revision.
+ *
+ * @since 2.2.4
+ */
+public final class BitbucketDirectory {
+
+    /**
+     * The type of each entry, keyed by entry name.
+     */
+    private final Map<String, SCMFile.Type> entries;
+
+    /**
+     * Constructor.
+     *
+     * @param entries the type of each entry, keyed by entry name.
+     */
+    public BitbucketDirectory(@NonNull Map<String, SCMFile.Type> entries) {
+        this.entries = Collections.unmodifiableMap(new LinkedHashMap<>(entries));
+    }
+
+    /**
+     * Returns the type of each entry, keyed by entry name.
+     *
+     * @return the type of each entry, keyed by entry name.
+     */
+    @NonNull
+    public Map<String, SCMFile.Type> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Returns the type of an entry.
+     *
+     * @param name the name of the entry.
+     * @return the type of the entry or {@link SCMFile.Type#NONEXISTENT} if there is no such entry.
+     */
+    @NonNull
+    public SCMFile.Type getType(@NonNull String name) {
+        SCMFile.Type type = entries.get(name);
+        return type == null ? SCMFile.Type.NONEXISTENT : type;
+    }
+}
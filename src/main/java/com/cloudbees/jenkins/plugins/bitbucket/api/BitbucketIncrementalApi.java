@@ -0,0 +1,122 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.api;
+
+import com.cloudbees.jenkins.plugins.bitbucket.client.repository.UserRoleInRepository;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+
+/**
+ * An optional extension of {@link BitbucketApi} for the clients that can page listings on demand and read single
+ * branches, directories and files. Callers check for it with {@code instanceof} and fall back to the
+ * {@link BitbucketApi} methods otherwise, so that the implementations of {@link BitbucketApi} from other plugins keep
+ * working.
+ *
+ * @since 2.2.4
+ */
+public interface BitbucketIncrementalApi extends BitbucketApi {
+
+    /**
+     * Iterates the pull requests in the repository. Pages are only fetched as the iteration reaches them,
+     * failures to fetch a page are reported as {@link BitbucketIterationException}. If the returned iterator is
+     * {@link java.io.Closeable} it should be closed when the caller stops iterating before the end.
+     *
+     * @return an iterator over the pull requests in the repository.
+     * @throws IOException if there was a network communications error.
+     * @throws InterruptedException if interrupted while waiting on remote communications.
+     */
+    @NonNull
+    Iterator<? extends BitbucketPullRequest> iteratePullRequests() throws IOException, InterruptedException;
+
+    /**
+     * Iterates the branches in the repository. Pages are only fetched as the iteration reaches them,
+     * failures to fetch a page are reported as {@link BitbucketIterationException}. If the returned iterator is
+     * {@link java.io.Closeable} it should be closed when the caller stops iterating before the end.
+     *
+     * @return an iterator over the branches in the repository.
+     * @throws IOException if there was a network communications error.
+     * @throws InterruptedException if interrupted while waiting on remote communications.
+     */
+    @NonNull
+    Iterator<? extends BitbucketBranch> iterateBranches() throws IOException, InterruptedException;
+
+    /**
+     * Returns a single branch of the repository, without listing the other branches.
+     *
+     * @param branchName the name of the branch.
+     * @return the branch or null if there is no such branch.
+     * @throws IOException if there was a network communications error.
+     * @throws InterruptedException if interrupted while waiting on remote communications.
+     */
+    @CheckForNull
+    BitbucketBranch getBranch(@NonNull String branchName) throws IOException, InterruptedException;
+
+    /**
+     * Iterates the repositories where the user has the given role. Pages are only fetched as the iteration reaches
+     * them, failures to fetch a page are reported as {@link BitbucketIterationException}. If the returned iterator
+     * is {@link java.io.Closeable} it should be closed when the caller stops iterating before the end.
+     *
+     * @param role Filter repositories by the owner having this role in.
+     *             See {@link UserRoleInRepository} for more information.
+     *             Use role = null if the repoOwner is a team ID.
+     * @return an iterator over the repositories.
+     * @throws IOException if there was a network communications error.
+     * @throws InterruptedException if interrupted while waiting on remote communications.
+     */
+    @NonNull
+    Iterator<? extends BitbucketRepository> iterateRepositories(@CheckForNull UserRoleInRepository role)
+            throws IOException, InterruptedException;
+
+    /**
+     * Lists a directory of the repository at the specified branch or commit, so that several paths can be checked
+     * with a single request.
+     *
+     * @param branchOrHash the branch name or commit hash
+     * @param path the path of the directory, empty for the root directory
+     * @return the entries of the directory, empty if the path is not a directory
+     * @throws IOException if there was a network communications error.
+     * @throws InterruptedException if interrupted while waiting on remote communications.
+     */
+    @NonNull
+    BitbucketDirectory getDirectoryContent(@NonNull String branchOrHash, @NonNull String path)
+            throws IOException, InterruptedException;
+
+    /**
+     * Opens the content of a file of the repository at the specified branch or commit. The caller is responsible for
+     * closing the returned stream.
+     *
+     * @param branchOrHash the branch name or commit hash
+     * @param path the path of the file
+     * @return the content of the file
+     * @throws java.io.FileNotFoundException if there is no such file.
+     * @throws IOException if there was a network communications error.
+     * @throws InterruptedException if interrupted while waiting on remote communications.
+     */
+    @NonNull
+    InputStream getFileContent(@NonNull String branchOrHash, @NonNull String path)
+            throws IOException, InterruptedException;
+}
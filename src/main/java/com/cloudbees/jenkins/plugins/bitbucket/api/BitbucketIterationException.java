@@ -0,0 +1,64 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.api;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+
+/**
+ * Reports a failure to fetch the next page of an iteration returned by {@link BitbucketApi}, as
+ * {@link java.util.Iterator} methods cannot throw checked exceptions.
+ *
+ * @since 2.2.4
+ */
+public class BitbucketIterationException extends RuntimeException {
+
+    public BitbucketIterationException(@NonNull IOException cause) {
+        super(cause);
+    }
+
+    public BitbucketIterationException(@NonNull InterruptedException cause) {
+        super(cause);
+    }
+
+    /**
+     * Rethrows the original cause of this exception.
+     *
+     * @throws IOException          if the page could not be fetched.
+     * @throws InterruptedException if interrupted while fetching the page.
+     */
+    public void unwrap() throws IOException, InterruptedException {
+        Throwable cause = getCause();
+        if (cause instanceof IOException) {
+            throw (IOException) cause;
+        }
+        if (cause instanceof InterruptedException) {
+            throw (InterruptedException) cause;
+        }
+        throw this;
+    }
+
+    private static final long serialVersionUID = 1L;
+
+}
@@ -23,6 +23,7 @@
  */
 package com.cloudbees.jenkins.plugins.bitbucket.api;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 
 /**
@@ -53,4 +54,12 @@ public interface BitbucketPullRequest {
 
     String getAuthorLogin();
 
+    /**
+     * @return the state of the pull request, {@code OPEN} while it is neither merged nor declined, or null if not
+     *      known.
+     * @since 2.2.4
+     */
+    @CheckForNull
+    String getState();
+
 }
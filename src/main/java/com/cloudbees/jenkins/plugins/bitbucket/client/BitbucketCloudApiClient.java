@@ -23,11 +23,15 @@
  */
 package com.cloudbees.jenkins.plugins.bitbucket.client;
 
-import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketApi;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketBranch;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketBuildStatus;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketCommit;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketDirectory;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketException;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketIncrementalApi;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketPullRequest;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketPullRequestDestination;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketPullRequestSource;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketRepository;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketRepositoryProtocol;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketRepositoryType;
@@ -35,23 +39,31 @@ import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketRequestException;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketTeam;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketWebHook;
 import com.cloudbees.jenkins.plugins.bitbucket.client.branch.BitbucketCloudBranch;
+import com.cloudbees.jenkins.plugins.bitbucket.client.branch.BitbucketCloudBranchRef;
+import com.cloudbees.jenkins.plugins.bitbucket.client.branch.BitbucketCloudBranchRefs;
 import com.cloudbees.jenkins.plugins.bitbucket.client.branch.BitbucketCloudCommit;
 import com.cloudbees.jenkins.plugins.bitbucket.client.pullrequest.BitbucketPullRequestCommit;
 import com.cloudbees.jenkins.plugins.bitbucket.client.pullrequest.BitbucketPullRequestCommits;
 import com.cloudbees.jenkins.plugins.bitbucket.client.pullrequest.BitbucketPullRequestValue;
 import com.cloudbees.jenkins.plugins.bitbucket.client.pullrequest.BitbucketPullRequests;
 import com.cloudbees.jenkins.plugins.bitbucket.client.repository.BitbucketCloudRepository;
+import com.cloudbees.jenkins.plugins.bitbucket.client.repository.BitbucketCloudSourceEntries;
+import com.cloudbees.jenkins.plugins.bitbucket.client.repository.BitbucketCloudSourceEntry;
 import com.cloudbees.jenkins.plugins.bitbucket.client.repository.BitbucketCloudTeam;
 import com.cloudbees.jenkins.plugins.bitbucket.client.repository.BitbucketRepositoryHook;
 import com.cloudbees.jenkins.plugins.bitbucket.client.repository.BitbucketRepositoryHooks;
 import com.cloudbees.jenkins.plugins.bitbucket.client.repository.PaginatedBitbucketRepository;
 import com.cloudbees.jenkins.plugins.bitbucket.client.repository.UserRoleInRepository;
+import com.cloudbees.jenkins.plugins.bitbucket.endpoints.AbstractBitbucketEndpoint;
+import com.cloudbees.jenkins.plugins.bitbucket.endpoints.BitbucketCloudEndpoint;
+import com.cloudbees.jenkins.plugins.bitbucket.endpoints.BitbucketEndpointConfiguration;
 import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
 import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.ProxyConfiguration;
 import hudson.Util;
 import hudson.util.Secret;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -59,48 +71,109 @@ import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
+import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import jenkins.model.Jenkins;
-import net.sf.json.JSONObject;
+import jenkins.scm.api.SCMFile;
 import org.apache.commons.httpclient.HostConfiguration;
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HttpMethod;
 import org.apache.commons.httpclient.HttpState;
 import org.apache.commons.httpclient.HttpStatus;
-import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
 import org.apache.commons.httpclient.NameValuePair;
 import org.apache.commons.httpclient.URIException;
 import org.apache.commons.httpclient.UsernamePasswordCredentials;
 import org.apache.commons.httpclient.auth.AuthScope;
 import org.apache.commons.httpclient.methods.DeleteMethod;
 import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.httpclient.methods.HeadMethod;
 import org.apache.commons.httpclient.methods.PostMethod;
 import org.apache.commons.httpclient.methods.StringRequestEntity;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.type.TypeReference;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
 
-public class BitbucketCloudApiClient implements BitbucketApi {
+public class BitbucketCloudApiClient implements BitbucketIncrementalApi {
     private static final Logger LOGGER = Logger.getLogger(BitbucketCloudApiClient.class.getName());
     private static final String V1_API_BASE_URL = "https://api.bitbucket.org/1.0/repositories/";
     private static final String V2_API_BASE_URL = "https://api.bitbucket.org/2.0/repositories/";
     private static final String V2_TEAMS_API_BASE_URL = "https://api.bitbucket.org/2.0/teams/";
-    private static final int MAX_PAGES = 100;
-    private static final int API_RATE_LIMIT_CODE = 429;
+    /**
+     * The largest page length each paginated resource has been seen to accept, keyed by endpoint, credentials and
+     * page type.
+     */
+    private static final ConcurrentMap<String, Integer> pageLengthCaps = new ConcurrentHashMap<>();
+    private static final TypeReference<LinkedHashMap<String, BitbucketCloudBranch>> BRANCHES_TYPE =
+            new TypeReference<LinkedHashMap<String, BitbucketCloudBranch>>() {};
+    /**
+     * The connection settings of the Bitbucket Cloud connection pool.
+     */
+    private static final int MAX_CONNECTIONS = 22;
+    private static final int CONNECTION_TIMEOUT = 10;
+    private static final int READ_TIMEOUT = 60;
+    private static final int IDLE_TIMEOUT = 60;
+    /**
+     * The partial response projection of a {@link BitbucketCloudRepository}, limited to the properties it binds.
+     * Only the {@code clone} links are requested as they are the only ones consumers read.
+     */
+    static final String REPOSITORY_FIELDS =
+            "scm,full_name,owner.username,owner.display_name,updated_on,is_private,links.clone";
+    /**
+     * The partial response projection of the source and destination of a pull request.
+     */
+    private static final String PULL_REQUEST_REVISION_FIELDS = projection("repository.", REPOSITORY_FIELDS)
+            + ",branch.name,commit.hash,commit.date,commit.message";
+    /**
+     * The partial response projection of a {@link BitbucketPullRequestValue}, leaving out participants, reviewers,
+     * summaries and the links other than the pull request page.
+     */
+    static final String PULL_REQUEST_FIELDS = "id,title,state,links.html.href,author.username,author.display_name,"
+            + projection("source.", PULL_REQUEST_REVISION_FIELDS) + ","
+            + projection("destination.", PULL_REQUEST_REVISION_FIELDS);
+    /**
+     * The partial response projection of a {@link BitbucketCloudBranchRef}.
+     */
+    static final String BRANCH_FIELDS = "name,target.hash,target.date,target.message";
+    /**
+     * The partial response projection of a {@link BitbucketRepositoryHook}.
+     */
+    static final String HOOK_FIELDS = "uuid,description,url,active,events";
+    /**
+     * The maximum number of branches looked up with a single request when expanding the source hashes of pull
+     * requests, which keeps the query within the URL length limits.
+     */
+    private static final int MAX_BRANCHES_PER_QUERY = 25;
     private HttpClient client;
-    private static final MultiThreadedHttpConnectionManager connectionManager = new MultiThreadedHttpConnectionManager();
     private final String owner;
     private final String repositoryName;
     private final UsernamePasswordCredentials credentials;
+    private final int pageSize;
 
-    static {
-        connectionManager.getParams().setDefaultMaxConnectionsPerHost(20);
-        connectionManager.getParams().setMaxTotalConnections(22);
-    }
+    /**
+     * The number of requests per second sent with the credentials of this client, negative for no limit.
+     */
+    private final int requestRate;
+    /**
+     * The {@link EndpointGuard} settings of the Bitbucket Cloud endpoint.
+     */
+    private final int maxConcurrentRequests;
+    private final int queueTimeout;
+    private final int failureThreshold;
+    private final int recoveryDelay;
 
     public BitbucketCloudApiClient(String owner, String repositoryName, StandardUsernamePasswordCredentials creds) {
         if (creds != null) {
@@ -110,6 +183,30 @@ public class BitbucketCloudApiClient implements BitbucketApi {
         }
         this.owner = owner;
         this.repositoryName = repositoryName;
+        AbstractBitbucketEndpoint endpoint = lookupEndpoint();
+        if (endpoint != null) {
+            this.pageSize = endpoint.getPageSize();
+            this.requestRate = endpoint.getRequestRate();
+            this.maxConcurrentRequests = endpoint.getMaxConcurrentRequests();
+            this.queueTimeout = endpoint.getQueueTimeout();
+            this.failureThreshold = endpoint.getFailureThreshold();
+            this.recoveryDelay = endpoint.getRecoveryDelay();
+        } else {
+            this.pageSize = BitbucketCloudEndpoint.DEFAULT_PAGE_SIZE;
+            this.requestRate = BitbucketCloudEndpoint.DEFAULT_REQUEST_RATE;
+            this.maxConcurrentRequests = AbstractBitbucketEndpoint.DEFAULT_MAX_CONCURRENT_REQUESTS;
+            this.queueTimeout = AbstractBitbucketEndpoint.DEFAULT_QUEUE_TIMEOUT;
+            this.failureThreshold = AbstractBitbucketEndpoint.DEFAULT_FAILURE_THRESHOLD;
+            this.recoveryDelay = AbstractBitbucketEndpoint.DEFAULT_RECOVERY_DELAY;
+        }
+    }
+
+    @CheckForNull
+    private static AbstractBitbucketEndpoint lookupEndpoint() {
+        if (Jenkins.getInstance() == null) {
+            return null;
+        }
+        return BitbucketEndpointConfiguration.get().findEndpoint(BitbucketCloudEndpoint.SERVER_URL);
     }
 
     /**
@@ -179,33 +276,30 @@ public class BitbucketCloudApiClient implements BitbucketApi {
     @NonNull
     @Override
     public List<BitbucketPullRequestValue> getPullRequests() throws InterruptedException, IOException {
-        String urlTemplate = V2_API_BASE_URL + this.owner + "/" + this.repositoryName + "/pullrequests?page=%d&pagelen=50";
-        String url;
+        return iteratePullRequests().toList();
+    }
 
-        List<BitbucketPullRequestValue> pullRequests = new ArrayList<BitbucketPullRequestValue>();
-        int pageNumber = 1;
-        String response = getRequest(url = String.format(urlTemplate, pageNumber));
-        BitbucketPullRequests page;
-        try {
-            page = parse(response, BitbucketPullRequests.class);
-        } catch (IOException e) {
-            throw new IOException("I/O error when parsing response from URL: " + url, e);
-        }
-        pullRequests.addAll(page.getValues());
-        while (page.getNext() != null && pageNumber < MAX_PAGES) {
-            if (Thread.interrupted()) {
-                throw new InterruptedException();
-            }
-            pageNumber++;
-            response = getRequest(url = String.format(urlTemplate, pageNumber));
-            try {
-                page = parse(response, BitbucketPullRequests.class);
-            } catch (IOException e) {
-                throw new IOException("I/O error when parsing response from URL: " + url, e);
+    /**
+     * {@inheritDoc}
+     */
+    @NonNull
+    @Override
+    public PagedIterator<BitbucketPullRequestValue> iteratePullRequests() {
+        return new CloudPager<BitbucketPullRequestValue>(
+                V2_API_BASE_URL + this.owner + "/" + this.repositoryName + "/pullrequests?page=%d&pagelen=%d&fields="
+                        + pageProjection(PULL_REQUEST_FIELDS),
+                BitbucketPullRequests.class
+        ) {
+            @Override
+            protected List<BitbucketPullRequestValue> nextPage(int pageIndex)
+                    throws IOException, InterruptedException {
+                List<BitbucketPullRequestValue> page = super.nextPage(pageIndex);
+                if (page != null) {
+                    expandHashes(page);
+                }
+                return page;
             }
-            pullRequests.addAll(page.getValues());
-        }
-        return pullRequests;
+        };
     }
 
     /**
@@ -215,12 +309,7 @@ public class BitbucketCloudApiClient implements BitbucketApi {
     @NonNull
     public BitbucketPullRequest getPullRequestById(@NonNull Integer id) throws IOException, InterruptedException {
         String url = V2_API_BASE_URL + this.owner + "/" + this.repositoryName + "/pullrequests/" + id;
-        String response = getRequest(url);
-        try {
-            return parse(response, BitbucketPullRequestValue.class);
-        } catch (IOException e) {
-            throw new IOException("I/O error when parsing response from URL: " + url, e);
-        }
+        return getCoalescedRequest(url, BitbucketPullRequestValue.class);
     }
 
     /**
@@ -232,13 +321,8 @@ public class BitbucketCloudApiClient implements BitbucketApi {
         if (repositoryName == null) {
             throw new UnsupportedOperationException("Cannot get a repository from an API instance that is not associated with a repository");
         }
-        String url = V2_API_BASE_URL + owner + "/" + repositoryName;
-        String response = getRequest(url);
-        try {
-            return parse(response, BitbucketCloudRepository.class);
-        } catch (IOException e) {
-            throw new IOException("I/O error when parsing response from URL: " + url, e);
-        }
+        String url = V2_API_BASE_URL + owner + "/" + repositoryName + "?fields=" + REPOSITORY_FIELDS;
+        return getCoalescedRequest(url, BitbucketCloudRepository.class);
     }
 
     public void deletePullRequestComment(String pullRequestId, String commentId) throws IOException, InterruptedException {
@@ -273,6 +357,64 @@ public class BitbucketCloudApiClient implements BitbucketApi {
     @Override
     public boolean checkPathExists(@NonNull String branchOrHash, @NonNull String path)
             throws IOException, InterruptedException {
+        StringBuilder encodedPath = new StringBuilder(Util.rawEncode(branchOrHash));
+        for (String segment : StringUtils.split(path, "/")) {
+            encodedPath.append('/');
+            encodedPath.append(Util.rawEncode(segment));
+        }
+        // only the status is needed, so the content of the file is not transferred
+        String url = V1_API_BASE_URL + owner + "/" + repositoryName + "/raw/" + encodedPath;
+        int status = getRequestStatus(new HeadMethod(url));
+        if (status == HttpStatus.SC_METHOD_NOT_ALLOWED || status == HttpStatus.SC_NOT_IMPLEMENTED) {
+            // the metadata of the path is a small document whatever the size of the file
+            url = V2_API_BASE_URL + owner + "/" + repositoryName + "/src/" + encodedPath + "?format=meta";
+            status = getRequestStatus(new GetMethod(url));
+        }
+        return status == HttpStatus.SC_OK;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @NonNull
+    @Override
+    public BitbucketDirectory getDirectoryContent(@NonNull String branchOrHash, @NonNull String path)
+            throws IOException, InterruptedException {
+        StringBuilder url = new StringBuilder(V2_API_BASE_URL);
+        url.append(owner);
+        url.append('/');
+        url.append(repositoryName);
+        url.append("/src/");
+        url.append(Util.rawEncode(branchOrHash));
+        url.append('/');
+        for (String segment : StringUtils.split(path, "/")) {
+            url.append(Util.rawEncode(segment));
+            url.append('/');
+        }
+        // the URL is used as a format template by the pager
+        String urlTemplate = url.toString().replace("%", "%%")
+                + "?page=%d&pagelen=%d&fields=" + pageProjection("path,type");
+        Map<String, SCMFile.Type> entries = new LinkedHashMap<>();
+        try {
+            for (BitbucketCloudSourceEntry entry
+                    : new CloudPager<BitbucketCloudSourceEntry>(urlTemplate, BitbucketCloudSourceEntries.class).toList()) {
+                if (entry.getName() != null) {
+                    entries.put(entry.getName(), entry.toFileType());
+                }
+            }
+        } catch (FileNotFoundException e) {
+            // no such directory
+        }
+        return new BitbucketDirectory(entries);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @NonNull
+    @Override
+    public InputStream getFileContent(@NonNull String branchOrHash, @NonNull String path)
+            throws IOException, InterruptedException {
         StringBuilder url = new StringBuilder(V1_API_BASE_URL);
         url.append(owner);
         url.append('/');
@@ -283,8 +425,7 @@ public class BitbucketCloudApiClient implements BitbucketApi {
             url.append('/');
             url.append(Util.rawEncode(segment));
         }
-        int status = getRequestStatus(url.toString());
-        return status == HttpStatus.SC_OK;
+        return openRequest(url.toString());
     }
 
     /**
@@ -294,15 +435,14 @@ public class BitbucketCloudApiClient implements BitbucketApi {
     @Override
     public String getDefaultBranch() throws IOException, InterruptedException {
         String url = V1_API_BASE_URL + this.owner + "/" + this.repositoryName + "/main-branch";
-        String response;
+        JsonNode response;
         try {
-            response = getRequest(url);
+            response = getCoalescedRequest(url, JsonNode.class);
         } catch (FileNotFoundException e) {
             LOGGER.fine(String.format("Could not find default branch for %s/%s", this.owner, this.repositoryName));
             return null;
         }
-        ObjectMapper mapper = new ObjectMapper();
-        JsonNode name = mapper.readTree(response).get("name");
+        JsonNode name = response.get("name");
         if (name != null) {
             return name.getTextValue();
         }
@@ -315,33 +455,59 @@ public class BitbucketCloudApiClient implements BitbucketApi {
     @NonNull
     @Override
     public List<BitbucketCloudBranch> getBranches() throws IOException, InterruptedException {
-        String url = V1_API_BASE_URL + this.owner + "/" + this.repositoryName + "/branches";
-        String response = getRequest(url);
+        return iterateBranches().toList();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @CheckForNull
+    @Override
+    public BitbucketBranch getBranch(@NonNull String branchName) throws IOException, InterruptedException {
+        String url = V2_API_BASE_URL + owner + "/" + repositoryName + "/refs/branches/" + Util.rawEncode(branchName)
+                + "?fields=" + BRANCH_FIELDS;
         try {
-            return parseBranchesJson(response);
-        } catch (IOException e) {
-            throw new IOException("I/O error when parsing response from URL: " + url, e);
+            return getRequest(url, BitbucketCloudBranchRef.class);
+        } catch (FileNotFoundException e) {
+            return null;
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * The 1.0 branches resource is not paginated, so the whole listing is fetched once iteration starts.
+     */
+    @NonNull
+    @Override
+    public PagedIterator<BitbucketCloudBranch> iterateBranches() {
+        final String url = V1_API_BASE_URL + this.owner + "/" + this.repositoryName + "/branches";
+        return new PagedIterator<BitbucketCloudBranch>() {
+            @Override
+            protected List<BitbucketCloudBranch> nextPage(int pageIndex) throws IOException, InterruptedException {
+                return pageIndex == 0 ? parseBranchesJson(getCoalescedRequest(url, BRANCHES_TYPE)) : null;
+            }
+        };
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     @CheckForNull
     public BitbucketCommit resolveCommit(@NonNull String hash) throws IOException, InterruptedException {
+        CommitCache cache = CommitCache.get();
+        BitbucketCommit commit = cache.lookup(BitbucketCloudEndpoint.SERVER_URL, owner, repositoryName, hash);
+        if (commit != null) {
+            return commit;
+        }
         String url = V2_API_BASE_URL + owner + "/" + repositoryName + "/commit/" + hash;
-        String response;
         try {
-            response = getRequest(url);
+            commit = getCoalescedRequest(url, BitbucketCloudCommit.class);
         } catch (FileNotFoundException e) {
             return null;
         }
-        try {
-            return parse(response, BitbucketCloudCommit.class);
-        } catch (IOException e) {
-            throw new IOException("I/O error when parsing response from URL: " + url, e);
-        }
+        cache.put(BitbucketCloudEndpoint.SERVER_URL, owner, repositoryName, hash, commit);
+        return commit;
     }
 
     /**
@@ -350,18 +516,199 @@ public class BitbucketCloudApiClient implements BitbucketApi {
     @NonNull
     @Override
     public String resolveSourceFullHash(@NonNull BitbucketPullRequest pull) throws IOException, InterruptedException {
+        String shortHash = sourceHash(pull);
+        if (CommitCache.isFullHash(shortHash)) {
+            return shortHash;
+        }
+        ShortHashCache cache = ShortHashCache.get();
+        if (shortHash != null) {
+            String fullHash = cache.lookup(BitbucketCloudEndpoint.SERVER_URL, sourceOwner(pull),
+                    sourceRepositoryName(pull), shortHash);
+            if (fullHash != null) {
+                return fullHash;
+            }
+        }
         String url = V2_API_BASE_URL + owner + "/" + repositoryName + "/pullrequests/" + pull.getId()
                 + "/commits?fields=values.hash&pagelen=1";
-        String response = getRequest(url);
-        try {
-            BitbucketPullRequestCommits commits = parse(response, BitbucketPullRequestCommits.class);
-            for (BitbucketPullRequestCommit commit : Util.fixNull(commits.getValues())) {
-                return commit.getHash();
+        BitbucketPullRequestCommits commits = getRequest(url, BitbucketPullRequestCommits.class);
+        for (BitbucketPullRequestCommit commit : Util.fixNull(commits.getValues())) {
+            if (shortHash != null) {
+                cache.put(BitbucketCloudEndpoint.SERVER_URL, sourceOwner(pull), sourceRepositoryName(pull),
+                        shortHash, commit.getHash());
             }
-            throw new BitbucketException("Could not determine commit for pull request " + pull.getId());
-        } catch (IOException e) {
-            throw new IOException("I/O error when parsing response from URL: " + url, e);
+            return commit.getHash();
         }
+        throw new BitbucketException("Could not determine commit for pull request " + pull.getId());
+    }
+
+    /**
+     * Returns the full hash of the destination of a pull request if it is known without a request, that is if the
+     * pull request carries it in full or if its abbreviated hash was expanded into the {@link ShortHashCache} when
+     * the pull request was listed.
+     *
+     * @param pull the pull request.
+     * @return the full hash of the destination or {@code null} if it is not known.
+     */
+    @CheckForNull
+    public String getDestinationFullHash(@NonNull BitbucketPullRequest pull) {
+        String shortHash = destinationHash(pull);
+        if (shortHash == null || CommitCache.isFullHash(shortHash)) {
+            return shortHash;
+        }
+        return ShortHashCache.get().lookup(BitbucketCloudEndpoint.SERVER_URL, owner, repositoryName, shortHash);
+    }
+
+    /**
+     * Expands the abbreviated source and destination hashes of a page of pull requests into the
+     * {@link ShortHashCache}, so that {@link #resolveSourceFullHash(BitbucketPullRequest)} does not need a request
+     * per pull request and {@link #getDestinationFullHash(BitbucketPullRequest)} does not need the listing of the
+     * branches. The heads of the branches are fetched with one request per repository (and per
+     * {@link #MAX_BRANCHES_PER_QUERY} branches), and a hash is expanded when the head of its branch starts with it.
+     * Failures are only logged, as the hashes not expanded are still resolved otherwise.
+     *
+     * @param pulls the pull requests.
+     * @throws InterruptedException if interrupted.
+     */
+    private void expandHashes(@NonNull List<? extends BitbucketPullRequest> pulls) throws InterruptedException {
+        ShortHashCache cache = ShortHashCache.get();
+        // the hashes to expand, by repository and then by branch
+        Map<String, Map<String, Set<String>>> unresolved = new LinkedHashMap<>();
+        for (BitbucketPullRequest pull : pulls) {
+            unresolved(unresolved, cache, sourceOwner(pull), sourceRepositoryName(pull), sourceBranchName(pull),
+                    sourceHash(pull));
+            // the destination is always this repository
+            unresolved(unresolved, cache, owner, repositoryName, destinationBranchName(pull), destinationHash(pull));
+        }
+        for (Map.Entry<String, Map<String, Set<String>>> repository : unresolved.entrySet()) {
+            List<String> branchNames = new ArrayList<>(repository.getValue().keySet());
+            for (int i = 0; i < branchNames.size(); i += MAX_BRANCHES_PER_QUERY) {
+                List<String> chunk = branchNames.subList(i, Math.min(i + MAX_BRANCHES_PER_QUERY, branchNames.size()));
+                try {
+                    expandHashes(repository.getKey(), chunk, repository.getValue(), cache);
+                } catch (IOException e) {
+                    LOGGER.log(Level.FINE, "Could not expand the hashes of the pull requests of "
+                            + owner + "/" + repositoryName + ", resolving them one at a time", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Records an abbreviated hash of a branch to expand, unless it is already known.
+     *
+     * @param unresolved the hashes to expand, by repository and then by branch.
+     * @param cache      the cache the hashes are expanded into.
+     * @param owner      the owner of the repository.
+     * @param repository the name of the repository.
+     * @param branchName the name of the branch.
+     * @param shortHash  the abbreviated hash.
+     */
+    private static void unresolved(@NonNull Map<String, Map<String, Set<String>>> unresolved,
+                                   @NonNull ShortHashCache cache, @NonNull String owner, @NonNull String repository,
+                                   @CheckForNull String branchName, @CheckForNull String shortHash) {
+        if (shortHash == null || CommitCache.isFullHash(shortHash) || branchName == null
+                || cache.lookup(BitbucketCloudEndpoint.SERVER_URL, owner, repository, shortHash) != null) {
+            return;
+        }
+        String fullName = owner + "/" + repository;
+        Map<String, Set<String>> branches = unresolved.get(fullName);
+        if (branches == null) {
+            branches = new LinkedHashMap<>();
+            unresolved.put(fullName, branches);
+        }
+        Set<String> shortHashes = branches.get(branchName);
+        if (shortHashes == null) {
+            shortHashes = new HashSet<>();
+            branches.put(branchName, shortHashes);
+        }
+        shortHashes.add(shortHash);
+    }
+
+    /**
+     * Expands the abbreviated hashes of branches of the same repository.
+     *
+     * @param fullName    the full name of the repository.
+     * @param branchNames the names of the branches, at most {@link #MAX_BRANCHES_PER_QUERY}.
+     * @param shortHashes the abbreviated hashes to expand, by branch.
+     * @param cache       the cache to expand the hashes into.
+     * @throws IOException          if the branches could not be fetched.
+     * @throws InterruptedException if interrupted.
+     */
+    private void expandHashes(@NonNull String fullName, @NonNull List<String> branchNames,
+                              @NonNull Map<String, Set<String>> shortHashes, @NonNull ShortHashCache cache)
+            throws IOException, InterruptedException {
+        StringBuilder query = new StringBuilder();
+        for (String branchName : branchNames) {
+            if (query.length() > 0) {
+                query.append(" OR ");
+            }
+            query.append("name=\"").append(branchName.replace("\\", "\\\\").replace("\"", "\\\""))
+                    .append('"');
+        }
+        String url = V2_API_BASE_URL + fullName + "/refs/branches?pagelen=" + branchNames.size()
+                + "&fields=" + pageProjection(BRANCH_FIELDS) + "&q=" + URLEncoder.encode(query.toString(), "UTF-8");
+        BitbucketCloudBranchRefs branches = getRequest(url, BitbucketCloudBranchRefs.class);
+        int slash = fullName.indexOf('/');
+        for (BitbucketCloudBranchRef branch : Util.fixNull(branches.getValues())) {
+            Set<String> branchHashes = shortHashes.get(branch.getName());
+            if (branchHashes == null) {
+                continue;
+            }
+            for (String shortHash : branchHashes) {
+                // a branch that moved since the pull request was listed does not expand its hash
+                cache.put(BitbucketCloudEndpoint.SERVER_URL, fullName.substring(0, slash),
+                        fullName.substring(slash + 1), shortHash, branch.getRawNode());
+            }
+        }
+    }
+
+    @CheckForNull
+    private static String destinationHash(@NonNull BitbucketPullRequest pull) {
+        BitbucketPullRequestDestination destination = pull.getDestination();
+        BitbucketCommit commit = destination == null ? null : destination.getCommit();
+        return commit == null ? null : Util.fixEmpty(commit.getHash());
+    }
+
+    @CheckForNull
+    private static String destinationBranchName(@NonNull BitbucketPullRequest pull) {
+        BitbucketPullRequestDestination destination = pull.getDestination();
+        BitbucketBranch branch = destination == null ? null : destination.getBranch();
+        return branch == null ? null : Util.fixEmpty(branch.getName());
+    }
+
+    @CheckForNull
+    private static String sourceHash(@NonNull BitbucketPullRequest pull) {
+        BitbucketPullRequestSource source = pull.getSource();
+        BitbucketCommit commit = source == null ? null : source.getCommit();
+        return commit == null ? null : Util.fixEmpty(commit.getHash());
+    }
+
+    @CheckForNull
+    private static String sourceBranchName(@NonNull BitbucketPullRequest pull) {
+        BitbucketPullRequestSource source = pull.getSource();
+        BitbucketBranch branch = source == null ? null : source.getBranch();
+        return branch == null ? null : Util.fixEmpty(branch.getName());
+    }
+
+    /**
+     * Returns the owner of the source repository of a pull request, which is this repository unless from a fork.
+     */
+    @NonNull
+    private String sourceOwner(@NonNull BitbucketPullRequest pull) {
+        BitbucketPullRequestSource source = pull.getSource();
+        BitbucketRepository repository = source == null ? null : source.getRepository();
+        return repository == null || repository.getOwnerName() == null ? owner : repository.getOwnerName();
+    }
+
+    /**
+     * Returns the name of the source repository of a pull request, which is this repository unless from a fork.
+     */
+    @NonNull
+    private String sourceRepositoryName(@NonNull BitbucketPullRequest pull) {
+        BitbucketPullRequestSource source = pull.getSource();
+        BitbucketRepository repository = source == null ? null : source.getRepository();
+        return repository == null || repository.getRepositoryName() == null
+                ? repositoryName : repository.getRepositoryName();
     }
 
     /**
@@ -389,27 +736,11 @@ public class BitbucketCloudApiClient implements BitbucketApi {
     @NonNull
     @Override
     public List<BitbucketRepositoryHook> getWebHooks() throws IOException, InterruptedException {
-        String urlTemplate = V2_API_BASE_URL + this.owner + "/" + this.repositoryName + "/hooks?page=%d&pagelen=50";
-        String url = urlTemplate;
-        try {
-            List<BitbucketRepositoryHook> repositoryHooks = new ArrayList<BitbucketRepositoryHook>();
-            int pageNumber = 1;
-            String response = getRequest(url = String.format(urlTemplate, pageNumber));
-            BitbucketRepositoryHooks page = parsePaginatedRepositoryHooks(response);
-            repositoryHooks.addAll(page.getValues());
-            while (page.getNext() != null && pageNumber < 100) {
-                if (Thread.interrupted()) {
-                    throw new InterruptedException();
-                }
-                pageNumber++;
-                response = getRequest(url = String.format(urlTemplate, pageNumber));
-                page = parsePaginatedRepositoryHooks(response);
-                repositoryHooks.addAll(page.getValues());
-            }
-            return repositoryHooks;
-        } catch (IOException e) {
-            throw new IOException("I/O error when parsing response from URL: " + url, e);
-        }
+        return new CloudPager<BitbucketRepositoryHook>(
+                V2_API_BASE_URL + this.owner + "/" + this.repositoryName + "/hooks?page=%d&pagelen=%d&fields="
+                        + pageProjection(HOOK_FIELDS),
+                BitbucketRepositoryHooks.class
+        ).toList();
     }
 
     /**
@@ -431,13 +762,6 @@ public class BitbucketCloudApiClient implements BitbucketApi {
         return getRepository().isPrivate();
     }
 
-    private BitbucketRepositoryHooks parsePaginatedRepositoryHooks(String response) throws IOException {
-        ObjectMapper mapper = new ObjectMapper();
-        BitbucketRepositoryHooks parsedResponse;
-        parsedResponse = mapper.readValue(response, BitbucketRepositoryHooks.class);
-        return parsedResponse;
-    }
-
     private String asJson(BitbucketWebHook hook) throws IOException {
         ObjectMapper mapper = new ObjectMapper();
         return mapper.writeValueAsString(hook);
@@ -450,13 +774,9 @@ public class BitbucketCloudApiClient implements BitbucketApi {
     @CheckForNull
     public BitbucketTeam getTeam() throws IOException, InterruptedException {
         try {
-            String response = getRequest(V2_TEAMS_API_BASE_URL + owner);
-            return parse(response, BitbucketCloudTeam.class);
+            return getCoalescedRequest(V2_TEAMS_API_BASE_URL + owner, BitbucketCloudTeam.class);
         } catch (FileNotFoundException e) {
             return null;
-        } catch (IOException e) {
-            throw new IOException("I/O error when parsing response from URL: " + V2_TEAMS_API_BASE_URL + owner, e);
-
         }
     }
 
@@ -468,34 +788,25 @@ public class BitbucketCloudApiClient implements BitbucketApi {
     @Override
     public List<BitbucketCloudRepository> getRepositories(@CheckForNull UserRoleInRepository role)
             throws InterruptedException, IOException {
+        return iterateRepositories(role).toList();
+    }
+
+    /**
+     * {@inheritDoc}
+     * The role parameter only makes sense when the request is authenticated, so
+     * if there is no auth information ({@link #credentials}) the role will be omited.
+     */
+    @NonNull
+    @Override
+    public PagedIterator<BitbucketCloudRepository> iterateRepositories(@CheckForNull UserRoleInRepository role) {
         String urlTemplate;
         if (role != null && getLogin() != null) {
-            urlTemplate = V2_API_BASE_URL + owner + "?role=" + role.getId() + "&page=%s&pagelen=50";
+            urlTemplate = V2_API_BASE_URL + owner + "?role=" + role.getId() + "&page=%d&pagelen=%d";
         } else {
-            urlTemplate = V2_API_BASE_URL + owner + "?page=%s&pagelen=50";
-        }
-        String url;
-        List<BitbucketCloudRepository> repositories = new ArrayList<BitbucketCloudRepository>();
-        Integer pageNumber = 1;
-        String response = getRequest(url = String.format(urlTemplate, pageNumber.toString()));
-        PaginatedBitbucketRepository page;
-        try {
-            page = parse(response, PaginatedBitbucketRepository.class);
-            repositories.addAll(page.getValues());
-        } catch (IOException e) {
-            throw new IOException("I/O error when parsing response from URL: " + url, e);
-        }
-        while (page.getNext() != null && pageNumber < MAX_PAGES) {
-                pageNumber++;
-                response = getRequest(url = String.format(urlTemplate, pageNumber.toString()));
-            try {
-                page = parse(response, PaginatedBitbucketRepository.class);
-                repositories.addAll(page.getValues());
-            } catch (IOException e) {
-                throw new IOException("I/O error when parsing response from URL: " + url, e);
-            }
+            urlTemplate = V2_API_BASE_URL + owner + "?page=%d&pagelen=%d";
         }
-        return repositories;
+        urlTemplate += "&fields=" + pageProjection(REPOSITORY_FIELDS);
+        return new CloudPager<BitbucketCloudRepository>(urlTemplate, PaginatedBitbucketRepository.class);
     }
 
     /** {@inheritDoc} */
@@ -507,9 +818,10 @@ public class BitbucketCloudApiClient implements BitbucketApi {
 
     private synchronized HttpClient getHttpClient() {
         if (this.client == null) {
-            HttpClient client = new HttpClient(connectionManager);
-            client.getParams().setConnectionManagerTimeout(10 * 1000);
-            client.getParams().setSoTimeout(60 * 1000);
+            HttpClient client = new HttpClient(ConnectionPool.get(BitbucketCloudEndpoint.SERVER_URL,
+                    MAX_CONNECTIONS, CONNECTION_TIMEOUT, READ_TIMEOUT, IDLE_TIMEOUT));
+            client.getParams().setConnectionManagerTimeout(CONNECTION_TIMEOUT * 1000);
+            client.getParams().setSoTimeout(READ_TIMEOUT * 1000);
 
             if (credentials != null) {
                 client.getState().setCredentials(AuthScope.ANY, credentials);
@@ -586,45 +898,210 @@ public class BitbucketCloudApiClient implements BitbucketApi {
         }
     }
 
-    private String getRequest(String path) throws IOException, InterruptedException {
-        HttpClient client = getHttpClient();
-        GetMethod httpget = new GetMethod(path);
+    /**
+     * Executes a method once the {@link RateLimitScheduler} of the credential and the {@link EndpointGuard} of
+     * Bitbucket Cloud allow it, retrying it while it is rate limited. The request stays in flight for the
+     * {@link EndpointGuard} until the returned permit is exited, which the caller does once the response has been
+     * read and the connection of the method released.
+     *
+     * @param client the client.
+     * @param method the method.
+     * @return the {@link EndpointGuard} permit of the request.
+     * @throws IOException          if there was a network communications error, the rate limit wait is too long or
+     *                              the request was rejected by the endpoint guard.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    private EndpointGuard.Permit executeRateLimited(HttpClient client, HttpMethod method)
+            throws IOException, InterruptedException {
+        RateLimitScheduler scheduler = RateLimitScheduler.get(BitbucketCloudEndpoint.SERVER_URL, getLogin(),
+                requestRate);
+        EndpointGuard guard = EndpointGuard.get(BitbucketCloudEndpoint.SERVER_URL, maxConcurrentRequests,
+                queueTimeout, failureThreshold, recoveryDelay);
+        HttpCompression.acceptCompressed(method);
+        for (int attempt = 0; ; attempt++) {
+            scheduler.acquire();
+            EndpointGuard.Permit permit = guard.enter();
+            boolean held = false;
+            try {
+                executeMethod(client, method);
+                permit.completed(method.getStatusCode());
+                if (!scheduler.onResponse(method, attempt)) {
+                    held = true;
+                    return permit;
+                }
+                // discard the rate limited response so that the connection can be reused
+                getResponseContent(method, permit);
+            } finally {
+                if (!held) {
+                    permit.exit();
+                }
+            }
+        }
+    }
+
+    /**
+     * Performs a GET request and decodes the response straight from the response stream.
+     *
+     * @param path the URL.
+     * @param type the type to decode.
+     * @param <T>  the type to decode.
+     * @return the decoded response.
+     * @throws IOException          if there was a network communications error.
+     * @throws InterruptedException if interrupted while waiting on remote communications.
+     */
+    private <T> T getRequest(String path, Class<T> type) throws IOException, InterruptedException {
+        InputStream body = openRequest(path);
+        try (InputStream is = body) {
+            return JsonResponseReader.read(is, type);
+        } catch (IOException e) {
+            throw new IOException("I/O error when parsing response from URL: " + path, e);
+        }
+    }
+
+    private <T> T getRequest(String path, TypeReference<T> type) throws IOException, InterruptedException {
+        InputStream body = openRequest(path);
+        try (InputStream is = body) {
+            return JsonResponseReader.read(is, type);
+        } catch (IOException e) {
+            throw new IOException("I/O error when parsing response from URL: " + path, e);
+        }
+    }
+
+    /**
+     * Performs a GET request for a single resource, sharing the response with the concurrent requests for the same
+     * resource through the {@link RequestCoalescer}. Each caller decodes its own copy of the response body.
+     *
+     * @param path the URL.
+     * @param type the type to decode.
+     * @param <T>  the type to decode.
+     * @return the decoded response.
+     * @throws IOException          if there was a network communications error.
+     * @throws InterruptedException if interrupted while waiting on remote communications.
+     */
+    private <T> T getCoalescedRequest(String path, Class<T> type) throws IOException, InterruptedException {
+        byte[] body = fetchCoalesced(path);
         try {
-            executeMethod(client, httpget);
-            String response = getResponseContent(httpget, httpget.getResponseContentLength());
-            while (httpget.getStatusCode() == API_RATE_LIMIT_CODE) {
-                Thread.sleep(5000);
-                executeMethod(client, httpget);
-                response = getResponseContent(httpget, httpget.getResponseContentLength());
+            return JsonResponseReader.read(new ByteArrayInputStream(body), type);
+        } catch (IOException e) {
+            throw new IOException("I/O error when parsing response from URL: " + path, e);
+        }
+    }
+
+    private <T> T getCoalescedRequest(String path, TypeReference<T> type) throws IOException, InterruptedException {
+        byte[] body = fetchCoalesced(path);
+        try {
+            return JsonResponseReader.read(new ByteArrayInputStream(body), type);
+        } catch (IOException e) {
+            throw new IOException("I/O error when parsing response from URL: " + path, e);
+        }
+    }
+
+    private byte[] fetchCoalesced(final String path) throws IOException, InterruptedException {
+        return RequestCoalescer.get().fetch(path, getLogin(), new RequestCoalescer.Fetch() {
+            @NonNull
+            @Override
+            public byte[] fetch() throws IOException, InterruptedException {
+                InputStream body = openRequest(path);
+                try (InputStream is = body) {
+                    return JsonResponseReader.toByteArray(is);
+                } catch (IOException e) {
+                    throw new IOException("I/O error when parsing response from URL: " + path, e);
+                }
             }
+        });
+    }
+
+    /**
+     * Performs a GET request, conditional when the response is in the {@link ConditionalGetCache}, and returns the
+     * response body, from the cache when the resource has not been modified.
+     * The caller is responsible for closing the returned stream, which releases the connection.
+     *
+     * @param path the URL.
+     * @return the response body.
+     * @throws IOException          if there was a network communications error or the request failed.
+     * @throws InterruptedException if interrupted while waiting on remote communications.
+     */
+    private InputStream openRequest(String path) throws IOException, InterruptedException {
+        ConditionalGetCache cache = ConditionalGetCache.get();
+        ConditionalGetCache.Entry cached = cache.lookup(path, getLogin());
+        GetMethod httpget = new GetMethod(path);
+        EndpointGuard.Permit permit = executeGet(httpget, path, cached);
+        return cache.open(path, getLogin(), cached, httpget, permit);
+    }
+
+    /**
+     * Executes a GET request, leaving the response body of a successful request unread.
+     * The caller is responsible for releasing the connection of the method and then exiting the returned permit.
+     *
+     * @param httpget the method to execute, which ends with a {@link HttpStatus#SC_OK} status, or
+     *                {@link HttpStatus#SC_NOT_MODIFIED} for a conditional request.
+     * @param path    the URL.
+     * @param cached  the cached response whose validators to send or {@code null} for an unconditional request.
+     * @return the {@link EndpointGuard} permit of the request.
+     * @throws IOException          if there was a network communications error or the request failed.
+     * @throws InterruptedException if interrupted while waiting on remote communications.
+     */
+    private EndpointGuard.Permit executeGet(GetMethod httpget, String path,
+                                            @CheckForNull ConditionalGetCache.Entry cached)
+            throws IOException, InterruptedException {
+        HttpClient client = getHttpClient();
+        if (cached != null) {
+            cached.addValidators(httpget);
+        }
+        EndpointGuard.Permit permit = null;
+        boolean success = false;
+        try {
+            permit = executeRateLimited(client, httpget);
             if (httpget.getStatusCode() == HttpStatus.SC_NOT_FOUND) {
                 throw new FileNotFoundException("URL: " + path);
             }
+            if (cached != null && httpget.getStatusCode() == HttpStatus.SC_NOT_MODIFIED) {
+                success = true;
+                return permit;
+            }
             if (httpget.getStatusCode() != HttpStatus.SC_OK) {
+                String response = getResponseContent(httpget, permit);
                 throw new BitbucketRequestException(httpget.getStatusCode(),
                         "HTTP request error. Status: " + httpget.getStatusCode() + ": " + httpget.getStatusText()
                                 + ".\n" + response);
             }
-            return response;
+            success = true;
+            return permit;
         } catch (BitbucketRequestException | FileNotFoundException e) {
             throw e;
         } catch (IOException e) {
             throw new IOException("Communication error for url: " + path, e);
         } finally {
-            httpget.releaseConnection();
+            if (!success) {
+                httpget.releaseConnection();
+                if (permit != null) {
+                    permit.exit();
+                }
+            }
         }
     }
 
-    private int getRequestStatus(String path) throws IOException {
+    private int getRequestStatus(HttpMethod method) throws IOException, InterruptedException {
         HttpClient client = getHttpClient();
-        GetMethod httpget = new GetMethod(path);
+        EndpointGuard.Permit permit = null;
         try {
-            executeMethod(client, httpget);
-            return httpget.getStatusCode();
+            permit = executeRateLimited(client, method);
+            return method.getStatusCode();
         } catch (IOException e) {
-            throw new IOException("Communication error for url: " + path, e);
+            throw new IOException("Communication error for url: " + getMethodUri(method), e);
         } finally {
-            httpget.releaseConnection();
+            method.releaseConnection();
+            if (permit != null) {
+                permit.exit();
+            }
+        }
+    }
+
+    private static String getMethodUri(HttpMethod method) {
+        try {
+            return method.getURI().toString();
+        } catch (URIException e) {
+            return method.getPath();
         }
     }
 
@@ -639,12 +1116,9 @@ public class BitbucketCloudApiClient implements BitbucketApi {
     private void deleteRequest(String path) throws IOException, InterruptedException {
         HttpClient client = getHttpClient();
         DeleteMethod httppost = new DeleteMethod(path);
+        EndpointGuard.Permit permit = null;
         try {
-            executeMethod(client, httppost);
-            while (httppost.getStatusCode() == API_RATE_LIMIT_CODE) {
-                Thread.sleep(5000);
-                executeMethod(client, httppost);
-            }
+            permit = executeRateLimited(client, httppost);
             if (httppost.getStatusCode() == HttpStatus.SC_NOT_FOUND) {
                 throw new FileNotFoundException("URL: " + path);
             }
@@ -657,22 +1131,22 @@ public class BitbucketCloudApiClient implements BitbucketApi {
             throw new IOException("Communication error for url: " + path, e);
         } finally {
             httppost.releaseConnection();
+            if (permit != null) {
+                permit.exit();
+            }
         }
     }
 
     private String postRequest(PostMethod httppost) throws IOException, InterruptedException {
         HttpClient client = getHttpClient();
+        EndpointGuard.Permit permit = null;
         try {
-            executeMethod(client, httppost);
-            while (httppost.getStatusCode() == API_RATE_LIMIT_CODE) {
-                Thread.sleep(5000);
-                executeMethod(client, httppost);
-            }
+            permit = executeRateLimited(client, httppost);
             if (httppost.getStatusCode() == HttpStatus.SC_NO_CONTENT) {
                 // 204, no content
                 return "";
             }
-            String response = getResponseContent(httppost, httppost.getResponseContentLength());
+            String response = getResponseContent(httppost, permit);
             if (httppost.getStatusCode() != HttpStatus.SC_OK && httppost.getStatusCode() != HttpStatus.SC_CREATED) {
                 throw new BitbucketRequestException(httppost.getStatusCode(), "HTTP request error. Status: " + httppost.getStatusCode() + ": " + httppost.getStatusText() + ".\n" + response);
             }
@@ -687,10 +1161,25 @@ public class BitbucketCloudApiClient implements BitbucketApi {
             }
         } finally {
             httppost.releaseConnection();
+            if (permit != null) {
+                permit.exit();
+            }
         }
 
     }
 
+    /**
+     * Reads the response body, recording a failure to read it on the {@link EndpointGuard} permit of the request.
+     */
+    private String getResponseContent(HttpMethod method, EndpointGuard.Permit permit) throws IOException {
+        try {
+            return getResponseContent(method, method.getResponseContentLength());
+        } catch (IOException e) {
+            permit.failed();
+            throw e;
+        }
+    }
+
     private String getResponseContent(HttpMethod httppost, long len) throws IOException {
         String response;
         if (len == 0) {
@@ -702,8 +1191,10 @@ public class BitbucketCloudApiClient implements BitbucketApi {
             } else {
                 buf = new ByteArrayOutputStream();
             }
-            try (InputStream is = httppost.getResponseBodyAsStream()) {
-                IOUtils.copy(is, buf);
+            try (InputStream is = HttpCompression.getResponseBody(httppost)) {
+                if (is != null) {
+                    IOUtils.copy(is, buf);
+                }
             }
             response = new String(buf.toByteArray(), StandardCharsets.UTF_8);
         }
@@ -727,24 +1218,135 @@ public class BitbucketCloudApiClient implements BitbucketApi {
         return postRequest(httppost);
     }
 
-    private List<BitbucketCloudBranch> parseBranchesJson(String response) throws IOException {
+    /**
+     * Returns the page length to request from a paginated resource, which is the configured page size unless the
+     * resource has been seen to accept only smaller pages.
+     *
+     * @param type the type of page.
+     * @return the page length to request.
+     */
+    private int getPageLength(Class<?> type) {
+        Integer cap = pageLengthCaps.get(pageLengthKey(type));
+        return cap == null ? pageSize : Math.min(pageSize, cap);
+    }
+
+    private void capPageLength(Class<?> type, int pageLength) {
+        Integer previous = pageLengthCaps.put(pageLengthKey(type), pageLength);
+        if (previous == null || previous != pageLength) {
+            LOGGER.log(Level.FINE, "Bitbucket Cloud caps pages of {0} to {1} items",
+                    new Object[]{type.getSimpleName(), pageLength});
+        }
+    }
+
+    private String pageLengthKey(Class<?> type) {
+        String username = getLogin();
+        return (username == null ? "" : username + "@") + BitbucketCloudEndpoint.SERVER_URL + "#" + type.getName();
+    }
+
+    /**
+     * Forgets the page lengths the paginated resources have been seen to accept, to be called when the endpoint
+     * configuration changes.
+     */
+    @Restricted(NoExternalUse.class)
+    public static void clearPageLengthCaps() {
+        pageLengthCaps.clear();
+    }
+
+    /**
+     * Prefixes every field of a partial response projection.
+     *
+     * @param prefix the prefix, including the trailing dot.
+     * @param fields the comma separated fields.
+     * @return the comma separated prefixed fields.
+     */
+    private static String projection(String prefix, String fields) {
+        StringBuilder result = new StringBuilder();
+        for (String field : fields.split(",")) {
+            if (result.length() > 0) {
+                result.append(',');
+            }
+            result.append(prefix).append(field);
+        }
+        return result.toString();
+    }
+
+    /**
+     * Returns the partial response projection of a page of values, keeping the pagination properties.
+     *
+     * @param fields the projection of each value.
+     * @return the projection of the page.
+     */
+    static String pageProjection(String fields) {
+        return projection("values.", fields) + ",next,page,pagelen";
+    }
+
+    /**
+     * Iterates a Bitbucket Cloud paginated resource, requesting the configured page size. If the resource rejects
+     * the page length or applies a smaller one, the smaller page length is used from then on.
+     *
+     * @param <V> the type of object iterated.
+     */
+    private class CloudPager<V> extends PagedIterator<V> {
+        /**
+         * The URL of the resource, with the page number and page length as parameters.
+         */
+        private final String urlTemplate;
+        private final Class<? extends BitbucketCloudPage<V>> type;
+        private int pageLength;
+        private boolean hasMore = true;
+
+        CloudPager(String urlTemplate, Class<? extends BitbucketCloudPage<V>> type) {
+            this.urlTemplate = urlTemplate;
+            this.type = type;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected List<V> nextPage(int pageIndex) throws IOException, InterruptedException {
+            if (!hasMore) {
+                return null;
+            }
+            BitbucketCloudPage<V> page;
+            if (pageIndex == 0) {
+                pageLength = getPageLength(type);
+                try {
+                    page = getRequest(String.format(urlTemplate, 1, pageLength), type);
+                } catch (BitbucketRequestException e) {
+                    if (e.getHttpCode() != HttpStatus.SC_BAD_REQUEST
+                            || pageLength <= BitbucketCloudEndpoint.DEFAULT_PAGE_SIZE) {
+                        throw e;
+                    }
+                    // the resource does not accept pages this large
+                    pageLength = BitbucketCloudEndpoint.DEFAULT_PAGE_SIZE;
+                    capPageLength(type, pageLength);
+                    page = getRequest(String.format(urlTemplate, 1, pageLength), type);
+                }
+                Integer applied = page.getPagelen();
+                if (applied != null && applied > 0 && applied < pageLength) {
+                    pageLength = applied;
+                    capPageLength(type, pageLength);
+                }
+            } else {
+                page = getRequest(String.format(urlTemplate, pageIndex + 1, pageLength), type);
+            }
+            hasMore = page.getNext() != null;
+            return page.getValues();
+        }
+    }
+
+    private List<BitbucketCloudBranch> parseBranchesJson(Map<String, BitbucketCloudBranch> response) {
         List<BitbucketCloudBranch> branches = new ArrayList<BitbucketCloudBranch>();
-        ObjectMapper mapper = new ObjectMapper();
-        JSONObject obj = JSONObject.fromObject(response);
-        for (Object name : obj.keySet()) {
-            BitbucketCloudBranch b = mapper.readValue(obj.getJSONObject((String) name).toString(), BitbucketCloudBranch.class);
+        for (Map.Entry<String, BitbucketCloudBranch> entry : response.entrySet()) {
+            BitbucketCloudBranch b = entry.getValue();
             if (b.getName() == null) {
                 // The branch name is null sometimes in API JSON response (unknown reason)
-                b.setName((String) name);
+                b.setName(entry.getKey());
             }
             branches.add(b);
         }
         return branches;
     }
 
-    private <T> T parse(String response, Class<T> clazz) throws IOException {
-        ObjectMapper mapper = new ObjectMapper();
-        return mapper.readValue(response, clazz);
-    }
-
 }
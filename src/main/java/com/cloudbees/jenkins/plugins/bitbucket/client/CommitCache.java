@@ -0,0 +1,195 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.client;
+
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketCommit;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.regex.Pattern;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * A process wide cache of the commits resolved from Bitbucket, keyed by endpoint, repository and full commit hash.
+ * As a commit never changes once created the entries never need invalidation, and they are persisted under the
+ * Jenkins home directory so that the commits do not need to be resolved again after a restart.
+ * <p>
+ * Only full hashes are cached, since a short hash or a branch name may resolve to another commit later on.
+ *
+ * @since 2.2.4
+ */
+@Restricted(NoExternalUse.class)
+public class CommitCache extends PersistentCache<BitbucketCommit> {
+
+    /**
+     * The maximum estimated memory (in bytes) of the cached commits.
+     */
+    private static final long MAX_SIZE =
+            Math.max(0L, Long.getLong(CommitCache.class.getName() + ".maxSize", 8L * 1024 * 1024));
+
+    private static final Pattern FULL_HASH = Pattern.compile("[0-9a-fA-F]{40}");
+
+    private static volatile CommitCache instance;
+
+    CommitCache(long maxSize, @CheckForNull File file) {
+        super(maxSize, file);
+    }
+
+    /**
+     * Returns the process wide cache.
+     *
+     * @return the process wide cache.
+     */
+    @NonNull
+    public static CommitCache get() {
+        CommitCache cache = instance;
+        if (cache == null) {
+            synchronized (CommitCache.class) {
+                cache = instance;
+                if (cache == null) {
+                    instance = cache = new CommitCache(MAX_SIZE, defaultFile(CommitCache.class, "commits.cache"));
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Returns a cached commit.
+     *
+     * @param endpointUrl the URL of the endpoint.
+     * @param owner       the owner of the repository.
+     * @param repository  the name of the repository.
+     * @param hash        the hash of the commit.
+     * @return the commit or {@code null} if not cached or if the hash is not a full hash.
+     */
+    @CheckForNull
+    public BitbucketCommit lookup(@NonNull String endpointUrl, @NonNull String owner, @NonNull String repository,
+                                  @NonNull String hash) {
+        return isFullHash(hash) ? lookup(key(endpointUrl, owner, repository, hash)) : null;
+    }
+
+    /**
+     * Caches a resolved commit, unless the hash it was resolved from is not a full hash.
+     *
+     * @param endpointUrl the URL of the endpoint.
+     * @param owner       the owner of the repository.
+     * @param repository  the name of the repository.
+     * @param hash        the hash the commit was resolved from.
+     * @param commit      the commit.
+     */
+    public void put(@NonNull String endpointUrl, @NonNull String owner, @NonNull String repository,
+                    @NonNull String hash, @NonNull BitbucketCommit commit) {
+        if (isFullHash(hash)) {
+            put(key(endpointUrl, owner, repository, hash), new Commit(commit.getMessage(), commit.getDate(),
+                    commit.getHash() == null ? hash : commit.getHash(), commit.getDateMillis()));
+        }
+    }
+
+    /**
+     * Tells whether a hash is a full commit hash, which always resolves to the same commit.
+     *
+     * @param hash the hash.
+     * @return {@code true} if the hash is a full commit hash.
+     */
+    public static boolean isFullHash(@CheckForNull String hash) {
+        return hash != null && FULL_HASH.matcher(hash).matches();
+    }
+
+    private static String key(String endpointUrl, String owner, String repository, String hash) {
+        return endpointUrl + "/" + owner.toLowerCase(Locale.ENGLISH) + "/" + repository.toLowerCase(Locale.ENGLISH)
+                + "#" + hash.toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected long sizeOf(@NonNull String key, @NonNull BitbucketCommit value) {
+        return ENTRY_OVERHEAD + sizeOf(key) + 32 + sizeOf(value.getMessage()) + sizeOf(value.getDate())
+                + sizeOf(value.getHash());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void write(@NonNull DataOutput out, @NonNull BitbucketCommit value) throws IOException {
+        writeString(out, value.getMessage());
+        writeString(out, value.getDate());
+        writeString(out, value.getHash());
+        out.writeLong(value.getDateMillis());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @NonNull
+    @Override
+    protected BitbucketCommit read(@NonNull DataInput in) throws IOException {
+        return new Commit(readString(in), readString(in), readString(in), in.readLong());
+    }
+
+    /**
+     * An immutable copy of a resolved commit.
+     */
+    private static final class Commit implements BitbucketCommit {
+        private final String message;
+        private final String date;
+        private final String hash;
+        private final long dateMillis;
+
+        Commit(String message, String date, String hash, long dateMillis) {
+            this.message = message;
+            this.date = date;
+            this.hash = hash;
+            this.dateMillis = dateMillis;
+        }
+
+        @Override
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String getDate() {
+            return date;
+        }
+
+        @Override
+        public String getHash() {
+            return hash;
+        }
+
+        @Override
+        public long getDateMillis() {
+            return dateMillis;
+        }
+    }
+}
@@ -0,0 +1,418 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.client;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.HttpStatus;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * A cache of the bodies of the Bitbucket REST API responses that carry an {@code ETag} or {@code Last-Modified}
+ * validator, so that the same resource can be requested again conditionally and a {@code 304 Not Modified} response
+ * served from the cache.
+ * <p>
+ * The entries are keyed by URL and credential, as the content of a resource depends on who is asking for it. The
+ * cache is bounded by the total size of the cached bodies and evicts the least recently used entries first, bodies
+ * larger than the maximum entry size are never cached.
+ *
+ * @since 2.2.4
+ */
+@Restricted(NoExternalUse.class)
+public class ConditionalGetCache {
+
+    /**
+     * The maximum total number of bytes of the cached bodies.
+     */
+    private static final long MAX_SIZE =
+            Math.max(0L, Long.getLong(ConditionalGetCache.class.getName() + ".maxSize", 32L * 1024 * 1024));
+
+    /**
+     * The maximum number of bytes of a single cached body.
+     */
+    private static final int MAX_ENTRY_SIZE =
+            Math.max(0, Integer.getInteger(ConditionalGetCache.class.getName() + ".maxEntrySize", 1024 * 1024));
+
+    private static final ConditionalGetCache INSTANCE = new ConditionalGetCache(MAX_SIZE, MAX_ENTRY_SIZE);
+
+    private final long maxSize;
+    private final int maxEntrySize;
+
+    /**
+     * The entries, in access order. Guarded by itself.
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The total number of bytes of the cached bodies. Guarded by {@link #entries}.
+     */
+    private long size;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    ConditionalGetCache(long maxSize, int maxEntrySize) {
+        this.maxSize = maxSize;
+        this.maxEntrySize = (int) Math.min(maxEntrySize, maxSize);
+    }
+
+    /**
+     * Returns the process wide cache.
+     *
+     * @return the process wide cache.
+     */
+    @NonNull
+    public static ConditionalGetCache get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Looks up the cached response of a resource.
+     *
+     * @param url      the URL of the resource.
+     * @param username the user name of the credential or {@code null} for anonymous requests.
+     * @return the cached response or {@code null} if not cached.
+     */
+    @CheckForNull
+    public Entry lookup(@NonNull String url, @CheckForNull String username) {
+        synchronized (entries) {
+            return entries.get(key(url, username));
+        }
+    }
+
+    /**
+     * Returns the body of a response to a request made with the validators of {@code cached}, from the cache if the
+     * response is {@code 304 Not Modified}. Otherwise the returned stream reads the response body and caches it
+     * once fully read, if the response carries a validator. Closing the returned stream releases the connection of
+     * the method and then exits the permit of the request.
+     *
+     * @param url      the URL of the resource.
+     * @param username the user name of the credential or {@code null} for anonymous requests.
+     * @param cached   the cached response whose validators were sent, or {@code null} if none were sent.
+     * @param method   the executed method, with either a {@link HttpStatus#SC_OK} or a
+     *                 {@link HttpStatus#SC_NOT_MODIFIED} status.
+     * @param permit   the {@link EndpointGuard} permit of the request or {@code null} if not guarded, a failure to
+     *                 read the response body is recorded on it.
+     * @return the response body.
+     * @throws IOException if the response body could not be read.
+     */
+    @NonNull
+    public InputStream open(@NonNull String url, @CheckForNull String username, @CheckForNull Entry cached,
+                            @NonNull HttpMethod method, @CheckForNull EndpointGuard.Permit permit)
+            throws IOException {
+        if (cached != null && method.getStatusCode() == HttpStatus.SC_NOT_MODIFIED) {
+            release(method, permit);
+            hitCount.incrementAndGet();
+            return new ByteArrayInputStream(cached.body);
+        }
+        missCount.incrementAndGet();
+        InputStream body;
+        try {
+            body = HttpCompression.getResponseBody(method);
+        } catch (IOException e) {
+            if (permit != null) {
+                permit.failed();
+            }
+            release(method, permit);
+            throw e;
+        }
+        if (body == null) {
+            body = new ByteArrayInputStream(new byte[0]);
+        }
+        String etag = headerValue(method, "ETag");
+        String lastModified = headerValue(method, "Last-Modified");
+        if (maxEntrySize <= 0 || (etag == null && lastModified == null)) {
+            if (cached != null) {
+                remove(url, username, cached);
+            }
+            return new ResponseStream(body, method, permit, null);
+        }
+        return new ResponseStream(body, method, permit, new Entry(key(url, username), etag, lastModified, null));
+    }
+
+    private static void release(@NonNull HttpMethod method, @CheckForNull EndpointGuard.Permit permit) {
+        try {
+            method.releaseConnection();
+        } finally {
+            if (permit != null) {
+                permit.exit();
+            }
+        }
+    }
+
+    private void put(@NonNull Entry entry) {
+        synchronized (entries) {
+            Entry previous = entries.put(entry.key, entry);
+            if (previous != null) {
+                size -= previous.body.length;
+            }
+            size += entry.body.length;
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (size > maxSize && iterator.hasNext()) {
+                Entry eldest = iterator.next();
+                iterator.remove();
+                size -= eldest.body.length;
+                evictionCount.incrementAndGet();
+            }
+        }
+    }
+
+    private void remove(@NonNull String url, @CheckForNull String username, @NonNull Entry cached) {
+        synchronized (entries) {
+            String key = key(url, username);
+            if (entries.get(key) == cached) {
+                entries.remove(key);
+                size -= cached.body.length;
+            }
+        }
+    }
+
+    /**
+     * Removes all the entries.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            size = 0;
+        }
+    }
+
+    /**
+     * @return the number of responses served from the cache.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return the number of responses not served from the cache.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return the number of entries evicted to stay within the maximum size.
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * @return the number of cached entries.
+     */
+    public int getEntryCount() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * @return the total number of bytes of the cached bodies.
+     */
+    public long getSize() {
+        synchronized (entries) {
+            return size;
+        }
+    }
+
+    private static String key(@NonNull String url, @CheckForNull String username) {
+        return username == null ? url : username + "@" + url;
+    }
+
+    @CheckForNull
+    private static String headerValue(@NonNull HttpMethod method, @NonNull String name) {
+        Header header = method.getResponseHeader(name);
+        return header == null ? null : header.getValue();
+    }
+
+    /**
+     * A cached response.
+     */
+    public static final class Entry {
+        private final String key;
+        @CheckForNull
+        private final String etag;
+        @CheckForNull
+        private final String lastModified;
+        private final byte[] body;
+
+        Entry(String key, @CheckForNull String etag, @CheckForNull String lastModified, byte[] body) {
+            this.key = key;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.body = body;
+        }
+
+        /**
+         * Adds the validators of this response to a request, making it conditional.
+         *
+         * @param method the request.
+         */
+        public void addValidators(@NonNull HttpMethod method) {
+            if (etag != null) {
+                method.setRequestHeader("If-None-Match", etag);
+            }
+            if (lastModified != null) {
+                method.setRequestHeader("If-Modified-Since", lastModified);
+            }
+        }
+    }
+
+    /**
+     * The body of a response, copied into a new cache entry as it is read when the response is cacheable.
+     */
+    private class ResponseStream extends FilterInputStream {
+        private final HttpMethod method;
+        @CheckForNull
+        private final EndpointGuard.Permit permit;
+        @CheckForNull
+        private Entry pending;
+        @CheckForNull
+        private ByteArrayOutputStream copy;
+        private boolean closed;
+
+        ResponseStream(InputStream in, HttpMethod method, @CheckForNull EndpointGuard.Permit permit,
+                       @CheckForNull Entry pending) {
+            super(in);
+            this.method = method;
+            this.permit = permit;
+            this.pending = pending;
+            this.copy = pending == null ? null : new ByteArrayOutputStream();
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b;
+            try {
+                b = super.read();
+            } catch (IOException e) {
+                throw failed(e);
+            }
+            if (b == -1) {
+                complete();
+            } else {
+                copy(new byte[]{(byte) b}, 0, 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n;
+            try {
+                n = super.read(b, off, len);
+            } catch (IOException e) {
+                throw failed(e);
+            }
+            if (n == -1) {
+                complete();
+            } else {
+                copy(b, off, n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // a skipped body cannot be cached
+            copy = null;
+            try {
+                return super.skip(n);
+            } catch (IOException e) {
+                throw failed(e);
+            }
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                if (copy != null) {
+                    // the decoder may stop before the end of the body, read the rest of it to cache it
+                    byte[] buffer = new byte[8192];
+                    int n;
+                    while (copy != null && (n = in.read(buffer)) != -1) {
+                        copy(buffer, 0, n);
+                    }
+                    complete();
+                }
+                super.close();
+            } catch (IOException e) {
+                throw failed(e);
+            } finally {
+                release(method, permit);
+            }
+        }
+
+        /**
+         * Records a failure to read the response body on the permit of the request.
+         */
+        private IOException failed(IOException e) {
+            if (permit != null) {
+                permit.failed();
+            }
+            return e;
+        }
+
+        private void copy(byte[] b, int off, int len) {
+            if (copy != null) {
+                if (copy.size() + len > maxEntrySize) {
+                    copy = null;
+                } else {
+                    copy.write(b, off, len);
+                }
+            }
+        }
+
+        private void complete() {
+            if (copy != null && pending != null) {
+                put(new Entry(pending.key, pending.etag, pending.lastModified, copy.toByteArray()));
+            }
+            copy = null;
+            pending = null;
+        }
+    }
+}
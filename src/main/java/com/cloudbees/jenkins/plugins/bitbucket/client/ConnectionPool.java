@@ -0,0 +1,109 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.client;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import jenkins.util.Timer;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * A pool of keep-alive connections to a single Bitbucket endpoint, so that the endpoints do not compete for
+ * connections and the idle connections to each are evicted after its own idle timeout.
+ *
+ * @since 2.2.4
+ */
+@Restricted(NoExternalUse.class)
+public final class ConnectionPool {
+
+    /**
+     * How often (in seconds) the pooled connections are checked for idle eviction.
+     */
+    private static final long IDLE_EVICTION_INTERVAL = 30;
+
+    /**
+     * The pools, keyed by endpoint URL.
+     */
+    private static final ConcurrentMap<String, ConnectionPool> pools = new ConcurrentHashMap<>();
+
+    /**
+     * Guards the scheduling of the idle connection eviction task.
+     */
+    private static final AtomicBoolean idleEvictionScheduled = new AtomicBoolean();
+
+    private final MultiThreadedHttpConnectionManager manager = new MultiThreadedHttpConnectionManager();
+    private volatile long idleTimeoutMillis;
+
+    private ConnectionPool() {
+    }
+
+    /**
+     * Returns the connection manager of an endpoint, applying the current endpoint settings.
+     *
+     * @param endpointUrl       the URL of the endpoint.
+     * @param maxConnections    the maximum number of pooled connections.
+     * @param connectionTimeout the timeout (in seconds) when establishing a connection.
+     * @param readTimeout       the timeout (in seconds) when waiting for data.
+     * @param idleTimeout       the time (in seconds) after which idle connections are evicted.
+     * @return the connection manager.
+     */
+    @NonNull
+    public static MultiThreadedHttpConnectionManager get(@NonNull String endpointUrl, int maxConnections,
+                                                         int connectionTimeout, int readTimeout, int idleTimeout) {
+        ConnectionPool pool = pools.get(endpointUrl);
+        if (pool == null) {
+            ConnectionPool created = new ConnectionPool();
+            pool = pools.putIfAbsent(endpointUrl, created);
+            if (pool == null) {
+                pool = created;
+            }
+        }
+        pool.configure(maxConnections, connectionTimeout, readTimeout, idleTimeout);
+        if (idleEvictionScheduled.compareAndSet(false, true)) {
+            Timer.get().scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    for (ConnectionPool p : pools.values()) {
+                        p.manager.closeIdleConnections(p.idleTimeoutMillis);
+                    }
+                }
+            }, IDLE_EVICTION_INTERVAL, IDLE_EVICTION_INTERVAL, TimeUnit.SECONDS);
+        }
+        return pool.manager;
+    }
+
+    private void configure(int maxConnections, int connectionTimeout, int readTimeout, int idleTimeout) {
+        manager.getParams().setDefaultMaxConnectionsPerHost(maxConnections);
+        manager.getParams().setMaxTotalConnections(maxConnections);
+        manager.getParams().setConnectionTimeout(connectionTimeout * 1000);
+        manager.getParams().setSoTimeout(readTimeout * 1000);
+        manager.getParams().setStaleCheckingEnabled(true);
+        idleTimeoutMillis = TimeUnit.SECONDS.toMillis(idleTimeout);
+    }
+}
@@ -0,0 +1,325 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.client;
+
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketRequestException;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.httpclient.HttpStatus;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Isolates the API requests sent to a Bitbucket endpoint, so that a slow or failing endpoint cannot tie up the
+ * threads scanning the other endpoints.
+ * <p>
+ * The number of concurrent requests to the endpoint is limited (a bulkhead): a request that cannot start within the
+ * maximum wait is rejected. After a number of consecutive failed requests, i.e. requests that did not complete or
+ * were answered with a server error, the circuit opens and all the requests are rejected without being sent until
+ * the recovery delay has elapsed. A single probe request is then let through, the circuit closes again if it
+ * succeeds and stays open for another recovery delay otherwise.
+ * <p>
+ * Rejected requests fail with a {@link BitbucketRequestException} with a {@link HttpStatus#SC_SERVICE_UNAVAILABLE}
+ * status.
+ *
+ * @since 2.2.4
+ */
+@Restricted(NoExternalUse.class)
+public class EndpointGuard {
+
+    private static final Logger LOGGER = Logger.getLogger(EndpointGuard.class.getName());
+
+    /**
+     * The guards, keyed by endpoint URL.
+     */
+    private static final ConcurrentMap<String, EndpointGuard> guards = new ConcurrentHashMap<>();
+
+    /**
+     * The state of a circuit breaker.
+     */
+    public enum State {
+        /**
+         * Requests are sent.
+         */
+        CLOSED,
+        /**
+         * Requests are rejected until the recovery delay has elapsed.
+         */
+        OPEN,
+        /**
+         * A probe request is in flight, other requests are rejected.
+         */
+        HALF_OPEN
+    }
+
+    @NonNull
+    private final String endpointUrl;
+
+    private volatile int maxConcurrentRequests;
+    private volatile long maxWaitNanos;
+    private volatile int failureThreshold;
+    private volatile long recoveryDelayNanos;
+
+    /**
+     * The requests in flight. Guarded by {@code this}.
+     */
+    private int activeRequests;
+    /**
+     * The number of consecutive failed requests. Guarded by {@code this}.
+     */
+    private int consecutiveFailures;
+    /**
+     * Guarded by {@code this}.
+     */
+    @NonNull
+    private State state = State.CLOSED;
+    /**
+     * When the circuit was last opened. Guarded by {@code this}.
+     */
+    private long openedAt;
+
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+
+    EndpointGuard(@NonNull String endpointUrl) {
+        this.endpointUrl = endpointUrl;
+    }
+
+    /**
+     * Returns the guard of an endpoint, applying the current endpoint settings.
+     *
+     * @param endpointUrl           the URL of the endpoint.
+     * @param maxConcurrentRequests the maximum number of concurrent requests to the endpoint.
+     * @param maxWait               the time (in seconds) a request waits for one of the concurrent requests to
+     *                              complete.
+     * @param failureThreshold      the number of consecutive failed requests that opens the circuit.
+     * @param recoveryDelay         the time (in seconds) the circuit stays open before a probe request is sent.
+     * @return the guard.
+     */
+    @NonNull
+    public static EndpointGuard get(@NonNull String endpointUrl, int maxConcurrentRequests, int maxWait,
+                                    int failureThreshold, int recoveryDelay) {
+        EndpointGuard guard = guards.get(endpointUrl);
+        if (guard == null) {
+            EndpointGuard created = new EndpointGuard(endpointUrl);
+            guard = guards.putIfAbsent(endpointUrl, created);
+            if (guard == null) {
+                guard = created;
+            }
+        }
+        guard.configure(maxConcurrentRequests, maxWait, failureThreshold, recoveryDelay);
+        return guard;
+    }
+
+    /**
+     * Returns all the guards created so far, for monitoring.
+     *
+     * @return the guards.
+     */
+    @NonNull
+    public static List<EndpointGuard> all() {
+        return new ArrayList<>(guards.values());
+    }
+
+    void configure(int maxConcurrentRequests, int maxWait, int failureThreshold, int recoveryDelay) {
+        this.maxConcurrentRequests = Math.max(1, maxConcurrentRequests);
+        this.maxWaitNanos = TimeUnit.SECONDS.toNanos(Math.max(0, maxWait));
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.recoveryDelayNanos = TimeUnit.SECONDS.toNanos(Math.max(1, recoveryDelay));
+    }
+
+    /**
+     * Waits until a request may be sent to the endpoint. The returned permit must be exited once the response has
+     * been read or its connection released, so that a request counts as in flight while its response is streamed.
+     *
+     * @return the permit to send the request.
+     * @throws BitbucketRequestException if the circuit is open or the request could not start within the maximum wait.
+     * @throws InterruptedException      if interrupted while waiting.
+     */
+    @NonNull
+    public synchronized Permit enter() throws BitbucketRequestException, InterruptedException {
+        boolean probe = false;
+        long now = nanoTime();
+        switch (state) {
+            case OPEN:
+                long remaining = openedAt + recoveryDelayNanos - now;
+                if (remaining > 0) {
+                    throw reject("is unavailable after " + consecutiveFailures + " consecutive failed requests, "
+                            + "retrying in " + TimeUnit.NANOSECONDS.toSeconds(remaining) + " seconds");
+                }
+                state = State.HALF_OPEN;
+                probe = true;
+                break;
+            case HALF_OPEN:
+                throw reject("is unavailable, checking whether it has recovered");
+            default:
+                break;
+        }
+        long deadline = now + maxWaitNanos;
+        while (activeRequests >= maxConcurrentRequests) {
+            long remaining = deadline - nanoTime();
+            if (remaining <= 0) {
+                if (probe) {
+                    state = State.OPEN;
+                }
+                throw reject("has more than " + maxConcurrentRequests + " concurrent requests");
+            }
+            try {
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            } catch (InterruptedException e) {
+                if (probe) {
+                    state = State.OPEN;
+                }
+                throw e;
+            }
+        }
+        activeRequests++;
+        return new Permit(probe);
+    }
+
+    private BitbucketRequestException reject(String reason) {
+        rejectedCount.incrementAndGet();
+        return new BitbucketRequestException(HttpStatus.SC_SERVICE_UNAVAILABLE,
+                "Bitbucket endpoint " + endpointUrl + " " + reason);
+    }
+
+    private synchronized void exit(boolean probe, boolean failed) {
+        activeRequests--;
+        notifyAll();
+        if (!failed) {
+            consecutiveFailures = 0;
+            if (state != State.CLOSED) {
+                LOGGER.log(Level.INFO, "Bitbucket endpoint {0} has recovered", endpointUrl);
+            }
+            state = State.CLOSED;
+            return;
+        }
+        failureCount.incrementAndGet();
+        consecutiveFailures++;
+        if (probe || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            if (state == State.CLOSED) {
+                LOGGER.log(Level.WARNING, "Bitbucket endpoint {0} failed {1} consecutive requests, rejecting "
+                        + "requests for {2} seconds", new Object[]{
+                        endpointUrl, consecutiveFailures, TimeUnit.NANOSECONDS.toSeconds(recoveryDelayNanos)
+                });
+            }
+            state = State.OPEN;
+            openedAt = nanoTime();
+        }
+    }
+
+    long nanoTime() {
+        return System.nanoTime();
+    }
+
+    /**
+     * @return the URL of the endpoint.
+     */
+    @NonNull
+    public String getEndpointUrl() {
+        return endpointUrl;
+    }
+
+    /**
+     * @return the state of the circuit.
+     */
+    @NonNull
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * @return the number of requests in flight.
+     */
+    public synchronized int getActiveRequests() {
+        return activeRequests;
+    }
+
+    /**
+     * @return the number of consecutive failed requests.
+     */
+    public synchronized int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    /**
+     * @return the number of requests rejected without being sent.
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * @return the number of failed requests.
+     */
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    /**
+     * The permission to send a request to the endpoint.
+     */
+    public final class Permit {
+        private final boolean probe;
+        private boolean failed = true;
+        private boolean exited;
+
+        private Permit(boolean probe) {
+            this.probe = probe;
+        }
+
+        /**
+         * Records the response to the request, a server error counts as a failure.
+         *
+         * @param statusCode the HTTP status code of the response.
+         */
+        public void completed(int statusCode) {
+            failed = statusCode >= HttpStatus.SC_INTERNAL_SERVER_ERROR;
+        }
+
+        /**
+         * Records that the response body could not be read, which counts as a failure whatever its status code.
+         */
+        public void failed() {
+            failed = true;
+        }
+
+        /**
+         * Releases the permit, the request counts as failed unless its response was recorded.
+         */
+        public void exit() {
+            if (!exited) {
+                exited = true;
+                EndpointGuard.this.exit(probe, failed);
+            }
+        }
+    }
+}
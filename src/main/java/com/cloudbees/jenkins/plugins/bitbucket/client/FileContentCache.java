@@ -0,0 +1,167 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.client;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * A process wide cache of the content of files read at a commit, keyed by endpoint, repository, full commit hash and
+ * path. As the content of a commit never changes the entries never need invalidation, so every build of a revision
+ * reads its {@code Jenkinsfile} with at most one request. Only small files are cached. The entries are persisted
+ * under the Jenkins home directory so that they survive a restart.
+ *
+ * @since 2.2.4
+ */
+@Restricted(NoExternalUse.class)
+public class FileContentCache extends PersistentCache<byte[]> {
+
+    /**
+     * The maximum estimated memory (in bytes) of the cached contents.
+     */
+    private static final long MAX_SIZE =
+            Math.max(0L, Long.getLong(FileContentCache.class.getName() + ".maxSize", 16L * 1024 * 1024));
+
+    /**
+     * The size (in bytes) of the largest content to cache.
+     */
+    private static final int MAX_ENTRY_SIZE =
+            Math.max(0, Integer.getInteger(FileContentCache.class.getName() + ".maxEntrySize", 256 * 1024));
+
+    private static volatile FileContentCache instance;
+
+    private final int maxEntrySize;
+
+    FileContentCache(long maxSize, int maxEntrySize, @CheckForNull File file) {
+        super(maxSize, file);
+        this.maxEntrySize = maxEntrySize;
+    }
+
+    /**
+     * Returns the process wide cache.
+     *
+     * @return the process wide cache.
+     */
+    @NonNull
+    public static FileContentCache get() {
+        FileContentCache cache = instance;
+        if (cache == null) {
+            synchronized (FileContentCache.class) {
+                cache = instance;
+                if (cache == null) {
+                    instance = cache = new FileContentCache(MAX_SIZE, MAX_ENTRY_SIZE,
+                            defaultFile(FileContentCache.class, "files.cache"));
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Returns the size (in bytes) of the largest content to cache.
+     *
+     * @return the size (in bytes) of the largest content to cache.
+     */
+    public int getMaxEntrySize() {
+        return maxEntrySize;
+    }
+
+    /**
+     * Returns the content of a file at a commit.
+     *
+     * @param endpointUrl the URL of the endpoint.
+     * @param owner       the owner of the repository.
+     * @param repository  the name of the repository.
+     * @param hash        the hash of the commit.
+     * @param path        the path of the file.
+     * @return the content of the file or {@code null} if not cached or if the hash is not a full hash.
+     */
+    @CheckForNull
+    public byte[] lookup(@NonNull String endpointUrl, @NonNull String owner, @NonNull String repository,
+                         @NonNull String hash, @NonNull String path) {
+        return CommitCache.isFullHash(hash) ? lookup(key(endpointUrl, owner, repository, hash, path)) : null;
+    }
+
+    /**
+     * Caches the content of a file at a commit, unless the hash is not a full hash or the content is larger than
+     * {@link #getMaxEntrySize()}.
+     *
+     * @param endpointUrl the URL of the endpoint.
+     * @param owner       the owner of the repository.
+     * @param repository  the name of the repository.
+     * @param hash        the hash of the commit.
+     * @param path        the path of the file.
+     * @param content     the content of the file.
+     */
+    public void put(@NonNull String endpointUrl, @NonNull String owner, @NonNull String repository,
+                    @NonNull String hash, @NonNull String path, @NonNull byte[] content) {
+        if (CommitCache.isFullHash(hash) && content.length <= maxEntrySize) {
+            put(key(endpointUrl, owner, repository, hash, path), content);
+        }
+    }
+
+    private static String key(String endpointUrl, String owner, String repository, String hash, String path) {
+        return endpointUrl + "/" + owner.toLowerCase(Locale.ENGLISH) + "/" + repository.toLowerCase(Locale.ENGLISH)
+                + "#" + hash.toLowerCase(Locale.ENGLISH) + ":" + path;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected long sizeOf(@NonNull String key, @NonNull byte[] value) {
+        return ENTRY_OVERHEAD + sizeOf(key) + value.length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void write(@NonNull DataOutput out, @NonNull byte[] value) throws IOException {
+        out.writeInt(value.length);
+        out.write(value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @NonNull
+    @Override
+    protected byte[] read(@NonNull DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Invalid content length: " + length);
+        }
+        byte[] value = new byte[length];
+        in.readFully(value);
+        return value;
+    }
+}
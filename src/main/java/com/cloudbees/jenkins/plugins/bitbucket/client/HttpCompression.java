@@ -0,0 +1,131 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.client;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HttpMethod;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Negotiates compressed transfer of the Bitbucket REST API responses and decompresses the response bodies while they
+ * are being read.
+ *
+ * @since 2.2.4
+ */
+@Restricted(NoExternalUse.class)
+public final class HttpCompression {
+
+    /**
+     * Set to {@code true} to request uncompressed responses.
+     */
+    private static final boolean DISABLED = Boolean.getBoolean(HttpCompression.class.getName() + ".disabled");
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private HttpCompression() {
+        throw new IllegalAccessError("Utility class");
+    }
+
+    /**
+     * Asks for the response of a request to be compressed.
+     *
+     * @param method the request.
+     */
+    public static void acceptCompressed(@NonNull HttpMethod method) {
+        if (!DISABLED) {
+            method.setRequestHeader("Accept-Encoding", "gzip, deflate");
+        }
+    }
+
+    /**
+     * Returns the response body of an executed method, decompressed according to its {@code Content-Encoding}.
+     *
+     * @param method the executed method.
+     * @return the decompressed response body or {@code null} if there is no response body.
+     * @throws IOException if the response body could not be read or its encoding is not supported.
+     */
+    @CheckForNull
+    public static InputStream getResponseBody(@NonNull HttpMethod method) throws IOException {
+        InputStream body = method.getResponseBodyAsStream();
+        if (body == null) {
+            return null;
+        }
+        Header header = method.getResponseHeader("Content-Encoding");
+        String encoding = header == null ? "" : header.getValue().trim().toLowerCase(Locale.ENGLISH);
+        if (encoding.isEmpty() || "identity".equals(encoding)) {
+            return body;
+        }
+        PushbackInputStream in = new PushbackInputStream(body, 2);
+        int first = in.read();
+        if (first == -1) {
+            // an empty body has nothing to decompress
+            return in;
+        }
+        int second = in.read();
+        if (second != -1) {
+            in.unread(second);
+        }
+        in.unread(first);
+        switch (encoding) {
+            case "gzip":
+            case "x-gzip":
+                return new GZIPInputStream(in, BUFFER_SIZE);
+            case "deflate":
+                // servers disagree on whether deflate is zlib wrapped (RFC 1950) or raw (RFC 1951)
+                boolean zlib = (first & 0x0F) == 8 && second != -1 && ((first << 8) | second) % 31 == 0;
+                return new InflatingInputStream(in, new Inflater(!zlib));
+            default:
+                in.close();
+                throw new IOException("Unsupported content encoding: " + encoding);
+        }
+    }
+
+    /**
+     * An {@link InflaterInputStream} that releases its {@link Inflater} when closed.
+     */
+    private static class InflatingInputStream extends InflaterInputStream {
+        InflatingInputStream(InputStream in, Inflater inflater) {
+            super(in, inflater, BUFFER_SIZE);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                inf.end();
+            }
+        }
+    }
+}
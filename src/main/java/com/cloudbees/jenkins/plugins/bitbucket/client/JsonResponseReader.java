@@ -0,0 +1,171 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.client;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import org.apache.commons.io.IOUtils;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.type.TypeReference;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Decodes Bitbucket REST API responses straight from the HTTP response stream, without buffering the response body
+ * into an intermediate {@link String}.
+ *
+ * @since 2.2.4
+ */
+@Restricted(NoExternalUse.class)
+public final class JsonResponseReader {
+
+    /**
+     * The maximum number of bytes of a response body that will be decoded.
+     */
+    private static final long MAX_RESPONSE_SIZE =
+            Long.getLong(JsonResponseReader.class.getName() + ".maxResponseSize", 64L * 1024 * 1024);
+
+    /**
+     * The shared mapper, thread safe as it is never reconfigured.
+     */
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private JsonResponseReader() {
+        throw new IllegalAccessError("Utility class");
+    }
+
+    /**
+     * Decodes the response body.
+     *
+     * @param stream the response body.
+     * @param type   the type to decode.
+     * @param <T>    the type to decode.
+     * @return the decoded value.
+     * @throws IOException if the response could not be read or decoded, or if it is larger than the maximum size.
+     */
+    @NonNull
+    public static <T> T read(@CheckForNull InputStream stream, @NonNull Class<T> type) throws IOException {
+        JsonParser parser = createParser(stream);
+        try {
+            return MAPPER.readValue(parser, type);
+        } finally {
+            parser.close();
+        }
+    }
+
+    /**
+     * Decodes the response body.
+     *
+     * @param stream the response body.
+     * @param type   the type to decode.
+     * @param <T>    the type to decode.
+     * @return the decoded value.
+     * @throws IOException if the response could not be read or decoded, or if it is larger than the maximum size.
+     */
+    @NonNull
+    public static <T> T read(@CheckForNull InputStream stream, @NonNull TypeReference<T> type) throws IOException {
+        JsonParser parser = createParser(stream);
+        try {
+            return MAPPER.<T>readValue(parser, type);
+        } finally {
+            parser.close();
+        }
+    }
+
+    /**
+     * Reads the whole response body.
+     *
+     * @param stream the response body.
+     * @return the response body.
+     * @throws IOException if the response could not be read, or if it is larger than the maximum size.
+     */
+    @NonNull
+    public static byte[] toByteArray(@CheckForNull InputStream stream) throws IOException {
+        if (stream == null) {
+            throw new IOException("No content in response");
+        }
+        return IOUtils.toByteArray(new LimitedInputStream(stream, MAX_RESPONSE_SIZE));
+    }
+
+    private static JsonParser createParser(@CheckForNull InputStream stream) throws IOException {
+        if (stream == null) {
+            throw new IOException("No content in response");
+        }
+        return MAPPER.getJsonFactory().createJsonParser(new LimitedInputStream(stream, MAX_RESPONSE_SIZE));
+    }
+
+    /**
+     * An {@link InputStream} that fails once more than a fixed number of bytes have been read.
+     */
+    private static class LimitedInputStream extends FilterInputStream {
+        private final long limit;
+        private long count;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count(skipped);
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void count(long n) throws IOException {
+            count += n;
+            if (count > limit) {
+                throw new IOException("Response is larger than the maximum allowed size of " + limit + " bytes");
+            }
+        }
+    }
+}
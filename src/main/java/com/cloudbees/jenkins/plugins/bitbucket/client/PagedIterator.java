@@ -0,0 +1,164 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.client;
+
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketIterationException;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * An {@link Iterator} over a paginated listing that only fetches the next page once iteration reaches it, so that at
+ * most one page is held in memory and no further pages are requested once the consumer stops iterating.
+ * Failures to fetch a page are reported as {@link BitbucketIterationException}, by the call that reached the page
+ * and by every later call, so that a consumer never mistakes a failed listing for a complete one.
+ *
+ * @param <V> the type of object iterated.
+ * @since 2.2.4
+ */
+@Restricted(NoExternalUse.class)
+public abstract class PagedIterator<V> implements Iterator<V>, Closeable {
+
+    /**
+     * The items of the current page that have not been returned yet.
+     */
+    @NonNull
+    private Iterator<? extends V> page = Collections.<V>emptyList().iterator();
+
+    /**
+     * The number of pages fetched so far.
+     */
+    private int pages;
+
+    /**
+     * Set once the last page has been fetched or the iterator has been closed.
+     */
+    private boolean done;
+
+    /**
+     * The failure to fetch a page, rethrown by every call once set.
+     */
+    @CheckForNull
+    private BitbucketIterationException failure;
+
+    /**
+     * Fetches the next page.
+     *
+     * @param pageIndex the zero-based index of the page to fetch.
+     * @return the items of the page or {@code null} if there are no more pages.
+     * @throws IOException          if there was a network communications error.
+     * @throws InterruptedException if interrupted while waiting on remote communications.
+     */
+    @CheckForNull
+    protected abstract List<? extends V> nextPage(int pageIndex) throws IOException, InterruptedException;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized boolean hasNext() {
+        while (!page.hasNext()) {
+            if (failure != null) {
+                throw failure;
+            }
+            if (done) {
+                return false;
+            }
+            try {
+                if (pages > 0 && Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                List<? extends V> items = nextPage(pages++);
+                if (items == null) {
+                    done = true;
+                    return false;
+                }
+                page = items.iterator();
+            } catch (IOException e) {
+                failure = new BitbucketIterationException(e);
+                throw failure;
+            } catch (InterruptedException e) {
+                failure = new BitbucketIterationException(e);
+                throw failure;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized V next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return page.next();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Stops the iteration, no further pages will be fetched.
+     */
+    @Override
+    public synchronized void close() {
+        done = true;
+        page = Collections.<V>emptyList().iterator();
+    }
+
+    /**
+     * Drains the remaining items of this iterator into a list.
+     *
+     * @return the remaining items.
+     * @throws IOException          if there was a network communications error.
+     * @throws InterruptedException if interrupted while waiting on remote communications.
+     */
+    @NonNull
+    public List<V> toList() throws IOException, InterruptedException {
+        List<V> result = new ArrayList<>();
+        try {
+            while (hasNext()) {
+                result.add(next());
+            }
+        } catch (BitbucketIterationException e) {
+            e.unwrap();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,423 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.client;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+import jenkins.util.Timer;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * A process wide cache of immutable values, bounded by the estimated memory of its entries and evicting the least
+ * recently used entries first. The cache can be backed by a file, which is read on first use and written back
+ * shortly after the entries change, so that the entries survive a restart.
+ * <p>
+ * The values must never need invalidation, as nothing is ever removed from the cache other than by eviction.
+ *
+ * @param <V> the type of the cached values.
+ * @since 2.2.4
+ */
+@Restricted(NoExternalUse.class)
+public abstract class PersistentCache<V> {
+
+    private static final Logger LOGGER = Logger.getLogger(PersistentCache.class.getName());
+
+    /**
+     * The estimated memory (in bytes) of an entry besides its key and value.
+     */
+    protected static final long ENTRY_OVERHEAD = 64;
+
+    /**
+     * How long (in seconds) changes are batched before the backing file is written.
+     */
+    private static final long SAVE_DELAY = 60;
+
+    /**
+     * The version of the backing file format, files of another version are ignored.
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    private final long maxSize;
+
+    /**
+     * The backing file or {@code null} if the cache is not persisted.
+     */
+    @CheckForNull
+    private final File file;
+
+    /**
+     * The entries, in access order. Guarded by itself.
+     */
+    private final LinkedHashMap<String, V> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The estimated memory of the entries. Guarded by {@link #entries}.
+     */
+    private long size;
+
+    /**
+     * Whether the backing file has been read. Guarded by {@link #entries}.
+     */
+    private boolean loaded;
+
+    /**
+     * Guards the scheduling of the write of the backing file.
+     */
+    private final AtomicBoolean saveScheduled = new AtomicBoolean();
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * Constructor.
+     *
+     * @param maxSize the maximum estimated memory (in bytes) of the entries.
+     * @param file    the backing file or {@code null} if the cache is not persisted.
+     */
+    protected PersistentCache(long maxSize, @CheckForNull File file) {
+        this.maxSize = maxSize;
+        this.file = file;
+    }
+
+    /**
+     * Returns the file backing a process wide cache, which is under the Jenkins home directory unless persistence
+     * is disabled with the {@code <type>.persist} system property.
+     *
+     * @param type the type of the cache, which names both the system property and the file.
+     * @param name the name of the file.
+     * @return the backing file or {@code null} if the cache is not persisted.
+     */
+    @CheckForNull
+    protected static File defaultFile(@NonNull Class<?> type, @NonNull String name) {
+        String persist = System.getProperty(type.getName() + ".persist");
+        if (persist != null && !Boolean.parseBoolean(persist)) {
+            return null;
+        }
+        Jenkins jenkins = Jenkins.getInstance();
+        if (jenkins == null) {
+            return null;
+        }
+        return new File(new File(new File(jenkins.getRootDir(), "caches"), "bitbucket-branch-source"), name);
+    }
+
+    /**
+     * Returns a cached value.
+     *
+     * @param key the key.
+     * @return the value or {@code null} if not cached.
+     */
+    @CheckForNull
+    public V lookup(@NonNull String key) {
+        V value;
+        synchronized (entries) {
+            load();
+            value = entries.get(key);
+        }
+        (value == null ? missCount : hitCount).incrementAndGet();
+        return value;
+    }
+
+    /**
+     * Caches a value, evicting the least recently used entries if the cache grows beyond its maximum size.
+     *
+     * @param key   the key.
+     * @param value the value.
+     */
+    public void put(@NonNull String key, @NonNull V value) {
+        long entrySize = sizeOf(key, value);
+        if (entrySize > maxSize) {
+            return;
+        }
+        synchronized (entries) {
+            load();
+            V previous = entries.put(key, value);
+            if (previous != null) {
+                size -= sizeOf(key, previous);
+            }
+            size += entrySize;
+            Iterator<Map.Entry<String, V>> iterator = entries.entrySet().iterator();
+            while (size > maxSize && iterator.hasNext()) {
+                Map.Entry<String, V> eldest = iterator.next();
+                iterator.remove();
+                size -= sizeOf(eldest.getKey(), eldest.getValue());
+                evictionCount.incrementAndGet();
+            }
+        }
+        scheduleSave();
+    }
+
+    /**
+     * Removes all the entries, including from the backing file.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            size = 0;
+            loaded = true;
+        }
+        scheduleSave();
+    }
+
+    /**
+     * @return the number of lookups answered from the cache.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return the number of lookups not answered from the cache.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return the number of entries evicted to stay within the maximum size.
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * @return the number of cached entries.
+     */
+    public int getEntryCount() {
+        synchronized (entries) {
+            load();
+            return entries.size();
+        }
+    }
+
+    /**
+     * @return the estimated memory (in bytes) of the cached entries.
+     */
+    public long getSize() {
+        synchronized (entries) {
+            load();
+            return size;
+        }
+    }
+
+    /**
+     * Estimates the memory (in bytes) used by an entry.
+     *
+     * @param key   the key.
+     * @param value the value.
+     * @return the estimated memory of the entry.
+     */
+    protected abstract long sizeOf(@NonNull String key, @NonNull V value);
+
+    /**
+     * Writes a value to the backing file.
+     *
+     * @param out   where to write.
+     * @param value the value.
+     * @throws IOException if the value could not be written.
+     */
+    protected abstract void write(@NonNull DataOutput out, @NonNull V value) throws IOException;
+
+    /**
+     * Reads a value from the backing file.
+     *
+     * @param in where to read from.
+     * @return the value.
+     * @throws IOException if the value could not be read.
+     */
+    @NonNull
+    protected abstract V read(@NonNull DataInput in) throws IOException;
+
+    /**
+     * Writes a string which may be {@code null} or longer than {@link DataOutput#writeUTF(String)} supports.
+     *
+     * @param out   where to write.
+     * @param value the string.
+     * @throws IOException if the string could not be written.
+     */
+    protected static void writeString(@NonNull DataOutput out, @CheckForNull String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Reads a string written by {@link #writeString(DataOutput, String)}.
+     *
+     * @param in where to read from.
+     * @return the string.
+     * @throws IOException if the string could not be read.
+     */
+    @CheckForNull
+    protected static String readString(@NonNull DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Estimates the memory (in bytes) used by a string.
+     *
+     * @param value the string.
+     * @return the estimated memory of the string.
+     */
+    protected static long sizeOf(@CheckForNull String value) {
+        return value == null ? 0 : 40 + 2L * value.length();
+    }
+
+    /**
+     * Reads the backing file on first use. Must be called while holding the lock on {@link #entries}.
+     */
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (file == null) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                LOGGER.log(Level.FINE, "Ignoring {0} written in another format", file);
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                V value = read(in);
+                // the file is written in access order, so the most recently used entries are kept
+                V previous = entries.put(key, value);
+                if (previous != null) {
+                    size -= sizeOf(key, previous);
+                }
+                size += sizeOf(key, value);
+            }
+            Iterator<Map.Entry<String, V>> iterator = entries.entrySet().iterator();
+            while (size > maxSize && iterator.hasNext()) {
+                Map.Entry<String, V> eldest = iterator.next();
+                iterator.remove();
+                size -= sizeOf(eldest.getKey(), eldest.getValue());
+            }
+        } catch (FileNotFoundException e) {
+            // nothing persisted yet
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Could not read " + file + ", starting with an empty cache", e);
+            entries.clear();
+            size = 0;
+        }
+    }
+
+    private void scheduleSave() {
+        if (file == null || !saveScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        Timer.get().schedule(new Runnable() {
+            @Override
+            public void run() {
+                saveScheduled.set(false);
+                try {
+                    save();
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Could not write " + file, e);
+                }
+            }
+        }, SAVE_DELAY, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Writes the entries to the backing file, replacing it atomically where the file system allows it.
+     *
+     * @throws IOException if the file could not be written.
+     */
+    void save() throws IOException {
+        if (file == null) {
+            return;
+        }
+        List<Map.Entry<String, V>> snapshot;
+        synchronized (entries) {
+            if (!loaded) {
+                return;
+            }
+            snapshot = new ArrayList<>(entries.entrySet().size());
+            for (Map.Entry<String, V> entry : entries.entrySet()) {
+                snapshot.add(new AbstractMap.SimpleImmutableEntry<>(entry));
+            }
+        }
+        File dir = file.getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create " + dir);
+        }
+        File tmp = new File(dir, file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(snapshot.size());
+            for (Map.Entry<String, V> entry : snapshot) {
+                out.writeUTF(entry.getKey());
+                write(out, entry.getValue());
+            }
+        }
+        try {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
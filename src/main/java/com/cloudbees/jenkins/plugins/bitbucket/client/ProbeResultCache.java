@@ -0,0 +1,148 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.client;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * A process wide cache of whether a path exists at a commit, keyed by credentials, endpoint, repository, full commit
+ * hash and path. The credentials are part of the key as a path that cannot be read with some credentials looks
+ * missing to them. As the content of a commit never changes the entries never need invalidation, so the probes of a head that
+ * did not move since the previous scan are answered without a request. The entries are persisted under the Jenkins
+ * home directory so that they survive a restart.
+ *
+ * @since 2.2.4
+ */
+@Restricted(NoExternalUse.class)
+public class ProbeResultCache extends PersistentCache<Boolean> {
+
+    /**
+     * The maximum estimated memory (in bytes) of the cached probe results.
+     */
+    private static final long MAX_SIZE =
+            Math.max(0L, Long.getLong(ProbeResultCache.class.getName() + ".maxSize", 4L * 1024 * 1024));
+
+    private static volatile ProbeResultCache instance;
+
+    ProbeResultCache(long maxSize, @CheckForNull File file) {
+        super(maxSize, file);
+    }
+
+    /**
+     * Returns the process wide cache.
+     *
+     * @return the process wide cache.
+     */
+    @NonNull
+    public static ProbeResultCache get() {
+        ProbeResultCache cache = instance;
+        if (cache == null) {
+            synchronized (ProbeResultCache.class) {
+                cache = instance;
+                if (cache == null) {
+                    instance = cache = new ProbeResultCache(MAX_SIZE,
+                            defaultFile(ProbeResultCache.class, "probes.cache"));
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Returns whether a path was found to exist at a commit.
+     *
+     * @param credentialsId the id of the credentials the path was probed with or {@code null} for anonymous probes.
+     * @param endpointUrl   the URL of the endpoint.
+     * @param owner         the owner of the repository.
+     * @param repository    the name of the repository.
+     * @param hash          the hash of the commit.
+     * @param path          the path.
+     * @return whether the path exists or {@code null} if not cached or if the hash is not a full hash.
+     */
+    @CheckForNull
+    public Boolean lookup(@CheckForNull String credentialsId, @NonNull String endpointUrl, @NonNull String owner,
+                          @NonNull String repository, @NonNull String hash, @NonNull String path) {
+        return CommitCache.isFullHash(hash)
+                ? lookup(key(credentialsId, endpointUrl, owner, repository, hash, path))
+                : null;
+    }
+
+    /**
+     * Caches whether a path exists at a commit, unless the hash is not a full hash.
+     *
+     * @param credentialsId the id of the credentials the path was probed with or {@code null} for anonymous probes.
+     * @param endpointUrl   the URL of the endpoint.
+     * @param owner         the owner of the repository.
+     * @param repository    the name of the repository.
+     * @param hash          the hash of the commit.
+     * @param path          the path.
+     * @param exists        whether the path exists.
+     */
+    public void put(@CheckForNull String credentialsId, @NonNull String endpointUrl, @NonNull String owner,
+                    @NonNull String repository, @NonNull String hash, @NonNull String path, boolean exists) {
+        if (CommitCache.isFullHash(hash)) {
+            put(key(credentialsId, endpointUrl, owner, repository, hash, path), exists);
+        }
+    }
+
+    private static String key(String credentialsId, String endpointUrl, String owner, String repository, String hash,
+                              String path) {
+        return (credentialsId == null ? "" : credentialsId) + "@" + endpointUrl
+                + "/" + owner.toLowerCase(Locale.ENGLISH) + "/" + repository.toLowerCase(Locale.ENGLISH)
+                + "#" + hash.toLowerCase(Locale.ENGLISH) + ":" + path;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected long sizeOf(@NonNull String key, @NonNull Boolean value) {
+        return ENTRY_OVERHEAD + sizeOf(key);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void write(@NonNull DataOutput out, @NonNull Boolean value) throws IOException {
+        out.writeBoolean(value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @NonNull
+    @Override
+    protected Boolean read(@NonNull DataInput in) throws IOException {
+        return in.readBoolean();
+    }
+}
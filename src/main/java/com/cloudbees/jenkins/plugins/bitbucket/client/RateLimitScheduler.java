@@ -0,0 +1,456 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.client;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.util.DateParseException;
+import org.apache.commons.httpclient.util.DateUtil;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Schedules the API requests sent to a Bitbucket endpoint on behalf of a single credential, so that all the clients
+ * sharing that credential stay within its rate limit.
+ * <p>
+ * When the endpoint is configured with a request rate, each request takes a token from a token bucket before being
+ * sent, waiting for the bucket to refill when it is empty. Whatever the request rate, when the endpoint rejects a
+ * request as rate limited the whole bucket is paused, for the time requested by the {@code Retry-After} header when
+ * present or otherwise for an exponentially increasing back-off with jitter. The bucket is also paused until
+ * {@code X-RateLimit-Reset} when {@code X-RateLimit-Remaining} reports that the limit is exhausted. A request that would have to wait longer than the maximum wait fails instead of waiting. The token
+ * of a conditional request answered with {@code 304 Not Modified} is returned to the bucket.
+ *
+ * @since 2.2.4
+ */
+@Restricted(NoExternalUse.class)
+public class RateLimitScheduler {
+
+    private static final Logger LOGGER = Logger.getLogger(RateLimitScheduler.class.getName());
+
+    /**
+     * The HTTP status code of a rate limited request.
+     */
+    public static final int RATE_LIMIT_CODE = 429;
+
+    /**
+     * The capacity of the bucket as a number of seconds of requests, i.e. how many requests can be sent at once after
+     * a quiet period.
+     */
+    private static final int BURST_SECONDS = 2;
+
+    /**
+     * The longest time in seconds a single request may wait to be sent.
+     */
+    private static final long MAX_WAIT =
+            Math.max(1L, Long.getLong(RateLimitScheduler.class.getName() + ".maxWait", 600L));
+
+    /**
+     * The back-off in milliseconds after the first rate limited response without a {@code Retry-After} header.
+     */
+    private static final long BACKOFF =
+            Math.max(1L, Long.getLong(RateLimitScheduler.class.getName() + ".backoff", 5000L));
+
+    /**
+     * The longest back-off in milliseconds between two attempts of a request without a {@code Retry-After} header.
+     */
+    private static final long MAX_BACKOFF =
+            Math.max(BACKOFF, Long.getLong(RateLimitScheduler.class.getName() + ".maxBackoff", 120000L));
+
+    /**
+     * The number of times a rate limited request is retried before its rate limited response is returned.
+     */
+    private static final int MAX_RETRIES =
+            Math.max(0, Integer.getInteger(RateLimitScheduler.class.getName() + ".maxRetries", 10));
+
+    /**
+     * The {@code X-RateLimit-Reset} values above this are epoch seconds rather than a number of seconds.
+     */
+    private static final long EPOCH_SECONDS_THRESHOLD = 1000000000L;
+
+    /**
+     * The schedulers, keyed by endpoint URL and credential.
+     */
+    private static final ConcurrentMap<String, RateLimitScheduler> schedulers = new ConcurrentHashMap<>();
+
+    @NonNull
+    private final String endpointUrl;
+    @CheckForNull
+    private final String username;
+    /**
+     * The number of tokens added to the bucket per second, {@code 0} when requests do not take tokens.
+     */
+    private int permitsPerSecond;
+    /**
+     * The capacity of the bucket.
+     */
+    private int burst;
+    private final long maxWaitNanos;
+    private final long backoffNanos;
+    private final long maxBackoffNanos;
+    private final int maxRetries;
+
+    /**
+     * The tokens available, negative when requests are already waiting for tokens.
+     */
+    private double tokens;
+    /**
+     * When the tokens were last refilled.
+     */
+    private long refilledAt;
+    /**
+     * When the bucket is paused until, if later than now.
+     */
+    private long pausedUntil;
+
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong rateLimitedCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private volatile long lastWaitNanos;
+    private volatile int remaining = -1;
+
+    RateLimitScheduler(@NonNull String endpointUrl, @CheckForNull String username, int permitsPerSecond, int burst,
+                       long maxWait, long backoff, long maxBackoff, int maxRetries) {
+        this.endpointUrl = endpointUrl;
+        this.username = username;
+        this.permitsPerSecond = Math.max(0, permitsPerSecond);
+        this.burst = Math.max(1, burst);
+        this.maxWaitNanos = TimeUnit.SECONDS.toNanos(maxWait);
+        this.backoffNanos = TimeUnit.MILLISECONDS.toNanos(backoff);
+        this.maxBackoffNanos = TimeUnit.MILLISECONDS.toNanos(maxBackoff);
+        this.maxRetries = maxRetries;
+        this.tokens = this.burst;
+        this.refilledAt = nanoTime();
+        this.pausedUntil = refilledAt;
+    }
+
+    /**
+     * Returns the scheduler of the requests sent to an endpoint with a credential, applying the current request rate
+     * of the endpoint.
+     *
+     * @param endpointUrl      the URL of the endpoint.
+     * @param username         the user name of the credential or {@code null} for anonymous requests.
+     * @param permitsPerSecond the number of requests per second, {@code 0} or negative to only wait when rate limited.
+     * @return the scheduler.
+     */
+    @NonNull
+    public static RateLimitScheduler get(@NonNull String endpointUrl, @CheckForNull String username,
+                                         int permitsPerSecond) {
+        String key = username == null ? endpointUrl : username + "@" + endpointUrl;
+        RateLimitScheduler scheduler = schedulers.get(key);
+        if (scheduler == null) {
+            RateLimitScheduler created = new RateLimitScheduler(endpointUrl, username, permitsPerSecond,
+                    permitsPerSecond * BURST_SECONDS, MAX_WAIT, BACKOFF, MAX_BACKOFF, MAX_RETRIES);
+            scheduler = schedulers.putIfAbsent(key, created);
+            if (scheduler == null) {
+                scheduler = created;
+            }
+        }
+        scheduler.configure(permitsPerSecond, permitsPerSecond * BURST_SECONDS);
+        return scheduler;
+    }
+
+    /**
+     * Applies the request rate of the endpoint, which may have been reconfigured since the scheduler was created.
+     *
+     * @param permitsPerSecond the number of requests per second, {@code 0} or negative to only wait when rate limited.
+     * @param burst            the capacity of the bucket.
+     */
+    synchronized void configure(int permitsPerSecond, int burst) {
+        permitsPerSecond = Math.max(0, permitsPerSecond);
+        burst = Math.max(1, burst);
+        if (this.permitsPerSecond == permitsPerSecond && this.burst == burst) {
+            return;
+        }
+        if (this.permitsPerSecond <= 0) {
+            // the bucket did not refill while the rate was off
+            tokens = burst;
+            refilledAt = nanoTime();
+        }
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = burst;
+        tokens = Math.min(burst, tokens);
+    }
+
+    /**
+     * Returns all the schedulers created so far, for monitoring.
+     *
+     * @return the schedulers.
+     */
+    @NonNull
+    public static List<RateLimitScheduler> all() {
+        return new ArrayList<>(schedulers.values());
+    }
+
+    /**
+     * Waits until a request may be sent.
+     *
+     * @throws IOException          if the request would have to wait longer than the maximum wait.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public void acquire() throws IOException, InterruptedException {
+        long wait;
+        synchronized (this) {
+            long now = nanoTime();
+            long refillWait = 0L;
+            if (permitsPerSecond > 0) {
+                tokens = Math.min(burst,
+                        tokens + (now - refilledAt) * permitsPerSecond / (double) TimeUnit.SECONDS.toNanos(1));
+                refilledAt = now;
+                if (tokens < 1.0) {
+                    refillWait = (long) Math.ceil((1.0 - tokens) * TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+                }
+            }
+            wait = Math.max(refillWait, pausedUntil - now);
+            if (wait > maxWaitNanos) {
+                throw new IOException("Rate limit of " + this + " would delay the request by "
+                        + TimeUnit.NANOSECONDS.toSeconds(wait) + " seconds, more than the maximum of "
+                        + TimeUnit.NANOSECONDS.toSeconds(maxWaitNanos) + " seconds");
+            }
+            if (permitsPerSecond > 0) {
+                tokens -= 1.0;
+            }
+        }
+        requestCount.incrementAndGet();
+        lastWaitNanos = wait;
+        if (wait > 0) {
+            queueDepth.incrementAndGet();
+            try {
+                sleep(wait);
+            } finally {
+                queueDepth.decrementAndGet();
+                totalWaitNanos.addAndGet(wait);
+            }
+        }
+    }
+
+    /**
+     * Records the rate limit information of a response and tells whether the request should be retried because it
+     * was rate limited. When it should, the bucket is paused so that the retry waits in {@link #acquire()}.
+     *
+     * @param method  the executed method.
+     * @param attempt the number of times the request has already been retried.
+     * @return {@code true} if the request was rate limited and should be retried.
+     */
+    public boolean onResponse(@NonNull HttpMethod method, int attempt) {
+        long now = nanoTime();
+        int remaining = parseInt(method.getResponseHeader("X-RateLimit-Remaining"));
+        this.remaining = remaining;
+        if (remaining == 0) {
+            long reset = parseReset(method.getResponseHeader("X-RateLimit-Reset"));
+            if (reset > 0) {
+                pause(now, reset);
+            }
+        }
+        if (method.getStatusCode() == HttpStatus.SC_NOT_MODIFIED) {
+            // conditional requests answered with a 304 do not count against the rate limit
+            refund();
+            return false;
+        }
+        if (method.getStatusCode() != RATE_LIMIT_CODE) {
+            return false;
+        }
+        rateLimitedCount.incrementAndGet();
+        if (attempt >= maxRetries) {
+            LOGGER.log(Level.WARNING, "Giving up on a request to {0} after {1} rate limited attempts",
+                    new Object[]{endpointUrl, attempt + 1});
+            return false;
+        }
+        long delay = parseRetryAfter(method.getResponseHeader("Retry-After"));
+        if (delay < 0) {
+            long backoff = Math.min(maxBackoffNanos, backoffNanos << Math.min(attempt, 20));
+            delay = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+        }
+        pause(now, delay);
+        LOGGER.log(Level.FINE, "Rate limited by {0}, retrying in {1} ms",
+                new Object[]{endpointUrl, TimeUnit.NANOSECONDS.toMillis(delay)});
+        return true;
+    }
+
+    private synchronized void refund() {
+        if (permitsPerSecond <= 0) {
+            return;
+        }
+        tokens = Math.min(burst, tokens + 1.0);
+    }
+
+    private synchronized void pause(long now, long delay) {
+        if (now + delay - pausedUntil > 0) {
+            pausedUntil = now + delay;
+        }
+    }
+
+    private static int parseInt(@CheckForNull Header header) {
+        if (header != null) {
+            try {
+                return Integer.parseInt(header.getValue().trim());
+            } catch (NumberFormatException e) {
+                // ignore malformed header
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parses a {@code X-RateLimit-Reset} header, which is either epoch seconds or a number of seconds.
+     *
+     * @return the nanoseconds until the reset or {@code -1} if unknown.
+     */
+    private long parseReset(@CheckForNull Header header) {
+        if (header != null) {
+            try {
+                long reset = Long.parseLong(header.getValue().trim());
+                if (reset > EPOCH_SECONDS_THRESHOLD) {
+                    return TimeUnit.MILLISECONDS.toNanos(TimeUnit.SECONDS.toMillis(reset) - currentTimeMillis());
+                }
+                return TimeUnit.SECONDS.toNanos(reset);
+            } catch (NumberFormatException e) {
+                // ignore malformed header
+            }
+        }
+        return -1L;
+    }
+
+    /**
+     * Parses a {@code Retry-After} header, which is either a number of seconds or a HTTP date.
+     *
+     * @return the nanoseconds to wait or {@code -1} if unknown.
+     */
+    private long parseRetryAfter(@CheckForNull Header header) {
+        if (header != null) {
+            String value = header.getValue().trim();
+            try {
+                return TimeUnit.SECONDS.toNanos(Math.max(0L, Long.parseLong(value)));
+            } catch (NumberFormatException e) {
+                try {
+                    Date date = DateUtil.parseDate(value);
+                    return TimeUnit.MILLISECONDS.toNanos(Math.max(0L, date.getTime() - currentTimeMillis()));
+                } catch (DateParseException e1) {
+                    // ignore malformed header
+                }
+            }
+        }
+        return -1L;
+    }
+
+    long nanoTime() {
+        return System.nanoTime();
+    }
+
+    long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    void sleep(long nanos) throws InterruptedException {
+        TimeUnit.NANOSECONDS.sleep(nanos);
+    }
+
+    /**
+     * @return the URL of the endpoint.
+     */
+    @NonNull
+    public String getEndpointUrl() {
+        return endpointUrl;
+    }
+
+    /**
+     * @return the user name of the credential or {@code null} for anonymous requests.
+     */
+    @CheckForNull
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * @return the number of requests per second, {@code 0} if requests only wait when rate limited.
+     */
+    public synchronized int getPermitsPerSecond() {
+        return permitsPerSecond;
+    }
+
+    /**
+     * @return the number of requests currently waiting to be sent.
+     */
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    /**
+     * @return the number of requests scheduled.
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * @return the number of rate limited responses received.
+     */
+    public long getRateLimitedCount() {
+        return rateLimitedCount.get();
+    }
+
+    /**
+     * @return the total time in milliseconds requests have waited to be sent.
+     */
+    public long getTotalWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get());
+    }
+
+    /**
+     * @return the time in milliseconds the last request waited to be sent.
+     */
+    public long getLastWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lastWaitNanos);
+    }
+
+    /**
+     * @return the remaining requests last reported by the endpoint or {@code -1} if not reported.
+     */
+    public int getRemaining() {
+        return remaining;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return username == null ? endpointUrl : username + "@" + endpointUrl;
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.client;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Coalesces the concurrent GET requests for the same resource with the same credential, so that only one request is
+ * sent and its response body shared with all the callers.
+ * <p>
+ * The first caller fetches the response body while the concurrent callers for the same URL and credential wait for
+ * it. Every caller decodes its own copy of the body, so the decoded objects are never shared. A failure is reported
+ * to all the waiting callers, except an interruption of the fetching caller after which the waiting callers fetch
+ * the response again.
+ *
+ * @since 2.2.4
+ */
+@Restricted(NoExternalUse.class)
+public class RequestCoalescer {
+
+    private static final RequestCoalescer INSTANCE = new RequestCoalescer();
+
+    /**
+     * The requests in flight, keyed by URL and credential.
+     */
+    private final ConcurrentMap<String, Flight> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+
+    /**
+     * Returns the process wide coalescer.
+     *
+     * @return the process wide coalescer.
+     */
+    @NonNull
+    public static RequestCoalescer get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Fetches the response body of a resource, or waits for the response of a concurrent fetch of the same resource.
+     *
+     * @param url      the URL of the resource.
+     * @param username the user name of the credential or {@code null} for anonymous requests.
+     * @param fetch    fetches the response body.
+     * @return the response body.
+     * @throws IOException          if the response body could not be fetched.
+     * @throws InterruptedException if interrupted while fetching or waiting.
+     */
+    @NonNull
+    public byte[] fetch(@NonNull String url, @CheckForNull String username, @NonNull Fetch fetch)
+            throws IOException, InterruptedException {
+        String key = username == null ? url : username + "@" + url;
+        while (true) {
+            Flight flight = new Flight();
+            Flight leader = inFlight.putIfAbsent(key, flight);
+            if (leader == null) {
+                requestCount.incrementAndGet();
+                try {
+                    byte[] body = fetch.fetch();
+                    flight.complete(body, null);
+                    return body;
+                } catch (Throwable t) {
+                    flight.complete(null, t);
+                    throw t;
+                } finally {
+                    inFlight.remove(key, flight);
+                }
+            }
+            coalescedCount.incrementAndGet();
+            leader.done.await();
+            if (leader.body != null) {
+                return leader.body;
+            }
+            if (leader.failure instanceof InterruptedException || leader.failure instanceof InterruptedIOException) {
+                // the fetching caller was interrupted, not this one
+                continue;
+            }
+            if (leader.failure instanceof IOException) {
+                throw (IOException) leader.failure;
+            }
+            if (leader.failure instanceof RuntimeException) {
+                throw (RuntimeException) leader.failure;
+            }
+            throw (Error) leader.failure;
+        }
+    }
+
+    /**
+     * @return the number of requests sent.
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * @return the number of requests that waited for the response of a concurrent request instead of being sent.
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    /**
+     * @return the number of requests currently in flight.
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * Fetches a response body.
+     */
+    public interface Fetch {
+        /**
+         * Fetches the response body.
+         *
+         * @return the response body.
+         * @throws IOException          if the response body could not be fetched.
+         * @throws InterruptedException if interrupted while fetching.
+         */
+        @NonNull
+        byte[] fetch() throws IOException, InterruptedException;
+    }
+
+    /**
+     * A request in flight.
+     */
+    private static class Flight {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile byte[] body;
+        private volatile Throwable failure;
+
+        void complete(@CheckForNull byte[] body, @CheckForNull Throwable failure) {
+            this.body = body;
+            this.failure = failure;
+            done.countDown();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.client;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * A process wide cache of the full hashes that abbreviated commit hashes expand to, keyed by endpoint, repository
+ * and abbreviated hash. Bitbucket Cloud only reports abbreviated hashes for the source and destination of pull
+ * requests, so the hash of a pull request that did not move since the previous scan is expanded without a request.
+ * The entries are persisted under the Jenkins home directory so that they survive a restart.
+ * <p>
+ * An abbreviated hash is only cached with a full hash it is a prefix of. A repository could in theory later get
+ * another commit with the same prefix, but the abbreviations Bitbucket uses make this too unlikely to matter.
+ *
+ * @since 2.2.4
+ */
+@Restricted(NoExternalUse.class)
+public class ShortHashCache extends PersistentCache<String> {
+
+    /**
+     * The maximum estimated memory (in bytes) of the cached hashes.
+     */
+    private static final long MAX_SIZE =
+            Math.max(0L, Long.getLong(ShortHashCache.class.getName() + ".maxSize", 2L * 1024 * 1024));
+
+    private static volatile ShortHashCache instance;
+
+    ShortHashCache(long maxSize, @CheckForNull File file) {
+        super(maxSize, file);
+    }
+
+    /**
+     * Returns the process wide cache.
+     *
+     * @return the process wide cache.
+     */
+    @NonNull
+    public static ShortHashCache get() {
+        ShortHashCache cache = instance;
+        if (cache == null) {
+            synchronized (ShortHashCache.class) {
+                cache = instance;
+                if (cache == null) {
+                    instance = cache = new ShortHashCache(MAX_SIZE,
+                            defaultFile(ShortHashCache.class, "short-hashes.cache"));
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Returns the full hash an abbreviated hash expands to.
+     *
+     * @param endpointUrl the URL of the endpoint.
+     * @param owner       the owner of the repository.
+     * @param repository  the name of the repository.
+     * @param shortHash   the abbreviated hash.
+     * @return the full hash or {@code null} if not cached.
+     */
+    @CheckForNull
+    public String lookup(@NonNull String endpointUrl, @NonNull String owner, @NonNull String repository,
+                         @NonNull String shortHash) {
+        return shortHash.isEmpty() ? null : lookup(key(endpointUrl, owner, repository, shortHash));
+    }
+
+    /**
+     * Caches the full hash an abbreviated hash expands to, unless the full hash is not a full hash or does not
+     * start with the abbreviated hash.
+     *
+     * @param endpointUrl the URL of the endpoint.
+     * @param owner       the owner of the repository.
+     * @param repository  the name of the repository.
+     * @param shortHash   the abbreviated hash.
+     * @param fullHash    the full hash.
+     * @return {@code true} if the full hash was cached.
+     */
+    public boolean put(@NonNull String endpointUrl, @NonNull String owner, @NonNull String repository,
+                       @NonNull String shortHash, @CheckForNull String fullHash) {
+        if (shortHash.isEmpty() || !CommitCache.isFullHash(fullHash)
+                || !fullHash.toLowerCase(Locale.ENGLISH).startsWith(shortHash.toLowerCase(Locale.ENGLISH))) {
+            return false;
+        }
+        put(key(endpointUrl, owner, repository, shortHash), fullHash.toLowerCase(Locale.ENGLISH));
+        return true;
+    }
+
+    private static String key(String endpointUrl, String owner, String repository, String shortHash) {
+        return endpointUrl + "/" + owner.toLowerCase(Locale.ENGLISH) + "/" + repository.toLowerCase(Locale.ENGLISH)
+                + "#" + shortHash.toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected long sizeOf(@NonNull String key, @NonNull String value) {
+        return ENTRY_OVERHEAD + sizeOf(key) + sizeOf(value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void write(@NonNull DataOutput out, @NonNull String value) throws IOException {
+        out.writeUTF(value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @NonNull
+    @Override
+    protected String read(@NonNull DataInput in) throws IOException {
+        return in.readUTF();
+    }
+}
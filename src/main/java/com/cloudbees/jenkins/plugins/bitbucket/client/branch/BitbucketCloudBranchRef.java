@@ -0,0 +1,67 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.client.branch;
+
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketBranch;
+import org.codehaus.jackson.annotate.JsonIgnoreProperties;
+
+/**
+ * A branch as returned by the Bitbucket Cloud 2.0 {@code refs/branches} resource.
+ *
+ * @since 2.2.4
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class BitbucketCloudBranchRef implements BitbucketBranch {
+
+    private String name;
+
+    private BitbucketCloudCommit target;
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public BitbucketCloudCommit getTarget() {
+        return target;
+    }
+
+    public void setTarget(BitbucketCloudCommit target) {
+        this.target = target;
+    }
+
+    @Override
+    public String getRawNode() {
+        return target == null ? null : target.getHash();
+    }
+
+    @Override
+    public long getDateMillis() {
+        return target == null || target.getDate() == null ? 0 : target.getDateMillis();
+    }
+}
@@ -35,6 +35,7 @@ public class BitbucketPullRequestValue implements BitbucketPullRequest {
     private BitbucketPullRequestValueRepository source;
     private String id;
     private String title;
+    private String state;
 
     private Links links;
 
@@ -84,6 +85,15 @@ public class BitbucketPullRequestValue implements BitbucketPullRequest {
         this.title = title;
     }
 
+    @Override
+    public String getState() {
+        return state;
+    }
+
+    public void setState(String state) {
+        this.state = state;
+    }
+
     public void setLinks(Links link) {
         this.links = link;
     }
@@ -23,31 +23,9 @@
  */
 package com.cloudbees.jenkins.plugins.bitbucket.client.pullrequest;
 
+import com.cloudbees.jenkins.plugins.bitbucket.client.BitbucketCloudPage;
 import org.codehaus.jackson.annotate.JsonIgnoreProperties;
 
-import java.util.List;
-
 @JsonIgnoreProperties(ignoreUnknown = true)
-public class BitbucketPullRequests {
-
-    private List<BitbucketPullRequestValue> values;
-
-    private String next;
-
-    public List<BitbucketPullRequestValue> getValues() {
-        return values;
-    }
-
-    public void setValues(List<BitbucketPullRequestValue> prValues) {
-        this.values = prValues;
-    }
-
-    public String getNext() {
-        return next;
-    }
-
-    public void setNext(String next) {
-        this.next = next;
-    }
-
+public class BitbucketPullRequests extends BitbucketCloudPage<BitbucketPullRequestValue> {
 }
@@ -0,0 +1,87 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.client.repository;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import jenkins.scm.api.SCMFile;
+import org.codehaus.jackson.annotate.JsonIgnoreProperties;
+
+/**
+ * An entry of a directory listing of the Bitbucket Cloud {@code src} resource.
+ *
+ * @since 2.2.4
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class BitbucketCloudSourceEntry {
+
+    private String path;
+
+    private String type;
+
+    /**
+     * Returns the path of the entry from the root of the repository.
+     *
+     * @return the path of the entry.
+     */
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    /**
+     * Returns the name of the entry within its directory.
+     *
+     * @return the name of the entry.
+     */
+    public String getName() {
+        return path == null ? null : path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * Returns the type of the entry.
+     *
+     * @return the type of the entry.
+     */
+    @NonNull
+    public SCMFile.Type toFileType() {
+        if ("commit_file".equals(type)) {
+            return SCMFile.Type.REGULAR_FILE;
+        }
+        if ("commit_directory".equals(type)) {
+            return SCMFile.Type.DIRECTORY;
+        }
+        return SCMFile.Type.OTHER;
+    }
+}
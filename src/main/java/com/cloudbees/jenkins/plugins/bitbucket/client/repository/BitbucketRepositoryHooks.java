@@ -23,31 +23,9 @@
  */
 package com.cloudbees.jenkins.plugins.bitbucket.client.repository;
 
-import java.util.List;
-
+import com.cloudbees.jenkins.plugins.bitbucket.client.BitbucketCloudPage;
 import org.codehaus.jackson.annotate.JsonIgnoreProperties;
 
 @JsonIgnoreProperties(ignoreUnknown = true)
-public class BitbucketRepositoryHooks {
-
-    private String next;
-
-    private List<BitbucketRepositoryHook> values;
-
-    public String getNext() {
-        return next;
-    }
-
-    public void setNext(String next) {
-        this.next = next;
-    }
-
-    public List<BitbucketRepositoryHook> getValues() {
-        return values;
-    }
-
-    public void setValues(List<BitbucketRepositoryHook> values) {
-        this.values = values;
-    }
-
+public class BitbucketRepositoryHooks extends BitbucketCloudPage<BitbucketRepositoryHook> {
 }
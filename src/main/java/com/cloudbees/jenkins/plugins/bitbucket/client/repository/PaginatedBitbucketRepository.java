@@ -23,31 +23,9 @@
  */
 package com.cloudbees.jenkins.plugins.bitbucket.client.repository;
 
-import java.util.List;
-
+import com.cloudbees.jenkins.plugins.bitbucket.client.BitbucketCloudPage;
 import org.codehaus.jackson.annotate.JsonIgnoreProperties;
 
 @JsonIgnoreProperties(ignoreUnknown = true)
-public class PaginatedBitbucketRepository {
-
-    private String next;
-
-    private List<BitbucketCloudRepository> values;
-
-    public List<BitbucketCloudRepository> getValues() {
-        return values;
-    }
-
-    public void setValues(List<BitbucketCloudRepository> values) {
-        this.values = values;
-    }
-
-    public String getNext() {
-        return next;
-    }
-
-    public void setNext(String next) {
-        this.next = next;
-    }
-
+public class PaginatedBitbucketRepository extends BitbucketCloudPage<BitbucketCloudRepository> {
 }
@@ -23,16 +23,15 @@
  */
 package com.cloudbees.jenkins.plugins.bitbucket.endpoints;
 
-import com.cloudbees.plugins.credentials.CredentialsMatchers;
-import com.cloudbees.plugins.credentials.CredentialsProvider;
+import com.cloudbees.jenkins.plugins.bitbucket.CredentialsLookupCache;
 import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
-import com.cloudbees.plugins.credentials.domains.URIRequirementBuilder;
 import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.model.AbstractDescribableImpl;
 import hudson.security.ACL;
 import jenkins.model.Jenkins;
 import org.apache.commons.lang.StringUtils;
+import org.kohsuke.stapler.DataBoundSetter;
 
 /**
  * Represents a {@link BitbucketCloudEndpoint} or a {@link BitbucketServerEndpoint}.
@@ -41,6 +40,38 @@ import org.apache.commons.lang.StringUtils;
  */
 public abstract class AbstractBitbucketEndpoint extends AbstractDescribableImpl<AbstractBitbucketEndpoint> {
 
+    /**
+     * The request rate that does not limit the number of API requests per second, requests are then only slowed down
+     * when the end-point reports that they are rate limited.
+     */
+    public static final int UNLIMITED_REQUEST_RATE = -1;
+
+    /**
+     * The default maximum number of concurrent API requests to an end-point.
+     */
+    public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 20;
+
+    /**
+     * The default time (in seconds) an API request waits for one of the concurrent requests to an end-point to
+     * complete, as long as a request is given to read its response.
+     */
+    public static final int DEFAULT_QUEUE_TIMEOUT = 60;
+
+    /**
+     * The default number of consecutive failed API requests after which requests to an end-point are rejected.
+     */
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+
+    /**
+     * The default time (in seconds) requests to a failing end-point are rejected before checking if it has recovered.
+     */
+    public static final int DEFAULT_RECOVERY_DELAY = 30;
+
+    /**
+     * The default number of upcoming heads evaluated concurrently while scanning an end-point.
+     */
+    public static final int DEFAULT_PREFETCH_PARALLELISM = 4;
+
     /**
      * {@code true} if and only if Jenkins is supposed to auto-manage hooks for this end-point.
      */
@@ -52,6 +83,44 @@ public abstract class AbstractBitbucketEndpoint extends AbstractDescribableImpl<
     @CheckForNull
     private final String credentialsId;
 
+    /**
+     * The number of items to request per page from paginated API resources, {@code 0} for the default.
+     */
+    private int pageSize;
+
+    /**
+     * The number of API requests per second each credential may send to this end-point, {@code 0} for the default or
+     * {@link #UNLIMITED_REQUEST_RATE} for no limit.
+     */
+    private int requestRate;
+
+    /**
+     * The maximum number of concurrent API requests to this end-point, {@code 0} for the default.
+     */
+    private int maxConcurrentRequests;
+
+    /**
+     * The time (in seconds) a request waits for one of the concurrent requests to complete, {@code 0} for the
+     * default.
+     */
+    private int queueTimeout;
+
+    /**
+     * The number of consecutive failed API requests after which requests are rejected, {@code 0} for the default.
+     */
+    private int failureThreshold;
+
+    /**
+     * The time (in seconds) requests are rejected before checking if this end-point has recovered, {@code 0} for
+     * the default.
+     */
+    private int recoveryDelay;
+
+    /**
+     * The number of upcoming heads evaluated concurrently while scanning, {@code 0} for the default.
+     */
+    private int prefetchParallelism;
+
     /**
      * Constructor.
      *
@@ -111,6 +180,185 @@ public abstract class AbstractBitbucketEndpoint extends AbstractDescribableImpl<
         return credentialsId;
     }
 
+    /**
+     * Returns the number of items to request per page from paginated API resources.
+     *
+     * @return the number of items to request per page.
+     * @since 2.2.4
+     */
+    public final int getPageSize() {
+        return pageSize > 0 ? pageSize : getDefaultPageSize();
+    }
+
+    /**
+     * Sets the number of items to request per page from paginated API resources.
+     *
+     * @param pageSize the number of items to request per page, {@code 0} for the default.
+     * @since 2.2.4
+     */
+    @DataBoundSetter
+    public final void setPageSize(int pageSize) {
+        this.pageSize = Math.max(0, pageSize);
+    }
+
+    /**
+     * Returns the number of items to request per page when no page size has been configured.
+     *
+     * @return the default number of items to request per page.
+     * @since 2.2.4
+     */
+    public abstract int getDefaultPageSize();
+
+    /**
+     * Returns the number of API requests per second each credential may send to this end-point.
+     *
+     * @return the number of API requests per second or {@link #UNLIMITED_REQUEST_RATE} if requests are only slowed
+     * down when the end-point reports that they are rate limited.
+     * @since 2.2.4
+     */
+    public final int getRequestRate() {
+        return requestRate > 0 ? requestRate : requestRate < 0 ? UNLIMITED_REQUEST_RATE : getDefaultRequestRate();
+    }
+
+    /**
+     * Sets the number of API requests per second each credential may send to this end-point.
+     *
+     * @param requestRate the number of API requests per second, {@code 0} for the default or any negative value
+     *                    for no limit.
+     * @since 2.2.4
+     */
+    @DataBoundSetter
+    public final void setRequestRate(int requestRate) {
+        this.requestRate = Math.max(UNLIMITED_REQUEST_RATE, requestRate);
+    }
+
+    /**
+     * Returns the number of API requests per second each credential may send when no request rate has been
+     * configured.
+     *
+     * @return the default number of API requests per second or {@link #UNLIMITED_REQUEST_RATE} for no limit.
+     * @since 2.2.4
+     */
+    public abstract int getDefaultRequestRate();
+
+    /**
+     * Returns the maximum number of concurrent API requests to this end-point.
+     *
+     * @return the maximum number of concurrent API requests.
+     * @since 2.2.4
+     */
+    public final int getMaxConcurrentRequests() {
+        return maxConcurrentRequests > 0 ? maxConcurrentRequests : DEFAULT_MAX_CONCURRENT_REQUESTS;
+    }
+
+    /**
+     * Sets the maximum number of concurrent API requests to this end-point.
+     *
+     * @param maxConcurrentRequests the maximum number of concurrent API requests, {@code 0} for the default.
+     * @since 2.2.4
+     */
+    @DataBoundSetter
+    public final void setMaxConcurrentRequests(int maxConcurrentRequests) {
+        this.maxConcurrentRequests = Math.max(0, maxConcurrentRequests);
+    }
+
+    /**
+     * Returns the time (in seconds) an API request waits for one of the concurrent requests to this end-point to
+     * complete before it is rejected.
+     *
+     * @return the queue timeout (in seconds).
+     * @since 2.2.4
+     */
+    public final int getQueueTimeout() {
+        return queueTimeout > 0 ? queueTimeout : getDefaultQueueTimeout();
+    }
+
+    /**
+     * Sets the time (in seconds) an API request waits for one of the concurrent requests to this end-point to
+     * complete before it is rejected.
+     *
+     * @param queueTimeout the queue timeout (in seconds), {@code 0} for the default.
+     * @since 2.2.4
+     */
+    @DataBoundSetter
+    public final void setQueueTimeout(int queueTimeout) {
+        this.queueTimeout = Math.max(0, queueTimeout);
+    }
+
+    /**
+     * Returns the time (in seconds) an API request waits for one of the concurrent requests to complete when no
+     * queue timeout has been configured.
+     *
+     * @return the default queue timeout (in seconds).
+     * @since 2.2.4
+     */
+    public int getDefaultQueueTimeout() {
+        return DEFAULT_QUEUE_TIMEOUT;
+    }
+
+    /**
+     * Returns the number of consecutive failed API requests after which requests to this end-point are rejected.
+     *
+     * @return the number of consecutive failed API requests.
+     * @since 2.2.4
+     */
+    public final int getFailureThreshold() {
+        return failureThreshold > 0 ? failureThreshold : DEFAULT_FAILURE_THRESHOLD;
+    }
+
+    /**
+     * Sets the number of consecutive failed API requests after which requests to this end-point are rejected.
+     *
+     * @param failureThreshold the number of consecutive failed API requests, {@code 0} for the default.
+     * @since 2.2.4
+     */
+    @DataBoundSetter
+    public final void setFailureThreshold(int failureThreshold) {
+        this.failureThreshold = Math.max(0, failureThreshold);
+    }
+
+    /**
+     * Returns the time (in seconds) requests are rejected before checking if this end-point has recovered.
+     *
+     * @return the recovery delay (in seconds).
+     * @since 2.2.4
+     */
+    public final int getRecoveryDelay() {
+        return recoveryDelay > 0 ? recoveryDelay : DEFAULT_RECOVERY_DELAY;
+    }
+
+    /**
+     * Sets the time (in seconds) requests are rejected before checking if this end-point has recovered.
+     *
+     * @param recoveryDelay the recovery delay (in seconds), {@code 0} for the default.
+     * @since 2.2.4
+     */
+    @DataBoundSetter
+    public final void setRecoveryDelay(int recoveryDelay) {
+        this.recoveryDelay = Math.max(0, recoveryDelay);
+    }
+
+    /**
+     * Returns the number of upcoming heads evaluated concurrently while scanning this end-point.
+     *
+     * @return the number of upcoming heads evaluated concurrently, {@code 1} if they are evaluated one at a time.
+     * @since 2.2.4
+     */
+    public final int getPrefetchParallelism() {
+        return prefetchParallelism > 0 ? prefetchParallelism : DEFAULT_PREFETCH_PARALLELISM;
+    }
+
+    /**
+     * Sets the number of upcoming heads evaluated concurrently while scanning this end-point.
+     *
+     * @param prefetchParallelism the number of upcoming heads evaluated concurrently, {@code 0} for the default.
+     * @since 2.2.4
+     */
+    @DataBoundSetter
+    public final void setPrefetchParallelism(int prefetchParallelism) {
+        this.prefetchParallelism = Math.max(0, prefetchParallelism);
+    }
+
     /**
      * Looks up the {@link StandardUsernamePasswordCredentials} to use for auto-management of hooks.
      *
@@ -118,14 +366,12 @@ public abstract class AbstractBitbucketEndpoint extends AbstractDescribableImpl<
      */
     @CheckForNull
     public StandardUsernamePasswordCredentials credentials() {
-        return StringUtils.isBlank(credentialsId) ? null : CredentialsMatchers.firstOrNull(
-                CredentialsProvider.lookupCredentials(
-                        StandardUsernamePasswordCredentials.class,
-                        Jenkins.getActiveInstance(),
-                        ACL.SYSTEM,
-                        URIRequirementBuilder.fromUri(getServerUrl()).build()
-                ),
-                CredentialsMatchers.withId(credentialsId)
+        return StringUtils.isBlank(credentialsId) ? null : CredentialsLookupCache.get().lookup(
+                StandardUsernamePasswordCredentials.class,
+                Jenkins.getActiveInstance(),
+                ACL.SYSTEM,
+                getServerUrl(),
+                credentialsId
         );
     }
 
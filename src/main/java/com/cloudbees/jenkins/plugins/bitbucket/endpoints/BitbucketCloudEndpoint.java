@@ -46,6 +46,16 @@ public class BitbucketCloudEndpoint extends AbstractBitbucketEndpoint {
      * A bad URL of Bitbucket Cloud.
      */
     public static final String BAD_SERVER_URL = "http://bitbucket.org";
+    /**
+     * The default number of items to request per page, Bitbucket Cloud rejects larger pages for some resources.
+     */
+    public static final int DEFAULT_PAGE_SIZE = 50;
+
+    /**
+     * The default number of API requests per second each credential may send, which keeps a scan within the hourly
+     * limits of Bitbucket Cloud.
+     */
+    public static final int DEFAULT_REQUEST_RATE = 10;
 
     /**
      * Constructor.
@@ -76,6 +86,22 @@ public class BitbucketCloudEndpoint extends AbstractBitbucketEndpoint {
         return SERVER_URL;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getDefaultPageSize() {
+        return DEFAULT_PAGE_SIZE;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getDefaultRequestRate() {
+        return DEFAULT_REQUEST_RATE;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -23,6 +23,9 @@
  */
 package com.cloudbees.jenkins.plugins.bitbucket.endpoints;
 
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketApiRegistry;
+import com.cloudbees.jenkins.plugins.bitbucket.client.BitbucketCloudApiClient;
+import com.cloudbees.jenkins.plugins.bitbucket.server.client.BitbucketServerAPIClient;
 import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.Extension;
@@ -176,6 +179,18 @@ public class BitbucketEndpointConfiguration extends GlobalConfiguration {
         }
         this.endpoints = eps;
         save();
+        // the clients and the page sizes they learnt come from the previous endpoints
+        clearClients();
+    }
+
+    /**
+     * Discards the shared clients along with the page sizes the endpoints have been seen to accept, so that the next
+     * requests pick up the current configuration.
+     */
+    private static void clearClients() {
+        BitbucketApiRegistry.clear();
+        BitbucketCloudApiClient.clearPageLengthCaps();
+        BitbucketServerAPIClient.clearPageSizeCaps();
     }
 
     /**
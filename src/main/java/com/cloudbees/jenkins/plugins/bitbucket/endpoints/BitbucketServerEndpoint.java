@@ -35,6 +35,7 @@ import javax.annotation.Nonnull;
 import jenkins.scm.api.SCMName;
 import org.apache.commons.lang.StringUtils;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.QueryParameter;
 
 /**
@@ -57,6 +58,37 @@ public class BitbucketServerEndpoint extends AbstractBitbucketEndpoint {
             "source."
     };
 
+    /**
+     * The default maximum number of pooled connections to a Bitbucket Server.
+     */
+    public static final int DEFAULT_MAX_CONNECTIONS = 20;
+
+    /**
+     * The default timeout (in seconds) when establishing a connection or waiting for a pooled connection.
+     */
+    public static final int DEFAULT_CONNECTION_TIMEOUT = 10;
+
+    /**
+     * The default timeout (in seconds) when waiting for data from a Bitbucket Server.
+     */
+    public static final int DEFAULT_READ_TIMEOUT = 60;
+
+    /**
+     * The default time (in seconds) that a pooled connection can stay idle before it is evicted.
+     */
+    public static final int DEFAULT_IDLE_TIMEOUT = 60;
+
+    /**
+     * The default number of items to request per page, the server will cap it to its configured maximum.
+     */
+    public static final int DEFAULT_PAGE_SIZE = 100;
+
+    /**
+     * The default number of API requests per second each credential may send, none as Bitbucket Server does not rate
+     * limit requests unless configured to.
+     */
+    public static final int DEFAULT_REQUEST_RATE = UNLIMITED_REQUEST_RATE;
+
     /**
      * Optional name to use to describe the end-point.
      */
@@ -69,6 +101,26 @@ public class BitbucketServerEndpoint extends AbstractBitbucketEndpoint {
     @NonNull
     private final String serverUrl;
 
+    /**
+     * The maximum number of pooled connections to this Bitbucket Server, {@code 0} for the default.
+     */
+    private int maxConnections;
+
+    /**
+     * The connection timeout (in seconds), {@code 0} for the default.
+     */
+    private int connectionTimeout;
+
+    /**
+     * The read timeout (in seconds), {@code 0} for the default.
+     */
+    private int readTimeout;
+
+    /**
+     * The time (in seconds) after which idle pooled connections are evicted, {@code 0} for the default.
+     */
+    private int idleTimeout;
+
     /**
      * @param displayName   Optional name to use to describe the end-point.
      * @param serverUrl     The URL of this Bitbucket Server
@@ -103,6 +155,109 @@ public class BitbucketServerEndpoint extends AbstractBitbucketEndpoint {
         return serverUrl;
     }
 
+    /**
+     * Returns the maximum number of pooled connections to this Bitbucket Server.
+     *
+     * @return the maximum number of pooled connections to this Bitbucket Server.
+     */
+    public int getMaxConnections() {
+        return maxConnections > 0 ? maxConnections : DEFAULT_MAX_CONNECTIONS;
+    }
+
+    /**
+     * Sets the maximum number of pooled connections to this Bitbucket Server.
+     *
+     * @param maxConnections the maximum number of pooled connections, {@code 0} for the default.
+     */
+    @DataBoundSetter
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = Math.max(0, maxConnections);
+    }
+
+    /**
+     * Returns the connection timeout (in seconds).
+     *
+     * @return the connection timeout (in seconds).
+     */
+    public int getConnectionTimeout() {
+        return connectionTimeout > 0 ? connectionTimeout : DEFAULT_CONNECTION_TIMEOUT;
+    }
+
+    /**
+     * Sets the connection timeout (in seconds).
+     *
+     * @param connectionTimeout the connection timeout (in seconds), {@code 0} for the default.
+     */
+    @DataBoundSetter
+    public void setConnectionTimeout(int connectionTimeout) {
+        this.connectionTimeout = Math.max(0, connectionTimeout);
+    }
+
+    /**
+     * Returns the read timeout (in seconds).
+     *
+     * @return the read timeout (in seconds).
+     */
+    public int getReadTimeout() {
+        return readTimeout > 0 ? readTimeout : DEFAULT_READ_TIMEOUT;
+    }
+
+    /**
+     * Sets the read timeout (in seconds).
+     *
+     * @param readTimeout the read timeout (in seconds), {@code 0} for the default.
+     */
+    @DataBoundSetter
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = Math.max(0, readTimeout);
+    }
+
+    /**
+     * Returns the time (in seconds) after which idle pooled connections are evicted.
+     *
+     * @return the time (in seconds) after which idle pooled connections are evicted.
+     */
+    public int getIdleTimeout() {
+        return idleTimeout > 0 ? idleTimeout : DEFAULT_IDLE_TIMEOUT;
+    }
+
+    /**
+     * Sets the time (in seconds) after which idle pooled connections are evicted.
+     *
+     * @param idleTimeout the idle timeout (in seconds), {@code 0} for the default.
+     */
+    @DataBoundSetter
+    public void setIdleTimeout(int idleTimeout) {
+        this.idleTimeout = Math.max(0, idleTimeout);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getDefaultPageSize() {
+        return DEFAULT_PAGE_SIZE;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getDefaultRequestRate() {
+        return DEFAULT_REQUEST_RATE;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * A request waits at least as long as the read timeout, as the concurrent requests may be waiting for as long for
+     * their responses.
+     */
+    @Override
+    public int getDefaultQueueTimeout() {
+        return Math.max(super.getDefaultQueueTimeout(), getReadTimeout());
+    }
+
     /**
      * {@inheritDoc}
      */
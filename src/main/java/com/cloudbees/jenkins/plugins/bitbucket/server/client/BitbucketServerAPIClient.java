@@ -23,9 +23,10 @@
  */
 package com.cloudbees.jenkins.plugins.bitbucket.server.client;
 
-import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketApi;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketBuildStatus;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketCommit;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketDirectory;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketIncrementalApi;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketPullRequest;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketRepository;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketRepositoryProtocol;
@@ -33,12 +34,25 @@ import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketRepositoryType;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketRequestException;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketTeam;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketWebHook;
+import com.cloudbees.jenkins.plugins.bitbucket.client.JsonResponseReader;
+import com.cloudbees.jenkins.plugins.bitbucket.client.CommitCache;
+import com.cloudbees.jenkins.plugins.bitbucket.client.ConditionalGetCache;
+import com.cloudbees.jenkins.plugins.bitbucket.client.ConnectionPool;
+import com.cloudbees.jenkins.plugins.bitbucket.client.EndpointGuard;
+import com.cloudbees.jenkins.plugins.bitbucket.client.HttpCompression;
+import com.cloudbees.jenkins.plugins.bitbucket.client.PagedIterator;
+import com.cloudbees.jenkins.plugins.bitbucket.client.RequestCoalescer;
+import com.cloudbees.jenkins.plugins.bitbucket.client.RateLimitScheduler;
 import com.cloudbees.jenkins.plugins.bitbucket.client.repository.UserRoleInRepository;
+import com.cloudbees.jenkins.plugins.bitbucket.endpoints.AbstractBitbucketEndpoint;
+import com.cloudbees.jenkins.plugins.bitbucket.endpoints.BitbucketEndpointConfiguration;
+import com.cloudbees.jenkins.plugins.bitbucket.endpoints.BitbucketServerEndpoint;
 import com.cloudbees.jenkins.plugins.bitbucket.server.client.branch.BitbucketServerBranch;
 import com.cloudbees.jenkins.plugins.bitbucket.server.client.branch.BitbucketServerBranches;
 import com.cloudbees.jenkins.plugins.bitbucket.server.client.branch.BitbucketServerCommit;
 import com.cloudbees.jenkins.plugins.bitbucket.server.client.pullrequest.BitbucketServerPullRequest;
 import com.cloudbees.jenkins.plugins.bitbucket.server.client.pullrequest.BitbucketServerPullRequests;
+import com.cloudbees.jenkins.plugins.bitbucket.server.client.repository.BitbucketServerBrowse;
 import com.cloudbees.jenkins.plugins.bitbucket.server.client.repository.BitbucketServerProject;
 import com.cloudbees.jenkins.plugins.bitbucket.server.client.repository.BitbucketServerRepositories;
 import com.cloudbees.jenkins.plugins.bitbucket.server.client.repository.BitbucketServerRepository;
@@ -49,26 +63,34 @@ import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.ProxyConfiguration;
 import hudson.Util;
 import hudson.util.Secret;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.InetSocketAddress;
 import java.net.MalformedURLException;
 import java.net.Proxy;
 import java.net.URL;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import jenkins.model.Jenkins;
+import jenkins.scm.api.SCMFile;
 import net.sf.json.JSONObject;
 import org.apache.commons.httpclient.Header;
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HttpMethod;
 import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
 import org.apache.commons.httpclient.NameValuePair;
 import org.apache.commons.httpclient.URIException;
 import org.apache.commons.httpclient.UsernamePasswordCredentials;
@@ -81,22 +103,25 @@ import org.apache.commons.httpclient.methods.StringRequestEntity;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.codehaus.jackson.map.ObjectMapper;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
 
 /**
  * Bitbucket API client.
  * Developed and test with Bitbucket 4.3.2
  */
-public class BitbucketServerAPIClient implements BitbucketApi {
+public class BitbucketServerAPIClient implements BitbucketIncrementalApi {
 
     private static final Logger LOGGER = Logger.getLogger(BitbucketServerAPIClient.class.getName());
     private static final String API_BASE_PATH = "/rest/api/1.0";
-    private static final String API_REPOSITORIES_PATH = API_BASE_PATH + "/projects/%s/repos?start=%s";
+    private static final String API_REPOSITORIES_PATH = API_BASE_PATH + "/projects/%s/repos?start=%s&limit=%s";
     private static final String API_REPOSITORY_PATH = API_BASE_PATH + "/projects/%s/repos/%s";
     private static final String API_DEFAULT_BRANCH_PATH = API_BASE_PATH + "/projects/%s/repos/%s/branches/default";
-    private static final String API_BRANCHES_PATH = API_BASE_PATH + "/projects/%s/repos/%s/branches?start=%s";
-    private static final String API_PULL_REQUESTS_PATH = API_BASE_PATH + "/projects/%s/repos/%s/pull-requests?start=%s";
+    private static final String API_BRANCHES_PATH = API_BASE_PATH + "/projects/%s/repos/%s/branches?details=true&start=%s&limit=%s";
+    private static final String API_PULL_REQUESTS_PATH = API_BASE_PATH + "/projects/%s/repos/%s/pull-requests?start=%s&limit=%s";
     private static final String API_PULL_REQUEST_PATH = API_BASE_PATH + "/projects/%s/repos/%s/pull-requests/%s";
     private static final String API_BROWSE_PATH = API_REPOSITORY_PATH + "/browse/%s?at=%s";
+    private static final String RAW_PATH = "/projects/%s/repos/%s/raw/%s?at=%s";
     private static final String API_COMMITS_PATH = API_REPOSITORY_PATH + "/commits/%s";
     private static final String API_PROJECT_PATH = API_BASE_PATH + "/projects/%s";
     private static final String API_COMMIT_COMMENT_PATH = API_REPOSITORY_PATH + "/commits/%s/comments";
@@ -107,7 +132,10 @@ public class BitbucketServerAPIClient implements BitbucketApi {
 
     private static final String API_COMMIT_STATUS_PATH = "/rest/build-status/1.0/commits/%s";
 
-    private static final int MAX_PAGES = 100;
+    /**
+     * The largest page size each Bitbucket Server has been seen to accept, keyed by server URL and credentials.
+     */
+    private static final ConcurrentMap<String, Integer> pageSizeCaps = new ConcurrentHashMap<>();
 
     /**
      * Repository owner.
@@ -132,6 +160,32 @@ public class BitbucketServerAPIClient implements BitbucketApi {
 
     private String baseURL;
 
+    /**
+     * The connection settings of the {@link BitbucketServerEndpoint} this client talks to.
+     */
+    private final int maxConnections;
+    private final int connectionTimeout;
+    private final int readTimeout;
+    private final int idleTimeout;
+
+    /**
+     * The number of items to request per page.
+     */
+    private final int pageSize;
+
+    /**
+     * The number of requests per second sent with the credentials of this client, negative for no limit.
+     */
+    private final int requestRate;
+
+    /**
+     * The {@link EndpointGuard} settings of the {@link BitbucketServerEndpoint} this client talks to.
+     */
+    private final int maxConcurrentRequests;
+    private final int queueTimeout;
+    private final int failureThreshold;
+    private final int recoveryDelay;
+
     public BitbucketServerAPIClient(String baseURL, String owner, String repositoryName, StandardUsernamePasswordCredentials creds, boolean userCentric) {
         if (creds != null) {
             this.credentials = new UsernamePasswordCredentials(creds.getUsername(), Secret.toString(creds.getPassword()));
@@ -140,6 +194,39 @@ public class BitbucketServerAPIClient implements BitbucketApi {
         this.owner = owner;
         this.repositoryName = repositoryName;
         this.baseURL = baseURL;
+        BitbucketServerEndpoint endpoint = lookupEndpoint(baseURL);
+        if (endpoint != null) {
+            this.maxConnections = endpoint.getMaxConnections();
+            this.connectionTimeout = endpoint.getConnectionTimeout();
+            this.readTimeout = endpoint.getReadTimeout();
+            this.idleTimeout = endpoint.getIdleTimeout();
+            this.pageSize = endpoint.getPageSize();
+            this.requestRate = endpoint.getRequestRate();
+            this.maxConcurrentRequests = endpoint.getMaxConcurrentRequests();
+            this.queueTimeout = endpoint.getQueueTimeout();
+            this.failureThreshold = endpoint.getFailureThreshold();
+            this.recoveryDelay = endpoint.getRecoveryDelay();
+        } else {
+            this.maxConnections = BitbucketServerEndpoint.DEFAULT_MAX_CONNECTIONS;
+            this.connectionTimeout = BitbucketServerEndpoint.DEFAULT_CONNECTION_TIMEOUT;
+            this.readTimeout = BitbucketServerEndpoint.DEFAULT_READ_TIMEOUT;
+            this.idleTimeout = BitbucketServerEndpoint.DEFAULT_IDLE_TIMEOUT;
+            this.pageSize = BitbucketServerEndpoint.DEFAULT_PAGE_SIZE;
+            this.requestRate = BitbucketServerEndpoint.DEFAULT_REQUEST_RATE;
+            this.maxConcurrentRequests = AbstractBitbucketEndpoint.DEFAULT_MAX_CONCURRENT_REQUESTS;
+            this.queueTimeout = AbstractBitbucketEndpoint.DEFAULT_QUEUE_TIMEOUT;
+            this.failureThreshold = AbstractBitbucketEndpoint.DEFAULT_FAILURE_THRESHOLD;
+            this.recoveryDelay = AbstractBitbucketEndpoint.DEFAULT_RECOVERY_DELAY;
+        }
+    }
+
+    @CheckForNull
+    private static BitbucketServerEndpoint lookupEndpoint(String baseURL) {
+        if (Jenkins.getInstance() == null) {
+            return null;
+        }
+        AbstractBitbucketEndpoint endpoint = BitbucketEndpointConfiguration.get().findEndpoint(baseURL);
+        return endpoint instanceof BitbucketServerEndpoint ? (BitbucketServerEndpoint) endpoint : null;
     }
 
     /**
@@ -239,29 +326,27 @@ public class BitbucketServerAPIClient implements BitbucketApi {
     @NonNull
     @Override
     public List<BitbucketServerPullRequest> getPullRequests() throws IOException, InterruptedException {
-        String url = String.format(API_PULL_REQUESTS_PATH, getUserCentricOwner(), repositoryName, 0);
+        return iteratePullRequests().toList();
+    }
 
-        try {
-            List<BitbucketServerPullRequest> pullRequests = new ArrayList<>();
-            Integer pageNumber = 1;
-            String response = getRequest(url);
-            BitbucketServerPullRequests page = parse(response, BitbucketServerPullRequests.class);
-            pullRequests.addAll(page.getValues());
-            while (!page.isLastPage() && pageNumber < MAX_PAGES) {
-                if (Thread.interrupted()) {
-                    throw new InterruptedException();
+    /**
+     * {@inheritDoc}
+     */
+    @NonNull
+    @Override
+    public PagedIterator<BitbucketServerPullRequest> iteratePullRequests() {
+        return new PrefetchingPager<BitbucketServerPullRequest>(baseURL) {
+            @Override
+            protected BitbucketServerPullRequests fetch(int start) throws IOException {
+                int limit = getPageSize();
+                String url = String.format(API_PULL_REQUESTS_PATH, getUserCentricOwner(), repositoryName, start, limit);
+                try {
+                    return learnPageSize(getRequest(url, BitbucketServerPullRequests.class), limit);
+                } catch (IOException e) {
+                    throw new IOException("I/O error when accessing URL: " + url, e);
                 }
-                pageNumber++;
-                url = String.format(API_PULL_REQUESTS_PATH, getUserCentricOwner(), repositoryName,
-                        page.getNextPageStart());
-                response = getRequest(url);
-                page = parse(response, BitbucketServerPullRequests.class);
-                pullRequests.addAll(page.getValues());
             }
-            return pullRequests;
-        } catch (IOException e) {
-            throw new IOException("I/O error when accessing URL: " + url, e);
-        }
+        };
     }
 
     /**
@@ -271,9 +356,8 @@ public class BitbucketServerAPIClient implements BitbucketApi {
     @NonNull
     public BitbucketPullRequest getPullRequestById(@NonNull Integer id) throws IOException {
         String url = String.format(API_PULL_REQUEST_PATH, getUserCentricOwner(), repositoryName, id);
-        String response = getRequest(url);
         try {
-            return parse(response, BitbucketServerPullRequest.class);
+            return getCoalescedRequest(url, BitbucketServerPullRequest.class);
         } catch (IOException e) {
             throw new IOException("I/O error when accessing URL: " + url, e);
         }
@@ -290,9 +374,8 @@ public class BitbucketServerAPIClient implements BitbucketApi {
                     "Cannot get a repository from an API instance that is not associated with a repository");
         }
         String url = String.format(API_REPOSITORY_PATH, getUserCentricOwner(), repositoryName);
-        String response = getRequest(url);
         try {
-            return parse(response, BitbucketServerRepository.class);
+            return getCoalescedRequest(url, BitbucketServerRepository.class);
         } catch (IOException e) {
             throw new IOException("I/O error when accessing URL: " + url, e);
         }
@@ -319,6 +402,62 @@ public class BitbucketServerAPIClient implements BitbucketApi {
      */
     @Override
     public boolean checkPathExists(@NonNull String branchOrHash, @NonNull String path) throws IOException {
+        // only ask for the type of the path, as browsing a file otherwise returns its content
+        String url = String.format(API_BROWSE_PATH, getUserCentricOwner(), repositoryName, encodePath(path),
+                URLEncoder.encode(branchOrHash, "UTF-8")) + "&type=true";
+        int status = getRequestStatus(url);
+        return status == HttpStatus.SC_OK;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @NonNull
+    @Override
+    public BitbucketDirectory getDirectoryContent(@NonNull String branchOrHash, @NonNull String path)
+            throws IOException {
+        String baseUrl = String.format(API_BROWSE_PATH, getUserCentricOwner(), repositoryName, encodePath(path),
+                URLEncoder.encode(branchOrHash, "UTF-8"));
+        Map<String, SCMFile.Type> entries = new LinkedHashMap<>();
+        int start = 0;
+        while (true) {
+            String url = baseUrl + "&start=" + start + "&limit=" + getPageSize();
+            BitbucketServerBrowse.Children children;
+            try {
+                children = getRequest(url, BitbucketServerBrowse.class).getChildren();
+            } catch (IOException e) {
+                throw new IOException("I/O error when accessing URL: " + url, e);
+            }
+            if (children == null) {
+                // the path is a file
+                break;
+            }
+            if (children.getValues() != null) {
+                for (BitbucketServerBrowse.Entry entry : children.getValues()) {
+                    if (entry.getName() != null) {
+                        entries.put(entry.getName(), entry.toFileType());
+                    }
+                }
+            }
+            if (children.isLastPage() || children.getNextPageStart() == null) {
+                break;
+            }
+            start = children.getNextPageStart();
+        }
+        return new BitbucketDirectory(entries);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @NonNull
+    @Override
+    public InputStream getFileContent(@NonNull String branchOrHash, @NonNull String path) throws IOException {
+        return openRequest(String.format(RAW_PATH, getUserCentricOwner(), repositoryName, encodePath(path),
+                URLEncoder.encode(branchOrHash, "UTF-8")));
+    }
+
+    private static String encodePath(@NonNull String path) {
         StringBuilder encodedPath = new StringBuilder(path.length() + 10);
         boolean first = true;
         for (String segment : StringUtils.split(path, "/")) {
@@ -329,9 +468,7 @@ public class BitbucketServerAPIClient implements BitbucketApi {
             }
             encodedPath.append(Util.rawEncode(segment));
         }
-        int status = getRequestStatus(String.format(API_BROWSE_PATH, getUserCentricOwner(), repositoryName, encodedPath,
-                URLEncoder.encode(branchOrHash, "UTF-8")));
-        return HttpStatus.SC_OK == status;
+        return encodedPath.toString();
     }
 
     @CheckForNull
@@ -339,8 +476,7 @@ public class BitbucketServerAPIClient implements BitbucketApi {
     public String getDefaultBranch() throws IOException {
         String url = String.format(API_DEFAULT_BRANCH_PATH, getUserCentricOwner(), repositoryName);
         try {
-            String response = getRequest(url);
-            return parse(response, BitbucketServerBranch.class).getName();
+            return getCoalescedRequest(url, BitbucketServerBranch.class).getName();
         } catch (FileNotFoundException e) {
             LOGGER.fine(String.format("Could not find default branch for %s/%s", this.owner, this.repositoryName));
             return null;
@@ -355,46 +491,102 @@ public class BitbucketServerAPIClient implements BitbucketApi {
     @Override
     @NonNull
     public List<BitbucketServerBranch> getBranches() throws IOException, InterruptedException {
-        String url = String.format(API_BRANCHES_PATH, getUserCentricOwner(), repositoryName, 0);
+        return iterateBranches().toList();
+    }
 
-        try {
-            List<BitbucketServerBranch> branches = new ArrayList<>();
-            Integer pageNumber = 1;
-            String response = getRequest(url);
-            BitbucketServerBranches page = parse(response, BitbucketServerBranches.class);
-            branches.addAll(page.getValues());
-            while (!page.isLastPage() && pageNumber < MAX_PAGES) {
-                if (Thread.interrupted()) {
-                    throw new InterruptedException();
+    /**
+     * {@inheritDoc}
+     */
+    @NonNull
+    @Override
+    public PagedIterator<BitbucketServerBranch> iterateBranches() {
+        return new PrefetchingPager<BitbucketServerBranch>(baseURL) {
+            @Override
+            protected BitbucketServerBranches fetch(int start) throws IOException {
+                int limit = getPageSize();
+                String url = String.format(API_BRANCHES_PATH, getUserCentricOwner(), repositoryName, start, limit);
+                try {
+                    return learnPageSize(getRequest(url, BitbucketServerBranches.class), limit);
+                } catch (IOException e) {
+                    throw new IOException("I/O error when accessing URL: " + url, e);
                 }
-                pageNumber++;
-                url = String.format(API_BRANCHES_PATH, getUserCentricOwner(), repositoryName, page.getNextPageStart());
-                response = getRequest(url);
-                page = parse(response, BitbucketServerBranches.class);
-                branches.addAll(page.getValues());
             }
-            for (BitbucketServerBranch branch: branches) {
-                BitbucketCommit commit = resolveCommit(branch.getRawNode());
-                if (commit != null) {
-                    branch.setTimestamp(commit.getDateMillis());
+
+            @Override
+            protected List<BitbucketServerBranch> nextPage(int pageIndex) throws IOException, InterruptedException {
+                List<BitbucketServerBranch> branches = super.nextPage(pageIndex);
+                if (branches != null) {
+                    for (BitbucketServerBranch branch : branches) {
+                        setTimestampResolver(branch);
+                    }
                 }
+                return branches;
             }
-            return branches;
-        } catch (IOException e) {
-            throw new IOException("I/O error when accessing URL: " + url, e);
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     * There is no resource for a single branch, so the branches are filtered by name until the exact match.
+     */
+    @CheckForNull
+    @Override
+    public BitbucketServerBranch getBranch(@NonNull String branchName) throws IOException {
+        String filter = URLEncoder.encode(branchName, "UTF-8");
+        int start = 0;
+        while (true) {
+            String url = String.format(API_BRANCHES_PATH, getUserCentricOwner(), repositoryName, start, getPageSize())
+                    + "&filterText=" + filter;
+            BitbucketServerBranches page;
+            try {
+                page = getRequest(url, BitbucketServerBranches.class);
+            } catch (IOException e) {
+                throw new IOException("I/O error when accessing URL: " + url, e);
+            }
+            if (page.getValues() != null) {
+                for (BitbucketServerBranch branch : page.getValues()) {
+                    if (branchName.equals(branch.getName())) {
+                        setTimestampResolver(branch);
+                        return branch;
+                    }
+                }
+            }
+            if (page.isLastPage() || page.getNextPageStart() == null) {
+                return null;
+            }
+            start = page.getNextPageStart();
         }
     }
 
+    private void setTimestampResolver(final BitbucketServerBranch branch) {
+        // only servers without the latest commit metadata need a request, and only when read
+        branch.setTimestampResolver(new Callable<Long>() {
+            @Override
+            public Long call() throws IOException {
+                BitbucketCommit commit = resolveCommit(branch.getRawNode());
+                return commit == null ? 0L : commit.getDateMillis();
+            }
+        });
+    }
+
     /** {@inheritDoc} */
     @Override
     public BitbucketCommit resolveCommit(@NonNull String hash) throws IOException {
+        CommitCache cache = CommitCache.get();
+        BitbucketCommit commit = cache.lookup(baseURL, getUserCentricOwner(), repositoryName, hash);
+        if (commit != null) {
+            return commit;
+        }
         String url = String.format(API_COMMITS_PATH, getUserCentricOwner(), repositoryName, hash);
         try {
-            String response = getRequest(url);
-            return parse(response, BitbucketServerCommit.class);
+            commit = getCoalescedRequest(url, BitbucketServerCommit.class);
         } catch (IOException e) {
             throw new IOException("I/O error when accessing URL: " + url, e);
         }
+        if (commit != null) {
+            cache.put(baseURL, getUserCentricOwner(), repositoryName, hash, commit);
+        }
+        return commit;
     }
 
     /** {@inheritDoc} */
@@ -417,8 +609,8 @@ public class BitbucketServerAPIClient implements BitbucketApi {
     @NonNull
     @Override
     public List<? extends BitbucketWebHook> getWebHooks() throws IOException, InterruptedException {
-        String response = getRequest(String.format(WEBHOOK_REPOSITORY_PATH, getUserCentricOwner(), repositoryName));
-        return parse(response, BitbucketServerWebhooks.class);
+        return getRequest(String.format(WEBHOOK_REPOSITORY_PATH, getUserCentricOwner(), repositoryName),
+                BitbucketServerWebhooks.class);
     }
 
     /**
@@ -431,8 +623,7 @@ public class BitbucketServerAPIClient implements BitbucketApi {
         } else {
             String url = String.format(API_PROJECT_PATH, getOwner());
             try {
-                String response = getRequest(url);
-                return parse(response, BitbucketServerProject.class);
+                return getCoalescedRequest(url, BitbucketServerProject.class);
             } catch (FileNotFoundException e) {
                 return null;
             } catch (IOException e) {
@@ -448,30 +639,74 @@ public class BitbucketServerAPIClient implements BitbucketApi {
     @Override
     public List<BitbucketServerRepository> getRepositories(@CheckForNull UserRoleInRepository role)
             throws IOException, InterruptedException {
-        String url = String.format(API_REPOSITORIES_PATH, getUserCentricOwner(), 0);
+        return iterateRepositories(role).toList();
+    }
 
-        try {
-            List<BitbucketServerRepository> repositories = new ArrayList<>();
-            Integer pageNumber = 1;
-            String response = getRequest(url);
-            BitbucketServerRepositories page = parse(response, BitbucketServerRepositories.class);
-            repositories.addAll(page.getValues());
-            while (!page.isLastPage() && pageNumber < MAX_PAGES) {
-                if (Thread.interrupted()) {
-                    throw new InterruptedException();
+    /**
+     * The role parameter is ignored for Bitbucket Server.
+     */
+    @NonNull
+    @Override
+    public PagedIterator<BitbucketServerRepository> iterateRepositories(@CheckForNull UserRoleInRepository role) {
+        return new PrefetchingPager<BitbucketServerRepository>(baseURL) {
+            @Override
+            protected BitbucketServerRepositories fetch(int start) throws IOException {
+                int limit = getPageSize();
+                String url = String.format(API_REPOSITORIES_PATH, getUserCentricOwner(), start, limit);
+                try {
+                    return learnPageSize(getRequest(url, BitbucketServerRepositories.class), limit);
+                } catch (FileNotFoundException e) {
+                    // the project or user does not exist (any more), treat it as having no repositories
+                    return null;
+                } catch (IOException e) {
+                    throw new IOException("I/O error when accessing URL: " + url, e);
                 }
-                pageNumber++;
-                url = String.format(API_REPOSITORIES_PATH, getUserCentricOwner(), page.getNextPageStart());
-                response = getRequest(url);
-                page = parse(response, BitbucketServerRepositories.class);
-                repositories.addAll(page.getValues());
             }
-            return repositories;
-        } catch (FileNotFoundException e) {
-            return new ArrayList<>();
-        } catch (IOException e) {
-            throw new IOException("I/O error when accessing URL: " + url, e);
+        };
+    }
+
+    /**
+     * Returns the page size to request, which is the configured page size unless this Bitbucket Server has been
+     * seen to cap it to a lower value.
+     *
+     * @return the page size to request.
+     */
+    private int getPageSize() {
+        Integer cap = pageSizeCaps.get(pageSizeKey());
+        return cap == null ? pageSize : Math.min(pageSize, cap);
+    }
+
+    /**
+     * Remembers the page size the server applied to a page if it is lower than the requested page size.
+     *
+     * @param page      the page.
+     * @param requested the requested page size.
+     * @param <P>       the type of page.
+     * @return the page.
+     */
+    private <P extends BitbucketServerPage<?>> P learnPageSize(P page, int requested) {
+        Integer limit = page.getLimit();
+        if (limit != null && limit > 0 && limit < requested) {
+            Integer previous = pageSizeCaps.put(pageSizeKey(), limit);
+            if (previous == null || previous.intValue() != limit) {
+                LOGGER.log(Level.FINE, "{0} caps pages to {1} items, requested {2}",
+                        new Object[]{baseURL, limit, requested});
+            }
         }
+        return page;
+    }
+
+    private String pageSizeKey() {
+        return credentials == null ? baseURL : credentials.getUserName() + "@" + baseURL;
+    }
+
+    /**
+     * Forgets the page sizes the Bitbucket Servers have been seen to accept, to be called when the endpoint
+     * configuration changes.
+     */
+    @Restricted(NoExternalUse.class)
+    public static void clearPageSizeCaps() {
+        pageSizeCaps.clear();
     }
 
     /** {@inheritDoc} */
@@ -487,55 +722,215 @@ public class BitbucketServerAPIClient implements BitbucketApi {
     }
 
 
-    private <T> T parse(String response, Class<T> clazz) throws IOException {
-        ObjectMapper mapper = new ObjectMapper();
-        return mapper.readValue(response, clazz);
+    /**
+     * Performs a GET request and decodes the response straight from the response stream.
+     *
+     * @param path the path relative to the server URL.
+     * @param type the type to decode.
+     * @param <T>  the type to decode.
+     * @return the decoded response.
+     * @throws IOException if there was a network communications error or the response could not be decoded.
+     */
+    private <T> T getRequest(String path, Class<T> type) throws IOException {
+        try (InputStream is = openRequest(path)) {
+            return JsonResponseReader.read(is, type);
+        }
     }
 
-    private String getRequest(String path) throws IOException {
+    /**
+     * Performs a GET request for a single resource, sharing the response with the concurrent requests for the same
+     * resource through the {@link RequestCoalescer}. Each caller decodes its own copy of the response body.
+     *
+     * @param path the path relative to the server URL.
+     * @param type the type to decode.
+     * @param <T>  the type to decode.
+     * @return the decoded response.
+     * @throws IOException if there was a network communications error or the response could not be decoded.
+     */
+    private <T> T getCoalescedRequest(final String path, Class<T> type) throws IOException {
+        String username = credentials != null ? credentials.getUserName() : null;
+        byte[] body;
+        try {
+            body = RequestCoalescer.get().fetch(this.baseURL + path, username, new RequestCoalescer.Fetch() {
+                @NonNull
+                @Override
+                public byte[] fetch() throws IOException {
+                    try (InputStream is = openRequest(path)) {
+                        return JsonResponseReader.toByteArray(is);
+                    }
+                }
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            InterruptedIOException ioe = new InterruptedIOException("Interrupted while waiting for URL: " + path);
+            ioe.initCause(e);
+            throw ioe;
+        }
+        return JsonResponseReader.read(new ByteArrayInputStream(body), type);
+    }
+
+    /**
+     * Performs a GET request, conditional when the response is in the {@link ConditionalGetCache}, and returns the
+     * response body, from the cache when the resource has not been modified.
+     * The caller is responsible for closing the returned stream, which releases the connection.
+     *
+     * @param path the path relative to the server URL.
+     * @return the response body.
+     * @throws IOException if there was a network communications error or the request failed.
+     */
+    private InputStream openRequest(String path) throws IOException {
+        ConditionalGetCache cache = ConditionalGetCache.get();
+        String username = credentials != null ? credentials.getUserName() : null;
+        ConditionalGetCache.Entry cached = cache.lookup(this.baseURL + path, username);
         GetMethod httpget = new GetMethod(this.baseURL + path);
+        EndpointGuard.Permit permit = executeGet(httpget, path, cached);
+        return cache.open(this.baseURL + path, username, cached, httpget, permit);
+    }
+
+    /**
+     * Executes a GET request, leaving the response body of a successful request unread.
+     * The caller is responsible for releasing the connection of the method and then exiting the returned permit.
+     *
+     * @param httpget the method to execute, which ends with a {@link HttpStatus#SC_OK} status, or
+     *                {@link HttpStatus#SC_NOT_MODIFIED} for a conditional request.
+     * @param path    the path relative to the server URL.
+     * @param cached  the cached response whose validators to send or {@code null} for an unconditional request.
+     * @return the {@link EndpointGuard} permit of the request.
+     * @throws IOException if there was a network communications error or the request failed.
+     */
+    private EndpointGuard.Permit executeGet(GetMethod httpget, String path,
+                                            @CheckForNull ConditionalGetCache.Entry cached) throws IOException {
+        if (cached != null) {
+            cached.addValidators(httpget);
+        }
         HttpClient client = getHttpClient(getMethodHost(httpget));
+        EndpointGuard.Permit permit = null;
+        boolean success = false;
         try {
-            client.executeMethod(httpget);
-            String response;
-            long len = httpget.getResponseContentLength();
-            if (len == 0) {
-                response = "";
-            } else {
-                ByteArrayOutputStream buf;
-                if (len > 0 && len <= Integer.MAX_VALUE / 2) {
-                    buf = new ByteArrayOutputStream((int) len);
-                } else {
-                    buf = new ByteArrayOutputStream();
-                }
-                try (InputStream is = httpget.getResponseBodyAsStream()) {
-                    IOUtils.copy(is, buf);
-                }
-                response = new String(buf.toByteArray(), StandardCharsets.UTF_8);
-            }
+            permit = executeRateLimited(client, httpget);
             if (httpget.getStatusCode() == HttpStatus.SC_NOT_FOUND) {
                 throw new FileNotFoundException("URL: " + path);
             }
+            if (cached != null && httpget.getStatusCode() == HttpStatus.SC_NOT_MODIFIED) {
+                success = true;
+                return permit;
+            }
             if (httpget.getStatusCode() != HttpStatus.SC_OK) {
                 throw new BitbucketRequestException(httpget.getStatusCode(),
                         "HTTP request error. Status: " + httpget.getStatusCode()
-                                + ": " + httpget.getStatusText() + ".\n" + response);
+                                + ": " + httpget.getStatusText() + ".\n" + getResponseContent(httpget, permit));
             }
-            return response;
+            success = true;
+            return permit;
         } catch (BitbucketRequestException | FileNotFoundException e) {
             throw e;
         } catch (IOException e) {
             throw new IOException("Communication error for url: " + path, e);
         } finally {
-            httpget.releaseConnection();
+            if (!success) {
+                httpget.releaseConnection();
+                if (permit != null) {
+                    permit.exit();
+                }
+            }
+        }
+    }
+
+    /**
+     * Executes a method once the {@link RateLimitScheduler} of the credential and the {@link EndpointGuard} of this
+     * Bitbucket Server allow it, retrying it while it is rate limited. The request stays in flight for the
+     * {@link EndpointGuard} until the returned permit is exited, which the caller does once the response has been
+     * read and the connection of the method released.
+     *
+     * @param client the client.
+     * @param method the method.
+     * @return the {@link EndpointGuard} permit of the request.
+     * @throws IOException if there was a network communications error, the rate limit wait is too long, the request
+     *                     was rejected by the endpoint guard or the thread was interrupted while waiting.
+     */
+    private EndpointGuard.Permit executeRateLimited(HttpClient client, HttpMethod method) throws IOException {
+        RateLimitScheduler scheduler = RateLimitScheduler.get(baseURL,
+                credentials != null ? credentials.getUserName() : null, requestRate);
+        EndpointGuard guard = EndpointGuard.get(baseURL, maxConcurrentRequests, queueTimeout, failureThreshold,
+                recoveryDelay);
+        HttpCompression.acceptCompressed(method);
+        try {
+            for (int attempt = 0; ; attempt++) {
+                scheduler.acquire();
+                EndpointGuard.Permit permit = guard.enter();
+                boolean held = false;
+                try {
+                    client.executeMethod(method);
+                    permit.completed(method.getStatusCode());
+                    if (!scheduler.onResponse(method, attempt)) {
+                        held = true;
+                        return permit;
+                    }
+                    // discard the rate limited response so that the connection can be reused
+                    getResponseContent(method, permit);
+                } finally {
+                    if (!held) {
+                        permit.exit();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            InterruptedIOException ioe = new InterruptedIOException("Interrupted while waiting to send a request to " + baseURL);
+            ioe.initCause(e);
+            throw ioe;
+        }
+    }
+
+    /**
+     * Reads the response body, recording a failure to read it on the {@link EndpointGuard} permit of the request.
+     */
+    private static String getResponseContent(HttpMethod method, EndpointGuard.Permit permit) throws IOException {
+        try {
+            return getResponseContent(method);
+        } catch (IOException e) {
+            permit.failed();
+            throw e;
+        }
+    }
+
+    private static String getResponseContent(HttpMethod method) throws IOException {
+        long len = -1L;
+        Header[] headers = method.getResponseHeaders("Content-Length");
+        if (headers != null && headers.length > 0) {
+            int i = headers.length - 1;
+            while (i >= 0) {
+                Header header = headers[i];
+                try {
+                    len = Long.parseLong(header.getValue());
+                    break;
+                } catch (NumberFormatException var5) {
+                    --i;
+                }
+            }
+        }
+        if (len == 0) {
+            return "";
         }
+        ByteArrayOutputStream buf;
+        if (len > 0 && len <= Integer.MAX_VALUE / 2) {
+            buf = new ByteArrayOutputStream((int) len);
+        } else {
+            buf = new ByteArrayOutputStream();
+        }
+        try (InputStream is = HttpCompression.getResponseBody(method)) {
+            if (is != null) {
+                IOUtils.copy(is, buf);
+            }
+        }
+        return new String(buf.toByteArray(), StandardCharsets.UTF_8);
     }
 
     private HttpClient getHttpClient(String host) {
-        HttpClient client = new HttpClient();
+        HttpClient client = new HttpClient(getConnectionManager());
 
-        client.getParams().setConnectionManagerTimeout(10 * 1000);
-        client.getParams().setSoTimeout(60 * 1000);
+        client.getParams().setConnectionManagerTimeout(connectionTimeout * 1000L);
+        client.getParams().setSoTimeout(readTimeout * 1000);
 
         if (credentials != null) {
             client.getState().setCredentials(AuthScope.ANY, credentials);
@@ -548,6 +943,15 @@ public class BitbucketServerAPIClient implements BitbucketApi {
         return client;
     }
 
+    /**
+     * Returns the shared connection manager of this Bitbucket Server, applying the current endpoint settings.
+     *
+     * @return the shared connection manager.
+     */
+    private MultiThreadedHttpConnectionManager getConnectionManager() {
+        return ConnectionPool.get(baseURL, maxConnections, connectionTimeout, readTimeout, idleTimeout);
+    }
+
     private static void setClientProxyParams(String host, HttpClient client) {
         Jenkins jenkins = Jenkins.getInstance();
         ProxyConfiguration proxyConfig = null;
@@ -577,11 +981,15 @@ public class BitbucketServerAPIClient implements BitbucketApi {
     private int getRequestStatus(String path) throws IOException {
         GetMethod httpget = new GetMethod(this.baseURL + path);
         HttpClient client = getHttpClient(getMethodHost(httpget));
+        EndpointGuard.Permit permit = null;
         try {
-            client.executeMethod(httpget);
+            permit = executeRateLimited(client, httpget);
             return httpget.getStatusCode();
         } finally {
             httpget.releaseConnection();
+            if (permit != null) {
+                permit.exit();
+            }
         }
     }
 
@@ -626,48 +1034,23 @@ public class BitbucketServerAPIClient implements BitbucketApi {
         HttpClient client = getHttpClient(getMethodHost(httppost));
         client.getState().setCredentials(AuthScope.ANY, credentials);
         client.getParams().setAuthenticationPreemptive(true);
+        EndpointGuard.Permit permit = null;
         try {
-            client.executeMethod(httppost);
+            permit = executeRateLimited(client, httppost);
             if (httppost.getStatusCode() == HttpStatus.SC_NO_CONTENT) {
                 // 204, no content
                 return "";
             }
-            String response;
-            long len = -1L;
-            Header[] headers = httppost.getResponseHeaders("Content-Length");
-            if (headers != null && headers.length > 0) {
-                int i = headers.length - 1;
-                len = -1L;
-                while (i >= 0) {
-                    Header header = headers[i];
-                    try {
-                        len = Long.parseLong(header.getValue());
-                        break;
-                    } catch (NumberFormatException var5) {
-                        --i;
-                    }
-                }
-            }
-            if (len == 0) {
-                response = "";
-            } else {
-                ByteArrayOutputStream buf;
-                if (len > 0 && len <= Integer.MAX_VALUE / 2) {
-                    buf = new ByteArrayOutputStream((int) len);
-                } else {
-                    buf = new ByteArrayOutputStream();
-                }
-                try (InputStream is = httppost.getResponseBodyAsStream()) {
-                    IOUtils.copy(is, buf);
-                }
-                response = new String(buf.toByteArray(), StandardCharsets.UTF_8);
-            }
+            String response = getResponseContent(httppost, permit);
             if (httppost.getStatusCode() != HttpStatus.SC_OK && httppost.getStatusCode() != HttpStatus.SC_CREATED) {
                 throw new BitbucketRequestException(httppost.getStatusCode(), "HTTP request error. Status: " + httppost.getStatusCode() + ": " + httppost.getStatusText() + ".\n" + response);
             }
             return response;
         } finally {
             httppost.releaseConnection();
+            if (permit != null) {
+                permit.exit();
+            }
         }
     }
 
@@ -0,0 +1,266 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.server.client;
+
+import com.cloudbees.jenkins.plugins.bitbucket.client.PagedIterator;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * A {@link PagedIterator} over an offset paginated Bitbucket Server listing that keeps the requests for the next few
+ * pages in flight while the current page is being consumed.
+ * <p>
+ * Once a page reports its {@code nextPageStart} and page size, the offsets of the following pages are speculatively
+ * requested in the background. Pages are always returned in order, and a failure to fetch a page is only reported
+ * when the iteration reaches that page. Speculative pages past the last page, or whose offsets turn out to be wrong
+ * because the listing changed while being paged, are discarded and the page is fetched again.
+ * <p>
+ * The number of speculative requests in flight is bounded per Bitbucket Server, when no permit is available the
+ * next page is simply fetched when it is reached, as without prefetching.
+ *
+ * @param <V> the type of object iterated.
+ * @since 2.2.4
+ */
+abstract class PrefetchingPager<V> extends PagedIterator<V> {
+
+    /**
+     * The number of pages to keep in flight ahead of the page being consumed.
+     */
+    private static final int PREFETCH_DEPTH =
+            Math.max(0, Integer.getInteger(PrefetchingPager.class.getName() + ".depth", 4));
+
+    /**
+     * The maximum number of speculative page requests in flight per Bitbucket Server.
+     */
+    private static final int MAX_PREFETCH_PER_ENDPOINT =
+            Math.max(1, Integer.getInteger(PrefetchingPager.class.getName() + ".maxPerEndpoint", 8));
+
+    /**
+     * The pool running the speculative page requests, its size is bounded by the per endpoint permits.
+     */
+    private static final ExecutorService executor = Executors.newCachedThreadPool(
+            new NamingThreadFactory(new DaemonThreadFactory(), "Bitbucket Server page prefetch")
+    );
+
+    /**
+     * The speculative request permits, keyed by Bitbucket Server URL.
+     */
+    private static final ConcurrentMap<String, Semaphore> permits = new ConcurrentHashMap<>();
+
+    /**
+     * The permits of the Bitbucket Server being paged.
+     */
+    @NonNull
+    private final Semaphore endpointPermits;
+
+    /**
+     * The speculative requests in flight, in page order.
+     */
+    private final Deque<Prefetch<V>> inFlight = new ArrayDeque<>();
+
+    /**
+     * The offset of the next page to return or {@code null} once the last page has been returned.
+     */
+    @CheckForNull
+    private Integer nextStart = 0;
+
+    /**
+     * @param serverUrl the URL of the Bitbucket Server being paged.
+     */
+    PrefetchingPager(@NonNull String serverUrl) {
+        Semaphore semaphore = permits.get(serverUrl);
+        if (semaphore == null) {
+            Semaphore created = new Semaphore(MAX_PREFETCH_PER_ENDPOINT);
+            semaphore = permits.putIfAbsent(serverUrl, created);
+            if (semaphore == null) {
+                semaphore = created;
+            }
+        }
+        this.endpointPermits = semaphore;
+    }
+
+    /**
+     * Fetches the page starting at the given offset. Called concurrently from the prefetch pool.
+     *
+     * @param start the offset of the page.
+     * @return the page or {@code null} if the listing does not exist.
+     * @throws IOException          if there was a network communications error.
+     * @throws InterruptedException if interrupted while waiting on remote communications.
+     */
+    @CheckForNull
+    protected abstract BitbucketServerPage<V> fetch(int start) throws IOException, InterruptedException;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected List<V> nextPage(int pageIndex) throws IOException, InterruptedException {
+        if (nextStart == null) {
+            return null;
+        }
+        int start = nextStart;
+        BitbucketServerPage<V> page;
+        try {
+            Prefetch<V> prefetch = inFlight.peekFirst();
+            if (prefetch != null && prefetch.start == start) {
+                inFlight.removeFirst();
+                page = prefetch.await();
+            } else {
+                cancelInFlight();
+                page = fetch(start);
+            }
+        } catch (IOException | InterruptedException | RuntimeException | Error e) {
+            // the iteration ends here, nobody will consume the pages in flight
+            nextStart = null;
+            cancelInFlight();
+            throw e;
+        }
+        if (page == null || page.isLastPage() || page.getNextPageStart() == null) {
+            nextStart = null;
+            cancelInFlight();
+        } else {
+            nextStart = page.getNextPageStart();
+            int stride = nextStart - start;
+            if (stride <= 0) {
+                // Bitbucket always moves forward, do not speculate about anything else
+                cancelInFlight();
+            } else {
+                prefetch(stride);
+            }
+        }
+        return page == null || page.getValues() == null ? Collections.<V>emptyList() : page.getValues();
+    }
+
+    /**
+     * Tops up the speculative requests so that the pages following {@link #nextStart} are in flight.
+     *
+     * @param stride the distance between the offsets of consecutive pages.
+     */
+    private void prefetch(int stride) {
+        Prefetch<V> head = inFlight.peekFirst();
+        if (head != null && head.start != nextStart) {
+            // the listing changed while being paged, the offsets in flight are wrong
+            cancelInFlight();
+        }
+        long offset = inFlight.isEmpty() ? nextStart : inFlight.peekLast().start + (long) stride;
+        while (inFlight.size() < PREFETCH_DEPTH && offset <= Integer.MAX_VALUE && endpointPermits.tryAcquire()) {
+            final int start = (int) offset;
+            Future<BitbucketServerPage<V>> future;
+            try {
+                future = executor.submit(new Callable<BitbucketServerPage<V>>() {
+                    @Override
+                    public BitbucketServerPage<V> call() throws Exception {
+                        try {
+                            return fetch(start);
+                        } finally {
+                            endpointPermits.release();
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                endpointPermits.release();
+                break;
+            }
+            inFlight.addLast(new Prefetch<>(start, future));
+            offset += stride;
+        }
+    }
+
+    /**
+     * Cancels the speculative requests in flight.
+     */
+    private void cancelInFlight() {
+        for (Prefetch<V> prefetch : inFlight) {
+            prefetch.future.cancel(true);
+        }
+        inFlight.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void close() {
+        super.close();
+        cancelInFlight();
+    }
+
+    /**
+     * A speculative request for a page.
+     *
+     * @param <V> the type of object in the page.
+     */
+    private static class Prefetch<V> {
+        private final int start;
+        private final Future<BitbucketServerPage<V>> future;
+
+        Prefetch(int start, Future<BitbucketServerPage<V>> future) {
+            this.start = start;
+            this.future = future;
+        }
+
+        BitbucketServerPage<V> await() throws IOException, InterruptedException {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                future.cancel(true);
+                throw e;
+            } catch (CancellationException e) {
+                throw new InterruptedException("Page request cancelled");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof InterruptedException) {
+                    throw (InterruptedException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IOException(cause);
+            }
+        }
+    }
+}
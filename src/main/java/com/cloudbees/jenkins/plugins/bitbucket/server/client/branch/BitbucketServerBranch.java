@@ -23,6 +23,11 @@
  */
 package com.cloudbees.jenkins.plugins.bitbucket.server.client.branch;
 
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.codehaus.jackson.annotate.JsonIgnore;
 import org.codehaus.jackson.annotate.JsonIgnoreProperties;
 
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketBranch;
@@ -30,11 +35,28 @@ import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketBranch;
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class BitbucketServerBranch implements BitbucketBranch {
 
+    private static final Logger LOGGER = Logger.getLogger(BitbucketServerBranch.class.getName());
+
+    /**
+     * The key of the branch metadata describing the latest commit, included when branches are listed with
+     * {@code details=true}.
+     */
+    private static final String LATEST_COMMIT_METADATA =
+            "com.atlassian.bitbucket.server.bitbucket-branch:latest-commit-metadata";
+
     private String displayId;
 
     private String latestCommit;
 
-    private long timestamp;
+    /**
+     * The timestamp of the latest commit, or {@code null} while it is not known.
+     */
+    private Long timestamp;
+
+    /**
+     * Resolves the timestamp of the latest commit on first use, when the branch metadata did not include it.
+     */
+    private Callable<Long> timestampResolver;
 
     public BitbucketServerBranch() {
     }
@@ -55,11 +77,32 @@ public class BitbucketServerBranch implements BitbucketBranch {
     }
 
     public long getTimestamp() {
-        return timestamp;
+        return getDateMillis();
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * If the timestamp was not included in the branch metadata it is resolved from the latest commit on the first
+     * call, so branches whose timestamp is never read do not cost a request.
+     */
     @Override
-    public long getDateMillis() {
+    public synchronized long getDateMillis() {
+        if (timestamp == null) {
+            if (timestampResolver == null) {
+                return 0L;
+            }
+            try {
+                timestamp = timestampResolver.call();
+                timestampResolver = null;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return 0L;
+            } catch (Exception e) {
+                LOGGER.log(Level.FINE, "Could not resolve the timestamp of branch " + displayId, e);
+                return 0L;
+            }
+        }
         return timestamp;
     }
 
@@ -79,8 +122,36 @@ public class BitbucketServerBranch implements BitbucketBranch {
         this.latestCommit = latestCommit;
     }
 
-    public void setTimestamp(long timestamp) {
+    public synchronized void setTimestamp(long timestamp) {
         this.timestamp = timestamp;
+        this.timestampResolver = null;
+    }
+
+    /**
+     * Sets how to resolve the timestamp of the latest commit if the branch metadata did not include it.
+     *
+     * @param timestampResolver returns the timestamp of the latest commit.
+     */
+    @JsonIgnore
+    public synchronized void setTimestampResolver(Callable<Long> timestampResolver) {
+        if (timestamp == null) {
+            this.timestampResolver = timestampResolver;
+        }
+    }
+
+    /**
+     * Binds the branch metadata, of which only the latest commit timestamp is kept.
+     *
+     * @param metadata the branch metadata keyed by provider.
+     */
+    public synchronized void setMetadata(Map<String, Object> metadata) {
+        Object latest = metadata == null ? null : metadata.get(LATEST_COMMIT_METADATA);
+        if (latest instanceof Map) {
+            Object authorTimestamp = ((Map<?, ?>) latest).get("authorTimestamp");
+            if (authorTimestamp instanceof Number) {
+                setTimestamp(((Number) authorTimestamp).longValue());
+            }
+        }
     }
 
 }
@@ -23,53 +23,9 @@
  */
 package com.cloudbees.jenkins.plugins.bitbucket.server.client.pullrequest;
 
-import java.util.List;
-
+import com.cloudbees.jenkins.plugins.bitbucket.server.client.BitbucketServerPage;
 import org.codehaus.jackson.annotate.JsonIgnoreProperties;
-import org.codehaus.jackson.annotate.JsonProperty;
 
 @JsonIgnoreProperties(ignoreUnknown = true)
-public class BitbucketServerPullRequests {
-
-    private List<BitbucketServerPullRequest> values;
-
-    private Integer size;
-
-    @JsonProperty("isLastPage")
-    private Boolean lastPage;
-
-    private Integer nextPageStart;
-
-    public List<BitbucketServerPullRequest> getValues() {
-        return values;
-    }
-
-    public void setValues(List<BitbucketServerPullRequest> prValues) {
-        this.values = prValues;
-    }
-
-    public Integer getSize() {
-        return size;
-    }
-
-    public void setSize(Integer size) {
-        this.size = size;
-    }
-
-    public boolean isLastPage() {
-        return lastPage;
-    }
-
-    public void setLastPage(Boolean lastPage) {
-        this.lastPage = lastPage;
-    }
-
-    public Integer getNextPageStart() {
-        return nextPageStart;
-    }
-
-    public void setNextPageStart(Integer nextPageStart) {
-        this.nextPageStart = nextPageStart;
-    }
-
+public class BitbucketServerPullRequests extends BitbucketServerPage<BitbucketServerPullRequest> {
 }
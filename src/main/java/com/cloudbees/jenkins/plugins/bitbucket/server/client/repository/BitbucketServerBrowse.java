@@ -0,0 +1,128 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.server.client.repository;
+
+import com.cloudbees.jenkins.plugins.bitbucket.server.client.BitbucketServerPage;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import jenkins.scm.api.SCMFile;
+import org.codehaus.jackson.annotate.JsonIgnoreProperties;
+
+/**
+ * The response of the Bitbucket Server {@code browse} resource. For a directory it holds a page of the directory
+ * entries, for a file it holds the file lines which are not bound.
+ *
+ * @since 2.2.4
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class BitbucketServerBrowse {
+
+    private Children children;
+
+    /**
+     * Returns the page of directory entries.
+     *
+     * @return the page of directory entries or {@code null} if the browsed path is not a directory.
+     */
+    public Children getChildren() {
+        return children;
+    }
+
+    public void setChildren(Children children) {
+        this.children = children;
+    }
+
+    /**
+     * A page of directory entries.
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Children extends BitbucketServerPage<Entry> {
+    }
+
+    /**
+     * A directory entry.
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Entry {
+        private Path path;
+        private String type;
+
+        public Path getPath() {
+            return path;
+        }
+
+        public void setPath(Path path) {
+            this.path = path;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public void setType(String type) {
+            this.type = type;
+        }
+
+        /**
+         * Returns the name of the entry within its directory.
+         *
+         * @return the name of the entry.
+         */
+        public String getName() {
+            return path == null ? null : path.getName();
+        }
+
+        /**
+         * Returns the type of the entry.
+         *
+         * @return the type of the entry.
+         */
+        @NonNull
+        public SCMFile.Type toFileType() {
+            if ("FILE".equals(type)) {
+                return SCMFile.Type.REGULAR_FILE;
+            }
+            if ("DIRECTORY".equals(type)) {
+                return SCMFile.Type.DIRECTORY;
+            }
+            // submodules
+            return SCMFile.Type.OTHER;
+        }
+    }
+
+    /**
+     * The path of a directory entry, relative to the browsed directory.
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Path {
+        private String name;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket;
+
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketApi;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketBranch;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketIncrementalApi;
+import java.util.Arrays;
+import java.util.Iterator;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class BitbucketApiSupportTest {
+
+    @Test
+    public void given__incrementalApi__when__getBranch__then__branchFetchedAlone() throws Exception {
+        BitbucketIncrementalApi api = mock(BitbucketIncrementalApi.class);
+        BitbucketBranch master = branch("master");
+        when(api.getBranch("master")).thenReturn(master);
+        assertThat(BitbucketApiSupport.getBranch(api, "master"), sameInstance(master));
+        verify(api, never()).getBranches();
+    }
+
+    @Test
+    public void given__plainApi__when__getBranch__then__branchFoundInListing() throws Exception {
+        BitbucketApi api = mock(BitbucketApi.class);
+        BitbucketBranch master = branch("master");
+        doReturn(Arrays.asList(branch("feature"), master)).when(api).getBranches();
+        assertThat(BitbucketApiSupport.getBranch(api, "master"), sameInstance(master));
+        assertThat(BitbucketApiSupport.getBranch(api, "missing"), nullValue());
+    }
+
+    @Test
+    public void given__plainApi__when__iterateBranches__then__listingIterated() throws Exception {
+        BitbucketApi api = mock(BitbucketApi.class);
+        BitbucketBranch master = branch("master");
+        doReturn(Arrays.asList(master)).when(api).getBranches();
+        Iterator<? extends BitbucketBranch> branches = BitbucketApiSupport.iterateBranches(api);
+        assertThat(branches.next(), sameInstance(master));
+        assertThat(branches.hasNext(), is(false));
+    }
+
+    @Test
+    public void given__plainApi__when__getDirectoryContent__then__notListable() throws Exception {
+        BitbucketApi api = mock(BitbucketApi.class);
+        assertThat(BitbucketApiSupport.getDirectoryContent(api, "master", ""), nullValue());
+        verify(api, never()).checkPathExists(anyString(), anyString());
+    }
+
+    private static BitbucketBranch branch(String name) {
+        BitbucketBranch branch = mock(BitbucketBranch.class);
+        when(branch.getName()).thenReturn(name);
+        return branch;
+    }
+}
@@ -28,6 +28,7 @@ import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketHref;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketRepositoryProtocol;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketRepositoryType;
 import com.cloudbees.jenkins.plugins.bitbucket.client.BitbucketCloudApiClient;
+import com.cloudbees.jenkins.plugins.bitbucket.client.PagedIterator;
 import com.cloudbees.jenkins.plugins.bitbucket.client.branch.BitbucketCloudBranch;
 import com.cloudbees.jenkins.plugins.bitbucket.client.branch.BitbucketCloudCommit;
 import com.cloudbees.jenkins.plugins.bitbucket.client.pullrequest.BitbucketPullRequestValue;
@@ -36,6 +37,7 @@ import com.cloudbees.jenkins.plugins.bitbucket.client.pullrequest.BitbucketPullR
 import com.cloudbees.jenkins.plugins.bitbucket.client.repository.BitbucketCloudRepository;
 import com.cloudbees.jenkins.plugins.bitbucket.client.repository.BitbucketCloudTeam;
 import com.cloudbees.jenkins.plugins.bitbucket.client.repository.BitbucketRepositoryHook;
+import com.cloudbees.jenkins.plugins.bitbucket.client.repository.UserRoleInRepository;
 import com.cloudbees.jenkins.plugins.bitbucket.hooks.BitbucketSCMSourcePushHookReceiver;
 import hudson.model.TaskListener;
 import java.io.IOException;
@@ -45,6 +47,8 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import jenkins.model.Jenkins;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
@@ -63,6 +67,8 @@ public class BitbucketClientMockUtils {
         branches.add(getBranch("branch2", "707c59ce8292c927dddb6807fcf9c3c5e7c9b00f"));
         // add branches
         when(bitbucket.getBranches()).thenReturn(branches);
+        when(bitbucket.iterateBranches()).thenAnswer(pages(branches));
+        when(bitbucket.getBranch(anyString())).thenAnswer(branchNamed(branches));
         if (BitbucketRepositoryType.MERCURIAL == type) {
             withMockMercurialRepos(bitbucket);
         } else {
@@ -71,10 +77,15 @@ public class BitbucketClientMockUtils {
 
         if (includePullRequests) {
             when(bitbucket.getPullRequests()).thenReturn(Arrays.asList(getPullRequest()));
+            when(bitbucket.iteratePullRequests()).thenAnswer(pages(Arrays.asList(getPullRequest())));
+            when(bitbucket.getPullRequestById(any(Integer.class))).thenReturn(getPullRequest());
             when(bitbucket.checkPathExists("e851558f77c098d21af6bb8cc54a423f7cf12147", "markerfile.txt"))
                     .thenReturn(true);
             when(bitbucket.resolveSourceFullHash(any(BitbucketPullRequestValue.class)))
                     .thenReturn("e851558f77c098d21af6bb8cc54a423f7cf12147");
+        } else {
+            when(bitbucket.iteratePullRequests())
+                    .thenAnswer(pages(Collections.<BitbucketPullRequestValue>emptyList()));
         }
 
         // mock file exists
@@ -84,6 +95,7 @@ public class BitbucketClientMockUtils {
         // Team discovering mocks
         when(bitbucket.getTeam()).thenReturn(getTeam());
         when(bitbucket.getRepositories()).thenReturn(getRepositories(type));
+        when(bitbucket.iterateRepositories(any(UserRoleInRepository.class))).thenAnswer(pages(getRepositories(type)));
 
         // Auto-registering hooks
         if (includeWebHooks) {
@@ -101,6 +113,34 @@ public class BitbucketClientMockUtils {
         return getAPIClientMock(type, includePullRequests, false);
     }
 
+    private static Answer<BitbucketCloudBranch> branchNamed(final List<BitbucketCloudBranch> branches) {
+        return new Answer<BitbucketCloudBranch>() {
+            @Override
+            public BitbucketCloudBranch answer(InvocationOnMock invocation) throws Throwable {
+                for (BitbucketCloudBranch branch : branches) {
+                    if (branch.getName().equals(invocation.getArguments()[0])) {
+                        return branch;
+                    }
+                }
+                return null;
+            }
+        };
+    }
+
+    private static <V> Answer<PagedIterator<V>> pages(final List<V> items) {
+        return new Answer<PagedIterator<V>>() {
+            @Override
+            public PagedIterator<V> answer(InvocationOnMock invocation) {
+                return new PagedIterator<V>() {
+                    @Override
+                    protected List<V> nextPage(int pageIndex) {
+                        return pageIndex == 0 ? items : null;
+                    }
+                };
+            }
+        };
+    }
+
     private static List<BitbucketRepositoryHook> getWebHooks() {
         BitbucketRepositoryHook hook = new BitbucketRepositoryHook();
         hook.setUrl(Jenkins.getActiveInstance().getRootUrl() + BitbucketSCMSourcePushHookReceiver.FULL_PATH);
@@ -176,12 +216,26 @@ public class BitbucketClientMockUtils {
         return b;
     }
 
+    /**
+     * Replaces the pull requests of a client mock with a single pull request filed from a branch of the origin
+     * repository.
+     */
+    public static void withOriginPullRequest(BitbucketCloudApiClient bitbucket, String branchName)
+            throws IOException, InterruptedException {
+        when(bitbucket.iteratePullRequests())
+                .thenAnswer(pages(Arrays.asList(getPullRequest("amuniz/test-repos", branchName))));
+    }
+
     private static BitbucketPullRequestValue getPullRequest() {
+        return getPullRequest("otheruser/test-repos", "my-feature-branch");
+    }
+
+    private static BitbucketPullRequestValue getPullRequest(String sourceRepository, String sourceBranch) {
         BitbucketPullRequestValue pr = new BitbucketPullRequestValue();
         BitbucketPullRequestValueRepository source = new BitbucketPullRequestValueRepository();
 
         BitbucketCloudBranch branch = new BitbucketCloudBranch();
-        branch.setName("my-feature-branch");
+        branch.setName(sourceBranch);
         source.setBranch(branch);
 
         BitbucketCloudCommit commit = new BitbucketCloudCommit();
@@ -189,7 +243,7 @@ public class BitbucketClientMockUtils {
         source.setCommit(commit);
 
         BitbucketCloudRepository repository = new BitbucketCloudRepository();
-        repository.setFullName("otheruser/test-repos");
+        repository.setFullName(sourceRepository);
         source.setRepository(repository);
 
         pr.setSource(source);
@@ -2,6 +2,7 @@ package com.cloudbees.jenkins.plugins.bitbucket;
 
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketApi;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketApiFactory;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketApiRegistry;
 import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
 import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
@@ -19,14 +20,17 @@ public class BitbucketMockApiFactory extends BitbucketApiFactory {
 
     public static void clear() {
         instance().mocks.clear();
+        BitbucketApiRegistry.clear();
     }
 
     public static void add(String serverUrl, BitbucketApi api) {
         instance().mocks.put(StringUtils.defaultString(serverUrl, NULL), api);
+        BitbucketApiRegistry.clear();
     }
 
     public static void remove(String serverUrl) {
         instance().mocks.remove(StringUtils.defaultString(serverUrl, NULL));
+        BitbucketApiRegistry.clear();
     }
 
     private static BitbucketMockApiFactory instance() {
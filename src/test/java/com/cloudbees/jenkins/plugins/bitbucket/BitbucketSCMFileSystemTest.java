@@ -0,0 +1,147 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket;
+
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketDirectory;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketIncrementalApi;
+import com.cloudbees.jenkins.plugins.bitbucket.client.FileContentCache;
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import jenkins.plugins.git.AbstractGitSCMSource;
+import jenkins.scm.api.SCMFile;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class BitbucketSCMFileSystemTest {
+
+    private static final String SERVER_URL = "https://bitbucket.example.com";
+    private static final String HASH = "52fc8e220d77ec400f7fc96a91d2fd0bb1bc553a";
+
+    private BitbucketIncrementalApi api;
+
+    @Before
+    public void setUp() throws Exception {
+        FileContentCache.get().clear();
+        api = mock(BitbucketIncrementalApi.class);
+        when(api.getOwner()).thenReturn("PROJ");
+        when(api.getRepositoryName()).thenReturn("repo");
+    }
+
+    @Test
+    public void given__file__when__readTwice__then__fetchedOnce() throws Exception {
+        when(api.getFileContent(HASH, "Jenkinsfile")).thenAnswer(new Content("node {}"));
+        assertThat(fileSystem().child("Jenkinsfile").contentAsString(), is("node {}"));
+        assertThat(fileSystem().child("Jenkinsfile").contentAsString(), is("node {}"));
+        verify(api, times(1)).getFileContent(HASH, "Jenkinsfile");
+        verify(api, never()).checkPathExists(anyString(), anyString());
+        verify(api, never()).getDirectoryContent(anyString(), anyString());
+    }
+
+    @Test
+    public void given__largeFile__when__read__then__streamedAndNotCached() throws Exception {
+        StringBuilder large = new StringBuilder();
+        while (large.length() <= FileContentCache.get().getMaxEntrySize()) {
+            large.append("echo 'large'\n");
+        }
+        when(api.getFileContent(HASH, "Jenkinsfile")).thenAnswer(new Content(large.toString()));
+        assertThat(fileSystem().child("Jenkinsfile").contentAsString(), is(large.toString()));
+        assertThat(fileSystem().child("Jenkinsfile").contentAsString(), is(large.toString()));
+        verify(api, times(2)).getFileContent(HASH, "Jenkinsfile");
+    }
+
+    @Test
+    public void given__missingFile__when__read__then__fileNotFound() throws Exception {
+        when(api.getFileContent(HASH, "Jenkinsfile")).thenThrow(new FileNotFoundException("Jenkinsfile"));
+        try {
+            fileSystem().child("Jenkinsfile").contentAsString();
+            fail("expected FileNotFoundException");
+        } catch (FileNotFoundException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void given__directory__when__listed__then__childrenTyped() throws Exception {
+        when(api.getDirectoryContent(HASH, "")).thenReturn(directory(
+                "Jenkinsfile", SCMFile.Type.REGULAR_FILE,
+                "ci", SCMFile.Type.DIRECTORY));
+        when(api.getDirectoryContent(HASH, "ci/")).thenReturn(directory("build.groovy", SCMFile.Type.REGULAR_FILE));
+        BitbucketSCMFileSystem fs = fileSystem();
+        List<String> names = new ArrayList<>();
+        for (SCMFile child : fs.getRoot().children()) {
+            names.add(child.getName() + ":" + child.getType());
+        }
+        assertThat(names, contains("Jenkinsfile:REGULAR_FILE", "ci:DIRECTORY"));
+        assertThat(fs.child("ci/build.groovy").isFile(), is(true));
+        assertThat(fs.child("ci/missing.groovy").exists(), is(false));
+        verify(api, times(1)).getDirectoryContent(HASH, "");
+        verify(api, times(1)).getDirectoryContent(HASH, "ci/");
+    }
+
+    private BitbucketSCMFileSystem fileSystem() {
+        BranchSCMHead head = new BranchSCMHead("master");
+        return new BitbucketSCMFileSystem(api, SERVER_URL, "PROJ", "repo", HASH,
+                new AbstractGitSCMSource.SCMRevisionImpl(head, HASH));
+    }
+
+    private static BitbucketDirectory directory(Object... entries) {
+        Map<String, SCMFile.Type> map = new LinkedHashMap<>();
+        for (int i = 0; i < entries.length; i += 2) {
+            map.put((String) entries[i], (SCMFile.Type) entries[i + 1]);
+        }
+        return new BitbucketDirectory(map);
+    }
+
+    private static class Content implements Answer<InputStream> {
+        private final String content;
+
+        Content(String content) {
+            this.content = content;
+        }
+
+        @Override
+        public InputStream answer(InvocationOnMock invocation) {
+            return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
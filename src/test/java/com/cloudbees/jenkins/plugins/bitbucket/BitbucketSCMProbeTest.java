@@ -0,0 +1,164 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket;
+
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketDirectory;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketIncrementalApi;
+import com.cloudbees.jenkins.plugins.bitbucket.client.ProbeResultCache;
+import hudson.model.TaskListener;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import jenkins.scm.api.SCMFile;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class BitbucketSCMProbeTest {
+
+    private static final String SERVER_URL = "https://bitbucket.example.com";
+    private static final String HASH = "e851558f77c098d21af6bb8cc54a423f7cf12147";
+
+    private BitbucketIncrementalApi api;
+    private ConcurrentMap<String, BitbucketDirectory> listings;
+
+    @Before
+    public void setUp() throws Exception {
+        ProbeResultCache.get().clear();
+        api = mock(BitbucketIncrementalApi.class);
+        when(api.getOwner()).thenReturn("PROJ");
+        when(api.getRepositoryName()).thenReturn("repo");
+        listings = new ConcurrentHashMap<>();
+    }
+
+    @Test
+    public void given__listableRoot__when__severalPathsProbed__then__rootListedOnce() throws Exception {
+        when(api.getDirectoryContent(HASH, "")).thenReturn(directory(
+                "Jenkinsfile", SCMFile.Type.REGULAR_FILE,
+                "src", SCMFile.Type.DIRECTORY,
+                "lib", SCMFile.Type.OTHER));
+        BitbucketSCMProbe probe = probe(HASH);
+        assertThat(probe.exists("Jenkinsfile"), is(true));
+        assertThat(probe.exists("markerfile.txt"), is(false));
+        assertThat(probe.stat("src").getType(), is(SCMFile.Type.DIRECTORY));
+        assertThat(probe.stat("lib").getType(), is(SCMFile.Type.OTHER));
+        verify(api, times(1)).getDirectoryContent(HASH, "");
+        verify(api, never()).checkPathExists(anyString(), anyString());
+    }
+
+    @Test
+    public void given__headsAtSameRevision__when__probed__then__listingSharedByTheScan() throws Exception {
+        when(api.getDirectoryContent(HASH, "")).thenReturn(directory("Jenkinsfile", SCMFile.Type.REGULAR_FILE));
+        assertThat(probe(HASH).stat("Jenkinsfile").exists(), is(true));
+        assertThat(new BitbucketSCMProbe(new BranchSCMHead("feature"), HASH, SERVER_URL, "alice", "PROJ", "repo",
+                api, listings, TaskListener.NULL).stat("Jenkinsfile").exists(), is(true));
+        verify(api, times(1)).getDirectoryContent(HASH, "");
+    }
+
+    @Test
+    public void given__nestedPath__when__probed__then__onlyParentDirectoriesListed() throws Exception {
+        when(api.getDirectoryContent(HASH, "")).thenReturn(directory(
+                "README.md", SCMFile.Type.REGULAR_FILE,
+                "src", SCMFile.Type.DIRECTORY));
+        when(api.getDirectoryContent(HASH, "src/")).thenReturn(directory("pom.xml", SCMFile.Type.REGULAR_FILE));
+        BitbucketSCMProbe probe = probe(HASH);
+        assertThat(probe.stat("src/pom.xml").getType(), is(SCMFile.Type.REGULAR_FILE));
+        assertThat(probe.stat("src/build.gradle").exists(), is(false));
+        assertThat(probe.stat("README.md/pom.xml").exists(), is(false));
+        assertThat(probe.stat("docs/index.md").exists(), is(false));
+        verify(api, times(1)).getDirectoryContent(HASH, "");
+        verify(api, times(1)).getDirectoryContent(HASH, "src/");
+        verify(api, never()).getDirectoryContent(HASH, "README.md/");
+        verify(api, never()).getDirectoryContent(HASH, "docs/");
+    }
+
+    @Test
+    public void given__unlistableDirectories__when__probed__then__pathChecked() throws Exception {
+        when(api.checkPathExists(HASH, "Jenkinsfile")).thenReturn(true);
+        when(api.checkPathExists(HASH, "markerfile.txt")).thenReturn(false);
+        BitbucketSCMProbe probe = probe(HASH);
+        assertThat(probe.exists("Jenkinsfile"), is(true));
+        assertThat(probe.exists("markerfile.txt"), is(false));
+        verify(api, times(1)).checkPathExists(HASH, "Jenkinsfile");
+        verify(api, times(1)).checkPathExists(HASH, "markerfile.txt");
+    }
+
+    @Test
+    public void given__probedPath__when__probedAgain__then__answeredFromCache() throws Exception {
+        when(api.getDirectoryContent(HASH, "")).thenReturn(directory("Jenkinsfile", SCMFile.Type.REGULAR_FILE));
+        assertThat(probe(HASH).exists("Jenkinsfile"), is(true));
+        // a later scan starts with no listings
+        listings.clear();
+        assertThat(probe(HASH).exists("Jenkinsfile"), is(true));
+        verify(api, times(1)).getDirectoryContent(HASH, "");
+    }
+
+    @Test
+    public void given__probedPath__when__probedWithOtherCredentials__then__probedAgain() throws Exception {
+        when(api.getDirectoryContent(HASH, "")).thenReturn(directory("Jenkinsfile", SCMFile.Type.REGULAR_FILE));
+        assertThat(probe(HASH, "alice").exists("markerfile.txt"), is(false));
+        listings.clear();
+        assertThat(probe(HASH, "bob").exists("markerfile.txt"), is(false));
+        verify(api, times(2)).getDirectoryContent(HASH, "");
+    }
+
+    @Test
+    public void given__unlistableDirectories__when__missingPathProbedAgain__then__checkedAgain() throws Exception {
+        when(api.checkPathExists(HASH, "Jenkinsfile")).thenReturn(true);
+        when(api.checkPathExists(HASH, "markerfile.txt")).thenReturn(false);
+        assertThat(probe(HASH).exists("Jenkinsfile"), is(true));
+        assertThat(probe(HASH).exists("Jenkinsfile"), is(true));
+        // a missing path may only be unreadable with these credentials
+        assertThat(probe(HASH).exists("markerfile.txt"), is(false));
+        assertThat(probe(HASH).exists("markerfile.txt"), is(false));
+        verify(api, times(1)).checkPathExists(HASH, "Jenkinsfile");
+        verify(api, times(2)).checkPathExists(HASH, "markerfile.txt");
+    }
+
+    private BitbucketSCMProbe probe(String hash) {
+        return probe(hash, "alice");
+    }
+
+    private BitbucketSCMProbe probe(String hash, String credentialsId) {
+        return new BitbucketSCMProbe(new BranchSCMHead("master"), hash, SERVER_URL, credentialsId, "PROJ", "repo",
+                api, listings, TaskListener.NULL);
+    }
+
+    private static BitbucketDirectory directory(Object... entries) {
+        Map<String, SCMFile.Type> map = new LinkedHashMap<>();
+        for (int i = 0; i < entries.length; i += 2) {
+            map.put((String) entries[i], (SCMFile.Type) entries[i + 1]);
+        }
+        return new BitbucketDirectory(map);
+    }
+}
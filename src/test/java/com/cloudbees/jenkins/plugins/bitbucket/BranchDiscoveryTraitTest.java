@@ -1,6 +1,14 @@
 package com.cloudbees.jenkins.plugins.bitbucket;
 
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketPullRequest;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketRepositoryType;
+import com.cloudbees.jenkins.plugins.bitbucket.client.branch.BitbucketCloudBranch;
+import com.cloudbees.jenkins.plugins.bitbucket.client.pullrequest.BitbucketPullRequestValue;
+import com.cloudbees.jenkins.plugins.bitbucket.client.pullrequest.BitbucketPullRequestValueRepository;
+import com.cloudbees.jenkins.plugins.bitbucket.client.repository.BitbucketCloudRepository;
+import hudson.model.TaskListener;
 import hudson.util.ListBoxModel;
+import java.util.Arrays;
 import java.util.Collections;
 import jenkins.scm.api.SCMHeadObserver;
 import jenkins.scm.api.trait.SCMHeadFilter;
@@ -11,6 +19,7 @@ import org.junit.Test;
 import org.jvnet.hudson.test.JenkinsRule;
 
 import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
@@ -96,4 +105,39 @@ public class BranchDiscoveryTraitTest {
         assertThat(options.get(2).value, is("3"));
     }
 
+    @Test
+    public void given__originAndForkPRs__when__filtering__then__onlyOriginPRBranchesMatch() throws Exception {
+        BitbucketSCMSourceContext ctx = new BitbucketSCMSourceContext(null, SCMHeadObserver.none());
+        BitbucketSCMSourceRequest request = ctx.newRequest(new BitbucketSCMSource("amuniz", "test-repos"),
+                TaskListener.NULL);
+        request.setPullRequests(Arrays.<BitbucketPullRequest>asList(
+                pullRequest("AMUNIZ/test-repos", "feature"),
+                pullRequest("amuniz/test-repos", "bugfix"),
+                pullRequest("otheruser/test-repos", "master")
+        ));
+        assertThat(request.getOriginPullRequestBranchNames(), containsInAnyOrder("feature", "bugfix"));
+
+        BranchSCMHead feature = new BranchSCMHead("feature", BitbucketRepositoryType.GIT);
+        BranchSCMHead master = new BranchSCMHead("master", BitbucketRepositoryType.GIT);
+        SCMHeadFilter exclude = new BranchDiscoveryTrait.ExcludeOriginPRBranchesSCMHeadFilter();
+        SCMHeadFilter only = new BranchDiscoveryTrait.OnlyOriginPRBranchesSCMHeadFilter();
+        assertThat(exclude.isExcluded(request, feature), is(true));
+        assertThat(exclude.isExcluded(request, master), is(false));
+        assertThat(only.isExcluded(request, feature), is(false));
+        assertThat(only.isExcluded(request, master), is(true));
+    }
+
+    private static BitbucketPullRequest pullRequest(String fullName, String branchName) {
+        BitbucketCloudRepository repository = new BitbucketCloudRepository();
+        repository.setFullName(fullName);
+        BitbucketCloudBranch branch = new BitbucketCloudBranch();
+        branch.setName(branchName);
+        BitbucketPullRequestValueRepository source = new BitbucketPullRequestValueRepository();
+        source.setRepository(repository);
+        source.setBranch(branch);
+        BitbucketPullRequestValue pr = new BitbucketPullRequestValue();
+        pr.setSource(source);
+        return pr;
+    }
+
 }
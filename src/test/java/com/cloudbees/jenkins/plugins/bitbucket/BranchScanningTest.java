@@ -34,8 +34,10 @@ import hudson.scm.SCM;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 import jenkins.plugins.git.AbstractGitSCMSource.SCMRevisionImpl;
 import jenkins.scm.api.SCMHead;
 import jenkins.scm.api.SCMHeadObserver;
@@ -56,6 +58,8 @@ import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class BranchScanningTest {
@@ -136,6 +140,55 @@ public class BranchScanningTest {
         assertEquals("PR-23", observer.getBranches().get(1));
     }
 
+    @Test
+    public void scanListsBranchesAndPullRequestsOnce() throws Exception {
+        BitbucketCloudApiClient mock = BitbucketClientMockUtils.getAPIClientMock(BitbucketRepositoryType.GIT, true);
+        BitbucketMockApiFactory.add(BitbucketCloudEndpoint.SERVER_URL, mock);
+        BitbucketSCMSource source = new BitbucketSCMSource("amuniz", "test-repos");
+        source.setTraits(Arrays.asList(
+                // excluding the branches of origin pull requests needs the pull requests before the branches
+                new BranchDiscoveryTrait(1),
+                new OriginPullRequestDiscoveryTrait(EnumSet.of(ChangeRequestCheckoutStrategy.HEAD)),
+                new ForkPullRequestDiscoveryTrait(
+                        EnumSet.of(ChangeRequestCheckoutStrategy.HEAD),
+                        new ForkPullRequestDiscoveryTrait.TrustTeamForks()
+                )
+        ));
+        source.setOwner(getSCMSourceOwnerMock());
+        SCMHeadObserverImpl observer = new SCMHeadObserverImpl();
+        source.fetch(observer, BitbucketClientMockUtils.getTaskListenerMock());
+
+        assertEquals(Arrays.asList("branch1", "PR-23"), observer.getBranches());
+        // the target revision of PR-23 is taken from the branches indexed while they were scanned
+        verify(mock, times(1)).iterateBranches();
+        verify(mock, times(1)).iteratePullRequests();
+    }
+
+    @Test
+    public void scanOfBranchFiledAsPullRequestExcludesIt() throws Exception {
+        BitbucketCloudApiClient mock = BitbucketClientMockUtils.getAPIClientMock(BitbucketRepositoryType.GIT, false);
+        BitbucketClientMockUtils.withOriginPullRequest(mock, branchName);
+        BitbucketMockApiFactory.add(BitbucketCloudEndpoint.SERVER_URL, mock);
+        BitbucketSCMSource source = new BitbucketSCMSource("amuniz", "test-repos");
+        source.setTraits(Arrays.asList(
+                new BranchDiscoveryTrait(1),
+                new OriginPullRequestDiscoveryTrait(EnumSet.of(ChangeRequestCheckoutStrategy.HEAD))
+        ));
+        source.setOwner(getSCMSourceOwnerMock());
+        final BranchSCMHead head = new BranchSCMHead(branchName, BitbucketRepositoryType.GIT);
+        SCMHeadObserverImpl observer = new SCMHeadObserverImpl() {
+            @Override
+            public Set<SCMHead> getIncludes() {
+                return Collections.<SCMHead>singleton(head);
+            }
+        };
+        source.fetch(observer, BitbucketClientMockUtils.getTaskListenerMock());
+
+        // branch1 is filed as an origin pull request, which only the listing of the pull requests tells
+        assertEquals(Collections.<String>emptyList(), observer.getBranches());
+        verify(mock, times(1)).iteratePullRequests();
+    }
+
     @Test
     public void gitSCMTest() throws Exception {
         BitbucketMockApiFactory.add(BitbucketCloudEndpoint.SERVER_URL,
@@ -202,7 +255,7 @@ public class BranchScanningTest {
         return mocked;
     }
 
-    public final class SCMHeadObserverImpl extends SCMHeadObserver {
+    public class SCMHeadObserverImpl extends SCMHeadObserver {
 
         public List<String> branches = new ArrayList<String>();
 
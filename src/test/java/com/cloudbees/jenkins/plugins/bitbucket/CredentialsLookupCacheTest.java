@@ -0,0 +1,112 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket;
+
+import com.cloudbees.plugins.credentials.CredentialsScope;
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
+import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
+import com.cloudbees.plugins.credentials.impl.UsernamePasswordCredentialsImpl;
+import hudson.security.ACL;
+import hudson.util.Secret;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.MockFolder;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class CredentialsLookupCacheTest {
+
+    private static final String SERVER_URL = "https://bitbucket.org";
+
+    @ClassRule
+    public static JenkinsRule j = new JenkinsRule();
+
+    @Before
+    public void resetCredentials() throws Exception {
+        SystemCredentialsProvider.getInstance().getCredentials().clear();
+        SystemCredentialsProvider.getInstance().save();
+    }
+
+    @Test
+    public void given__repeatedLookup__when__storeUnchanged__then__answeredFromCache() throws Exception {
+        CredentialsLookupCache cache = new CredentialsLookupCache(16, 60000);
+        SystemCredentialsProvider.getInstance().getCredentials().add(
+                new UsernamePasswordCredentialsImpl(CredentialsScope.GLOBAL, "bitbucket", null, "user", "pass"));
+        StandardUsernamePasswordCredentials first = cache.lookup(StandardUsernamePasswordCredentials.class,
+                j.jenkins, ACL.SYSTEM, SERVER_URL, "bitbucket");
+        StandardUsernamePasswordCredentials second = cache.lookup(StandardUsernamePasswordCredentials.class,
+                j.jenkins, ACL.SYSTEM, SERVER_URL, "bitbucket");
+        assertThat(first, notNullValue());
+        assertThat(second, sameInstance(first));
+        assertThat(cache.getMissCount(), is(1L));
+        assertThat(cache.getHitCount(), is(1L));
+        assertThat(cache.getHitRate(), is(0.5));
+    }
+
+    @Test
+    public void given__cachedLookup__when__storeSaved__then__lookedUpAgain() throws Exception {
+        CredentialsLookupCache cache = CredentialsLookupCache.get();
+        assertThat(cache.lookup(StandardUsernamePasswordCredentials.class,
+                j.jenkins, ACL.SYSTEM, SERVER_URL, "changing"), nullValue());
+        SystemCredentialsProvider.getInstance().getCredentials().add(
+                new UsernamePasswordCredentialsImpl(CredentialsScope.GLOBAL, "changing", null, "user", "pass"));
+        // not saved, so the missing credentials are still remembered
+        assertThat(cache.lookup(StandardUsernamePasswordCredentials.class,
+                j.jenkins, ACL.SYSTEM, SERVER_URL, "changing"), nullValue());
+        SystemCredentialsProvider.getInstance().save();
+        StandardUsernamePasswordCredentials credentials = cache.lookup(StandardUsernamePasswordCredentials.class,
+                j.jenkins, ACL.SYSTEM, SERVER_URL, "changing");
+        assertThat(credentials, notNullValue());
+        assertThat(Secret.toString(credentials.getPassword()), is("pass"));
+    }
+
+    @Test
+    public void given__cachedLookup__when__folderWithoutStoreSaved__then__answeredFromCache() throws Exception {
+        // like a multibranch project saved after indexing, the folder only inherits the stores of its parents
+        MockFolder folder = j.createFolder("indexed");
+        CredentialsLookupCache cache = CredentialsLookupCache.get();
+        assertThat(cache.lookup(StandardUsernamePasswordCredentials.class,
+                j.jenkins, ACL.SYSTEM, SERVER_URL, "unchanged"), nullValue());
+        SystemCredentialsProvider.getInstance().getCredentials().add(
+                new UsernamePasswordCredentialsImpl(CredentialsScope.GLOBAL, "unchanged", null, "user", "pass"));
+        folder.save();
+        assertThat(cache.lookup(StandardUsernamePasswordCredentials.class,
+                j.jenkins, ACL.SYSTEM, SERVER_URL, "unchanged"), nullValue());
+    }
+
+    @Test
+    public void given__expiredEntry__when__lookup__then__lookedUpAgain() throws Exception {
+        CredentialsLookupCache cache = new CredentialsLookupCache(16, 0);
+        cache.lookup(StandardUsernamePasswordCredentials.class, j.jenkins, ACL.SYSTEM, SERVER_URL, "bitbucket");
+        cache.lookup(StandardUsernamePasswordCredentials.class, j.jenkins, ACL.SYSTEM, SERVER_URL, "bitbucket");
+        assertThat(cache.getMissCount(), is(2L));
+        assertThat(cache.getHitCount(), is(0L));
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class HeadPrefetcherTest {
+
+    @Test
+    public void given__parallelEvaluation__when__iterated__then__itemsInOriginalOrder() throws Exception {
+        List<String> items = Arrays.asList("a", "b", "c", "d", "e", "f");
+        List<String> hashes = new ArrayList<>();
+        try (HeadPrefetcher<String> prefetcher = new HeadPrefetcher<>(items.iterator(), 3,
+                new HeadPrefetcher.Evaluator<String>() {
+                    @Override
+                    public String evaluate(String item, boolean ahead) throws InterruptedException {
+                        // the first items finish last
+                        Thread.sleep(("f".charAt(0) - item.charAt(0)) * 10L);
+                        return item + (ahead ? "-ahead" : "-inline");
+                    }
+                })) {
+            while (prefetcher.hasNext()) {
+                hashes.add(prefetcher.next().getHash());
+            }
+        }
+        assertThat(hashes, contains("a-ahead", "b-ahead", "c-ahead", "d-ahead", "e-ahead", "f-ahead"));
+    }
+
+    @Test
+    public void given__parallelismOne__when__iterated__then__evaluatedInlineOnce() throws Exception {
+        final AtomicInteger evaluations = new AtomicInteger();
+        try (HeadPrefetcher<String> prefetcher = new HeadPrefetcher<>(Arrays.asList("a", "b").iterator(), 1,
+                new HeadPrefetcher.Evaluator<String>() {
+                    @Override
+                    public String evaluate(String item, boolean ahead) {
+                        evaluations.incrementAndGet();
+                        return item + (ahead ? "-ahead" : "-inline");
+                    }
+                })) {
+            HeadPrefetcher.Prefetched<String> first = prefetcher.next();
+            assertThat(evaluations.get(), is(0));
+            assertThat(first.getHash(), is("a-inline"));
+            assertThat(first.getHash(), is("a-inline"));
+            assertThat(evaluations.get(), is(1));
+            assertThat(prefetcher.next().getItem(), is("b"));
+            assertThat(prefetcher.hasNext(), is(false));
+        }
+    }
+
+    @Test
+    public void given__closed__when__evaluationsPending__then__evaluationsCancelled() throws Exception {
+        final CountDownLatch started = new CountDownLatch(2);
+        final CountDownLatch interrupted = new CountDownLatch(2);
+        HeadPrefetcher<String> prefetcher = new HeadPrefetcher<>(Arrays.asList("a", "b", "c").iterator(), 2,
+                new HeadPrefetcher.Evaluator<String>() {
+                    @Override
+                    public String evaluate(String item, boolean ahead) throws InterruptedException {
+                        if ("a".equals(item)) {
+                            return item;
+                        }
+                        started.countDown();
+                        try {
+                            Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+                        } catch (InterruptedException e) {
+                            interrupted.countDown();
+                            throw e;
+                        }
+                        return item;
+                    }
+                });
+        assertThat(prefetcher.next().getItem(), is("a"));
+        assertThat(started.await(10, TimeUnit.SECONDS), is(true));
+        prefetcher.close();
+        assertThat(interrupted.await(10, TimeUnit.SECONDS), is(true));
+        assertThat(prefetcher.hasNext(), is(false));
+    }
+
+    @Test
+    public void given__evaluationFails__when__hashRequested__then__failureReported() throws Exception {
+        try (HeadPrefetcher<String> prefetcher = new HeadPrefetcher<>(Collections.singletonList("a").iterator(), 2,
+                new HeadPrefetcher.Evaluator<String>() {
+                    @Override
+                    public String evaluate(String item, boolean ahead) throws IOException {
+                        throw new IOException("no hash for " + item);
+                    }
+                })) {
+            prefetcher.next().getHash();
+            fail("expected the failure of the evaluation");
+        } catch (IOException e) {
+            assertThat(e.getMessage(), is("no hash for a"));
+        }
+    }
+
+    @Test
+    public void given__hashFailsAhead__when__hashRequested__then__failureRethrownOnScanThread() throws Exception {
+        try (HeadPrefetcher<String> prefetcher = new HeadPrefetcher<>(Arrays.asList("a", "b").iterator(), 2,
+                new HeadPrefetcher.Evaluator<String>() {
+                    @Override
+                    public String evaluate(String item, boolean ahead) {
+                        if (ahead && "b".equals(item)) {
+                            // such as a failed page of a listing shared by the scan
+                            throw new IllegalStateException("no hash for " + item);
+                        }
+                        return item;
+                    }
+                })) {
+            assertThat(prefetcher.next().getHash(), is("a"));
+            HeadPrefetcher.Prefetched<String> second = prefetcher.next();
+            try {
+                second.getHash();
+                fail("expected the failure of the evaluation ahead");
+            } catch (IllegalStateException e) {
+                assertThat(e.getMessage(), is("no hash for b"));
+            }
+        }
+    }
+}
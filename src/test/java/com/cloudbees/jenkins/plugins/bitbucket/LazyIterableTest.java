@@ -0,0 +1,148 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket;
+
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketIterationException;
+import com.cloudbees.jenkins.plugins.bitbucket.client.PagedIterator;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class LazyIterableTest {
+
+    @Test
+    public void given__pagedIterator__when__firstItemConsumed__then__onlyFirstPageFetched() throws Exception {
+        CountingPages pages = new CountingPages(3);
+        Iterator<String> iterator = iterable(pages).iterator();
+        assertThat(pages.fetched, is(0));
+        assertThat(iterator.next(), is("0-0"));
+        assertThat(iterator.next(), is("0-1"));
+        assertThat(pages.fetched, is(1));
+        assertThat(iterator.next(), is("1-0"));
+        assertThat(pages.fetched, is(2));
+    }
+
+    @Test
+    public void given__pagedIterator__when__iteratedTwice__then__listingRequestedAgain() throws Exception {
+        final List<CountingPages> created = new ArrayList<>();
+        LazyIterable<String> iterable = new LazyIterable<String>() {
+            @Override
+            protected Iterator<? extends String> create() {
+                CountingPages pages = new CountingPages(3);
+                created.add(pages);
+                return pages;
+            }
+        };
+        assertThat(created.size(), is(0));
+        assertThat(collect(iterable), contains("0-0", "0-1", "1-0", "1-1", "2-0", "2-1"));
+        assertThat(collect(iterable), contains("0-0", "0-1", "1-0", "1-1", "2-0", "2-1"));
+        assertThat(created.size(), is(2));
+        assertThat(created.get(0).fetched, is(3));
+        assertThat(created.get(1).fetched, is(3));
+    }
+
+    @Test
+    public void given__pagedIterator__when__closed__then__noFurtherPagesFetched() throws Exception {
+        CountingPages pages = new CountingPages(3);
+        LazyIterable<String> iterable = iterable(pages);
+        Iterator<String> iterator = iterable.iterator();
+        assertThat(iterator.next(), is("0-0"));
+        iterable.close();
+        assertThat(iterator.hasNext(), is(false));
+        assertThat(pages.fetched, is(1));
+    }
+
+    @Test
+    public void given__pageFails__when__iterated__then__failureReportedWhenReached() throws Exception {
+        CountingPages pages = new CountingPages(3);
+        pages.failAt = 1;
+        Iterator<String> iterator = iterable(pages).iterator();
+        assertThat(iterator.next(), is("0-0"));
+        assertThat(iterator.next(), is("0-1"));
+        try {
+            iterator.hasNext();
+            fail("expected the failure of the second page");
+        } catch (BitbucketIterationException e) {
+            try {
+                e.unwrap();
+                fail("expected the original cause");
+            } catch (IOException cause) {
+                assertThat(cause.getMessage(), is("page 1"));
+            }
+        }
+        try {
+            iterator.hasNext();
+            fail("expected the failure to be reported again");
+        } catch (BitbucketIterationException e) {
+            assertThat(e.getCause().getMessage(), is("page 1"));
+        }
+    }
+
+    private static LazyIterable<String> iterable(final PagedIterator<String> pages) {
+        return new LazyIterable<String>() {
+            @Override
+            protected Iterator<? extends String> create() {
+                return pages;
+            }
+        };
+    }
+
+    private static List<String> collect(Iterable<String> iterable) {
+        List<String> result = new ArrayList<>();
+        for (String item : iterable) {
+            result.add(item);
+        }
+        return result;
+    }
+
+    private static class CountingPages extends PagedIterator<String> {
+        private final int pageCount;
+        private int fetched;
+        private int failAt = -1;
+
+        CountingPages(int pageCount) {
+            this.pageCount = pageCount;
+        }
+
+        @Override
+        protected List<String> nextPage(int pageIndex) throws IOException {
+            if (pageIndex >= pageCount) {
+                return null;
+            }
+            if (pageIndex == failAt) {
+                throw new IOException("page " + pageIndex);
+            }
+            fetched++;
+            return Arrays.asList(pageIndex + "-0", pageIndex + "-1");
+        }
+    }
+}
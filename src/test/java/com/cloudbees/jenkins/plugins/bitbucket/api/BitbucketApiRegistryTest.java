@@ -0,0 +1,95 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.api;
+
+import com.cloudbees.jenkins.plugins.bitbucket.endpoints.BitbucketCloudEndpoint;
+import com.cloudbees.jenkins.plugins.bitbucket.endpoints.BitbucketEndpointConfiguration;
+import com.cloudbees.plugins.credentials.CredentialsScope;
+import com.cloudbees.plugins.credentials.impl.UsernamePasswordCredentialsImpl;
+import hudson.ProxyConfiguration;
+import java.util.Collections;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class BitbucketApiRegistryTest {
+
+    private static final String SERVER_URL = BitbucketCloudEndpoint.SERVER_URL;
+
+    @ClassRule
+    public static JenkinsRule j = new JenkinsRule();
+
+    @Before
+    public void clearRegistry() {
+        BitbucketApiRegistry.clear();
+    }
+
+    @Test
+    public void given__sameKey__when__get__then__clientShared() throws Exception {
+        BitbucketApi client = BitbucketApiRegistry.get(SERVER_URL, null, "amuniz", "test-repos");
+        assertThat(BitbucketApiRegistry.get(SERVER_URL, null, "amuniz", "test-repos"), sameInstance(client));
+        assertThat(BitbucketApiRegistry.get(SERVER_URL, null, "amuniz", "other-repos"), not(sameInstance(client)));
+        assertThat(BitbucketApiRegistry.get(SERVER_URL, null, "amuniz", null), not(sameInstance(client)));
+    }
+
+    @Test
+    public void given__changedPassword__when__get__then__newClient() throws Exception {
+        BitbucketApi client = BitbucketApiRegistry.get(SERVER_URL,
+                new UsernamePasswordCredentialsImpl(CredentialsScope.GLOBAL, "bitbucket", null, "user", "pass1"),
+                "amuniz", "test-repos");
+        assertThat(BitbucketApiRegistry.get(SERVER_URL,
+                new UsernamePasswordCredentialsImpl(CredentialsScope.GLOBAL, "bitbucket", null, "user", "pass1"),
+                "amuniz", "test-repos"), sameInstance(client));
+        assertThat(BitbucketApiRegistry.get(SERVER_URL,
+                new UsernamePasswordCredentialsImpl(CredentialsScope.GLOBAL, "bitbucket", null, "user", "pass2"),
+                "amuniz", "test-repos"), not(sameInstance(client)));
+        assertThat(BitbucketApiRegistry.get(SERVER_URL, null, "amuniz", "test-repos"), not(sameInstance(client)));
+    }
+
+    @Test
+    public void given__endpointsChanged__when__get__then__newClient() throws Exception {
+        BitbucketApi client = BitbucketApiRegistry.get(SERVER_URL, null, "amuniz", "test-repos");
+        BitbucketEndpointConfiguration.get().setEndpoints(
+                Collections.singletonList(new BitbucketCloudEndpoint(false, null)));
+        assertThat(BitbucketApiRegistry.get(SERVER_URL, null, "amuniz", "test-repos"), not(sameInstance(client)));
+    }
+
+    @Test
+    public void given__proxyChanged__when__get__then__newClient() throws Exception {
+        BitbucketApi client = BitbucketApiRegistry.get(SERVER_URL, null, "amuniz", "test-repos");
+        try {
+            j.jenkins.proxy = new ProxyConfiguration("proxy.example.com", 3128);
+            j.jenkins.proxy.save();
+            assertThat(BitbucketApiRegistry.get(SERVER_URL, null, "amuniz", "test-repos"),
+                    not(sameInstance(client)));
+        } finally {
+            j.jenkins.proxy = null;
+        }
+    }
+}
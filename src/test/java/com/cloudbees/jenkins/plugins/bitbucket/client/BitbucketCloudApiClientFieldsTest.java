@@ -0,0 +1,263 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.client;
+
+import com.cloudbees.jenkins.plugins.bitbucket.client.branch.BitbucketCloudBranch;
+import com.cloudbees.jenkins.plugins.bitbucket.client.branch.BitbucketCloudBranchRef;
+import com.cloudbees.jenkins.plugins.bitbucket.client.pullrequest.BitbucketPullRequestValue;
+import com.cloudbees.jenkins.plugins.bitbucket.client.pullrequest.BitbucketPullRequests;
+import com.cloudbees.jenkins.plugins.bitbucket.client.repository.BitbucketCloudRepository;
+import com.cloudbees.jenkins.plugins.bitbucket.client.repository.BitbucketRepositoryHook;
+import com.cloudbees.jenkins.plugins.bitbucket.client.repository.BitbucketRepositoryHooks;
+import com.cloudbees.jenkins.plugins.bitbucket.client.repository.PaginatedBitbucketRepository;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import org.codehaus.jackson.annotate.JsonIgnore;
+import org.codehaus.jackson.annotate.JsonProperty;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Checks that the partial response projections requested by {@link BitbucketCloudApiClient} cover every property
+ * the model binds. A consumer can only read what the model binds, so a property added to the model for a new
+ * consumer must also be added to the projection or this test fails.
+ */
+public class BitbucketCloudApiClientFieldsTest {
+
+    /**
+     * Properties bound for the 1.0 API that the 2.0 API never returns, keyed by the model type.
+     */
+    private static final Map<Class<?>, Set<String>> NOT_IN_API_2 = Collections.<Class<?>, Set<String>>singletonMap(
+            BitbucketCloudBranch.class, new HashSet<>(Arrays.asList("raw_node", "utctimestamp", "branch"))
+    );
+
+    @Test
+    public void given__pullRequestProjection__then__boundPropertiesRequested() throws Exception {
+        assertThat(unrequested(BitbucketCloudApiClient.PULL_REQUEST_FIELDS, BitbucketPullRequestValue.class),
+                empty());
+    }
+
+    @Test
+    public void given__repositoryProjection__then__boundPropertiesRequested() throws Exception {
+        assertThat(unrequested(BitbucketCloudApiClient.REPOSITORY_FIELDS, BitbucketCloudRepository.class), empty());
+    }
+
+    @Test
+    public void given__branchProjection__then__boundPropertiesRequested() throws Exception {
+        assertThat(unrequested(BitbucketCloudApiClient.BRANCH_FIELDS, BitbucketCloudBranchRef.class), empty());
+    }
+
+    @Test
+    public void given__hookProjection__then__boundPropertiesRequested() throws Exception {
+        assertThat(unrequested(BitbucketCloudApiClient.HOOK_FIELDS, BitbucketRepositoryHook.class), empty());
+    }
+
+    @Test
+    public void given__pageProjections__then__valuesAndPaginationRequested() throws Exception {
+        assertThat(unrequested(BitbucketCloudApiClient.pageProjection(BitbucketCloudApiClient.PULL_REQUEST_FIELDS),
+                BitbucketPullRequests.class), empty());
+        assertThat(unrequested(BitbucketCloudApiClient.pageProjection(BitbucketCloudApiClient.REPOSITORY_FIELDS),
+                PaginatedBitbucketRepository.class), empty());
+        assertThat(unrequested(BitbucketCloudApiClient.pageProjection(BitbucketCloudApiClient.HOOK_FIELDS),
+                BitbucketRepositoryHooks.class), empty());
+    }
+
+    @Test
+    public void given__propertyProjectedAway__then__reported() throws Exception {
+        assertThat(unrequested("uuid,description,url,events", BitbucketRepositoryHook.class), contains("active"));
+    }
+
+    /**
+     * Returns the property paths bound by a model type that a projection does not request.
+     */
+    private static Set<String> unrequested(String projection, Class<?> type) {
+        Set<String> requested = new HashSet<>(Arrays.asList(projection.split(",")));
+        Set<String> result = new TreeSet<>();
+        collect(type, type, "", requested, result, new HashSet<Class<?>>());
+        return result;
+    }
+
+    private static void collect(Class<?> type, Class<?> root, String prefix, Set<String> requested,
+                                Set<String> result, Set<Class<?>> visiting) {
+        if (!visiting.add(type)) {
+            return;
+        }
+        Set<String> excluded = NOT_IN_API_2.get(type);
+        for (Map.Entry<String, Type> property : boundProperties(type).entrySet()) {
+            if (excluded != null && excluded.contains(property.getKey())) {
+                continue;
+            }
+            String path = prefix + property.getKey();
+            Type propertyType = resolve(property.getValue(), root);
+            if (propertyType instanceof ParameterizedType
+                    && Collection.class.isAssignableFrom(raw(propertyType))) {
+                propertyType = resolve(((ParameterizedType) propertyType).getActualTypeArguments()[0], root);
+            }
+            Class<?> raw = raw(propertyType);
+            if (Map.class.isAssignableFrom(raw)) {
+                // a map of links is covered by requesting any of its keys
+                if (!isRequested(path, requested) && !hasRequestedChild(path, requested)) {
+                    result.add(path);
+                }
+            } else if (raw.getName().startsWith("com.cloudbees.jenkins.plugins.bitbucket.") && !raw.isEnum()) {
+                if (!isRequested(path, requested)) {
+                    collect(raw, root, path + ".", requested, result, visiting);
+                }
+            } else if (!isRequested(path, requested)) {
+                result.add(path);
+            }
+        }
+        visiting.remove(type);
+    }
+
+    private static boolean isRequested(String path, Set<String> requested) {
+        for (String field : requested) {
+            if (path.equals(field) || path.startsWith(field + ".")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasRequestedChild(String path, Set<String> requested) {
+        for (String field : requested) {
+            if (field.startsWith(path + ".")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the JSON properties Jackson deserializes into a type, with their types. A property is bound through a
+     * setter or an annotated field, and an explicit {@link JsonProperty} wins over {@link JsonIgnore} on the other
+     * accessors of the same property.
+     */
+    private static Map<String, Type> boundProperties(Class<?> type) {
+        Map<String, String> names = new HashMap<>();
+        Map<String, Type> types = new HashMap<>();
+        Set<String> explicit = new HashSet<>();
+        Set<String> ignored = new HashSet<>();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic()) {
+                    continue;
+                }
+                String internal = field.getName();
+                if (field.isAnnotationPresent(JsonIgnore.class)) {
+                    ignored.add(internal);
+                }
+                JsonProperty annotation = field.getAnnotation(JsonProperty.class);
+                if (annotation != null) {
+                    explicit.add(internal);
+                    if (!annotation.value().isEmpty()) {
+                        names.put(internal, annotation.value());
+                    }
+                    types.put(internal, field.getGenericType());
+                }
+            }
+            for (Method method : c.getDeclaredMethods()) {
+                if (!method.getName().startsWith("set") || method.getName().length() == 3
+                        || method.getParameterTypes().length != 1 || Modifier.isStatic(method.getModifiers())
+                        || method.isBridge()) {
+                    continue;
+                }
+                String internal = Character.toLowerCase(method.getName().charAt(3)) + method.getName().substring(4);
+                if (method.isAnnotationPresent(JsonIgnore.class)) {
+                    ignored.add(internal);
+                    continue;
+                }
+                JsonProperty annotation = method.getAnnotation(JsonProperty.class);
+                if (annotation != null) {
+                    explicit.add(internal);
+                    if (!annotation.value().isEmpty()) {
+                        names.put(internal, annotation.value());
+                    }
+                } else if (!Modifier.isPublic(method.getModifiers())) {
+                    continue;
+                }
+                types.put(internal, method.getGenericParameterTypes()[0]);
+            }
+        }
+        Map<String, Type> result = new TreeMap<>();
+        for (Map.Entry<String, Type> property : types.entrySet()) {
+            String internal = property.getKey();
+            if (ignored.contains(internal) && !explicit.contains(internal)) {
+                continue;
+            }
+            String name = names.get(internal);
+            result.put(name == null ? internal : name, property.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * Resolves the type parameter of a page against the page type being checked.
+     */
+    private static Type resolve(Type type, Class<?> root) {
+        if (!(type instanceof TypeVariable)) {
+            return type;
+        }
+        for (Class<?> c = root; c != null && c != Object.class; c = c.getSuperclass()) {
+            Type superclass = c.getGenericSuperclass();
+            if (superclass instanceof ParameterizedType) {
+                ParameterizedType parameterized = (ParameterizedType) superclass;
+                List<TypeVariable<?>> variables = Arrays.<TypeVariable<?>>asList(
+                        ((Class<?>) parameterized.getRawType()).getTypeParameters());
+                int index = variables.indexOf(type);
+                if (index >= 0) {
+                    return parameterized.getActualTypeArguments()[index];
+                }
+            }
+        }
+        return Object.class;
+    }
+
+    private static Class<?> raw(Type type) {
+        if (type instanceof Class) {
+            return (Class<?>) type;
+        }
+        if (type instanceof ParameterizedType) {
+            return (Class<?>) ((ParameterizedType) type).getRawType();
+        }
+        return Object.class;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.client;
+
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketCommit;
+import com.cloudbees.jenkins.plugins.bitbucket.server.client.branch.BitbucketServerCommit;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class CommitCacheTest {
+
+    private static final String ENDPOINT = "https://bitbucket.example.com";
+    private static final String HASH_1 = "8d51122def5632836d1cb1026e879069e10a1e13";
+    private static final String HASH_2 = "e851558f77c098d21af6bb8cc54a423f7cf12147";
+    private static final String HASH_3 = "a3b1e2c6d1e9f0a1b2c3d4e5f60718293a4b5c6d";
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void given__fullHash__when__put__then__lookupHits() throws Exception {
+        CommitCache cache = new CommitCache(1024 * 1024, null);
+        assertThat(cache.lookup(ENDPOINT, "PROJ", "repo", HASH_1), nullValue());
+        cache.put(ENDPOINT, "PROJ", "repo", HASH_1, commit(HASH_1, "Initial commit", 1505143226000L));
+        BitbucketCommit commit = cache.lookup(ENDPOINT, "proj", "repo", HASH_1.toUpperCase());
+        assertThat(commit, notNullValue());
+        assertThat(commit.getHash(), is(HASH_1));
+        assertThat(commit.getMessage(), is("Initial commit"));
+        assertThat(commit.getDateMillis(), is(1505143226000L));
+        assertThat(cache.getHitCount(), is(1L));
+        assertThat(cache.getMissCount(), is(1L));
+    }
+
+    @Test
+    public void given__shortHashOrBranch__when__put__then__notCached() throws Exception {
+        CommitCache cache = new CommitCache(1024 * 1024, null);
+        cache.put(ENDPOINT, "PROJ", "repo", "8d51122", commit(HASH_1, "Initial commit", 1L));
+        cache.put(ENDPOINT, "PROJ", "repo", "master", commit(HASH_1, "Initial commit", 1L));
+        assertThat(cache.getEntryCount(), is(0));
+        assertThat(cache.lookup(ENDPOINT, "PROJ", "repo", "8d51122"), nullValue());
+    }
+
+    @Test
+    public void given__otherRepositoryOrEndpoint__when__lookup__then__miss() throws Exception {
+        CommitCache cache = new CommitCache(1024 * 1024, null);
+        cache.put(ENDPOINT, "PROJ", "repo", HASH_1, commit(HASH_1, "Initial commit", 1L));
+        assertThat(cache.lookup(ENDPOINT, "PROJ", "fork", HASH_1), nullValue());
+        assertThat(cache.lookup("https://bitbucket.org", "PROJ", "repo", HASH_1), nullValue());
+    }
+
+    @Test
+    public void given__fullCache__when__put__then__leastRecentlyUsedEvicted() throws Exception {
+        CommitCache probe = new CommitCache(1024 * 1024, null);
+        probe.put(ENDPOINT, "PROJ", "repo", HASH_1, commit(HASH_1, "message", 1L));
+        long entrySize = probe.getSize();
+
+        CommitCache cache = new CommitCache(2 * entrySize, null);
+        cache.put(ENDPOINT, "PROJ", "repo", HASH_1, commit(HASH_1, "message", 1L));
+        cache.put(ENDPOINT, "PROJ", "repo", HASH_2, commit(HASH_2, "message", 2L));
+        assertThat(cache.lookup(ENDPOINT, "PROJ", "repo", HASH_1), notNullValue());
+        cache.put(ENDPOINT, "PROJ", "repo", HASH_3, commit(HASH_3, "message", 3L));
+        assertThat(cache.getEntryCount(), is(2));
+        assertThat(cache.getEvictionCount(), is(1L));
+        assertThat(cache.lookup(ENDPOINT, "PROJ", "repo", HASH_2), nullValue());
+        assertThat(cache.lookup(ENDPOINT, "PROJ", "repo", HASH_1), notNullValue());
+        assertThat(cache.lookup(ENDPOINT, "PROJ", "repo", HASH_3), notNullValue());
+    }
+
+    @Test
+    public void given__savedCache__when__reloaded__then__commitsRestored() throws Exception {
+        File file = new File(tmp.getRoot(), "caches/commits.cache");
+        CommitCache cache = new CommitCache(1024 * 1024, file);
+        cache.put(ENDPOINT, "PROJ", "repo", HASH_1, commit(HASH_1, "Initial commit\n\nwith a body", 1505143226000L));
+        cache.put(ENDPOINT, "PROJ", "repo", HASH_2, new BitbucketServerCommit(null, null, null, 1505143339000L));
+        cache.save();
+
+        CommitCache reloaded = new CommitCache(1024 * 1024, file);
+        assertThat(reloaded.getEntryCount(), is(2));
+        assertThat(reloaded.getSize(), is(cache.getSize()));
+        BitbucketCommit commit = reloaded.lookup(ENDPOINT, "PROJ", "repo", HASH_1);
+        assertThat(commit, notNullValue());
+        assertThat(commit.getMessage(), is("Initial commit\n\nwith a body"));
+        assertThat(commit.getDateMillis(), is(1505143226000L));
+        commit = reloaded.lookup(ENDPOINT, "PROJ", "repo", HASH_2);
+        assertThat(commit, notNullValue());
+        assertThat(commit.getHash(), is(HASH_2));
+        assertThat(commit.getMessage(), nullValue());
+        assertThat(commit.getDateMillis(), is(1505143339000L));
+    }
+
+    @Test
+    public void given__corruptFile__when__loaded__then__empty() throws Exception {
+        File file = tmp.newFile("commits.cache");
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[]{0, 0, 0, 1, 0, 0, 0, 5});
+            out.write("garbage".getBytes(StandardCharsets.UTF_8));
+        }
+        CommitCache cache = new CommitCache(1024 * 1024, file);
+        assertThat(cache.getEntryCount(), is(0));
+        assertThat(cache.lookup(ENDPOINT, "PROJ", "repo", HASH_1), nullValue());
+    }
+
+    private static BitbucketCommit commit(String hash, String message, long dateMillis) {
+        return new BitbucketServerCommit(message, null, hash, dateMillis);
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ConditionalGetCacheTest {
+
+    private static final String URL = "https://bitbucket.example.com/rest/api/1.0/projects/AMUNIZ/repos/test-repos";
+
+    @Test
+    public void given__etag__when__read__then__cached() throws Exception {
+        ConditionalGetCache cache = new ConditionalGetCache(1024, 256);
+        assertThat(read(cache, "alice", ok("{\"a\":1}", "ETag", "\"v1\"")), is("{\"a\":1}"));
+        assertThat(cache.lookup(URL, "alice"), notNullValue());
+        assertThat(cache.lookup(URL, "bob"), nullValue());
+        assertThat(cache.getSize(), is(7L));
+    }
+
+    @Test
+    public void given__cachedResponse__when__notModified__then__servedFromCache() throws Exception {
+        ConditionalGetCache cache = new ConditionalGetCache(1024, 256);
+        read(cache, "alice", ok("{\"a\":1}", "Last-Modified", "Tue, 15 Nov 1994 12:45:26 GMT"));
+        ConditionalGetCache.Entry cached = cache.lookup(URL, "alice");
+
+        HttpMethod request = mock(HttpMethod.class);
+        cached.addValidators(request);
+        verify(request).setRequestHeader("If-Modified-Since", "Tue, 15 Nov 1994 12:45:26 GMT");
+
+        HttpMethod notModified = mock(HttpMethod.class);
+        when(notModified.getStatusCode()).thenReturn(304);
+        try (InputStream is = cache.open(URL, "alice", cached, notModified, null)) {
+            assertThat(IOUtils.toString(is, "UTF-8"), is("{\"a\":1}"));
+        }
+        verify(notModified).releaseConnection();
+        assertThat(cache.getHitCount(), is(1L));
+        assertThat(cache.getMissCount(), is(1L));
+    }
+
+    @Test
+    public void given__noValidator__when__read__then__notCached() throws Exception {
+        ConditionalGetCache cache = new ConditionalGetCache(1024, 256);
+        read(cache, "alice", ok("{\"a\":1}", null, null));
+        assertThat(cache.lookup(URL, "alice"), nullValue());
+    }
+
+    @Test
+    public void given__largeBody__when__read__then__notCached() throws Exception {
+        ConditionalGetCache cache = new ConditionalGetCache(1024, 4);
+        read(cache, "alice", ok("{\"a\":1}", "ETag", "\"v1\""));
+        assertThat(cache.lookup(URL, "alice"), nullValue());
+    }
+
+    @Test
+    public void given__partiallyReadBody__when__closed__then__restCachedAndConnectionReleased() throws Exception {
+        ConditionalGetCache cache = new ConditionalGetCache(1024, 256);
+        HttpMethod method = ok("{\"a\":1}", "ETag", "\"v1\"");
+        InputStream is = cache.open(URL, "alice", null, method, null);
+        assertThat(is.read(), is((int) '{'));
+        is.close();
+        verify(method).releaseConnection();
+        assertThat(cache.getSize(), is(7L));
+    }
+
+    @Test
+    public void given__guardedRequest__when__closed__then__permitExitedAfterBodyRead() throws Exception {
+        ConditionalGetCache cache = new ConditionalGetCache(1024, 256);
+        EndpointGuard guard = new EndpointGuard("https://bitbucket.example.com");
+        guard.configure(1, 0, 1, 30);
+        InputStream is = cache.open(URL, "alice", null, ok("{\"a\":1}", null, null), guard.enter());
+        assertThat(guard.getActiveRequests(), is(1));
+        assertThat(IOUtils.toString(is, "UTF-8"), is("{\"a\":1}"));
+        is.close();
+        assertThat(guard.getActiveRequests(), is(0));
+        assertThat(guard.getFailureCount(), is(0L));
+    }
+
+    @Test
+    public void given__guardedRequest__when__bodyReadFails__then__failureRecorded() throws Exception {
+        ConditionalGetCache cache = new ConditionalGetCache(1024, 256);
+        EndpointGuard guard = new EndpointGuard("https://bitbucket.example.com");
+        guard.configure(1, 0, 1, 30);
+        HttpMethod method = mock(HttpMethod.class);
+        when(method.getStatusCode()).thenReturn(200);
+        when(method.getResponseBodyAsStream()).thenReturn(new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("connection reset");
+            }
+        });
+        EndpointGuard.Permit permit = guard.enter();
+        permit.completed(200);
+        InputStream is = cache.open(URL, "alice", null, method, permit);
+        try {
+            is.read();
+            fail("expected the body read to fail");
+        } catch (IOException e) {
+            // expected
+        } finally {
+            is.close();
+        }
+        verify(method).releaseConnection();
+        assertThat(guard.getActiveRequests(), is(0));
+        assertThat(guard.getFailureCount(), is(1L));
+    }
+
+    @Test
+    public void given__fullCache__when__read__then__leastRecentlyUsedEvicted() throws Exception {
+        ConditionalGetCache cache = new ConditionalGetCache(16, 16);
+        read(cache, "alice", ok("{\"a\":1}", "ETag", "\"v1\""));
+        read(cache, "bob", ok("{\"b\":1}", "ETag", "\"v1\""));
+        // touch alice's entry so that bob's becomes the eldest
+        cache.lookup(URL, "alice");
+        read(cache, "carol", ok("{\"c\":1}", "ETag", "\"v1\""));
+        assertThat(cache.lookup(URL, "alice"), notNullValue());
+        assertThat(cache.lookup(URL, "bob"), nullValue());
+        assertThat(cache.lookup(URL, "carol"), notNullValue());
+        assertThat(cache.getEvictionCount(), is(1L));
+        assertThat(cache.getSize(), is(14L));
+    }
+
+    private static String read(ConditionalGetCache cache, String username, HttpMethod method) throws IOException {
+        try (InputStream is = cache.open(URL, username, null, method, null)) {
+            return IOUtils.toString(is, "UTF-8");
+        }
+    }
+
+    private static HttpMethod ok(String body, String header, String value) throws IOException {
+        HttpMethod method = mock(HttpMethod.class);
+        when(method.getStatusCode()).thenReturn(200);
+        when(method.getResponseBodyAsStream()).thenReturn(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+        if (header != null) {
+            when(method.getResponseHeader(header)).thenReturn(new Header(header, value));
+        }
+        return method;
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.client;
+
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketRequestException;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class EndpointGuardTest {
+
+    @Test
+    public void given__concurrencyLimit__when__enter__then__excessRequestRejected() throws Exception {
+        FakeClockGuard guard = new FakeClockGuard(2, 3, 30);
+        EndpointGuard.Permit first = guard.enter();
+        guard.enter();
+        assertThat(guard.getActiveRequests(), is(2));
+        assertRejected(guard);
+        first.completed(200);
+        first.exit();
+        assertThat(guard.getActiveRequests(), is(1));
+        guard.enter();
+        assertThat(guard.getRejectedCount(), is(1L));
+    }
+
+    @Test
+    public void given__consecutiveFailures__when__enter__then__circuitOpens() throws Exception {
+        FakeClockGuard guard = new FakeClockGuard(10, 3, 30);
+        failing(guard, 503);
+        failing(guard, -1);
+        succeed(guard);
+        failing(guard, 500);
+        failing(guard, 502);
+        assertThat(guard.getState(), is(EndpointGuard.State.CLOSED));
+        failing(guard, -1);
+        assertThat(guard.getState(), is(EndpointGuard.State.OPEN));
+        assertThat(guard.getConsecutiveFailures(), is(3));
+        assertRejected(guard);
+    }
+
+    @Test
+    public void given__openCircuit__when__recoveryDelayElapsed__then__singleProbe() throws Exception {
+        FakeClockGuard guard = new FakeClockGuard(10, 1, 30);
+        failing(guard, 500);
+        guard.now += TimeUnit.SECONDS.toNanos(29);
+        assertRejected(guard);
+        guard.now += TimeUnit.SECONDS.toNanos(1);
+        EndpointGuard.Permit probe = guard.enter();
+        assertThat(guard.getState(), is(EndpointGuard.State.HALF_OPEN));
+        assertRejected(guard);
+        probe.completed(404);
+        probe.exit();
+        assertThat(guard.getState(), is(EndpointGuard.State.CLOSED));
+        succeed(guard);
+    }
+
+    @Test
+    public void given__openCircuit__when__probeFails__then__circuitReopens() throws Exception {
+        FakeClockGuard guard = new FakeClockGuard(10, 1, 30);
+        failing(guard, 500);
+        guard.now += TimeUnit.SECONDS.toNanos(30);
+        failing(guard, 500);
+        assertThat(guard.getState(), is(EndpointGuard.State.OPEN));
+        guard.now += TimeUnit.SECONDS.toNanos(29);
+        assertRejected(guard);
+    }
+
+    @Test
+    public void given__unreadableBody__when__exit__then__countedAsFailure() throws Exception {
+        FakeClockGuard guard = new FakeClockGuard(10, 1, 30);
+        EndpointGuard.Permit permit = guard.enter();
+        permit.completed(200);
+        permit.failed();
+        permit.exit();
+        assertThat(guard.getFailureCount(), is(1L));
+        assertThat(guard.getState(), is(EndpointGuard.State.OPEN));
+    }
+
+    private static void succeed(EndpointGuard guard) throws Exception {
+        EndpointGuard.Permit permit = guard.enter();
+        permit.completed(200);
+        permit.exit();
+    }
+
+    private static void failing(EndpointGuard guard, int status) throws Exception {
+        EndpointGuard.Permit permit = guard.enter();
+        if (status > 0) {
+            permit.completed(status);
+        }
+        permit.exit();
+    }
+
+    private static void assertRejected(EndpointGuard guard) throws Exception {
+        try {
+            guard.enter();
+            fail("expected the request to be rejected");
+        } catch (BitbucketRequestException e) {
+            assertThat(e.getHttpCode(), is(503));
+        }
+    }
+
+    /**
+     * A guard that does not wait for a concurrent request to complete, whose clock only advances when told to.
+     */
+    private static class FakeClockGuard extends EndpointGuard {
+        private long now;
+
+        FakeClockGuard(int maxConcurrentRequests, int failureThreshold, int recoveryDelay) {
+            super("https://bitbucket.example.com");
+            configure(maxConcurrentRequests, 0, failureThreshold, recoveryDelay);
+        }
+
+        @Override
+        long nanoTime() {
+            return now;
+        }
+    }
+}
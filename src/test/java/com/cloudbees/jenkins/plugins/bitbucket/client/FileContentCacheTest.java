@@ -0,0 +1,80 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.client;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class FileContentCacheTest {
+
+    private static final String ENDPOINT = "https://bitbucket.example.com";
+    private static final String HASH = "8d51122def5632836d1cb1026e879069e10a1e13";
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void given__content__when__lookup__then__contentReturned() throws Exception {
+        FileContentCache cache = new FileContentCache(1024 * 1024, 1024, null);
+        cache.put(ENDPOINT, "PROJ", "repo", HASH, "Jenkinsfile", bytes("node {}"));
+        assertThat(new String(cache.lookup(ENDPOINT, "proj", "repo", HASH, "Jenkinsfile"), StandardCharsets.UTF_8),
+                is("node {}"));
+        assertThat(cache.lookup(ENDPOINT, "PROJ", "repo", HASH, "jenkinsfile"), nullValue());
+        assertThat(cache.lookup(ENDPOINT, "PROJ", "fork", HASH, "Jenkinsfile"), nullValue());
+    }
+
+    @Test
+    public void given__branchNameOrLargeContent__when__put__then__notCached() throws Exception {
+        FileContentCache cache = new FileContentCache(1024 * 1024, 16, null);
+        cache.put(ENDPOINT, "PROJ", "repo", "master", "Jenkinsfile", bytes("node {}"));
+        cache.put(ENDPOINT, "PROJ", "repo", HASH, "Jenkinsfile", bytes("node { echo 'too large' }"));
+        assertThat(cache.getEntryCount(), is(0));
+    }
+
+    @Test
+    public void given__savedCache__when__reloaded__then__contentRestored() throws Exception {
+        File file = new File(tmp.getRoot(), "files.cache");
+        FileContentCache cache = new FileContentCache(1024 * 1024, 1024, file);
+        cache.put(ENDPOINT, "PROJ", "repo", HASH, "Jenkinsfile", bytes("node {}"));
+        cache.put(ENDPOINT, "PROJ", "repo", HASH, "empty.txt", new byte[0]);
+        cache.save();
+
+        FileContentCache reloaded = new FileContentCache(1024 * 1024, 1024, file);
+        assertThat(new String(reloaded.lookup(ENDPOINT, "PROJ", "repo", HASH, "Jenkinsfile"), StandardCharsets.UTF_8),
+                is("node {}"));
+        assertThat(reloaded.lookup(ENDPOINT, "PROJ", "repo", HASH, "empty.txt").length, is(0));
+        assertThat(reloaded.getSize(), is(cache.getSize()));
+    }
+
+    private static byte[] bytes(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class HttpCompressionTest {
+
+    /**
+     * Recorded Bitbucket API payloads.
+     */
+    private static final String[] PAYLOADS = {
+            "/com/cloudbees/jenkins/plugins/bitbucket/server/events/BitbucketServerPullRequestEventTest/apiResponse.json",
+            "/com/cloudbees/jenkins/plugins/bitbucket/client/events/BitbucketCloudPullRequestEventTest/createPayloadFork.json",
+            "/com/cloudbees/jenkins/plugins/bitbucket/client/events/BitbucketCloudPushEventTest/multipleChangesPayload.json"
+    };
+
+    @Test
+    public void given__request__when__acceptCompressed__then__acceptEncodingSent() throws Exception {
+        HttpMethod method = mock(HttpMethod.class);
+        HttpCompression.acceptCompressed(method);
+        verify(method).setRequestHeader("Accept-Encoding", "gzip, deflate");
+    }
+
+    @Test
+    public void given__recordedPayloads__when__gzipped__then__fewerBytesOnTheWire() throws Exception {
+        for (String payload : PAYLOADS) {
+            byte[] body = resource(payload);
+            byte[] wire = gzip(body);
+            System.out.printf("%s: %d bytes uncompressed, %d bytes gzip%n",
+                    payload.substring(payload.lastIndexOf('/') + 1), body.length, wire.length);
+            assertThat(wire.length, lessThan(body.length / 3));
+            assertThat(read(response("gzip", wire)), is(body));
+        }
+    }
+
+    @Test
+    public void given__deflatedPayload__when__read__then__decompressed() throws Exception {
+        byte[] body = resource(PAYLOADS[0]);
+        assertThat(read(response("deflate", deflate(body, false))), is(body));
+        assertThat(read(response("deflate", deflate(body, true))), is(body));
+    }
+
+    @Test
+    public void given__uncompressedPayload__when__read__then__unchanged() throws Exception {
+        InputStream body = new ByteArrayInputStream(new byte[]{'{', '}'});
+        HttpMethod method = mock(HttpMethod.class);
+        when(method.getResponseBodyAsStream()).thenReturn(body);
+        assertThat(HttpCompression.getResponseBody(method), sameInstance(body));
+    }
+
+    @Test
+    public void given__emptyGzipBody__when__read__then__empty() throws Exception {
+        assertThat(read(response("gzip", new byte[0])).length, is(0));
+    }
+
+    @Test
+    public void given__unsupportedEncoding__when__read__then__failure() throws Exception {
+        try {
+            HttpCompression.getResponseBody(response("br", new byte[]{1, 2, 3}));
+            fail("expected the encoding to be rejected");
+        } catch (IOException e) {
+            assertThat(e.getMessage(), is("Unsupported content encoding: br"));
+        }
+    }
+
+    private static HttpMethod response(String encoding, byte[] wire) throws IOException {
+        HttpMethod method = mock(HttpMethod.class);
+        when(method.getResponseBodyAsStream()).thenReturn(new ByteArrayInputStream(wire));
+        if (encoding != null) {
+            when(method.getResponseHeader("Content-Encoding")).thenReturn(new Header("Content-Encoding", encoding));
+        }
+        return method;
+    }
+
+    private static byte[] read(HttpMethod method) throws IOException {
+        try (InputStream is = HttpCompression.getResponseBody(method)) {
+            return IOUtils.toByteArray(is);
+        }
+    }
+
+    private static byte[] resource(String name) throws IOException {
+        try (InputStream is = HttpCompressionTest.class.getResourceAsStream(name)) {
+            return IOUtils.toByteArray(is);
+        }
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try (OutputStream os = new GZIPOutputStream(buf)) {
+            os.write(body);
+        }
+        return buf.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] body, boolean raw) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, raw);
+        try (OutputStream os = new DeflaterOutputStream(buf, deflater)) {
+            os.write(body);
+        } finally {
+            deflater.end();
+        }
+        return buf.toByteArray();
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.client;
+
+import java.io.File;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class ProbeResultCacheTest {
+
+    private static final String ENDPOINT = "https://bitbucket.example.com";
+    private static final String HASH = "8d51122def5632836d1cb1026e879069e10a1e13";
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void given__probedPaths__when__lookup__then__resultsReturned() throws Exception {
+        ProbeResultCache cache = new ProbeResultCache(1024 * 1024, null);
+        cache.put("alice", ENDPOINT, "PROJ", "repo", HASH, "Jenkinsfile", true);
+        cache.put("alice", ENDPOINT, "PROJ", "repo", HASH, "markerfile.txt", false);
+        assertThat(cache.lookup("alice", ENDPOINT, "PROJ", "repo", HASH, "Jenkinsfile"), is(Boolean.TRUE));
+        assertThat(cache.lookup("alice", ENDPOINT, "PROJ", "repo", HASH, "markerfile.txt"), is(Boolean.FALSE));
+        assertThat(cache.lookup("alice", ENDPOINT, "PROJ", "repo", HASH, "jenkinsfile"), nullValue());
+        assertThat(cache.lookup("alice", ENDPOINT, "PROJ", "fork", HASH, "Jenkinsfile"), nullValue());
+        assertThat(cache.lookup("bob", ENDPOINT, "PROJ", "repo", HASH, "markerfile.txt"), nullValue());
+        assertThat(cache.lookup(null, ENDPOINT, "PROJ", "repo", HASH, "markerfile.txt"), nullValue());
+    }
+
+    @Test
+    public void given__branchName__when__put__then__notCached() throws Exception {
+        ProbeResultCache cache = new ProbeResultCache(1024 * 1024, null);
+        cache.put("alice", ENDPOINT, "PROJ", "repo", "master", "Jenkinsfile", true);
+        assertThat(cache.getEntryCount(), is(0));
+        assertThat(cache.lookup("alice", ENDPOINT, "PROJ", "repo", "master", "Jenkinsfile"), nullValue());
+    }
+
+    @Test
+    public void given__savedCache__when__reloaded__then__resultsRestored() throws Exception {
+        File file = new File(tmp.getRoot(), "probes.cache");
+        ProbeResultCache cache = new ProbeResultCache(1024 * 1024, file);
+        cache.put("alice", ENDPOINT, "PROJ", "repo", HASH, "Jenkinsfile", true);
+        cache.put("alice", ENDPOINT, "PROJ", "repo", HASH, "markerfile.txt", false);
+        cache.save();
+
+        ProbeResultCache reloaded = new ProbeResultCache(1024 * 1024, file);
+        assertThat(reloaded.lookup("alice", ENDPOINT, "PROJ", "repo", HASH, "Jenkinsfile"), is(Boolean.TRUE));
+        assertThat(reloaded.lookup("alice", ENDPOINT, "PROJ", "repo", HASH, "markerfile.txt"), is(Boolean.FALSE));
+    }
+}
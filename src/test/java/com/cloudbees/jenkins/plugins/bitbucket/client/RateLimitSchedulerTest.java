@@ -0,0 +1,208 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.client;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HttpMethod;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RateLimitSchedulerTest {
+
+    @Test
+    public void given__fullBucket__when__burst__then__noWait() throws Exception {
+        FakeClockScheduler scheduler = new FakeClockScheduler();
+        for (int i = 0; i < 5; i++) {
+            scheduler.acquire();
+        }
+        assertThat(scheduler.sleeps.isEmpty(), is(true));
+        assertThat(scheduler.getRequestCount(), is(5L));
+    }
+
+    @Test
+    public void given__emptyBucket__when__acquire__then__waitForRefill() throws Exception {
+        FakeClockScheduler scheduler = new FakeClockScheduler();
+        for (int i = 0; i < 6; i++) {
+            scheduler.acquire();
+        }
+        // 2 permits per second
+        assertThat(scheduler.sleeps, is(listOf(500L)));
+        assertThat(scheduler.getLastWaitMillis(), is(500L));
+        assertThat(scheduler.getTotalWaitMillis(), is(500L));
+        assertThat(scheduler.getQueueDepth(), is(0));
+    }
+
+    @Test
+    public void given__retryAfter__when__rateLimited__then__nextRequestWaits() throws Exception {
+        FakeClockScheduler scheduler = new FakeClockScheduler();
+        scheduler.acquire();
+        assertThat(scheduler.onResponse(response(429, "Retry-After", "7"), 0), is(true));
+        scheduler.acquire();
+        assertThat(scheduler.sleeps, is(listOf(7000L)));
+        assertThat(scheduler.getRateLimitedCount(), is(1L));
+    }
+
+    @Test
+    public void given__noRetryAfter__when__rateLimited__then__exponentialBackoffWithJitter() throws Exception {
+        FakeClockScheduler scheduler = new FakeClockScheduler();
+        assertThat(scheduler.onResponse(response(429, null, null), 0), is(true));
+        scheduler.acquire();
+        assertThat(scheduler.sleeps.get(0), allOf(greaterThanOrEqualTo(500L), lessThanOrEqualTo(1000L)));
+        assertThat(scheduler.onResponse(response(429, null, null), 1), is(true));
+        scheduler.acquire();
+        assertThat(scheduler.sleeps.get(1), allOf(greaterThanOrEqualTo(1000L), lessThanOrEqualTo(2000L)));
+        assertThat(scheduler.onResponse(response(429, null, null), 2), is(true));
+        scheduler.acquire();
+        // reaches the maximum back-off
+        assertThat(scheduler.sleeps.get(2), allOf(greaterThanOrEqualTo(2000L), lessThanOrEqualTo(4000L)));
+    }
+
+    @Test
+    public void given__retryAfterPastMaxWait__when__acquire__then__fails() throws Exception {
+        FakeClockScheduler scheduler = new FakeClockScheduler();
+        assertThat(scheduler.onResponse(response(429, "Retry-After", "3600"), 0), is(true));
+        try {
+            scheduler.acquire();
+            fail("expected the wait to exceed the maximum wait");
+        } catch (IOException e) {
+            assertThat(scheduler.sleeps.isEmpty(), is(true));
+        }
+    }
+
+    @Test
+    public void given__tooManyAttempts__when__rateLimited__then__noRetry() throws Exception {
+        FakeClockScheduler scheduler = new FakeClockScheduler();
+        assertThat(scheduler.onResponse(response(429, "Retry-After", "1"), 3), is(false));
+    }
+
+    @Test
+    public void given__exhaustedRateLimit__when__ok__then__pausedUntilReset() throws Exception {
+        FakeClockScheduler scheduler = new FakeClockScheduler();
+        HttpMethod method = response(200, "X-RateLimit-Remaining", "0");
+        when(method.getResponseHeader("X-RateLimit-Reset")).thenReturn(new Header("X-RateLimit-Reset", "30"));
+        assertThat(scheduler.onResponse(method, 0), is(false));
+        assertThat(scheduler.getRemaining(), is(0));
+        scheduler.acquire();
+        assertThat(scheduler.sleeps, is(listOf(30000L)));
+    }
+
+    @Test
+    public void given__endpointAndCredential__when__get__then__sharedScheduler() throws Exception {
+        RateLimitScheduler alice = RateLimitScheduler.get("https://bitbucket.example.com", "alice", 10);
+        assertThat(RateLimitScheduler.get("https://bitbucket.example.com", "alice", 10), sameInstance(alice));
+        assertThat(RateLimitScheduler.get("https://bitbucket.example.com", "bob", 10), not(sameInstance(alice)));
+        assertThat(RateLimitScheduler.get("https://bitbucket.example.com", null, 10), not(sameInstance(alice)));
+        assertThat(RateLimitScheduler.all(), hasItem(alice));
+    }
+
+    @Test
+    public void given__noRate__when__burst__then__noWait() throws Exception {
+        FakeClockScheduler scheduler = new FakeClockScheduler();
+        scheduler.configure(0, 0);
+        for (int i = 0; i < 50; i++) {
+            scheduler.acquire();
+        }
+        assertThat(scheduler.sleeps.isEmpty(), is(true));
+        assertThat(scheduler.getPermitsPerSecond(), is(0));
+    }
+
+    @Test
+    public void given__noRate__when__rateLimited__then__nextRequestWaits() throws Exception {
+        FakeClockScheduler scheduler = new FakeClockScheduler();
+        scheduler.configure(0, 0);
+        assertThat(scheduler.onResponse(response(429, "Retry-After", "7"), 0), is(true));
+        scheduler.acquire();
+        scheduler.acquire();
+        assertThat(scheduler.sleeps, is(listOf(7000L)));
+    }
+
+    @Test
+    public void given__endpointRateChanged__when__get__then__rateReconfigured() throws Exception {
+        RateLimitScheduler scheduler = RateLimitScheduler.get("https://rate.example.com", "alice", 10);
+        assertThat(scheduler.getPermitsPerSecond(), is(10));
+        assertThat(RateLimitScheduler.get("https://rate.example.com", "alice", 0), sameInstance(scheduler));
+        assertThat(scheduler.getPermitsPerSecond(), is(0));
+    }
+
+    private static HttpMethod response(int status, String header, String value) {
+        HttpMethod method = mock(HttpMethod.class);
+        when(method.getStatusCode()).thenReturn(status);
+        if (header != null) {
+            when(method.getResponseHeader(header)).thenReturn(new Header(header, value));
+        }
+        return method;
+    }
+
+    private static List<Long> listOf(Long... values) {
+        List<Long> list = new ArrayList<>();
+        for (Long value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+
+    /**
+     * A scheduler with 2 permits per second, a burst of 5, a maximum wait of 60 seconds, a back-off from 1 to 4
+     * seconds and 3 retries, whose clock only advances when it sleeps.
+     */
+    private static class FakeClockScheduler extends RateLimitScheduler {
+        private long now;
+        private final List<Long> sleeps = new ArrayList<>();
+
+        FakeClockScheduler() {
+            super("https://bitbucket.example.com", "alice", 2, 5, 60, 1000, 4000, 3);
+        }
+
+        @Override
+        long nanoTime() {
+            return now;
+        }
+
+        @Override
+        long currentTimeMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(now);
+        }
+
+        @Override
+        void sleep(long nanos) {
+            sleeps.add(TimeUnit.NANOSECONDS.toMillis(nanos));
+            now += nanos;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.client;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class RequestCoalescerTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void given__concurrentRequests__when__fetch__then__singleRequestShared() throws Exception {
+        RequestCoalescer coalescer = new RequestCoalescer();
+        BlockingFetch fetch = new BlockingFetch(null);
+        List<Future<byte[]>> results = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            results.add(executor.submit(call(coalescer, "alice", fetch)));
+        }
+        awaitCoalesced(coalescer, 4);
+        fetch.release.countDown();
+        for (Future<byte[]> result : results) {
+            assertThat(new String(result.get(10, TimeUnit.SECONDS), "UTF-8"), is("{}"));
+        }
+        assertThat(fetch.count.get(), is(1));
+        assertThat(coalescer.getRequestCount(), is(1L));
+        assertThat(coalescer.getCoalescedCount(), is(4L));
+        assertThat(coalescer.getInFlightCount(), is(0));
+    }
+
+    @Test
+    public void given__otherCredential__when__fetch__then__notCoalesced() throws Exception {
+        RequestCoalescer coalescer = new RequestCoalescer();
+        BlockingFetch fetch = new BlockingFetch(null);
+        fetch.release.countDown();
+        coalescer.fetch("https://bitbucket.example.com", "alice", fetch);
+        coalescer.fetch("https://bitbucket.example.com", "bob", fetch);
+        assertThat(fetch.count.get(), is(2));
+        assertThat(coalescer.getCoalescedCount(), is(0L));
+    }
+
+    @Test
+    public void given__failingRequest__when__fetch__then__failureShared() throws Exception {
+        RequestCoalescer coalescer = new RequestCoalescer();
+        BlockingFetch fetch = new BlockingFetch(new FileNotFoundException("URL: /repos"));
+        List<Future<byte[]>> results = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            results.add(executor.submit(call(coalescer, "alice", fetch)));
+        }
+        awaitCoalesced(coalescer, 2);
+        fetch.release.countDown();
+        for (Future<byte[]> result : results) {
+            try {
+                result.get(10, TimeUnit.SECONDS);
+                fail("expected the failure to be shared");
+            } catch (ExecutionException e) {
+                assertThat(e.getCause(), instanceOf(FileNotFoundException.class));
+            }
+        }
+        assertThat(fetch.count.get(), is(1));
+    }
+
+    private static Callable<byte[]> call(final RequestCoalescer coalescer, final String username,
+                                         final RequestCoalescer.Fetch fetch) {
+        return new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws Exception {
+                return coalescer.fetch("https://bitbucket.example.com", username, fetch);
+            }
+        };
+    }
+
+    private static void awaitCoalesced(RequestCoalescer coalescer, long count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (coalescer.getCoalescedCount() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(coalescer.getCoalescedCount(), is(count));
+    }
+
+    private static class BlockingFetch implements RequestCoalescer.Fetch {
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final AtomicInteger count = new AtomicInteger();
+        private final IOException failure;
+
+        BlockingFetch(IOException failure) {
+            this.failure = failure;
+        }
+
+        @Override
+        public byte[] fetch() throws IOException, InterruptedException {
+            count.incrementAndGet();
+            release.await();
+            if (failure != null) {
+                throw failure;
+            }
+            return "{}".getBytes("UTF-8");
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.client;
+
+import java.io.File;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class ShortHashCacheTest {
+
+    private static final String ENDPOINT = "https://bitbucket.org";
+    private static final String HASH = "8d51122def5632836d1cb1026e879069e10a1e13";
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void given__expandedHash__when__lookup__then__fullHashReturned() throws Exception {
+        ShortHashCache cache = new ShortHashCache(1024 * 1024, null);
+        assertThat(cache.put(ENDPOINT, "team", "repo", "8d51122def56", HASH), is(true));
+        assertThat(cache.lookup(ENDPOINT, "team", "repo", "8d51122def56"), is(HASH));
+        assertThat(cache.lookup(ENDPOINT, "Team", "Repo", "8D51122DEF56"), is(HASH));
+        assertThat(cache.lookup(ENDPOINT, "team", "fork", "8d51122def56"), nullValue());
+        assertThat(cache.lookup(ENDPOINT, "team", "repo", "8d51122def"), nullValue());
+    }
+
+    @Test
+    public void given__mismatchedHash__when__put__then__notCached() throws Exception {
+        ShortHashCache cache = new ShortHashCache(1024 * 1024, null);
+        assertThat(cache.put(ENDPOINT, "team", "repo", "707c59ce8292", HASH), is(false));
+        assertThat(cache.put(ENDPOINT, "team", "repo", "8d51122def56", "8d51122def56"), is(false));
+        assertThat(cache.put(ENDPOINT, "team", "repo", "8d51122def56", null), is(false));
+        assertThat(cache.put(ENDPOINT, "team", "repo", "", HASH), is(false));
+        assertThat(cache.getEntryCount(), is(0));
+    }
+
+    @Test
+    public void given__savedCache__when__reloaded__then__hashesRestored() throws Exception {
+        File file = new File(tmp.getRoot(), "short-hashes.cache");
+        ShortHashCache cache = new ShortHashCache(1024 * 1024, file);
+        cache.put(ENDPOINT, "team", "repo", "8d51122def56", HASH);
+        cache.save();
+
+        ShortHashCache reloaded = new ShortHashCache(1024 * 1024, file);
+        assertThat(reloaded.lookup(ENDPOINT, "team", "repo", "8d51122def56"), is(HASH));
+    }
+}
@@ -43,4 +43,45 @@ public class BitbucketCloudEndpointTest {
                 is("https://bitbucket.org/tester/test-repo"));
     }
 
+    @Test
+    public void given__noPageSize__then__defaultUsed() {
+        assertThat(new BitbucketCloudEndpoint(false, null).getPageSize(), is(BitbucketCloudEndpoint.DEFAULT_PAGE_SIZE));
+    }
+
+    @Test
+    public void given__pageSize__then__pageSizeUsed() {
+        BitbucketCloudEndpoint endpoint = new BitbucketCloudEndpoint(false, null);
+        endpoint.setPageSize(100);
+        assertThat(endpoint.getPageSize(), is(100));
+        endpoint.setPageSize(-1);
+        assertThat(endpoint.getPageSize(), is(BitbucketCloudEndpoint.DEFAULT_PAGE_SIZE));
+    }
+
+    @Test
+    public void given__queueTimeout__then__queueTimeoutUsed() {
+        BitbucketCloudEndpoint endpoint = new BitbucketCloudEndpoint(false, null);
+        assertThat(endpoint.getQueueTimeout(), is(AbstractBitbucketEndpoint.DEFAULT_QUEUE_TIMEOUT));
+        endpoint.setQueueTimeout(120);
+        assertThat(endpoint.getQueueTimeout(), is(120));
+    }
+
+    @Test
+    public void given__requestRate__then__requestRateUsed() {
+        BitbucketCloudEndpoint endpoint = new BitbucketCloudEndpoint(false, null);
+        assertThat(endpoint.getRequestRate(), is(BitbucketCloudEndpoint.DEFAULT_REQUEST_RATE));
+        endpoint.setRequestRate(5);
+        assertThat(endpoint.getRequestRate(), is(5));
+        endpoint.setRequestRate(0);
+        assertThat(endpoint.getRequestRate(), is(BitbucketCloudEndpoint.DEFAULT_REQUEST_RATE));
+    }
+
+    @Test
+    public void given__unlimitedRequestRate__then__notRateLimited() {
+        BitbucketCloudEndpoint endpoint = new BitbucketCloudEndpoint(false, null);
+        endpoint.setRequestRate(BitbucketCloudEndpoint.UNLIMITED_REQUEST_RATE);
+        assertThat(endpoint.getRequestRate(), is(BitbucketCloudEndpoint.UNLIMITED_REQUEST_RATE));
+        endpoint.setRequestRate(-5);
+        assertThat(endpoint.getRequestRate(), is(BitbucketCloudEndpoint.UNLIMITED_REQUEST_RATE));
+    }
+
 }
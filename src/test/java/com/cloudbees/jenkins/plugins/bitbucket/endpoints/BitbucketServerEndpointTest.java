@@ -50,6 +50,80 @@ public class BitbucketServerEndpointTest {
                 is("http://dummy.example.com/users/tester/repos/test-repo"));
     }
 
+    @Test
+    public void given__defaultConnectionSettings__then__defaultsUsed() {
+        BitbucketServerEndpoint endpoint = new BitbucketServerEndpoint("Dummy", "http://dummy.example.com", false, null);
+        assertThat(endpoint.getMaxConnections(), is(BitbucketServerEndpoint.DEFAULT_MAX_CONNECTIONS));
+        assertThat(endpoint.getConnectionTimeout(), is(BitbucketServerEndpoint.DEFAULT_CONNECTION_TIMEOUT));
+        assertThat(endpoint.getReadTimeout(), is(BitbucketServerEndpoint.DEFAULT_READ_TIMEOUT));
+        assertThat(endpoint.getIdleTimeout(), is(BitbucketServerEndpoint.DEFAULT_IDLE_TIMEOUT));
+    }
+
+    @Test
+    public void given__customConnectionSettings__then__customUsed() {
+        BitbucketServerEndpoint endpoint = new BitbucketServerEndpoint("Dummy", "http://dummy.example.com", false, null);
+        endpoint.setMaxConnections(50);
+        endpoint.setConnectionTimeout(5);
+        endpoint.setReadTimeout(120);
+        endpoint.setIdleTimeout(-1);
+        assertThat(endpoint.getMaxConnections(), is(50));
+        assertThat(endpoint.getConnectionTimeout(), is(5));
+        assertThat(endpoint.getReadTimeout(), is(120));
+        assertThat(endpoint.getIdleTimeout(), is(BitbucketServerEndpoint.DEFAULT_IDLE_TIMEOUT));
+    }
+
+    @Test
+    public void given__pageSize__then__pageSizeUsed() {
+        BitbucketServerEndpoint endpoint = new BitbucketServerEndpoint("Dummy", "http://dummy.example.com", false, null);
+        assertThat(endpoint.getPageSize(), is(BitbucketServerEndpoint.DEFAULT_PAGE_SIZE));
+        endpoint.setPageSize(500);
+        assertThat(endpoint.getPageSize(), is(500));
+    }
+
+    @Test
+    public void given__noRequestRate__then__notRateLimited() {
+        BitbucketServerEndpoint endpoint = new BitbucketServerEndpoint("Dummy", "http://dummy.example.com", false, null);
+        assertThat(endpoint.getRequestRate(), is(BitbucketServerEndpoint.UNLIMITED_REQUEST_RATE));
+        endpoint.setRequestRate(50);
+        assertThat(endpoint.getRequestRate(), is(50));
+        endpoint.setRequestRate(0);
+        assertThat(endpoint.getRequestRate(), is(BitbucketServerEndpoint.UNLIMITED_REQUEST_RATE));
+    }
+
+    @Test
+    public void given__guardSettings__then__settingsUsed() {
+        BitbucketServerEndpoint endpoint = new BitbucketServerEndpoint("Dummy", "http://dummy.example.com", false, null);
+        assertThat(endpoint.getMaxConcurrentRequests(), is(AbstractBitbucketEndpoint.DEFAULT_MAX_CONCURRENT_REQUESTS));
+        assertThat(endpoint.getFailureThreshold(), is(AbstractBitbucketEndpoint.DEFAULT_FAILURE_THRESHOLD));
+        assertThat(endpoint.getRecoveryDelay(), is(AbstractBitbucketEndpoint.DEFAULT_RECOVERY_DELAY));
+        endpoint.setMaxConcurrentRequests(4);
+        endpoint.setFailureThreshold(3);
+        endpoint.setRecoveryDelay(120);
+        assertThat(endpoint.getMaxConcurrentRequests(), is(4));
+        assertThat(endpoint.getFailureThreshold(), is(3));
+        assertThat(endpoint.getRecoveryDelay(), is(120));
+    }
+
+    @Test
+    public void given__longReadTimeout__then__queueTimeoutAtLeastReadTimeout() {
+        BitbucketServerEndpoint endpoint = new BitbucketServerEndpoint("Dummy", "http://dummy.example.com", false, null);
+        assertThat(endpoint.getQueueTimeout(), is(AbstractBitbucketEndpoint.DEFAULT_QUEUE_TIMEOUT));
+        endpoint.setReadTimeout(300);
+        assertThat(endpoint.getQueueTimeout(), is(300));
+        endpoint.setQueueTimeout(30);
+        assertThat(endpoint.getQueueTimeout(), is(30));
+    }
+
+    @Test
+    public void given__prefetchParallelism__then__parallelismUsed() {
+        BitbucketServerEndpoint endpoint = new BitbucketServerEndpoint("Dummy", "http://dummy.example.com", false, null);
+        assertThat(endpoint.getPrefetchParallelism(), is(AbstractBitbucketEndpoint.DEFAULT_PREFETCH_PARALLELISM));
+        endpoint.setPrefetchParallelism(1);
+        assertThat(endpoint.getPrefetchParallelism(), is(1));
+        endpoint.setPrefetchParallelism(-1);
+        assertThat(endpoint.getPrefetchParallelism(), is(AbstractBitbucketEndpoint.DEFAULT_PREFETCH_PARALLELISM));
+    }
+
     @Test
     public void given__badUrl__when__check__then__fail() {
         BitbucketServerEndpoint.DescriptorImpl descriptor = new BitbucketServerEndpoint.DescriptorImpl();
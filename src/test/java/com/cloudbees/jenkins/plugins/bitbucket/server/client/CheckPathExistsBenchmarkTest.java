@@ -0,0 +1,145 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.server.client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Compares the cost of {@link BitbucketServerAPIClient#checkPathExists(String, String)} with browsing the content of
+ * the path, over a repository holding a large file.
+ */
+public class CheckPathExistsBenchmarkTest {
+
+    private static final String BROWSE_PATH = "/rest/api/1.0/projects/PROJ/repos/repo/browse/";
+    private static final String HASH = "e851558f77c098d21af6bb8cc54a423f7cf12147";
+    private static final int FILE_SIZE = 16 * 1024 * 1024;
+    private static final int ITERATIONS = 20;
+
+    private final byte[] content = new byte[FILE_SIZE];
+    private final AtomicLong bytesSent = new AtomicLong();
+    private HttpServer server;
+    private String baseURL;
+
+    @Before
+    public void startServer() throws IOException {
+        Arrays.fill(content, (byte) 'x');
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext(BROWSE_PATH, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String path = exchange.getRequestURI().getPath().substring(BROWSE_PATH.length());
+                String query = exchange.getRequestURI().getQuery();
+                byte[] body;
+                int status;
+                if ("large.bin".equals(path)) {
+                    status = 200;
+                    body = query != null && query.contains("type=true")
+                            ? "{\"type\":\"FILE\"}".getBytes(StandardCharsets.UTF_8)
+                            : content;
+                } else if ("broken.txt".equals(path)) {
+                    status = 500;
+                    body = "{\"errors\":[]}".getBytes(StandardCharsets.UTF_8);
+                } else {
+                    status = 404;
+                    body = "{\"errors\":[]}".getBytes(StandardCharsets.UTF_8);
+                }
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(status, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+                bytesSent.addAndGet(body.length);
+            }
+        });
+        server.start();
+        baseURL = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void given__largeFile__when__checkPathExists__then__contentNotTransferred() throws Exception {
+        BitbucketServerAPIClient client = new BitbucketServerAPIClient(baseURL, "PROJ", "repo", null, false);
+        assertThat(client.checkPathExists(HASH, "missing.txt"), is(false));
+
+        bytesSent.set(0);
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            assertThat(client.checkPathExists(HASH, "large.bin"), is(true));
+        }
+        long probeNanos = System.nanoTime() - start;
+        long probeBytes = bytesSent.get();
+
+        bytesSent.set(0);
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            browse("large.bin");
+        }
+        long browseNanos = System.nanoTime() - start;
+        long browseBytes = bytesSent.get();
+
+        System.out.printf("checkPathExists: %d bytes, %d us/op; browse: %d bytes, %d us/op%n",
+                probeBytes / ITERATIONS, probeNanos / ITERATIONS / 1000,
+                browseBytes / ITERATIONS, browseNanos / ITERATIONS / 1000);
+        assertThat(probeBytes / ITERATIONS, lessThan(1024L));
+    }
+
+    @Test
+    public void given__serverError__when__checkPathExists__then__false() throws Exception {
+        BitbucketServerAPIClient client = new BitbucketServerAPIClient(baseURL, "PROJ", "repo", null, false);
+        assertThat(client.checkPathExists(HASH, "broken.txt"), is(false));
+    }
+
+    private void browse(String path) throws IOException {
+        URL url = new URL(baseURL + BROWSE_PATH + path + "?at=" + HASH);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        byte[] buffer = new byte[8192];
+        try (InputStream in = connection.getInputStream()) {
+            while (in.read(buffer) != -1) {
+                // discard
+            }
+        }
+    }
+}
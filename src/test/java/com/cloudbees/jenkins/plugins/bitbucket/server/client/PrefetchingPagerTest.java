@@ -0,0 +1,122 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.server.client;
+
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketIterationException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class PrefetchingPagerTest {
+
+    @Test
+    public void given__manyPages__when__iterated__then__itemsInOrder() throws Exception {
+        Pages pages = new Pages(100, 7, -1);
+        List<Integer> items = pages.iterator().toList();
+        assertThat(items.size(), is(100));
+        for (int i = 0; i < items.size(); i++) {
+            assertThat(items.get(i), is(i));
+        }
+    }
+
+    @Test
+    public void given__failingPage__when__iterated__then__failureReportedWhenReached() throws Exception {
+        Pages pages = new Pages(100, 10, 50);
+        PrefetchingPager<Integer> iterator = pages.iterator();
+        List<Integer> items = new ArrayList<>();
+        try {
+            while (iterator.hasNext()) {
+                items.add(iterator.next());
+            }
+            fail("expected the failure of the page starting at 50");
+        } catch (BitbucketIterationException e) {
+            assertThat(e.getCause().getMessage(), is("start=50"));
+        }
+        assertThat(items.size(), is(50));
+    }
+
+    @Test
+    public void given__failingPagePastLastPage__when__iterated__then__failureDiscarded() throws Exception {
+        Pages pages = new Pages(20, 10, 30);
+        assertThat(pages.iterator().toList().size(), is(20));
+    }
+
+    @Test
+    public void given__closedIterator__when__iterated__then__noFurtherPages() throws Exception {
+        Pages pages = new Pages(1000, 10, -1);
+        PrefetchingPager<Integer> iterator = pages.iterator();
+        assertThat(iterator.next(), is(0));
+        iterator.close();
+        assertThat(iterator.hasNext(), is(false));
+        // only the first page and the prefetched pages have been requested
+        assertThat(pages.requests.get(), lessThanOrEqualTo(1 + Integer.getInteger(
+                PrefetchingPager.class.getName() + ".depth", 4)));
+    }
+
+    private static class Pages {
+        private final int total;
+        private final int size;
+        private final int failAt;
+        private final AtomicInteger requests = new AtomicInteger();
+
+        Pages(int total, int size, int failAt) {
+            this.total = total;
+            this.size = size;
+            this.failAt = failAt;
+        }
+
+        PrefetchingPager<Integer> iterator() {
+            return new PrefetchingPager<Integer>("http://bitbucket.test") {
+                @Override
+                protected BitbucketServerPage<Integer> fetch(int start) throws IOException {
+                    requests.incrementAndGet();
+                    if (start == failAt) {
+                        throw new IOException("start=" + start);
+                    }
+                    Page page = new Page();
+                    List<Integer> values = new ArrayList<>();
+                    for (int i = start; i < Math.min(total, start + size); i++) {
+                        values.add(i);
+                    }
+                    page.setValues(values);
+                    page.setStart(start);
+                    page.setLimit(size);
+                    page.setLastPage(start + size >= total);
+                    page.setNextPageStart(start + size >= total ? null : start + size);
+                    return page;
+                }
+            };
+        }
+    }
+
+    private static class Page extends BitbucketServerPage<Integer> {
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.server.client.branch;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class BitbucketServerBranchTest {
+
+    private List<BitbucketServerBranch> branches;
+
+    @Before
+    public void loadBranches() throws IOException {
+        try (InputStream is = getClass().getResourceAsStream(getClass().getSimpleName() + "/branches.json")) {
+            branches = new ObjectMapper().readValue(is, BitbucketServerBranches.class).getValues();
+        }
+    }
+
+    @Test
+    public void given__latestCommitMetadata__then__timestampNotResolved() throws Exception {
+        BitbucketServerBranch branch = branches.get(0);
+        AtomicInteger calls = new AtomicInteger();
+        branch.setTimestampResolver(resolver(calls, 42L));
+        assertThat(branch.getName(), is("master"));
+        assertThat(branch.getRawNode(), is("8d51122def5632836d1cb1026e879069e10a1e13"));
+        assertThat(branch.getDateMillis(), is(1505143226000L));
+        assertThat(calls.get(), is(0));
+    }
+
+    @Test
+    public void given__noMetadata__when__timestampRead__then__resolvedOnce() throws Exception {
+        BitbucketServerBranch branch = branches.get(1);
+        AtomicInteger calls = new AtomicInteger();
+        branch.setTimestampResolver(resolver(calls, 1505143339000L));
+        assertThat(branch.getName(), is("feature/1"));
+        assertThat(calls.get(), is(0));
+        assertThat(branch.getDateMillis(), is(1505143339000L));
+        assertThat(branch.getDateMillis(), is(1505143339000L));
+        assertThat(calls.get(), is(1));
+    }
+
+    @Test
+    public void given__resolverFails__when__timestampRead__then__retriedOnNextRead() throws Exception {
+        BitbucketServerBranch branch = branches.get(1);
+        final AtomicInteger calls = new AtomicInteger();
+        branch.setTimestampResolver(new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                if (calls.incrementAndGet() == 1) {
+                    throw new IOException("Bitbucket unavailable");
+                }
+                return 1505143339000L;
+            }
+        });
+        assertThat(branch.getDateMillis(), is(0L));
+        assertThat(branch.getDateMillis(), is(1505143339000L));
+        assertThat(calls.get(), is(2));
+    }
+
+    private static Callable<Long> resolver(final AtomicInteger calls, final long timestamp) {
+        return new Callable<Long>() {
+            @Override
+            public Long call() {
+                calls.incrementAndGet();
+                return timestamp;
+            }
+        };
+    }
+}
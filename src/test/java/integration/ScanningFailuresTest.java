@@ -5,12 +5,13 @@ import com.cloudbees.jenkins.plugins.bitbucket.BitbucketSCMSource;
 import com.cloudbees.jenkins.plugins.bitbucket.BranchDiscoveryTrait;
 import com.cloudbees.jenkins.plugins.bitbucket.ForkPullRequestDiscoveryTrait;
 import com.cloudbees.jenkins.plugins.bitbucket.OriginPullRequestDiscoveryTrait;
-import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketApi;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketBranch;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketCommit;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketIncrementalApi;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketRepository;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketRepositoryProtocol;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketRepositoryType;
+import com.cloudbees.jenkins.plugins.bitbucket.client.ProbeResultCache;
 import com.cloudbees.jenkins.plugins.bitbucket.endpoints.BitbucketCloudEndpoint;
 import hudson.model.Result;
 import hudson.model.TopLevelItem;
@@ -18,6 +19,7 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.Callable;
@@ -36,7 +38,9 @@ import org.junit.Test;
 import org.jvnet.hudson.test.Issue;
 import org.jvnet.hudson.test.JenkinsRule;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.internal.stubbing.answers.Returns;
+import org.mockito.stubbing.Answer;
 
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.instanceOf;
@@ -70,6 +74,15 @@ public class ScanningFailuresTest {
         message = "We gonna Boom Boom Boom 'til the break of Boom. "+ Long.toHexString(entropy.nextLong())+ " Who's the Boom King? Who? I'm the Boom King!" ;
     }
 
+    private static Answer<Iterator<?>> iterating(final List<?> items) {
+        return new Answer<Iterator<?>>() {
+            @Override
+            public Iterator<?> answer(InvocationOnMock invocation) {
+                return items.iterator();
+            }
+        };
+    }
+
     @Test
     public void getBranchesFailsWithIOException() throws Exception {
         getBranchesFails(new Callable<Throwable>() {
@@ -120,11 +133,14 @@ public class ScanningFailuresTest {
         sampleRepo.write("file", "initial content");
         sampleRepo.git("add", "Jenkinsfile");
         sampleRepo.git("commit", "--all", "--message=InitialCommit");
-        BitbucketApi api = Mockito.mock(BitbucketApi.class);
+        BitbucketIncrementalApi api = Mockito.mock(BitbucketIncrementalApi.class);
 
         BitbucketBranch branch = Mockito.mock(BitbucketBranch.class);
         List<? extends BitbucketBranch> branchList = Collections.singletonList(branch);
         when(api.getBranches()).thenAnswer(new Returns(branchList));
+        when(api.iterateBranches()).thenAnswer(iterating(branchList));
+        when(api.getBranch("master")).thenReturn(branch);
+        when(api.iteratePullRequests()).thenAnswer(iterating(Collections.emptyList()));
         when(branch.getName()).thenReturn("master");
         when(branch.getRawNode()).thenReturn(sampleRepo.head());
 
@@ -170,6 +186,8 @@ public class ScanningFailuresTest {
         // an error in getBranches()
 
         when(api.getBranches()).thenThrow(exception.call());
+        when(api.iterateBranches()).thenThrow(exception.call());
+        when(api.getBranch(Mockito.anyString())).thenThrow(exception.call());
 
         if (Result.NOT_BUILT.equals(expectedResult)) {
             // when not built the future will never complete and the log may not contain the exception stack trace
@@ -195,11 +213,14 @@ public class ScanningFailuresTest {
         sampleRepo.write("file", "initial content");
         sampleRepo.git("add", "Jenkinsfile");
         sampleRepo.git("commit", "--all", "--message=InitialCommit");
-        BitbucketApi api = Mockito.mock(BitbucketApi.class);
+        BitbucketIncrementalApi api = Mockito.mock(BitbucketIncrementalApi.class);
 
         BitbucketBranch branch = Mockito.mock(BitbucketBranch.class);
         List<? extends BitbucketBranch> branchList = Collections.singletonList(branch);
         when(api.getBranches()).thenAnswer(new Returns(branchList));
+        when(api.iterateBranches()).thenAnswer(iterating(branchList));
+        when(api.getBranch("master")).thenReturn(branch);
+        when(api.iteratePullRequests()).thenAnswer(iterating(Collections.emptyList()));
         when(branch.getName()).thenReturn("master");
         when(branch.getRawNode()).thenReturn(sampleRepo.head());
 
@@ -242,7 +263,8 @@ public class ScanningFailuresTest {
         WorkflowJob master = mp.getItem("master");
         assertThat(master, notNullValue());
 
-        // an error in checkPathExists(...)
+        // an error in checkPathExists(...), which is only called again once the cached probe results are gone
+        ProbeResultCache.get().clear();
         when(api.checkPathExists(Mockito.anyString(), eq("Jenkinsfile"))).thenThrow(new IOException(message));
 
         mp.scheduleBuild2(0).getFuture().get();
@@ -262,11 +284,14 @@ public class ScanningFailuresTest {
         sampleRepo.write("file", "initial content");
         sampleRepo.git("add", "Jenkinsfile");
         sampleRepo.git("commit", "--all", "--message=InitialCommit");
-        BitbucketApi api = Mockito.mock(BitbucketApi.class);
+        BitbucketIncrementalApi api = Mockito.mock(BitbucketIncrementalApi.class);
 
         BitbucketBranch branch = Mockito.mock(BitbucketBranch.class);
         List<? extends BitbucketBranch> branchList = Collections.singletonList(branch);
         when(api.getBranches()).thenAnswer(new Returns(branchList));
+        when(api.iterateBranches()).thenAnswer(iterating(branchList));
+        when(api.getBranch("master")).thenReturn(branch);
+        when(api.iteratePullRequests()).thenAnswer(iterating(Collections.emptyList()));
         when(branch.getName()).thenReturn("master");
         when(branch.getRawNode()).thenReturn(sampleRepo.head());
 
@@ -333,11 +358,14 @@ public class ScanningFailuresTest {
         sampleRepo.write("file", "initial content");
         sampleRepo.git("add", "Jenkinsfile");
         sampleRepo.git("commit", "--all", "--message=InitialCommit");
-        BitbucketApi api = Mockito.mock(BitbucketApi.class);
+        BitbucketIncrementalApi api = Mockito.mock(BitbucketIncrementalApi.class);
 
         BitbucketBranch branch = Mockito.mock(BitbucketBranch.class);
         List<? extends BitbucketBranch> branchList = Collections.singletonList(branch);
         when(api.getBranches()).thenAnswer(new Returns(branchList));
+        when(api.iterateBranches()).thenAnswer(iterating(branchList));
+        when(api.getBranch("master")).thenReturn(branch);
+        when(api.iteratePullRequests()).thenAnswer(iterating(Collections.emptyList()));
         when(branch.getName()).thenReturn("master");
         when(branch.getRawNode()).thenReturn(sampleRepo.head());
 
@@ -385,6 +413,7 @@ public class ScanningFailuresTest {
         // the branch is actually removed
 
         when(api.getBranches()).thenAnswer(new Returns(Collections.emptyList()));
+        when(api.iterateBranches()).thenAnswer(iterating(Collections.emptyList()));
 
         mp.scheduleBuild2(0).getFuture().get();
         assertThat(mp.getIndexing().getResult(), is(Result.SUCCESS));